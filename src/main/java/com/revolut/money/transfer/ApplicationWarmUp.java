@@ -0,0 +1,96 @@
+package com.revolut.money.transfer;
+
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exercises the create, execute and serialize paths through the running server before it is reported ready, so the
+ * classes are loaded, the code is compiled by JIT and the first clients don't pay for it.
+ * <p>
+ * Two Bank Accounts are created once and every iteration transfers the same amount from the first one to the second
+ * and back with the immediate execution, then reads the transaction and both Bank Accounts. Balances of warm-up
+ * Bank Accounts are the same after the warm-up as before.
+ */
+public class ApplicationWarmUp {
+    private static final Logger log = LoggerFactory.getLogger(ApplicationWarmUp.class);
+
+    static final String OWNER_NAME = "Warm-up Account";
+    static final BigDecimal INITIAL_BALANCE = BigDecimal.TEN;
+
+    private final WebTarget target;
+    private final int iterations;
+
+    public ApplicationWarmUp(WebTarget target, int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Iterations should be more than 0");
+        }
+        this.target = target;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Runs the warm-up
+     *
+     * @return ids of warm-up Bank Accounts
+     */
+    public List<Long> warmUp() {
+        long start = System.nanoTime();
+
+        Long firstBankAccountId = createBankAccount();
+        Long secondBankAccountId = createBankAccount();
+        for (int i = 0; i < iterations; i++) {
+            Transaction transaction = transfer(firstBankAccountId, secondBankAccountId);
+            transfer(secondBankAccountId, firstBankAccountId);
+
+            read(target.path(TransactionsController.BASE_URL).path(transaction.getId().toString()));
+            read(target.path(BankAccountsController.BASE_URL).path(firstBankAccountId.toString()));
+            read(target.path(BankAccountsController.BASE_URL).path(secondBankAccountId.toString()));
+        }
+
+        log.info("Warm-up of {} iterations has taken {} ms", iterations, (System.nanoTime() - start) / 1_000_000);
+        return Arrays.asList(firstBankAccountId, secondBankAccountId);
+    }
+
+    private Long createBankAccount() {
+        BankAccount bankAccount = new BankAccount(OWNER_NAME, INITIAL_BALANCE, BigDecimal.ZERO, Currency.EUR);
+
+        return checked(target.path(BankAccountsController.BASE_URL).request()
+                .post(Entity.entity(bankAccount, MediaType.APPLICATION_JSON_TYPE))).readEntity(BankAccount.class)
+                .getId();
+    }
+
+    private Transaction transfer(Long fromBankAccountId, Long toBankAccountId) {
+        Transaction transaction = new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR);
+
+        return checked(target.path(TransactionsController.BASE_URL)
+                .queryParam(TransactionsController.SYNC_PARAM, true).request()
+                .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE))).readEntity(Transaction.class);
+    }
+
+    private static void read(WebTarget resource) {
+        checked(resource.request().get()).readEntity(String.class);
+    }
+
+    private static Response checked(Response response) {
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+            String body = response.readEntity(String.class);
+            throw new IllegalStateException("Warm-up request has failed with HTTP " + response.getStatus() + ": " +
+                    body);
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,196 @@
+package com.revolut.money.transfer;
+
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.DEFAULT_IMPORT_CHUNK_SIZE;
+
+/**
+ * The command which imports Bank Accounts from the CSV file into the running service. The file is read line by line
+ * so only one chunk of Bank Accounts is kept in memory at the time. Every chunk is sent by one
+ * <code>POST /accounts/batch</code> request and inserted by one JDBC batch. The database is in-memory and owned by
+ * the service, so the command never writes into it directly.
+ * <p>
+ * Expected line format is <code>owner_name,balance,blocked_amount,currency</code>. The header line with the same
+ * column names is skipped. Malformed lines are skipped and logged. The line with non-zero blocked_amount is malformed
+ * too: money is blocked only by holds of CREATED transactions, and the imported Bank Account has none of them.
+ * <p>
+ * Usage: <code>BankAccountsImportApplication &lt;csv file&gt; [chunk size] [service URI]</code>
+ */
+public class BankAccountsImportApplication {
+    private static final Logger log = LoggerFactory.getLogger(BankAccountsImportApplication.class);
+
+    private static final String CSV_SEPARATOR = ",";
+    private static final String CSV_HEADER_PREFIX = "owner_name";
+
+    private final BankAccountsSink bankAccountsSink;
+    private final int chunkSize;
+
+    /**
+     * Creates chunks of imported Bank Accounts
+     */
+    @FunctionalInterface
+    public interface BankAccountsSink {
+        /**
+         * @param bankAccounts the chunk of Bank Accounts
+         * @return created Bank Accounts
+         */
+        List<BankAccount> createBankAccounts(List<BankAccount> bankAccounts) throws ObjectModificationException;
+    }
+
+    public BankAccountsImportApplication(BankAccountsSink bankAccountsSink, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be more than 0");
+        }
+        this.bankAccountsSink = bankAccountsSink;
+        this.chunkSize = chunkSize;
+    }
+
+    public static void main(String[] args) throws IOException, ObjectModificationException {
+        if (args.length < 1) {
+            System.out.println("Usage: BankAccountsImportApplication <csv file> [chunk size] [service URI]");
+            return;
+        }
+
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_IMPORT_CHUNK_SIZE;
+        String serviceUri = args.length > 2 ? args[2] : MoneyTransferApplication.BASE_URI;
+
+        Client client = ClientBuilder.newClient();
+        try {
+            new BankAccountsImportApplication(toService(client.target(serviceUri)), chunkSize)
+                    .importBankAccounts(Paths.get(args[0]));
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * @param target the target of the running service
+     * @return the sink which sends every chunk by one <code>POST /accounts/batch</code> request. The import stops
+     * once the request has failed
+     */
+    public static BankAccountsSink toService(WebTarget target) {
+        WebTarget batchTarget = target.path(BankAccountsController.BASE_URL).path(BankAccountsController.BATCH_PATH);
+
+        return bankAccounts -> {
+            Response response = batchTarget.request()
+                    .post(Entity.entity(bankAccounts, MediaType.APPLICATION_JSON_TYPE));
+            if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                String body = response.readEntity(String.class);
+                throw new IllegalStateException("Import request has failed with HTTP " + response.getStatus() +
+                        ": " + body);
+            }
+
+            return response.readEntity(new GenericType<List<BankAccount>>() {
+            });
+        };
+    }
+
+    /**
+     * Imports all Bank Accounts from the file provided
+     *
+     * @param csvFile the CSV file with Bank Accounts
+     * @return the number of imported Bank Accounts
+     */
+    public long importBankAccounts(Path csvFile) throws IOException, ObjectModificationException {
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            return importBankAccounts(reader);
+        }
+    }
+
+    /**
+     * Imports all Bank Accounts from the reader provided. The reader will be not closed.
+     *
+     * @param reader the reader of CSV lines with Bank Accounts
+     * @return the number of imported Bank Accounts
+     */
+    public long importBankAccounts(BufferedReader reader) throws IOException, ObjectModificationException {
+        List<BankAccount> chunk = new ArrayList<>(chunkSize);
+        long imported = 0;
+        long skipped = 0;
+        long lineNumber = 0;
+        long start = System.nanoTime();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.startsWith(CSV_HEADER_PREFIX)) {
+                continue;
+            }
+
+            BankAccount bankAccount = parseBankAccount(line);
+            if (bankAccount == null) {
+                log.warn("Line {} is malformed and has been skipped", lineNumber);
+                skipped++;
+                continue;
+            }
+
+            chunk.add(bankAccount);
+            if (chunk.size() == chunkSize) {
+                imported += bankAccountsSink.createBankAccounts(chunk).size();
+                chunk = new ArrayList<>(chunkSize);
+                log.info("{} bank accounts imported, {} rows per second", imported, rate(imported, start));
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            imported += bankAccountsSink.createBankAccounts(chunk).size();
+        }
+
+        log.info("Import finished: {} bank accounts imported, {} lines skipped, {} rows per second",
+                imported, skipped, rate(imported, start));
+
+        return imported;
+    }
+
+    /**
+     * @param line CSV line in <code>owner_name,balance,blocked_amount,currency</code> format
+     * @return parsed Bank Account or null if line is malformed or blocked_amount is not zero
+     */
+    private static BankAccount parseBankAccount(String line) {
+        String[] columns = line.split(CSV_SEPARATOR, -1);
+        if (columns.length != 4 || columns[0].trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            BankAccount bankAccount = new BankAccount();
+            bankAccount.setOwnerName(columns[0].trim());
+            bankAccount.setBalance(new BigDecimal(columns[1].trim()));
+            bankAccount.setBlockedAmount(new BigDecimal(columns[2].trim()));
+            if (bankAccount.getBlockedAmount().signum() != 0) {
+                return null;
+            }
+            bankAccount.setCurrency(Currency.valueOf(columns[3].trim()));
+
+            return bankAccount;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long rate(long rows, long startNanos) {
+        return rows * 1_000_000_000L / Math.max(System.nanoTime() - startNanos, 1);
+    }
+}
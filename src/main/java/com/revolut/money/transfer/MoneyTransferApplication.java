@@ -1,25 +1,74 @@
 package com.revolut.money.transfer;
 
+import com.revolut.money.transfer.binary.TransactionBinaryReader;
+import com.revolut.money.transfer.binary.TransactionBinaryWriter;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.ChangesController;
+import com.revolut.money.transfer.controller.HealthController;
+import com.revolut.money.transfer.controller.MetricsController;
+import com.revolut.money.transfer.controller.RecurringPlansController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.Readiness;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.exceptions.ApplicationExceptionMapper;
+import com.revolut.money.transfer.filter.ClientRateLimiter;
+import com.revolut.money.transfer.filter.RateLimitFilter;
+import com.revolut.money.transfer.json.BankAccountJsonWriter;
+import com.revolut.money.transfer.json.TransactionJsonWriter;
+import com.revolut.money.transfer.service.TransactionEventBroadcaster;
+import org.glassfish.grizzly.http.CompressionConfig;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 
+import static com.revolut.money.transfer.utils.Constants.COMPRESSION_ENABLED;
+import static com.revolut.money.transfer.utils.Constants.COMPRESSION_MIN_SIZE;
+import static com.revolut.money.transfer.utils.Constants.RATE_LIMIT_BURST;
+import static com.revolut.money.transfer.utils.Constants.RATE_LIMIT_ENABLED;
+import static com.revolut.money.transfer.utils.Constants.RATE_LIMIT_MAX_CLIENTS;
+import static com.revolut.money.transfer.utils.Constants.RATE_LIMIT_PERMITS_PER_SECOND;
+import static com.revolut.money.transfer.utils.Constants.WARM_UP_ENABLED;
+import static com.revolut.money.transfer.utils.Constants.WARM_UP_EXIT;
+import static com.revolut.money.transfer.utils.Constants.WARM_UP_ITERATIONS;
+
 /**
  * The Main class of the Money Transfer RESTful application provides the ability to transfer money form one
  * Bank Account to another.
  * It will start the web server on localhost:8080
+ * <p>
+ * Services, connection pools and the database are initialized before the server is started, so the first requests
+ * don't pay for it. Once <code>transfer.warmup.enabled</code> is set, the server is warmed up by
+ * {@link ApplicationWarmUp} before {@link Readiness} is set. Once <code>transfer.warmup.exit</code> is set too, the
+ * application stops after the warm-up, which is the training run for the class data sharing archive.
  */
 public class MoneyTransferApplication {
+    private static final Logger log = LoggerFactory.getLogger(MoneyTransferApplication.class);
+
     public static final String BASE_URI = "http://localhost:8080/transfer-service/";
 
     public static void main(String[] args) throws IOException {
 
         final HttpServer server = startServer();
 
+        if (WARM_UP_EXIT) {
+            server.shutdownNow();
+            return;
+        }
+
         System.out.println(String.format(
                 "Money Transfer Application started with WADL available at " + "%sapplication.wadl\nHit enter to stop it...",
                 BASE_URI));
@@ -27,9 +76,108 @@ public class MoneyTransferApplication {
         server.shutdownNow();
     }
 
+    /**
+     * Starts the server which requests are rate limited per client by limits of system properties unless
+     * <code>transfer.ratelimit.enabled</code> is false
+     */
     public static HttpServer startServer() {
-        final ResourceConfig rc = new ResourceConfig().packages("com.revolut.money.transfer");
+        return startServer(RATE_LIMIT_ENABLED ? new ClientRateLimiter(RATE_LIMIT_PERMITS_PER_SECOND,
+                RATE_LIMIT_BURST, RATE_LIMIT_MAX_CLIENTS) : null);
+    }
+
+    /**
+     * @param rateLimiter token buckets of clients. null if requests should not be rate limited
+     */
+    public static HttpServer startServer(ClientRateLimiter rateLimiter) {
+        long start = System.nanoTime();
+
+        wireEagerly();
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI),
+                createResourceConfig(rateLimiter), false);
+        if (COMPRESSION_ENABLED) {
+            configureCompression(server);
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("The server could not be started at " + BASE_URI, e);
+        }
+        if (WARM_UP_ENABLED) {
+            new ApplicationWarmUp(ClientBuilder.newClient().target(BASE_URI), WARM_UP_ITERATIONS).warmUp();
+        }
+        Readiness.getInstance().setReady(true);
+
+        log.info("The server is ready in {} ms, {} ms since the JVM start", (System.nanoTime() - start) / 1_000_000,
+                ManagementFactory.getRuntimeMXBean().getUptime());
+        return server;
+    }
+
+    /**
+     * Registers resources and providers one by one instead of scanning the classpath for them. Requests are rate
+     * limited per client by the rate limiter provided unless it is null. Event streams of subscribers are closed
+     * once the server stops
+     */
+    static ResourceConfig createResourceConfig(ClientRateLimiter rateLimiter) {
+        final ResourceConfig rc = new ResourceConfig()
+                .register(BankAccountsController.class)
+                .register(TransactionsController.class)
+                .register(ChangesController.class)
+                .register(RecurringPlansController.class)
+                .register(MetricsController.class)
+                .register(HealthController.class)
+                .register(ApplicationExceptionMapper.class)
+                .register(TransactionJsonWriter.class)
+                .register(BankAccountJsonWriter.class)
+                .register(TransactionBinaryReader.class)
+                .register(TransactionBinaryWriter.class);
+        if (rateLimiter != null) {
+            rc.register(new RateLimitFilter(rateLimiter));
+        }
+        rc.register(new ContainerLifecycleListener() {
+            @Override
+            public void onStartup(Container container) {
+            }
+
+            @Override
+            public void onReload(Container container) {
+            }
+
+            @Override
+            public void onShutdown(Container container) {
+                TransactionEventBroadcaster.getInstance().closeSubscriptions();
+            }
+        });
         rc.property(ServerProperties.RESPONSE_SET_STATUS_OVER_SEND_ERROR, "true");
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
+        return rc;
+    }
+
+    /**
+     * Makes listeners gzip JSON responses longer than <code>transfer.compression.min.size</code> for clients which
+     * accept it. Compression encodings are added to listeners once the server is started, so it should be called
+     * before that
+     */
+    private static void configureCompression(HttpServer server) {
+        for (NetworkListener listener : server.getListeners()) {
+            CompressionConfig compressionConfig = listener.getCompressionConfig();
+            compressionConfig.setCompressionMode(CompressionConfig.CompressionMode.ON);
+            compressionConfig.setCompressionMinSize(COMPRESSION_MIN_SIZE);
+            compressionConfig.setCompressibleMimeTypes(MediaType.APPLICATION_JSON);
+        }
+    }
+
+    /**
+     * Creates all services and starts all connection pools. The database is initialized by the first pool.
+     */
+    private static void wireEagerly() {
+        Services services = ServiceFactory.createServices();
+        services.getAccountService();
+        services.getTransactionsService();
+        services.getMoneyExchangeService();
+        services.getChangeService();
+        services.getRecurringPlanService();
+        services.getLedgerService();
+        TransactionEventBroadcaster.getInstance();
+
+        DaoManager.getInstance().startPools();
     }
 }
@@ -0,0 +1,357 @@
+package com.revolut.money.transfer.binary;
+
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
+import com.revolut.money.transfer.model.TransactionStatus;
+
+import javax.ws.rs.core.MediaType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Encodes and decodes transactions of the compact binary transfer API. It is used by the server providers and could
+ * be used by Java clients as is.
+ * <p>
+ * The body is the sequence of frames, one per transaction. The frame is the record length as the big-endian int32
+ * followed by the record. Readers skip the rest of the record they don't know, so fields could be appended later.
+ * <ul>
+ * <li>The create request record: int64 <code>fromBankAccountId</code>, int64 <code>toBankAccountId</code>,
+ * int8 <code>currency</code>, <code>amount</code>, int64 <code>executeAt</code></li>
+ * <li>The status record: int64 <code>id</code>, int64 <code>fromBankAccountId</code>,
+ * int64 <code>toBankAccountId</code>, int8 <code>currency</code>, <code>amount</code>, int8 <code>status</code>,
+ * int8 <code>failCode</code>, int64 <code>creationDate</code>, int64 <code>updateDate</code>,
+ * <code>failMessage</code>, int64 <code>executeAt</code></li>
+ * </ul>
+ * <code>executeAt</code> has been appended later, so the record without it is read as the one without the date.
+ * Amount is int32 scale, uint8 length and the unscaled value of that length in two's complement. Strings are uint16
+ * length and UTF-8 bytes. Currency and status are their ids, fail code is its ordinal + 1. Null is
+ * <code>Long.MIN_VALUE</code> for int64, 0 for int8, the length 0 for amount and the length 0xFFFF for strings.
+ */
+public class TransactionBinaryCodec {
+    public static final String MEDIA_TYPE = "application/x-transfer-binary";
+    public static final MediaType MEDIA_TYPE_TYPE = MediaType.valueOf(MEDIA_TYPE);
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final byte NULL_BYTE = 0;
+    private static final int NULL_STRING_LENGTH = 0xFFFF;
+    private static final int FRAME_LENGTH_SIZE = Integer.BYTES;
+    private static final int CREATE_RECORD_FIXED_SIZE = Long.BYTES * 3 + Byte.BYTES;
+    private static final int STATUS_RECORD_FIXED_SIZE = Long.BYTES * 6 + Byte.BYTES * 3 + Short.BYTES;
+    private static final int AMOUNT_MAX_FIXED_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+    private static final int MAX_UNSCALED_VALUE_LENGTH = 0xFF;
+    private static final TransactionFailCode[] FAIL_CODES = TransactionFailCode.values();
+
+    /**
+     * The length of the longest record of the create request, the one with the longest amount
+     */
+    static final int MAX_CREATE_FRAME_SIZE = FRAME_LENGTH_SIZE + CREATE_RECORD_FIXED_SIZE + AMOUNT_MAX_FIXED_SIZE +
+            MAX_UNSCALED_VALUE_LENGTH;
+
+    private TransactionBinaryCodec() {
+    }
+
+    /**
+     * @param transactions transactions to be created. Only source and target Bank Accounts, currency, amount and
+     *                     the execution time are encoded
+     * @return the body of the create request
+     */
+    public static byte[] encodeCreateRequests(Collection<Transaction> transactions) {
+        int size = 0;
+        for (Transaction transaction : transactions) {
+            size += FRAME_LENGTH_SIZE + CREATE_RECORD_FIXED_SIZE + maxAmountSize(transaction.getAmount());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Transaction transaction : transactions) {
+            int frameStart = startFrame(buffer);
+            putLong(buffer, transaction.getFromBankAccountId());
+            putLong(buffer, transaction.getToBankAccountId());
+            buffer.put(transaction.getCurrency() == null ? NULL_BYTE : (byte) transaction.getCurrency().getId());
+            putAmount(buffer, transaction.getAmount());
+            putDate(buffer, transaction.getExecuteAt());
+            endFrame(buffer, frameStart);
+        }
+
+        return toByteArray(buffer);
+    }
+
+    /**
+     * Decodes transactions right from the buffer provided. Only strings and amounts are copied out of it
+     *
+     * @param buffer the body of the create request from its position to its limit
+     * @return transactions to be created
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static List<Transaction> decodeCreateRequests(ByteBuffer buffer) {
+        List<Transaction> transactions = new ArrayList<>();
+        int bodyEnd = buffer.limit();
+        try {
+            while (buffer.hasRemaining()) {
+                int frameEnd = frameEnd(buffer);
+                buffer.limit(frameEnd);
+
+                Transaction transaction = new Transaction();
+                transaction.setFromBankAccountId(getLong(buffer));
+                transaction.setToBankAccountId(getLong(buffer));
+                transaction.setCurrency(getCurrency(buffer));
+                transaction.setAmount(getAmount(buffer));
+                transaction.setExecuteAt(getOptionalDate(buffer));
+                transactions.add(transaction);
+
+                buffer.limit(bodyEnd).position(frameEnd);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The record is shorter than its fields", e);
+        }
+
+        return transactions;
+    }
+
+    /**
+     * @param transactions created or read transactions
+     * @return the body of the status response
+     */
+    public static byte[] encodeStatuses(Collection<Transaction> transactions) {
+        int size = 0;
+        for (Transaction transaction : transactions) {
+            String failMessage = transaction.getFailMessage();
+            size += FRAME_LENGTH_SIZE + STATUS_RECORD_FIXED_SIZE + maxAmountSize(transaction.getAmount()) +
+                    (failMessage == null ? 0 : failMessage.length() * MAX_UTF8_BYTES_PER_CHAR);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Transaction transaction : transactions) {
+            int frameStart = startFrame(buffer);
+            putLong(buffer, transaction.getId());
+            putLong(buffer, transaction.getFromBankAccountId());
+            putLong(buffer, transaction.getToBankAccountId());
+            buffer.put(transaction.getCurrency() == null ? NULL_BYTE : (byte) transaction.getCurrency().getId());
+            putAmount(buffer, transaction.getAmount());
+            buffer.put(transaction.getStatus() == null ? NULL_BYTE : (byte) transaction.getStatus().getId());
+            buffer.put(transaction.getFailCode() == null ? NULL_BYTE : (byte) (transaction.getFailCode().ordinal() + 1));
+            putDate(buffer, transaction.getCreationDate());
+            putDate(buffer, transaction.getUpdateDate());
+            putString(buffer, transaction.getFailMessage());
+            putDate(buffer, transaction.getExecuteAt());
+            endFrame(buffer, frameStart);
+        }
+
+        return toByteArray(buffer);
+    }
+
+    /**
+     * @param buffer the body of the status response from its position to its limit
+     * @return transactions with their statuses
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static List<Transaction> decodeStatuses(ByteBuffer buffer) {
+        List<Transaction> transactions = new ArrayList<>();
+        int bodyEnd = buffer.limit();
+        try {
+            while (buffer.hasRemaining()) {
+                int frameEnd = frameEnd(buffer);
+                buffer.limit(frameEnd);
+
+                Transaction transaction = new Transaction();
+                transaction.setId(getLong(buffer));
+                transaction.setFromBankAccountId(getLong(buffer));
+                transaction.setToBankAccountId(getLong(buffer));
+                transaction.setCurrency(getCurrency(buffer));
+                transaction.setAmount(getAmount(buffer));
+                transaction.setStatus(getStatus(buffer));
+                transaction.setFailCode(getFailCode(buffer));
+                transaction.setCreationDate(getDate(buffer));
+                transaction.setUpdateDate(getDate(buffer));
+                transaction.setFailMessage(getString(buffer));
+                transaction.setExecuteAt(getOptionalDate(buffer));
+                transactions.add(transaction);
+
+                buffer.limit(bodyEnd).position(frameEnd);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The record is shorter than its fields", e);
+        }
+
+        return transactions;
+    }
+
+    private static int startFrame(ByteBuffer buffer) {
+        int frameStart = buffer.position();
+        buffer.position(frameStart + FRAME_LENGTH_SIZE);
+
+        return frameStart;
+    }
+
+    private static void endFrame(ByteBuffer buffer, int frameStart) {
+        buffer.putInt(frameStart, buffer.position() - frameStart - FRAME_LENGTH_SIZE);
+    }
+
+    private static int frameEnd(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("The record length " + length + " is out of the body");
+        }
+
+        return buffer.position() + length;
+    }
+
+    private static int maxAmountSize(BigDecimal amount) {
+        return AMOUNT_MAX_FIXED_SIZE + (amount == null ? 0 : amount.unscaledValue().bitLength() / 8 + 1);
+    }
+
+    private static void putLong(ByteBuffer buffer, Long value) {
+        buffer.putLong(value == null ? NULL_LONG : value);
+    }
+
+    private static Long getLong(ByteBuffer buffer) {
+        long value = buffer.getLong();
+
+        return value == NULL_LONG ? null : value;
+    }
+
+    private static void putDate(ByteBuffer buffer, Date value) {
+        buffer.putLong(value == null ? NULL_LONG : value.getTime());
+    }
+
+    private static Date getDate(ByteBuffer buffer) {
+        long value = buffer.getLong();
+
+        return value == NULL_LONG ? null : new Date(value);
+    }
+
+    /**
+     * @return the date appended to the record or null if the record has been written before it was appended
+     */
+    private static Date getOptionalDate(ByteBuffer buffer) {
+        return buffer.hasRemaining() ? getDate(buffer) : null;
+    }
+
+    private static void putAmount(ByteBuffer buffer, BigDecimal amount) {
+        if (amount == null) {
+            buffer.putInt(0);
+            buffer.put(NULL_BYTE);
+            return;
+        }
+
+        byte[] unscaledValue = amount.unscaledValue().toByteArray();
+        if (unscaledValue.length > MAX_UNSCALED_VALUE_LENGTH) {
+            throw new IllegalArgumentException("The amount of " + unscaledValue.length + " bytes is too long");
+        }
+        buffer.putInt(amount.scale());
+        buffer.put((byte) unscaledValue.length);
+        buffer.put(unscaledValue);
+    }
+
+    private static BigDecimal getAmount(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        int length = buffer.get() & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] unscaledValue = new byte[length];
+        buffer.get(unscaledValue);
+
+        return new BigDecimal(new BigInteger(unscaledValue), scale);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_STRING_LENGTH);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING_LENGTH) {
+            throw new IllegalArgumentException("The string of " + bytes.length + " bytes is too long");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Decodes the string right from the array behind the buffer if there is one
+     */
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_STRING_LENGTH) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return value;
+    }
+
+    private static Currency getCurrency(ByteBuffer buffer) {
+        byte id = buffer.get();
+        if (id == NULL_BYTE) {
+            return null;
+        }
+
+        Currency currency = Currency.valueOf(id);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unknown currency " + id);
+        }
+
+        return currency;
+    }
+
+    private static TransactionStatus getStatus(ByteBuffer buffer) {
+        byte id = buffer.get();
+        if (id == NULL_BYTE) {
+            return null;
+        }
+
+        TransactionStatus status = TransactionStatus.valueOf(id);
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown status " + id);
+        }
+
+        return status;
+    }
+
+    private static TransactionFailCode getFailCode(ByteBuffer buffer) {
+        int code = buffer.get() & 0xFF;
+        if (code == NULL_BYTE) {
+            return null;
+        }
+        if (code > FAIL_CODES.length) {
+            throw new IllegalArgumentException("Unknown fail code " + code);
+        }
+
+        return FAIL_CODES[code - 1];
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        if (buffer.position() == buffer.capacity()) {
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,124 @@
+package com.revolut.money.transfer.binary;
+
+import com.revolut.money.transfer.model.Transaction;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.MAX_TRANSACTIONS_BATCH_SIZE;
+
+/**
+ * Reads the transaction or the list of transactions to be created from the compact binary body described by
+ * {@link TransactionBinaryCodec}. The body is read by one bulk read into the array sized by
+ * <code>Content-Length</code> and transactions are decoded right from that array.
+ * <p>
+ * The body could not be longer than the largest batch of the longest records. The request which
+ * <code>Content-Length</code> is larger is rejected before anything is allocated, the body without it is rejected
+ * once it is read past that size.
+ */
+@Provider
+@Consumes(TransactionBinaryCodec.MEDIA_TYPE)
+public class TransactionBinaryReader implements MessageBodyReader<Object> {
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    static final int MAX_BODY_SIZE = MAX_TRANSACTIONS_BATCH_SIZE * TransactionBinaryCodec.MAX_CREATE_FRAME_SIZE;
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (!TransactionBinaryCodec.MEDIA_TYPE_TYPE.isCompatible(mediaType)) {
+            return false;
+        }
+
+        return type == Transaction.class || isListOfTransactions(type, genericType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        List<Transaction> transactions;
+        try {
+            transactions = TransactionBinaryCodec.decodeCreateRequests(
+                    read(entityStream, httpHeaders.getFirst(HttpHeaders.CONTENT_LENGTH)));
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+        }
+
+        if (!Transaction.class.equals(type)) {
+            return transactions;
+        }
+        if (transactions.size() != 1) {
+            throw new WebApplicationException("Exactly one transaction is expected but " + transactions.size() +
+                    " are provided", Response.Status.BAD_REQUEST);
+        }
+
+        return transactions.get(0);
+    }
+
+    private static ByteBuffer read(InputStream entityStream, String contentLength) throws IOException {
+        byte[] body = new byte[contentLength == null ? DEFAULT_BUFFER_SIZE : parseContentLength(contentLength)];
+        int length = 0;
+        while (true) {
+            if (length == body.length) {
+                //Content-Length is not known or not honest, so the body could be longer
+                int next = entityStream.read();
+                if (next == -1) {
+                    break;
+                }
+                if (length == MAX_BODY_SIZE) {
+                    throw bodyTooLarge();
+                }
+                body = Arrays.copyOf(body, Math.min(Math.max(body.length * 2, DEFAULT_BUFFER_SIZE), MAX_BODY_SIZE));
+                body[length++] = (byte) next;
+            }
+
+            int read = entityStream.read(body, length, body.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+
+        return ByteBuffer.wrap(body, 0, length);
+    }
+
+    private static int parseContentLength(String contentLength) {
+        long length;
+        try {
+            length = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            return DEFAULT_BUFFER_SIZE;
+        }
+        if (length > MAX_BODY_SIZE) {
+            throw bodyTooLarge();
+        }
+
+        return length < 0 ? DEFAULT_BUFFER_SIZE : (int) length;
+    }
+
+    private static WebApplicationException bodyTooLarge() {
+        return new WebApplicationException("The body should not be longer than " + MAX_BODY_SIZE + " bytes",
+                Response.Status.REQUEST_ENTITY_TOO_LARGE);
+    }
+
+    private static boolean isListOfTransactions(Class<?> type, Type genericType) {
+        if (!type.isAssignableFrom(List.class) || !(genericType instanceof ParameterizedType)) {
+            return false;
+        }
+
+        Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        return typeArguments.length == 1 && typeArguments[0] == Transaction.class;
+    }
+}
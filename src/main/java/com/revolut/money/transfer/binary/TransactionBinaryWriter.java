@@ -0,0 +1,63 @@
+package com.revolut.money.transfer.binary;
+
+import com.revolut.money.transfer.model.Transaction;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Writes the transaction or the collection of transactions with their statuses as the compact binary body described
+ * by {@link TransactionBinaryCodec}. The body is encoded into one array and written by one write.
+ * <p>
+ * As for JSON writers, the collection is written only if its element type is known, so resources should return
+ * collections wrapped into <code>GenericEntity</code>.
+ */
+@Provider
+@Produces(TransactionBinaryCodec.MEDIA_TYPE)
+public class TransactionBinaryWriter implements MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (!TransactionBinaryCodec.MEDIA_TYPE_TYPE.isCompatible(mediaType)) {
+            return false;
+        }
+
+        return Transaction.class.isAssignableFrom(type) || isCollectionOfTransactions(type, genericType);
+    }
+
+    @Override
+    public long getSize(Object object, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(Object object, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        Collection<Transaction> transactions = object instanceof Collection ?
+                (Collection<Transaction>) object : Collections.singletonList((Transaction) object);
+
+        entityStream.write(TransactionBinaryCodec.encodeStatuses(transactions));
+    }
+
+    private static boolean isCollectionOfTransactions(Class<?> type, Type genericType) {
+        if (!Collection.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+            return false;
+        }
+
+        Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        return typeArguments.length == 1 && typeArguments[0] instanceof Class &&
+                Transaction.class.isAssignableFrom((Class<?>) typeArguments[0]);
+    }
+}
@@ -4,17 +4,27 @@ import com.revolut.money.transfer.core.ServiceFactory;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
 import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionEventBroadcaster;
+import com.revolut.money.transfer.service.TransactionsService;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * This class is responsible for CRUD operations of Bank Account
@@ -24,14 +34,31 @@ import java.util.Collection;
 public class BankAccountsController {
     public static final String BASE_URL = "/accounts";
     public static final String GET_BANK_ACCOUNT_BY_ID_PATH = "id";
+    public static final String BATCH_PATH = "batch";
+    public static final String EVENTS_PATH = "events";
+    public static final String IDS_PARAM = IdsParam.IDS_PARAM;
+    public static final String TRANSACTIONS_PATH = "transactions";
+    public static final String BEFORE_DATE_PARAM = "beforeDate";
+    public static final String BEFORE_ID_PARAM = "beforeId";
+    public static final String LIMIT_PARAM = "limit";
 
     private final static BankAccountService BANK_ACCOUNT_SERVICE = ServiceFactory.createServices().getAccountService();
+    private final static TransactionsService TRANSACTIONS_SERVICE =
+            ServiceFactory.createServices().getTransactionsService();
+    private final static TransactionEventBroadcaster TRANSACTION_EVENTS = TransactionEventBroadcaster.getInstance();
 
     /**
-     * @return The full list of Bank Account objects which has been registered at the time.
+     * @param ids Bank Account ids separated by comma. Not specified to get all Bank Accounts
+     * @return The full list of Bank Account objects which has been registered at the time. If ids are specified,
+     * the Bank Accounts found by one query and ids which do not exist instead
      */
     @GET
-    public Response getAllBankAccounts() {
+    public Response getAllBankAccounts(@QueryParam(IdsParam.IDS_PARAM) List<String> ids)
+            throws ObjectModificationException {
+        if (!ids.isEmpty()) {
+            return Response.ok(BANK_ACCOUNT_SERVICE.getBankAccountsByIds(IdsParam.parse(ids))).build();
+        }
+
         Collection<BankAccount> bankAccounts;
 
         bankAccounts = BANK_ACCOUNT_SERVICE.getAllBankAccounts();
@@ -40,17 +67,19 @@ public class BankAccountsController {
             Response.noContent().build();
         }
 
-        return Response.ok(bankAccounts).build();
+        return Response.ok(new GenericEntity<Collection<BankAccount>>(bankAccounts) {
+        }).build();
     }
 
     /**
      * @param id The ID of Bank Account
      * @return The Bank Account object which has particular ID. This ID has been generated and returned
-     * during the Bank Account creation by the <code>POST: /bankAccount</code> endpoint
+     * during the Bank Account creation by the <code>POST: /bankAccount</code> endpoint. It is tagged by its
+     * version, so <code>If-None-Match</code> with the current tag gets <code>304 Not Modified</code> without the body
      */
     @GET
     @Path("{" + GET_BANK_ACCOUNT_BY_ID_PATH + "}")
-    public Response getBankAccountById(@PathParam(GET_BANK_ACCOUNT_BY_ID_PATH) Long id) {
+    public Response getBankAccountById(@PathParam(GET_BANK_ACCOUNT_BY_ID_PATH) Long id, @Context Request request) {
         BankAccount bankAccount;
 
 
@@ -60,7 +89,55 @@ public class BankAccountsController {
             throw new WebApplicationException("The providec bank account does not exist!", Response.Status.NOT_FOUND);
         }
 
-        return Response.ok(bankAccount).build();
+        return EntityTags.okOrNotModified(request, bankAccount, EntityTags.of(bankAccount));
+    }
+
+    /**
+     * Returns one page of the statement of the Bank Account: transactions from or to it, the newest first, each with
+     * the balance of the Bank Account right after the transaction. The balance is null while the transaction has not
+     * changed it yet or if the transaction has been failed.
+     *
+     * @param id         The ID of Bank Account
+     * @param beforeDate the <code>creationDate</code> of the last transaction of the previous page. Not specified
+     *                   for the first page
+     * @param beforeId   the <code>id</code> of the last transaction of the previous page. Not specified for the first
+     *                   page
+     * @param limit      the maximum number of transactions to be returned
+     * @return rows of the statement. A page shorter than <code>limit</code> is the last one
+     */
+    @GET
+    @Path("{" + GET_BANK_ACCOUNT_BY_ID_PATH + "}/" + TRANSACTIONS_PATH)
+    public Response getBankAccountTransactions(@PathParam(GET_BANK_ACCOUNT_BY_ID_PATH) Long id,
+                                               @QueryParam(BEFORE_DATE_PARAM) Long beforeDate,
+                                               @QueryParam(BEFORE_ID_PARAM) Long beforeId,
+                                               @QueryParam(LIMIT_PARAM) @DefaultValue("100") int limit)
+            throws ObjectModificationException {
+        if (BANK_ACCOUNT_SERVICE.getBankAccountById(id) == null) {
+            throw new WebApplicationException("The provided bank account does not exist!", Response.Status.NOT_FOUND);
+        }
+
+        return Response.ok(TRANSACTIONS_SERVICE.getBankAccountStatement(id, beforeDate, beforeId, limit)).build();
+    }
+
+    /**
+     * Opens the Server-Sent Events stream of status changes of all transactions from or to the Bank Account. Every
+     * committed change is pushed as the event named by the new status with the transaction as data. The stream is
+     * kept open until the client disconnects.
+     *
+     * @param id        The ID of Bank Account
+     * @param eventSink the stream of the client, kept open without holding the request thread
+     * @param sse       the factory of events
+     */
+    @GET
+    @Path("{" + GET_BANK_ACCOUNT_BY_ID_PATH + "}/" + EVENTS_PATH)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void getBankAccountEvents(@PathParam(GET_BANK_ACCOUNT_BY_ID_PATH) Long id,
+                                     @Context SseEventSink eventSink, @Context Sse sse) {
+        if (BANK_ACCOUNT_SERVICE.getBankAccountById(id) == null) {
+            throw new WebApplicationException("The provided bank account does not exist!", Response.Status.NOT_FOUND);
+        }
+
+        TRANSACTION_EVENTS.subscribeToBankAccount(id, eventSink, sse);
     }
 
     /**
@@ -93,4 +170,20 @@ public class BankAccountsController {
 
         return Response.ok(createdBankAccount).build();
     }
+
+    /**
+     * Creates all provided Bank Account objects by one database's transaction. IDs of provided objects are ignored.
+     * They will be regenerated and returned in the response objects
+     *
+     * @param bankAccounts Bank Account objects to create with parameters specified
+     * @return Bank Account objects in the same order with the ID parameter specified.
+     */
+    @POST
+    @Path(BATCH_PATH)
+    public Response createBankAccounts(List<BankAccount> bankAccounts) throws ObjectModificationException {
+        List<BankAccount> createdBankAccounts = BANK_ACCOUNT_SERVICE.createBankAccounts(bankAccounts);
+
+        return Response.ok(new GenericEntity<List<BankAccount>>(createdBankAccounts) {
+        }).build();
+    }
 }
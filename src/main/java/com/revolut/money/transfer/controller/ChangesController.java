@@ -0,0 +1,44 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.service.ChangeService;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * The resource provides the incremental feed of committed changes of Transactions and Bank Account balances, so
+ * downstream systems fetch only changes since the last one they have seen instead of re-reading everything
+ */
+@Path(ChangesController.BASE_URL)
+@Produces(MediaType.APPLICATION_JSON)
+public class ChangesController {
+    public static final String BASE_URL = "/changes";
+    public static final String SINCE_PARAM = "since";
+    public static final String LIMIT_PARAM = "limit";
+    public static final String SHARD_PARAM = "shard";
+
+    private ChangeService changeService = ServiceFactory.createServices().getChangeService();
+
+    /**
+     * @param since the last sequence number the consumer has seen. 0 to read the feed from the beginning
+     * @param limit the maximum number of changes to be returned
+     * @param shard the shard which changes should be returned. Sequence numbers are assigned by every shard
+     *              separately. The first one by default
+     * @return changes in the order of their sequence numbers. The <code>seq</code> of the last one should be passed
+     * as <code>since</code> to the next request. An empty list means there are no new changes yet
+     */
+    @GET
+    public Response getChanges(@QueryParam(SINCE_PARAM) @DefaultValue("0") long since,
+                               @QueryParam(LIMIT_PARAM) @DefaultValue("100") int limit,
+                               @QueryParam(SHARD_PARAM) @DefaultValue("0") int shard)
+            throws ObjectModificationException {
+        return Response.ok().entity(changeService.getChanges(shard, since, limit)).build();
+    }
+}
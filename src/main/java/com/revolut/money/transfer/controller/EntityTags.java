@@ -0,0 +1,50 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Transaction;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * Builds entity tags of single resources, so clients could revalidate them by <code>If-None-Match</code> and get
+ * <code>304 Not Modified</code> without the body being serialized. Tags are weak as the same state could be sent
+ * in JSON or binary, gzipped or not.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * The version of the row is incremented by every change of the Bank Account
+     */
+    static EntityTag of(BankAccount bankAccount) {
+        return new EntityTag(bankAccount.getId() + "-" + bankAccount.getVersion(), true);
+    }
+
+    /**
+     * The transaction has no version, but its status, fail code and message are changed together with
+     * <code>updateDate</code>. Other fields are never changed
+     */
+    static EntityTag of(Transaction transaction) {
+        long updateDate = transaction.getUpdateDate() == null ? 0 : transaction.getUpdateDate().getTime();
+        int status = transaction.getStatus() == null ? 0 : transaction.getStatus().getId();
+
+        return new EntityTag(transaction.getId() + "-" + Long.toHexString(updateDate) + "-" + status, true);
+    }
+
+    /**
+     * @return <code>304 Not Modified</code> with the tag if the client has the current state already, otherwise
+     * <code>200 OK</code> with the entity and its tag
+     */
+    static Response okOrNotModified(Request request, Object entity, EntityTag tag) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        return Response.ok(entity).tag(tag).build();
+    }
+}
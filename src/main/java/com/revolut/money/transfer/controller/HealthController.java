@@ -0,0 +1,32 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.core.Readiness;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+
+/**
+ * The resource is polled by the load balancer to find out whether the application could serve the traffic
+ */
+@Path(HealthController.BASE_URL)
+@Produces(MediaType.APPLICATION_JSON)
+public class HealthController {
+    public static final String BASE_URL = "/health";
+    public static final String READY_PATH = "ready";
+
+    /**
+     * @return 200 once services are wired, pools are started and the optional warm-up is done, 503 before
+     */
+    @GET
+    @Path(READY_PATH)
+    public Response getReadiness() {
+        boolean ready = Readiness.getInstance().isReady();
+
+        return Response.status(ready ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(Collections.singletonMap("ready", ready)).build();
+    }
+}
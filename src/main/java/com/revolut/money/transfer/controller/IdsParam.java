@@ -0,0 +1,42 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the <code>ids</code> query parameter. Ids could be separated by comma, repeated as separate parameters, or
+ * both: <code>?ids=1,2&amp;ids=3</code>
+ */
+final class IdsParam {
+    static final String IDS_PARAM = "ids";
+
+    private IdsParam() {
+    }
+
+    /**
+     * @param values all values of the parameter
+     * @return ids in the order provided, including duplicates
+     * @throws ObjectModificationException if any of values is not a number
+     */
+    static List<Long> parse(List<String> values) throws ObjectModificationException {
+        List<Long> ids = new ArrayList<>();
+        for (String value : values) {
+            for (String id : value.split(",")) {
+                if (id.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    ids.add(Long.valueOf(id.trim()));
+                } catch (NumberFormatException e) {
+                    throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                            "The id " + id.trim() + " is not a number");
+                }
+            }
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,117 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.dao.ContentionMonitor;
+import com.revolut.money.transfer.dao.SettlementBacklog;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
+import com.revolut.money.transfer.model.LedgerReport;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The resource provides the runtime metrics of the application
+ */
+@Path(MetricsController.BASE_URL)
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsController {
+    public static final String BASE_URL = "/metrics";
+    public static final String POOLS_PATH = "pools";
+    public static final String REPLICA_PATH = "replica";
+    public static final String LOCKING_PATH = "locking";
+    public static final String BACKLOG_PATH = "backlog";
+    public static final String LEDGER_PATH = "ledger";
+    public static final String SHARD_PARAM = "shard";
+
+    /**
+     * @param shard the shard which pools should be described. The first one by default
+     * @return the connection wait time and usage of every connection pool. It shows if one workload is starving
+     * another one
+     */
+    @GET
+    @Path(POOLS_PATH)
+    public Response getPoolMetrics(@QueryParam(SHARD_PARAM) @DefaultValue("0") int shard) {
+        if (shard < 0 || shard >= DataSourceFactory.getShardCount()) {
+            throw new WebApplicationException("The provided shard does not exist", Response.Status.NOT_FOUND);
+        }
+
+        return Response.ok(DaoManager.getInstance().getPoolMetrics(shard)).build();
+    }
+
+    /**
+     * @return the lag of the read replica, the number of rows waiting to be copied into it and whether reads are
+     * served by it at the moment
+     */
+    @GET
+    @Path(REPLICA_PATH)
+    public Response getReplicaMetrics() {
+        ReplicaSynchronizer replicaSynchronizer = ReplicaSynchronizer.getInstance();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lagMillis", replicaSynchronizer.getLagMillis());
+        metrics.put("pendingRows", replicaSynchronizer.getPendingCount());
+        metrics.put("fresh", replicaSynchronizer.isFresh());
+
+        return Response.ok(metrics).build();
+    }
+
+    /**
+     * @return the number of transfers committed with and without locking Bank Accounts, the number of optimistic
+     * conflicts and the number of Bank Accounts which are locked pessimistically at the moment
+     */
+    @GET
+    @Path(LOCKING_PATH)
+    public Response getLockingMetrics() {
+        ContentionMonitor contentionMonitor = ContentionMonitor.getInstance();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("optimisticCommits", contentionMonitor.getOptimisticCommits());
+        metrics.put("pessimisticCommits", contentionMonitor.getPessimisticCommits());
+        metrics.put("conflicts", contentionMonitor.getConflicts());
+        metrics.put("hotAccounts", contentionMonitor.getHotAccountCount());
+
+        return Response.ok(metrics).build();
+    }
+
+    /**
+     * @return the number of transactions waiting for the settlement, how long the oldest one has been waiting and
+     * the number of transactions which have not been admitted because of them
+     */
+    @GET
+    @Path(BACKLOG_PATH)
+    public Response getBacklogMetrics() {
+        SettlementBacklog settlementBacklog = SettlementBacklog.getInstance();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("depth", settlementBacklog.getDepth());
+        metrics.put("oldestAgeMillis", settlementBacklog.getOldestAgeMillis());
+        metrics.put("rejected", settlementBacklog.getRejected());
+
+        return Response.ok(metrics).build();
+    }
+
+    /**
+     * @return the report of the last ledger reconciliation: totals per currency and Bank Accounts which blocked
+     * amount differs from their open holds or which balance or blocked amount is negative
+     */
+    @GET
+    @Path(LEDGER_PATH)
+    public Response getLedgerReport() {
+        LedgerReport report = ServiceFactory.createServices().getLedgerService().getLastReport();
+        if (report == null) {
+            throw new WebApplicationException("The ledger has not been reconciled yet", Response.Status.NOT_FOUND);
+        }
+
+        return Response.ok(report).build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.revolut.money.transfer.controller;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.RecurringPlan;
+import com.revolut.money.transfer.service.RecurringPlanService;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * The resource is responsible for the Recurring Plan entity, the standing order which transfers the same amount
+ * every week or every month. The service creates Transactions of the plan by itself, one period before each of them
+ * should be executed, so they are read by the <code>lastTransactionId</code> of the plan or from the statement of
+ * the Bank Account
+ */
+@Path(RecurringPlansController.BASE_URL)
+@Produces(MediaType.APPLICATION_JSON)
+public class RecurringPlansController {
+    public static final String BASE_URL = "/plans";
+    public static final String GET_PLAN_BY_ID_PATH = "id";
+
+    private RecurringPlanService recurringPlanService = ServiceFactory.createServices().getRecurringPlanService();
+
+    /**
+     * Returns the plan by specified ID
+     *
+     * @param id plan ID
+     * @return the plan with the number of Transactions created so far and the result of the last one
+     */
+    @GET
+    @Path("{" + GET_PLAN_BY_ID_PATH + "}")
+    public Response getPlanById(@PathParam(GET_PLAN_BY_ID_PATH) Long id) {
+        RecurringPlan plan = recurringPlanService.getPlanById(id);
+        if (plan == null) {
+            throw new WebApplicationException("The provided plan does not exist!", Response.Status.NOT_FOUND);
+        }
+
+        return Response.ok(plan).build();
+    }
+
+    /**
+     * Creates the plan. Its first Transaction is executed at <code>firstExecuteAt</code>, every next one a
+     * <code>period</code> later until <code>endDate</code> if it is specified or until the plan is cancelled
+     *
+     * @param plan The plan object which should be created. The only required fields are:
+     *             <code>fromBankAccountId, toBankAccountId, amount, currency, period, firstExecuteAt</code>. All
+     *             other parameters except <code>endDate</code> will be ignored and created by the system
+     * @return created plan with the ID generated
+     */
+    @POST
+    public Response createPlan(RecurringPlan plan) throws ObjectModificationException {
+        return Response.ok(recurringPlanService.createPlan(plan)).build();
+    }
+
+    /**
+     * Cancels the plan, so no more Transactions are created by it
+     *
+     * @param id plan ID
+     * @return the cancelled plan
+     */
+    @DELETE
+    @Path("{" + GET_PLAN_BY_ID_PATH + "}")
+    public Response cancelPlan(@PathParam(GET_PLAN_BY_ID_PATH) Long id) throws ObjectModificationException {
+        return Response.ok(recurringPlanService.cancelPlan(id)).build();
+    }
+}
@@ -1,20 +1,32 @@
 package com.revolut.money.transfer.controller;
 
+import com.revolut.money.transfer.binary.TransactionBinaryCodec;
 import com.revolut.money.transfer.core.ServiceFactory;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.TransactionEventBroadcaster;
 import com.revolut.money.transfer.service.TransactionsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * The resource is responsible for the Transaction entity. Make it possible to create
  * and provide transactions. There is no ability to update an existing transaction as it is controversial operation
  * for this type of object. This object could be modified only by the system itself
+ * <p>
+ * Creation and reading by ID also accept and produce the compact binary encoding of {@link TransactionBinaryCodec}
+ * for high-volume internal clients. JSON stays the default.
  */
 @Path(TransactionsController.BASE_URL)
 @Produces(MediaType.APPLICATION_JSON)
@@ -23,43 +35,122 @@ public class TransactionsController {
 
     public static final String BASE_URL = "/transactions";
     public static final String GET_TRANSACTION_BY_ID_PATH = "id";
+    public static final String SYNC_PARAM = "sync";
+    public static final String BATCH_PATH = "batch";
+    public static final String EVENTS_PATH = "events";
+    public static final String IDS_PARAM = IdsParam.IDS_PARAM;
 
     private TransactionsService transactionsService = ServiceFactory.createServices().getTransactionsService();
+    private TransactionEventBroadcaster transactionEvents = TransactionEventBroadcaster.getInstance();
 
     /**
-     * Returns all transactions in the system with there statuses
+     * Returns all transactions in the system with there statuses. If ids are specified, returns the transactions
+     * found by one query and ids which do not exist instead
+     *
+     * @param ids transaction ids separated by comma. Not specified to get all transactions
      */
     @GET
-    public Response getAllTransactions() {
-        return Response.ok().entity(transactionsService.getAllTransactions()).build();
+    public Response getAllTransactions(@QueryParam(IdsParam.IDS_PARAM) List<String> ids)
+            throws ObjectModificationException {
+        if (!ids.isEmpty()) {
+            return Response.ok().entity(transactionsService.getTransactionsByIds(IdsParam.parse(ids))).build();
+        }
+
+        Collection<Transaction> transactions = transactionsService.getAllTransactions();
+
+        return Response.ok().entity(new GenericEntity<Collection<Transaction>>(transactions) {
+        }).build();
     }
 
     /**
      * Returns transaction by specified ID
      *
      * @param id transaction ID
-     * @return Transaction with the ID provided
+     * @return Transaction with the ID provided. It is tagged by its status and update date, so
+     * <code>If-None-Match</code> with the current tag gets <code>304 Not Modified</code> without the body
      */
     @GET()
     @Path("{" + GET_TRANSACTION_BY_ID_PATH + "}")
-    public Response getTransactionById(@PathParam(GET_TRANSACTION_BY_ID_PATH) Long id) {
-        return Response.ok().entity(transactionsService.getTransactionById(id)).build();
+    @Produces({MediaType.APPLICATION_JSON, TransactionBinaryCodec.MEDIA_TYPE})
+    public Response getTransactionById(@PathParam(GET_TRANSACTION_BY_ID_PATH) Long id, @Context Request request) {
+        Transaction transaction = transactionsService.getTransactionById(id);
+        if (transaction == null) {
+            return Response.ok().build();
+        }
+
+        return EntityTags.okOrNotModified(request, transaction, EntityTags.of(transaction));
+    }
+
+    /**
+     * Opens the Server-Sent Events stream of status changes of the transaction. The current status is sent at once,
+     * then every committed change is pushed as the event named by the new status with the transaction as data.
+     * The stream is closed once the transaction is SUCCEED or FAILED, so clients don't need to poll
+     * <code>GET /transactions/{id}</code> waiting for the execution.
+     *
+     * @param id        transaction ID
+     * @param eventSink the stream of the client, kept open without holding the request thread
+     * @param sse       the factory of events
+     */
+    @GET
+    @Path("{" + GET_TRANSACTION_BY_ID_PATH + "}/" + EVENTS_PATH)
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void getTransactionEvents(@PathParam(GET_TRANSACTION_BY_ID_PATH) Long id,
+                                     @Context SseEventSink eventSink, @Context Sse sse) {
+        //Subscribed before the status is read, so the change committed in between could not be missed
+        transactionEvents.subscribeToTransaction(id, eventSink, sse);
+
+        Transaction transaction = transactionsService.getTransactionById(id);
+        if (transaction == null) {
+            transactionEvents.unsubscribeFromTransaction(id, eventSink);
+            throw new WebApplicationException("The provided transaction does not exist!", Response.Status.NOT_FOUND);
+        }
+
+        transactionEvents.sendCurrentStatus(id, eventSink, transaction);
     }
 
     /**
      * Make it possible to create money transfer from one account to another.
      * The result of execution is created transaction with actual status. Usually it is "IN PROGRESS".
-     * The transaction execution process is asynchronous and controlled by the system itself
+     * The transaction execution process is asynchronous and controlled by the system itself unless
+     * <code>sync=true</code> is requested. In that case the transaction is executed at once and returned with
+     * the final status
      *
      * @param transaction The transaction object which should be created. The only required fields are:
      *                    <code>fromBankAccountId, toBankAccountId, amount, currency</code>. All other parameters
      *                    will be ignored and created by the system
+     * @param sync        whether the transaction should be executed in the same request
      * @return created and updated transaction object provided
      */
     @POST()
-    public Response createTransaction(Transaction transaction) throws ObjectModificationException {
-        transaction = transactionsService.createTransaction(transaction);
+    @Produces({MediaType.APPLICATION_JSON, TransactionBinaryCodec.MEDIA_TYPE})
+    public Response createTransaction(Transaction transaction,
+                                      @QueryParam(SYNC_PARAM) @DefaultValue("false") boolean sync)
+            throws ObjectModificationException {
+        if (sync) {
+            transaction = transactionsService.createAndExecuteTransaction(transaction);
+        } else {
+            transaction = transactionsService.createTransaction(transaction);
+        }
 
         return Response.ok().entity(transaction).build();
     }
+
+    /**
+     * Makes it possible to create a lot of money transfers by one request. Transactions of the same source
+     * Bank Account are created together so the account is locked only once for all of them.
+     *
+     * @param transactions The list of transactions which should be created. The same fields are required as for
+     *                     the single transaction creation
+     * @return the provided transactions in the same order. Created ones have ID and CREATED status, rejected ones
+     * have FAILED status and the reason in <code>failMessage</code>
+     */
+    @POST()
+    @Path(BATCH_PATH)
+    @Produces({MediaType.APPLICATION_JSON, TransactionBinaryCodec.MEDIA_TYPE})
+    public Response createTransactions(List<Transaction> transactions) throws ObjectModificationException {
+        List<Transaction> createdTransactions = transactionsService.createTransactions(transactions);
+
+        return Response.ok().entity(new GenericEntity<List<Transaction>>(createdTransactions) {
+        }).build();
+    }
 }
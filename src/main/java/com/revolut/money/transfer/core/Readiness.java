@@ -0,0 +1,27 @@
+package com.revolut.money.transfer.core;
+
+/**
+ * Holds whether the application is ready to serve the traffic. The server accepts requests before, so the warm-up
+ * could exercise the same paths the clients would, but the load balancer should not send them until the flag is
+ * set. Implements the singleton pattern.
+ */
+public class Readiness {
+    private static final Readiness readiness = new Readiness();
+
+    private volatile boolean ready;
+
+    private Readiness() {
+    }
+
+    public static Readiness getInstance() {
+        return readiness;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+}
@@ -2,8 +2,14 @@ package com.revolut.money.transfer.core;
 
 
 import com.revolut.money.transfer.service.BankAccountServiceImpl;
+import com.revolut.money.transfer.service.ChangeService;
+import com.revolut.money.transfer.service.ChangeServiceImpl;
+import com.revolut.money.transfer.service.LedgerService;
+import com.revolut.money.transfer.service.LedgerServiceImpl;
 import com.revolut.money.transfer.service.RevolutMoneyExchangeService;
 import com.revolut.money.transfer.service.MoneyExchangeService;
+import com.revolut.money.transfer.service.RecurringPlanService;
+import com.revolut.money.transfer.service.RecurringPlanServiceImpl;
 import com.revolut.money.transfer.service.TransactionsService;
 import com.revolut.money.transfer.service.TransactionsServiceImpl;
 
@@ -14,6 +20,9 @@ public class ServiceFactory implements Services {
     private BankAccountServiceImpl accountService;
     private TransactionsService transactionsService;
     private MoneyExchangeService moneyExchangeService;
+    private ChangeService changeService;
+    private RecurringPlanService recurringPlanService;
+    private LedgerService ledgerService;
     private static ServiceFactory factory = null;
 
     private ServiceFactory() {
@@ -47,4 +56,25 @@ public class ServiceFactory implements Services {
 
         return moneyExchangeService;
     }
+
+    public ChangeService getChangeService() {
+        if (null == changeService)
+            changeService = ChangeServiceImpl.getInstance(this);
+
+        return changeService;
+    }
+
+    public RecurringPlanService getRecurringPlanService() {
+        if (null == recurringPlanService)
+            recurringPlanService = RecurringPlanServiceImpl.getInstance(this);
+
+        return recurringPlanService;
+    }
+
+    public LedgerService getLedgerService() {
+        if (null == ledgerService)
+            ledgerService = LedgerServiceImpl.getInstance(this);
+
+        return ledgerService;
+    }
 }
@@ -2,7 +2,10 @@ package com.revolut.money.transfer.core;
 
 
 import com.revolut.money.transfer.service.BankAccountServiceImpl;
+import com.revolut.money.transfer.service.ChangeService;
+import com.revolut.money.transfer.service.LedgerService;
 import com.revolut.money.transfer.service.MoneyExchangeService;
+import com.revolut.money.transfer.service.RecurringPlanService;
 import com.revolut.money.transfer.service.TransactionsService;
 
 /**
@@ -17,4 +20,10 @@ public interface Services {
 
     MoneyExchangeService getMoneyExchangeService();
 
+    ChangeService getChangeService();
+
+    RecurringPlanService getRecurringPlanService();
+
+    LedgerService getLedgerService();
+
 }
@@ -1,5 +1,6 @@
 package com.revolut.money.transfer.dao;
 
+import com.revolut.money.transfer.db.ConnectionPool;
 import com.revolut.money.transfer.db.DaoManager;
 import com.revolut.money.transfer.exceptions.ExceptionType;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
@@ -12,8 +13,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.revolut.money.transfer.utils.Constants.*;
 
@@ -27,8 +36,29 @@ public class BankAccountDao extends BaseDao{
 
     private static final Logger log = LoggerFactory.getLogger(BankAccountDao.class);
 
+    private static final String INSERT_BANK_ACCOUNT_SQL =
+            "insert into " + BANK_ACCOUNT_TABLE_NAME +
+                    " (" +
+                    BANK_ACCOUNT_OWNER_NAME_ROW + ", " +
+                    BANK_ACCOUNT_BALANCE_ROW + ", " +
+                    BANK_ACCOUNT_BLOCKED_AMOUNT_ROW + ", " +
+                    BANK_ACCOUNT_CURRENCY_ID_ROW +
+                    ") values (?, ?, ?, ?)";
+    private static final String INSERT_OPENING_CHECKPOINT_SQL =
+            "insert into " + BALANCE_CHECKPOINT_TABLE_NAME +
+                    " (" +
+                    BALANCE_CHECKPOINT_ACCOUNT_ROW + ", " +
+                    BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + ", " +
+                    BALANCE_CHECKPOINT_BALANCE_ROW + ", " +
+                    BALANCE_CHECKPOINT_CREATION_DATE_ROW +
+                    ") values (?, " + BALANCE_CHECKPOINT_OPENING_TRANSACTION_ID + ", ?, ?)";
+
     private static final BankAccountDao bas = new BankAccountDao();
 
+    private final AtomicInteger shardCounter = new AtomicInteger();
+    private final ContentionMonitor contentionMonitor = ContentionMonitor.getInstance();
+    private final ChangeDao changeDao = ChangeDao.getInstance();
+
 
     private BankAccountDao() {
     }
@@ -37,23 +67,37 @@ public class BankAccountDao extends BaseDao{
         return bas;
     }
 
+    /**
+     * @return the shard where the next Bank Account should be created
+     */
+    private int nextShard() {
+        return Math.floorMod(shardCounter.getAndIncrement(), getShardCount());
+    }
+
     /**
      * @return All Bank Accounts which is exists in the database at the moment
      */
     public Collection<BankAccount> getAllBankAccounts() {
-        return daoManager.executeQuery("select * from " + BANK_ACCOUNT_TABLE_NAME, getBankAccounts -> {
-            Collection<BankAccount> bankAccounts = new ArrayList<>();
-
-            try (ResultSet bankAccountsRS = getBankAccounts.executeQuery()) {
-                if (bankAccountsRS != null) {
-                    while (bankAccountsRS.next()) {
-                        bankAccounts.add(extractBankAccountFromResultSet(bankAccountsRS));
-                    }
-                }
-            }
+        Collection<BankAccount> bankAccounts = new ArrayList<>();
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            bankAccounts.addAll(daoManager.executeReadQuery(shard, "select * from " + BANK_ACCOUNT_TABLE_NAME,
+                    getBankAccounts -> {
+                        Collection<BankAccount> shardBankAccounts = new ArrayList<>();
+
+                        try (ResultSet bankAccountsRS = getBankAccounts.executeQuery()) {
+                            if (bankAccountsRS != null) {
+                                while (bankAccountsRS.next()) {
+                                    shardBankAccounts.add(extractBankAccountFromResultSet(bankAccountsRS));
+                                }
+                            }
+                        }
+
+                        return shardBankAccounts;
+                    }).getResult());
+        }
 
-            return bankAccounts;
-        }).getResult();
+        return bankAccounts;
     }
 
     /**
@@ -67,7 +111,7 @@ public class BankAccountDao extends BaseDao{
                 "select * from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
                         "where ba." + BANK_ACCOUNT_ID_ROW + " = ?";
 
-        return daoManager.executeQuery(GET_BANK_ACCOUNT_BY_ID_SQL, getBankAccount -> {
+        return executeReadQuery(BANK_ACCOUNT_TABLE_NAME, id, GET_BANK_ACCOUNT_BY_ID_SQL, getBankAccount -> {
             getBankAccount.setLong(1, id);
             try (ResultSet bankAccountRS = getBankAccount.executeQuery()) {
                 if (bankAccountRS != null && bankAccountRS.first()) {
@@ -79,6 +123,44 @@ public class BankAccountDao extends BaseDao{
         }).getResult();
     }
 
+    /**
+     * Returns Bank Accounts by ids specified. Ids are read by one <code>where id in (...)</code> query by one
+     * connection in every shard they belong to, instead of one connection and one query per id.
+     *
+     * @param ids distinct Bank Account ids
+     * @return found Bank Accounts by their ids. Ids which do not exist are absent
+     */
+    public Map<Long, BankAccount> getBankAccountsByIds(Collection<Long> ids) {
+        Map<Long, BankAccount> bankAccounts = new HashMap<>();
+
+        for (Map.Entry<Integer, List<Long>> shardIds : groupByShard(ids).entrySet()) {
+            String GET_BANK_ACCOUNTS_BY_IDS_SQL =
+                    "select * from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                            "where ba." + BANK_ACCOUNT_ID_ROW + " in (" +
+                            placeholders(shardIds.getValue().size()) + ")";
+
+            executeReadQuery(BANK_ACCOUNT_TABLE_NAME, shardIds.getKey(), shardIds.getValue(),
+                    GET_BANK_ACCOUNTS_BY_IDS_SQL, getBankAccounts -> {
+                        int i = 1;
+                        for (Long id : shardIds.getValue()) {
+                            getBankAccounts.setLong(i++, id);
+                        }
+                        try (ResultSet bankAccountsRS = getBankAccounts.executeQuery()) {
+                            if (bankAccountsRS != null) {
+                                while (bankAccountsRS.next()) {
+                                    BankAccount bankAccount = extractBankAccountFromResultSet(bankAccountsRS);
+                                    bankAccounts.put(bankAccount.getId(), bankAccount);
+                                }
+                            }
+                        }
+
+                        return bankAccounts;
+                    });
+        }
+
+        return bankAccounts;
+    }
+
     /**
      * Special form of {@link #getBankAccountById(Long)} method which is not closing the connection once result
      * will be obtained. We are using it only inside the related <code>TransactionDao</code>
@@ -104,9 +186,103 @@ public class BankAccountDao extends BaseDao{
         }).getResult();
     }
 
+    /**
+     * Optimistic form of {@link #getForUpdateBankAccountById(Connection, Long)}. The row is not locked, so it could
+     * be changed by someone else before the update. {@link #updateBankAccount(BankAccount, Connection)} detects it
+     * by the version of the row. We are using it only inside the related <code>TransactionDao</code>
+     *
+     * @param con the <code>Connection</code> to be used for this query
+     * @param id  Bank Account object id
+     */
+    BankAccount getBankAccountById(Connection con, Long id) {
+        String GET_BANK_ACCOUNT_BY_ID_SQL =
+                "select * from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                        "where ba." + BANK_ACCOUNT_ID_ROW + " = ?";
+
+        return daoManager.executeQueryInConnection(con, GET_BANK_ACCOUNT_BY_ID_SQL, getBankAccount -> {
+            getBankAccount.setLong(1, id);
+            try (ResultSet bankAccountRS = getBankAccount.executeQuery()) {
+                if (bankAccountRS != null && bankAccountRS.first()) {
+                    return extractBankAccountFromResultSet(bankAccountRS);
+                }
+            }
+
+            return null;
+        }).getResult();
+    }
+
+    /**
+     * Locks the next chunk of Bank Accounts of the shard in the order of their ids by
+     * <code>SELECT ... FOR UPDATE</code>. We are using it only inside the related <code>TransactionDao</code> to
+     * walk over all Bank Accounts without locking all of them at once.
+     *
+     * @param con     the <code>Connection</code> of the shard to be used for this query
+     * @param afterId the id of the last Bank Account of the previous chunk. 0 for the first chunk
+     * @param limit   the maximum number of Bank Accounts to be locked
+     * @return locked Bank Accounts in the ascending order of ids. Empty if there are no more of them
+     */
+    List<BankAccount> getForUpdateBankAccounts(Connection con, long afterId, int limit) {
+        String GET_BANK_ACCOUNTS_SQL =
+                "select * from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                        "where ba." + BANK_ACCOUNT_ID_ROW + " > ? " +
+                        "order by ba." + BANK_ACCOUNT_ID_ROW + " " +
+                        "limit ? for update";
+
+        return daoManager.executeQueryInConnection(con, GET_BANK_ACCOUNTS_SQL, getBankAccounts -> {
+            List<BankAccount> bankAccounts = new ArrayList<>(limit);
+
+            getBankAccounts.setLong(1, afterId);
+            getBankAccounts.setInt(2, limit);
+            try (ResultSet bankAccountsRS = getBankAccounts.executeQuery()) {
+                while (bankAccountsRS.next()) {
+                    bankAccounts.add(extractBankAccountFromResultSet(bankAccountsRS));
+                }
+            }
+
+            return bankAccounts;
+        }).getResult();
+    }
+
+    /**
+     * Returns which of the provided Bank Account ids exist in the database. Ids are checked by one
+     * <code>where id in (...)</code> query in every shard they belong to. Rows are not locked.
+     *
+     * @param ids Bank Account ids to be checked
+     * @return the ids from the provided ones which exist in the database
+     */
+    Set<Long> getExistingBankAccountIds(Collection<Long> ids) {
+        Set<Long> existingIds = new HashSet<>();
+
+        for (Map.Entry<Integer, List<Long>> shardIds : groupByShard(ids).entrySet()) {
+            String GET_EXISTING_BANK_ACCOUNT_IDS_SQL =
+                    "select " + BANK_ACCOUNT_ID_ROW + " from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                            "where ba." + BANK_ACCOUNT_ID_ROW + " in (" +
+                            placeholders(shardIds.getValue().size()) + ")";
+
+            daoManager.executeQuery(shardIds.getKey(), ConnectionPool.READ, GET_EXISTING_BANK_ACCOUNT_IDS_SQL,
+                    getBankAccountIds -> {
+                        int i = 1;
+                        for (Long id : shardIds.getValue()) {
+                            getBankAccountIds.setLong(i++, id);
+                        }
+                        try (ResultSet bankAccountsRS = getBankAccountIds.executeQuery()) {
+                            if (bankAccountsRS != null) {
+                                while (bankAccountsRS.next()) {
+                                    existingIds.add(bankAccountsRS.getLong(BANK_ACCOUNT_ID_ROW));
+                                }
+                            }
+                        }
+
+                        return existingIds;
+                    });
+        }
+
+        return existingIds;
+    }
+
     /**
      * Updates the Bank Account with changed parameters using the id provided by the object passed. Only ownerName
-     * parameter will be updated.
+     * parameter will be updated. The version is incremented as by any other change of the row.
      *
      * @param bankAccount - the object to be updated
      * @throws ObjectModificationException if Bank Account with the provided id will not be exists in the database at
@@ -116,7 +292,8 @@ public class BankAccountDao extends BaseDao{
         String UPDATE_BANK_ACCOUNT_SQL =
                 "update " + BANK_ACCOUNT_TABLE_NAME +
                         " set " +
-                        BANK_ACCOUNT_OWNER_NAME_ROW + " = ? " +
+                        BANK_ACCOUNT_OWNER_NAME_ROW + " = ?, " +
+                        BANK_ACCOUNT_VERSION_ROW + " = " + BANK_ACCOUNT_VERSION_ROW + " + 1 " +
                         "where " + BANK_ACCOUNT_ID_ROW + " = ?";
 
         if (bankAccount.getId() == null || bankAccount.getOwnerName() == null) {
@@ -130,21 +307,29 @@ public class BankAccountDao extends BaseDao{
             return updateBankAccount.executeUpdate();
         };
 
-        int result = daoManager.executeQuery(UPDATE_BANK_ACCOUNT_SQL, queryExecutor).getResult();
+        int result = daoManager.executeQuery(shardOf(bankAccount.getId()), ConnectionPool.WRITE,
+                UPDATE_BANK_ACCOUNT_SQL, queryExecutor).getResult();
 
         if (result == 0) {
-            throw new ObjectModificationException(ExceptionType.OBJECT_IS_NOT_FOUND);
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
         }
+
+        modified(BANK_ACCOUNT_TABLE_NAME, bankAccount.getId());
     }
 
     /**
      * Updates the Bank Account with changed parameters using the id provided by the object passed.
      * We are using it only inside the related <code>TransactionDao</code>
+     * <p>
+     * If the object has the version it is updated only if the version of the row is still the same and the version
+     * is incremented. Otherwise the row has been changed since it was read and the update is rejected.
      *
      * @param bankAccount Bank Account object which will be updated
      * @param con         the <code>Connection</code> to be used for this query
      * @throws ObjectModificationException if Bank Account with the provided id will not be exists in the database at the
-     *                                     moment or object provided is malformed
+     *                                     moment or object provided is malformed. CONCURRENT_MODIFICATION type means
+     *                                     the row has been changed since it was read and the transaction should be
+     *                                     rolled back
      */
     void updateBankAccount(BankAccount bankAccount, Connection con) throws ObjectModificationException {
         String UPDATE_BANK_ACCOUNT_SQL =
@@ -153,33 +338,57 @@ public class BankAccountDao extends BaseDao{
                         BANK_ACCOUNT_OWNER_NAME_ROW + " = ?, " +
                         BANK_ACCOUNT_BALANCE_ROW + " = ?, " +
                         BANK_ACCOUNT_BLOCKED_AMOUNT_ROW + " = ?, " +
-                        BANK_ACCOUNT_CURRENCY_ID_ROW + " = ? " +
-                        "where " + BANK_ACCOUNT_ID_ROW + " = ?";
+                        BANK_ACCOUNT_CURRENCY_ID_ROW + " = ?, " +
+                        BANK_ACCOUNT_VERSION_ROW + " = " + BANK_ACCOUNT_VERSION_ROW + " + 1 " +
+                        "where " + BANK_ACCOUNT_ID_ROW + " = ?" +
+                        (bankAccount.getVersion() == null ? "" : " and " + BANK_ACCOUNT_VERSION_ROW + " = ?");
 
         verify(bankAccount);
 
         DaoManager.QueryExecutor<Integer> queryExecutor = updateBankAccount -> {
             fillInPreparedStatement(updateBankAccount, bankAccount);
             updateBankAccount.setLong(5, bankAccount.getId());
+            if (bankAccount.getVersion() != null) {
+                updateBankAccount.setLong(6, bankAccount.getVersion());
+            }
 
-            return updateBankAccount.executeUpdate();
+            int updated = updateBankAccount.executeUpdate();
+            if (updated > 0) {
+                changeDao.bankAccountChanged(updateBankAccount.getConnection(), bankAccount);
+            }
+
+            return updated;
         };
 
         int result;
         if (con == null) {
-            result = daoManager.executeQuery(UPDATE_BANK_ACCOUNT_SQL, queryExecutor).getResult();
+            result = daoManager.executeQuery(shardOf(bankAccount.getId()), ConnectionPool.WRITE,
+                    UPDATE_BANK_ACCOUNT_SQL, queryExecutor).getResult();
         } else {
             result = daoManager.executeQueryInConnection(con, UPDATE_BANK_ACCOUNT_SQL, queryExecutor).getResult();
         }
 
+        if (result == 0 && bankAccount.getVersion() != null) {
+            contentionMonitor.conflicted(bankAccount.getId());
+            throw ObjectModificationException.of(ExceptionType.CONCURRENT_MODIFICATION);
+        }
         if (result == 0) {
-            throw new ObjectModificationException(ExceptionType.OBJECT_IS_NOT_FOUND);
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+        }
+
+        if (bankAccount.getVersion() != null) {
+            bankAccount.setVersion(bankAccount.getVersion() + 1);
+        }
+
+        //The caller is responsible to report the change once the provided connection will be committed
+        if (con == null) {
+            modified(BANK_ACCOUNT_TABLE_NAME, bankAccount.getId());
         }
     }
 
     /**
      * Creates the Bank Account object provided in the database. Id of this objects will not be used. It will be
-     * generated and returned in the result of the method.
+     * generated and returned in the result of the method. New Bank Accounts are distributed across shards in turn.
      *
      * @param bankAccount Bank Account object which should be created
      * @return created Bank Account object with ID specified'
@@ -187,27 +396,108 @@ public class BankAccountDao extends BaseDao{
      *                                     moment or object provided is malformed
      */
     public BankAccount createBankAccount(BankAccount bankAccount) throws ObjectModificationException {
-        String INSERT_BANK_ACCOUNT_SQL =
-                "insert into " + BANK_ACCOUNT_TABLE_NAME +
-                        " (" +
-                        BANK_ACCOUNT_OWNER_NAME_ROW + ", " +
-                        BANK_ACCOUNT_BALANCE_ROW + ", " +
-                        BANK_ACCOUNT_BLOCKED_AMOUNT_ROW + ", " +
-                        BANK_ACCOUNT_CURRENCY_ID_ROW +
-                        ") values (?, ?, ?, ?)";
-
         verify(bankAccount);
 
-        bankAccount = daoManager.executeQuery(INSERT_BANK_ACCOUNT_SQL,
-                new DaoManager.CreationQueryExecutor<>(bankAccount, BankAccountDao::fillInPreparedStatement)).getResult();
+        DaoManager.QueryExecutor<BankAccount> creationQueryExecutor =
+                new DaoManager.CreationQueryExecutor<>(bankAccount, BankAccountDao::fillInPreparedStatement);
+
+        bankAccount = daoManager.executeQuery(nextShard(), ConnectionPool.WRITE, INSERT_BANK_ACCOUNT_SQL,
+                insertBankAccount -> {
+                    BankAccount createdBankAccount = creationQueryExecutor.execute(insertBankAccount);
+                    if (createdBankAccount != null) {
+                        changeDao.bankAccountChanged(insertBankAccount.getConnection(), createdBankAccount);
+                        checkpointOpeningBalances(insertBankAccount.getConnection(),
+                                Collections.singletonList(createdBankAccount));
+                    }
+
+                    return createdBankAccount;
+                }).getResult();
 
         if (bankAccount == null) {
-            throw new ObjectModificationException(ExceptionType.COULD_NOT_OBTAIN_ID);
+            throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
         }
 
+        modified(BANK_ACCOUNT_TABLE_NAME, bankAccount.getId());
+
         return bankAccount;
     }
 
+    /**
+     * Creates all provided Bank Account objects in the database by one JDBC batch and one commit. Ids of these
+     * objects will not be used. They will be generated and set into provided objects. All of them are created in
+     * the same shard.
+     *
+     * @param bankAccounts Bank Account objects which should be created
+     * @return the same Bank Account objects with IDs specified
+     * @throws ObjectModificationException if any of provided objects is malformed. Nothing will be created in
+     *                                     this case
+     */
+    public List<BankAccount> createBankAccounts(List<BankAccount> bankAccounts) throws ObjectModificationException {
+        for (BankAccount bankAccount : bankAccounts) {
+            verifyFields(bankAccount);
+        }
+
+        if (bankAccounts.isEmpty()) {
+            return bankAccounts;
+        }
+
+        int created = daoManager.executeQuery(nextShard(), ConnectionPool.WRITE, INSERT_BANK_ACCOUNT_SQL,
+                insertBankAccounts -> {
+                    for (BankAccount bankAccount : bankAccounts) {
+                        fillInPreparedStatement(insertBankAccounts, bankAccount);
+                        insertBankAccounts.addBatch();
+                    }
+                    insertBankAccounts.executeBatch();
+
+                    int i = 0;
+                    try (ResultSet generatedKeys = insertBankAccounts.getGeneratedKeys()) {
+                        while (i < bankAccounts.size() && generatedKeys.next()) {
+                            bankAccounts.get(i++).setId(generatedKeys.getLong(1));
+                        }
+                    }
+                    if (i == bankAccounts.size()) {
+                        changeDao.bankAccountsChanged(insertBankAccounts.getConnection(), bankAccounts);
+                        checkpointOpeningBalances(insertBankAccounts.getConnection(), bankAccounts);
+                    }
+
+                    return i;
+                }).getResult();
+
+        if (created != bankAccounts.size()) {
+            throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
+        }
+
+        List<Long> ids = new ArrayList<>(bankAccounts.size());
+        for (BankAccount bankAccount : bankAccounts) {
+            ids.add(bankAccount.getId());
+        }
+        modified(BANK_ACCOUNT_TABLE_NAME, ids);
+
+        return bankAccounts;
+    }
+
+    /**
+     * Stores opening balances of the Bank Accounts created, so the ledger reconciliation knows the money which has
+     * entered the ledger with them. The checkpoint is committed together with the Bank Accounts by the transaction
+     * of the connection provided.
+     *
+     * @param con          the <code>Connection</code> of the shard which has created Bank Accounts
+     * @param bankAccounts Bank Accounts created with their ids
+     */
+    private void checkpointOpeningBalances(Connection con, Collection<BankAccount> bankAccounts) {
+        daoManager.executeQueryInConnection(con, INSERT_OPENING_CHECKPOINT_SQL, insertCheckpoints -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (BankAccount bankAccount : bankAccounts) {
+                insertCheckpoints.setLong(1, bankAccount.getId());
+                insertCheckpoints.setBigDecimal(2, bankAccount.getBalance());
+                insertCheckpoints.setTimestamp(3, now);
+                insertCheckpoints.addBatch();
+            }
+
+            return insertCheckpoints.executeBatch().length;
+        });
+    }
+
     /**
      * The opposite method to {@link #fillInPreparedStatement(PreparedStatement, BankAccount)} which is
      * extracts Bank Account parameters from the result set
@@ -224,6 +514,7 @@ public class BankAccountDao extends BaseDao{
         bankAccount.setBalance(bankAccountsRS.getBigDecimal(BANK_ACCOUNT_BALANCE_ROW));
         bankAccount.setBlockedAmount(bankAccountsRS.getBigDecimal(BANK_ACCOUNT_BLOCKED_AMOUNT_ROW));
         bankAccount.setCurrency(Currency.valueOf(bankAccountsRS.getInt(BANK_ACCOUNT_CURRENCY_ID_ROW)));
+        bankAccount.setVersion(bankAccountsRS.getLong(BANK_ACCOUNT_VERSION_ROW));
 
         return bankAccount;
     }
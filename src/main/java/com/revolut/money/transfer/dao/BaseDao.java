@@ -1,6 +1,9 @@
 package com.revolut.money.transfer.dao;
 
+import com.revolut.money.transfer.db.ConnectionPool;
 import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
 import com.revolut.money.transfer.exceptions.ExceptionType;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
@@ -8,6 +11,12 @@ import com.revolut.money.transfer.model.Transaction;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Base DAO
@@ -16,11 +25,116 @@ public class BaseDao {
 
 
     protected DaoManager daoManager = DaoManager.getInstance();
+    protected ReplicaSynchronizer replicaSynchronizer = ReplicaSynchronizer.getInstance();
 
     protected Connection getConnection() throws SQLException {
         return daoManager.getConnection();
     }
 
+    protected Connection getConnection(ConnectionPool pool) throws SQLException {
+        return daoManager.getConnection(pool);
+    }
+
+    protected Connection getConnection(int shard, ConnectionPool pool) throws SQLException {
+        return daoManager.getConnection(shard, pool);
+    }
+
+    /**
+     * @param id the id of Bank Account or Transaction
+     * @return the shard where the row with the id provided is stored
+     */
+    protected static int shardOf(Long id) {
+        return DataSourceFactory.getShard(id);
+    }
+
+    /**
+     * @return the number of shards. Queries which are not bound to a particular id should be executed in every shard
+     */
+    protected static int getShardCount() {
+        return DataSourceFactory.getShardCount();
+    }
+
+    /**
+     * Read only query of the row by its id in the shard of the row. The row is read from the replica unless it has
+     * been changed after the last replica synchronization. In this case it is read from the primary, so the client
+     * which has just changed it always sees its own write.
+     *
+     * @param table         the table of the row
+     * @param id            the id of the row
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    protected <E> DaoManager.QueryResult<E> executeReadQuery(String table, Long id, String query,
+                                                            DaoManager.QueryExecutor<E> queryExecutor) {
+        if (replicaSynchronizer.isRecentlyModified(table, id)) {
+            return daoManager.executeQuery(shardOf(id), ConnectionPool.READ, query, queryExecutor);
+        }
+
+        return daoManager.executeReadQuery(shardOf(id), query, queryExecutor);
+    }
+
+    /**
+     * Read only query of several rows by their ids in one shard. The rows are read from the replica unless any of
+     * them has been changed after the last replica synchronization, the same way as by
+     * {@link #executeReadQuery(String, Long, String, DaoManager.QueryExecutor)}.
+     *
+     * @param table         the table of rows
+     * @param shard         the shard where all rows are stored
+     * @param ids           ids of rows
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    protected <E> DaoManager.QueryResult<E> executeReadQuery(String table, int shard, Collection<Long> ids,
+                                                            String query, DaoManager.QueryExecutor<E> queryExecutor) {
+        for (Long id : ids) {
+            if (replicaSynchronizer.isRecentlyModified(table, id)) {
+                return daoManager.executeQuery(shard, ConnectionPool.READ, query, queryExecutor);
+            }
+        }
+
+        return daoManager.executeReadQuery(shard, query, queryExecutor);
+    }
+
+    /**
+     * @param ids ids of Bank Accounts or Transactions
+     * @return ids grouped by the shard where their rows are stored, in the ascending order of shards
+     */
+    protected static Map<Integer, List<Long>> groupByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+
+        return idsByShard;
+    }
+
+    /**
+     * Queues the committed changes of the rows to be copied into the replica
+     *
+     * @param table the table where rows have been changed
+     * @param ids   the ids of changed rows
+     */
+    protected void modified(String table, Long... ids) {
+        replicaSynchronizer.markModified(table, ids);
+    }
+
+    /**
+     * @see #modified(String, Long...)
+     */
+    protected void modified(String table, Collection<Long> ids) {
+        replicaSynchronizer.markModified(table, ids);
+    }
+
+    /**
+     * @param count the number of parameters
+     * @return the list of <code>?</code> placeholders separated by comma to be used in <code>in (...)</code> clause
+     */
+    protected static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
     /**
      * Verifies the validity of the Transaction object to be saved into the database.
      *
@@ -48,6 +162,17 @@ public class BaseDao {
                     "ID value is invalid");
         }
 
+        verifyFields(bankAccount);
+    }
+
+    /**
+     * Verifies the validity of the Bank Account object to be created in the database. ID is not checked as it
+     * will be generated by the database.
+     *
+     * @param bankAccount Bank Account object to be validated
+     * @throws ObjectModificationException in case of any invalid parameter
+     */
+    protected void verifyFields(BankAccount bankAccount) throws ObjectModificationException {
         if (bankAccount.getOwnerName() == null || bankAccount.getBalance() == null ||
                 bankAccount.getBlockedAmount() == null || bankAccount.getCurrency() == null) {
             throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED, "Fields could not be NULL");
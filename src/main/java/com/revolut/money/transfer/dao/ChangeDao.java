@@ -0,0 +1,262 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Change;
+import com.revolut.money.transfer.model.ChangeType;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.*;
+
+/**
+ * Encapsulates all logic of the change log which is related to the database. Implements the singleton pattern.
+ * <p>
+ * Every change of the Transaction status and of the Bank Account balance is inserted into the
+ * <code>change_log</code> table of its shard in the same database's transaction as the change itself, so the log
+ * contains exactly the committed changes. The <code>seq</code> column is the monotonic sequence number of the
+ * change, consumers read the log by its unique index from the last <code>seq</code> they have seen.
+ * <p>
+ * The sequence number is not taken at the insert, as the change with the greater number could be committed first
+ * and the consumer which has moved past it would skip the other one forever. The change is inserted with the
+ * <code>id</code> only and gets its sequence number once it is already committed, so sequence numbers follow the
+ * commit order and have no gaps.
+ */
+public class ChangeDao extends BaseDao {
+    private static final String INSERT_CHANGE_SQL =
+            "insert into " + CHANGE_LOG_TABLE_NAME +
+                    " (" +
+                    CHANGE_LOG_ENTITY_TYPE_ROW + ", " +
+                    CHANGE_LOG_ENTITY_ID_ROW + ", " +
+                    CHANGE_LOG_STATUS_ROW + ", " +
+                    CHANGE_LOG_BALANCE_ROW + ", " +
+                    CHANGE_LOG_BLOCKED_AMOUNT_ROW + ", " +
+                    CHANGE_LOG_CHANGE_DATE_ROW +
+                    ") values (?, ?, ?, ?, ?, ?)";
+    private static final String GET_LAST_SEQ_SQL =
+            "select max(" + CHANGE_LOG_SEQ_ROW + ") from " + CHANGE_LOG_TABLE_NAME;
+    private static final String GET_NOT_SEQUENCED_CHANGES_SQL =
+            "select " + CHANGE_LOG_ID_ROW + " from " + CHANGE_LOG_TABLE_NAME + " " +
+                    "where " + CHANGE_LOG_SEQ_ROW + " is null " +
+                    "order by " + CHANGE_LOG_ID_ROW + " " +
+                    "limit ?";
+    private static final String SEQUENCE_CHANGE_SQL =
+            "update " + CHANGE_LOG_TABLE_NAME + " set " + CHANGE_LOG_SEQ_ROW + " = ? " +
+                    "where " + CHANGE_LOG_ID_ROW + " = ?";
+    public static final String GET_CHANGES_SQL =
+            "select * from " + CHANGE_LOG_TABLE_NAME + " " +
+                    "where " + CHANGE_LOG_SEQ_ROW + " > ? " +
+                    "order by " + CHANGE_LOG_SEQ_ROW + " " +
+                    "limit ?";
+
+    private static final ChangeDao changeDao = new ChangeDao();
+
+    //Changes of every shard are sequenced by one thread at a time, so sequence numbers are never taken twice
+    private final Object[] sequenceLocks = new Object[getShardCount()];
+
+    private ChangeDao() {
+        for (int shard = 0; shard < sequenceLocks.length; shard++) {
+            sequenceLocks[shard] = new Object();
+        }
+    }
+
+    public static ChangeDao getInstance() {
+        return changeDao;
+    }
+
+    /**
+     * Logs the new status of the Transaction. The change is committed together with the transaction of the
+     * connection provided.
+     *
+     * @param con           the <code>Connection</code> which has changed the Transaction
+     * @param transactionId the id of changed Transaction
+     * @param status        the new status
+     */
+    void transactionChanged(Connection con, Long transactionId, TransactionStatus status) {
+        daoManager.executeQueryInConnection(con, INSERT_CHANGE_SQL, insertChange -> {
+            fillInPreparedStatement(insertChange, ChangeType.TRANSACTION, transactionId, status, null, null);
+
+            return insertChange.executeUpdate();
+        });
+    }
+
+    /**
+     * Logs new statuses of all Transactions by one JDBC batch
+     *
+     * @see #transactionChanged(Connection, Long, TransactionStatus)
+     */
+    void transactionsChanged(Connection con, Collection<Transaction> transactions) {
+        daoManager.executeQueryInConnection(con, INSERT_CHANGE_SQL, insertChanges -> {
+            for (Transaction transaction : transactions) {
+                fillInPreparedStatement(insertChanges, ChangeType.TRANSACTION, transaction.getId(),
+                        transaction.getStatus(), null, null);
+                insertChanges.addBatch();
+            }
+
+            return insertChanges.executeBatch().length;
+        });
+    }
+
+    /**
+     * Logs the new balance and blocked amount of the Bank Account. The change is committed together with the
+     * transaction of the connection provided.
+     *
+     * @param con         the <code>Connection</code> which has changed the Bank Account
+     * @param bankAccount the changed Bank Account
+     */
+    void bankAccountChanged(Connection con, BankAccount bankAccount) {
+        bankAccountsChanged(con, Collections.singletonList(bankAccount));
+    }
+
+    /**
+     * Logs new balances of all Bank Accounts by one JDBC batch
+     *
+     * @see #bankAccountChanged(Connection, BankAccount)
+     */
+    void bankAccountsChanged(Connection con, Collection<BankAccount> bankAccounts) {
+        daoManager.executeQueryInConnection(con, INSERT_CHANGE_SQL, insertChanges -> {
+            for (BankAccount bankAccount : bankAccounts) {
+                fillInPreparedStatement(insertChanges, ChangeType.BANK_ACCOUNT, bankAccount.getId(), null,
+                        bankAccount.getBalance(), bankAccount.getBlockedAmount());
+                insertChanges.addBatch();
+            }
+
+            return insertChanges.executeBatch().length;
+        });
+    }
+
+    /**
+     * Returns changes of the shard after the sequence number provided in the order of their sequence numbers. The
+     * log is read from the primary by the index of sequence numbers, so the cost depends only on the number of
+     * changes returned.
+     * <p>
+     * Committed changes which have no sequence number yet are sequenced first, up to the limit provided. Changes
+     * which are still being committed are invisible to the query, so they get greater numbers once they are
+     * committed, and the consumer never moves past a change it has not seen yet.
+     *
+     * @param shard the shard which changes should be returned
+     * @param since the last sequence number the consumer has seen. 0 to read the log from the beginning
+     * @param limit the maximum number of changes to be returned
+     * @return changes with the sequence number greater than <code>since</code>
+     */
+    public List<Change> getChanges(int shard, long since, int limit) {
+        sequenceCommittedChanges(shard, limit);
+
+        return daoManager.executeQuery(shard, ConnectionPool.READ, GET_CHANGES_SQL, getChanges -> {
+            List<Change> shardChanges = new ArrayList<>();
+
+            getChanges.setLong(1, since);
+            getChanges.setInt(2, limit);
+            try (ResultSet changesRS = getChanges.executeQuery()) {
+                if (changesRS != null) {
+                    while (changesRS.next()) {
+                        shardChanges.add(extractChangeFromResultSet(changesRS));
+                    }
+                }
+            }
+
+            return shardChanges;
+        }).getResult();
+    }
+
+    /**
+     * Gives the next sequence numbers of the shard to committed changes without them in the order of their ids by
+     * one database's transaction
+     *
+     * @param shard the shard which changes should be sequenced
+     * @param limit the maximum number of changes to be sequenced
+     */
+    private void sequenceCommittedChanges(int shard, int limit) {
+        synchronized (sequenceLocks[shard]) {
+            Connection con = null;
+            try {
+                con = getConnection(shard, ConnectionPool.WRITE);
+
+                List<Long> ids = daoManager.executeQueryInConnection(con, GET_NOT_SEQUENCED_CHANGES_SQL,
+                        getChanges -> {
+                            List<Long> changeIds = new ArrayList<>();
+
+                            getChanges.setInt(1, limit);
+                            try (ResultSet changesRS = getChanges.executeQuery()) {
+                                while (changesRS.next()) {
+                                    changeIds.add(changesRS.getLong(1));
+                                }
+                            }
+
+                            return changeIds;
+                        }).getResult();
+
+                if (ids.isEmpty()) {
+                    return;
+                }
+
+                long lastSeq = daoManager.executeQueryInConnection(con, GET_LAST_SEQ_SQL, getLastSeq -> {
+                    try (ResultSet lastSeqRS = getLastSeq.executeQuery()) {
+                        return lastSeqRS.next() ? lastSeqRS.getLong(1) : 0L;
+                    }
+                }).getResult();
+
+                daoManager.executeQueryInConnection(con, SEQUENCE_CHANGE_SQL, sequenceChanges -> {
+                    long seq = lastSeq;
+                    for (Long id : ids) {
+                        sequenceChanges.setLong(1, ++seq);
+                        sequenceChanges.setLong(2, id);
+                        sequenceChanges.addBatch();
+                    }
+
+                    return sequenceChanges.executeBatch().length;
+                });
+
+                con.commit();
+            } catch (RuntimeException | SQLException e) {
+                DaoManager.safeRollback(con);
+                throw new InvalidOperationExecution(e);
+            } finally {
+                DaoManager.quietlyClose(con);
+            }
+        }
+    }
+
+    private static void fillInPreparedStatement(PreparedStatement preparedStatement, ChangeType type, Long entityId,
+                                                TransactionStatus status, BigDecimal balance,
+                                                BigDecimal blockedAmount) throws SQLException {
+        preparedStatement.setString(1, type.name());
+        preparedStatement.setLong(2, entityId);
+        if (status == null) {
+            preparedStatement.setNull(3, Types.INTEGER);
+        } else {
+            preparedStatement.setInt(3, status.getId());
+        }
+        preparedStatement.setBigDecimal(4, balance);
+        preparedStatement.setBigDecimal(5, blockedAmount);
+        preparedStatement.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+    }
+
+    private static Change extractChangeFromResultSet(ResultSet changesRS) throws SQLException {
+        Change change = new Change();
+        change.setSeq(changesRS.getLong(CHANGE_LOG_SEQ_ROW));
+        change.setType(ChangeType.valueOf(changesRS.getString(CHANGE_LOG_ENTITY_TYPE_ROW)));
+        change.setEntityId(changesRS.getLong(CHANGE_LOG_ENTITY_ID_ROW));
+        int statusId = changesRS.getInt(CHANGE_LOG_STATUS_ROW);
+        change.setStatus(changesRS.wasNull() ? null : TransactionStatus.valueOf(statusId));
+        change.setBalance(changesRS.getBigDecimal(CHANGE_LOG_BALANCE_ROW));
+        change.setBlockedAmount(changesRS.getBigDecimal(CHANGE_LOG_BLOCKED_AMOUNT_ROW));
+        change.setChangeDate(changesRS.getTimestamp(CHANGE_LOG_CHANGE_DATE_ROW));
+
+        return change;
+    }
+}
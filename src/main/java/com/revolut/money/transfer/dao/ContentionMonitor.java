@@ -0,0 +1,183 @@
+package com.revolut.money.transfer.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.revolut.money.transfer.utils.Constants.OPTIMISTIC_LOCKING_CONFLICT_THRESHOLD;
+import static com.revolut.money.transfer.utils.Constants.OPTIMISTIC_LOCKING_COOL_DOWN_MILLIS;
+import static com.revolut.money.transfer.utils.Constants.OPTIMISTIC_LOCKING_ENABLED;
+
+/**
+ * Decides for every transfer if its Bank Accounts should be locked by <code>SELECT ... FOR UPDATE</code> or read
+ * without locking and updated only if their version has not been changed. Implements the singleton pattern.
+ * <p>
+ * The conflict rate of the Bank Account is the exponentially weighted average of outcomes of transfers where a
+ * conflict counts as 1 and an optimistic commit counts as 0. Once the rate crosses the threshold the account is hot
+ * and is locked pessimistically for the cool-down, as retries would cost more than lock waits. A locked commit could
+ * not see the contention, so it does not change the rate. Once the cool-down is over, the account is tried on the
+ * optimistic path again: a conflict makes it hot for the next cool-down, optimistic commits lower the rate, so the
+ * account comes back to the optimistic path only once the contention is over. Only accounts with a noticeable rate
+ * are tracked, the long tail of quiet accounts costs nothing.
+ */
+public class ContentionMonitor {
+    //The weight of the last outcome in the conflict rate
+    private static final double WEIGHT = 0.1;
+    //Accounts with a lower rate are not tracked anymore
+    private static final double FORGET_RATE = 0.01;
+
+    private static final ContentionMonitor CONTENTION_MONITOR = new ContentionMonitor(OPTIMISTIC_LOCKING_ENABLED,
+            OPTIMISTIC_LOCKING_CONFLICT_THRESHOLD, OPTIMISTIC_LOCKING_COOL_DOWN_MILLIS);
+
+    private final boolean optimisticLockingEnabled;
+    private final double conflictThreshold;
+    private final long coolDownNanos;
+    private final long startNanos = System.nanoTime();
+    private final Map<Long, Contention> contentions = new ConcurrentHashMap<>();
+
+    private final AtomicLong optimisticCommits = new AtomicLong();
+    private final AtomicLong pessimisticCommits = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    ContentionMonitor(boolean optimisticLockingEnabled, double conflictThreshold, long coolDownMillis) {
+        this.optimisticLockingEnabled = optimisticLockingEnabled;
+        this.conflictThreshold = conflictThreshold;
+        this.coolDownNanos = TimeUnit.MILLISECONDS.toNanos(coolDownMillis);
+    }
+
+    /**
+     * The conflict rate of the Bank Account and the end of its cool-down
+     */
+    private static class Contention {
+        private final double rate;
+        //Nanoseconds since the creation of the monitor
+        private final long hotUntil;
+
+        private Contention(double rate, long hotUntil) {
+            this.rate = rate;
+            this.hotUntil = hotUntil;
+        }
+    }
+
+    /**
+     * @return the singleton object of ContentionMonitor class
+     */
+    public static ContentionMonitor getInstance() {
+        return CONTENTION_MONITOR;
+    }
+
+    /**
+     * @param bankAccountIds Bank Accounts changed by the transfer
+     * @return true if Bank Accounts should be locked, because optimistic locking is switched off or any of them is
+     * hot
+     */
+    boolean shouldLock(Long... bankAccountIds) {
+        return shouldLockAt(System.nanoTime() - startNanos, bankAccountIds);
+    }
+
+    /**
+     * @param now nanoseconds since the creation of the monitor
+     */
+    boolean shouldLockAt(long now, Long... bankAccountIds) {
+        if (!optimisticLockingEnabled) {
+            return true;
+        }
+
+        for (Long bankAccountId : bankAccountIds) {
+            if (isHot(contentions.get(bankAccountId), now)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reports the version of the Bank Account has been changed by someone else between the read and the update
+     *
+     * @param bankAccountId the id of Bank Account
+     */
+    void conflicted(Long bankAccountId) {
+        conflictedAt(System.nanoTime() - startNanos, bankAccountId);
+    }
+
+    /**
+     * @param now nanoseconds since the creation of the monitor
+     */
+    void conflictedAt(long now, Long bankAccountId) {
+        conflicts.incrementAndGet();
+        contentions.compute(bankAccountId, (id, contention) -> {
+            double rate = contention == null ? WEIGHT : contention.rate * (1 - WEIGHT) + WEIGHT;
+            long hotUntil = contention == null ? now : contention.hotUntil;
+            return new Contention(rate, rate >= conflictThreshold ? now + coolDownNanos : hotUntil);
+        });
+    }
+
+    /**
+     * Reports the transfer has been committed. Only the optimistic commit lowers the conflict rate
+     *
+     * @param locked         true if Bank Accounts have been locked by <code>SELECT ... FOR UPDATE</code>
+     * @param bankAccountIds Bank Accounts changed by the transfer
+     */
+    void committed(boolean locked, Long... bankAccountIds) {
+        (locked ? pessimisticCommits : optimisticCommits).incrementAndGet();
+        if (locked) {
+            return;
+        }
+
+        for (Long bankAccountId : bankAccountIds) {
+            contentions.computeIfPresent(bankAccountId, (id, contention) -> {
+                double rate = contention.rate * (1 - WEIGHT);
+                return rate < FORGET_RATE ? null : new Contention(rate, contention.hotUntil);
+            });
+        }
+    }
+
+    /**
+     * @param bankAccountId the id of Bank Account
+     * @return the current conflict rate of Bank Account. 0 if it is not tracked
+     */
+    public double getConflictRate(Long bankAccountId) {
+        Contention contention = contentions.get(bankAccountId);
+
+        return contention == null ? 0 : contention.rate;
+    }
+
+    /**
+     * @return the number of Bank Accounts which are locked pessimistically at the moment
+     */
+    public int getHotAccountCount() {
+        return getHotAccountCountAt(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param now nanoseconds since the creation of the monitor
+     */
+    int getHotAccountCountAt(long now) {
+        int count = 0;
+        for (Contention contention : contentions.values()) {
+            if (isHot(contention, now)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private boolean isHot(Contention contention, long now) {
+        return contention != null && contention.rate >= conflictThreshold && now < contention.hotUntil;
+    }
+
+    public long getOptimisticCommits() {
+        return optimisticCommits.get();
+    }
+
+    public long getPessimisticCommits() {
+        return pessimisticCommits.get();
+    }
+
+    public long getConflicts() {
+        return conflicts.get();
+    }
+}
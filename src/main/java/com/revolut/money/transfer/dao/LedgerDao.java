@@ -0,0 +1,329 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.MoneyExchangeService;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static com.revolut.money.transfer.utils.Constants.*;
+
+/**
+ * Read only queries of the ledger reconciliation. Implements the singleton pattern.
+ * <p>
+ * Bank Accounts are read by ranges of ids, every range by one query which joins Bank Accounts with their open holds,
+ * CREATED transactions from them. Nothing is locked: the query is served by the <code>reconciliation</code> pool, so
+ * live settlement never waits for it and never shares connections with it. Rows of the range are passed to the
+ * consumer one Bank Account at a time, so the memory used by the range does not depend on its size.
+ * <p>
+ * Money flows of the shard are read by one statement too, so balances and checkpoints of the transfers which have
+ * changed them are read together: totals of balances, balance checkpoints created after the date provided and
+ * PROCESSING cross shard transfers which source Bank Account has been debited.
+ */
+public class LedgerDao extends BaseDao {
+    private static final String HOLD_AMOUNT_ROW = "hold_amount";
+    private static final String HOLD_CURRENCY_ROW = "hold_currency_id";
+    private static final String FLOW_TYPE_ROW = "flow_type";
+    private static final String FLOW_CURRENCY_ROW = "flow_currency_id";
+    private static final String FLOW_AMOUNT_ROW = "flow_amount";
+    private static final String FLOW_DATE_ROW = "flow_date";
+    private static final String FLOW_ACCOUNT_ROW = "flow_account_id";
+    private static final String FLOW_TRANSACTION_ID_ROW = "flow_transaction_id";
+    private static final String FLOW_FROM_ACCOUNT_ROW = "flow_from_account_id";
+    private static final String FLOW_TO_ACCOUNT_ROW = "flow_to_account_id";
+    private static final String FLOW_TRANSACTION_AMOUNT_ROW = "flow_transaction_amount";
+    private static final String FLOW_TRANSACTION_CURRENCY_ROW = "flow_transaction_currency_id";
+    private static final int BALANCE_FLOW_TYPE = 1;
+    private static final int CHECKPOINT_FLOW_TYPE = 2;
+    private static final int PROCESSING_FLOW_TYPE = 3;
+
+    private static final String GET_BANK_ACCOUNT_ID_RANGE_SQL =
+            "select min(" + BANK_ACCOUNT_ID_ROW + "), max(" + BANK_ACCOUNT_ID_ROW + ") from " +
+                    BANK_ACCOUNT_TABLE_NAME;
+    private static final String GET_BANK_ACCOUNT_HOLDS_SQL =
+            "select ba." + BANK_ACCOUNT_ID_ROW + ", ba." + BANK_ACCOUNT_BALANCE_ROW + ", " +
+                    "ba." + BANK_ACCOUNT_BLOCKED_AMOUNT_ROW + ", ba." + BANK_ACCOUNT_CURRENCY_ID_ROW + ", " +
+                    "trans." + TRANSACTION_AMOUNT_ROW + " " + HOLD_AMOUNT_ROW + ", " +
+                    "trans." + TRANSACTION_CURRENCY_ROW + " " + HOLD_CURRENCY_ROW + " " +
+                    "from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                    "left join " + TRANSACTION_TABLE_NAME + " trans " +
+                    "on trans." + TRANSACTION_FROM_ACCOUNT_ROW + " = ba." + BANK_ACCOUNT_ID_ROW + " " +
+                    "and trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.CREATED.getId() + " " +
+                    "where ba." + BANK_ACCOUNT_ID_ROW + " between ? and ? " +
+                    "order by ba." + BANK_ACCOUNT_ID_ROW;
+    //Transactions of checkpoints are found in the shard of their source Bank Account, even if they are archived.
+    //The credit of the cross shard transfer in the shard of its target Bank Account is described by its record
+    private static final String GET_SHARD_FLOWS_SQL =
+            "select " + BALANCE_FLOW_TYPE + " " + FLOW_TYPE_ROW + ", " +
+                    "ba." + BANK_ACCOUNT_CURRENCY_ID_ROW + " " + FLOW_CURRENCY_ROW + ", " +
+                    "sum(ba." + BANK_ACCOUNT_BALANCE_ROW + ") " + FLOW_AMOUNT_ROW + ", " +
+                    "cast(null as timestamp) " + FLOW_DATE_ROW + ", " +
+                    "cast(null as bigint) " + FLOW_ACCOUNT_ROW + ", " +
+                    "cast(null as bigint) " + FLOW_TRANSACTION_ID_ROW + ", " +
+                    "cast(null as bigint) " + FLOW_FROM_ACCOUNT_ROW + ", " +
+                    "cast(null as bigint) " + FLOW_TO_ACCOUNT_ROW + ", " +
+                    "cast(null as decimal(19,4)) " + FLOW_TRANSACTION_AMOUNT_ROW + ", " +
+                    "cast(null as int) " + FLOW_TRANSACTION_CURRENCY_ROW + " " +
+                    "from " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                    "group by ba." + BANK_ACCOUNT_CURRENCY_ID_ROW + " " +
+                    "union all " +
+                    "select " + CHECKPOINT_FLOW_TYPE + ", ba." + BANK_ACCOUNT_CURRENCY_ID_ROW + ", " +
+                    "cp." + BALANCE_CHECKPOINT_BALANCE_ROW + ", cp." + BALANCE_CHECKPOINT_CREATION_DATE_ROW + ", " +
+                    "cp." + BALANCE_CHECKPOINT_ACCOUNT_ROW + ", cp." + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + ", " +
+                    "coalesce(trans." + TRANSACTION_FROM_ACCOUNT_ROW + ", " +
+                    "archive." + TRANSACTION_FROM_ACCOUNT_ROW + "), " +
+                    "coalesce(trans." + TRANSACTION_TO_ACCOUNT_ROW + ", archive." + TRANSACTION_TO_ACCOUNT_ROW + ", " +
+                    "credit." + CROSS_SHARD_CREDIT_ACCOUNT_ROW + "), " +
+                    "coalesce(trans." + TRANSACTION_AMOUNT_ROW + ", archive." + TRANSACTION_AMOUNT_ROW + ", " +
+                    "credit." + CROSS_SHARD_CREDIT_TRANSACTION_AMOUNT_ROW + "), " +
+                    "coalesce(trans." + TRANSACTION_CURRENCY_ROW + ", archive." + TRANSACTION_CURRENCY_ROW + ", " +
+                    "credit." + CROSS_SHARD_CREDIT_TRANSACTION_CURRENCY_ROW + ") " +
+                    "from " + BALANCE_CHECKPOINT_TABLE_NAME + " cp " +
+                    "join " + BANK_ACCOUNT_TABLE_NAME + " ba " +
+                    "on ba." + BANK_ACCOUNT_ID_ROW + " = cp." + BALANCE_CHECKPOINT_ACCOUNT_ROW + " " +
+                    "left join " + TRANSACTION_TABLE_NAME + " trans " +
+                    "on trans." + TRANSACTION_ID_ROW + " = cp." + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + " " +
+                    "left join " + TRANSACTION_ARCHIVE_TABLE_NAME + " archive " +
+                    "on archive." + TRANSACTION_ID_ROW + " = cp." + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + " " +
+                    "left join " + CROSS_SHARD_CREDIT_TABLE_NAME + " credit " +
+                    "on credit." + CROSS_SHARD_CREDIT_TRANSACTION_ID_ROW + " = " +
+                    "cp." + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + " " +
+                    "where cp." + BALANCE_CHECKPOINT_CREATION_DATE_ROW + " > ? " +
+                    "union all " +
+                    "select " + PROCESSING_FLOW_TYPE + ", null, null, " +
+                    "cp." + BALANCE_CHECKPOINT_CREATION_DATE_ROW + ", null, trans." + TRANSACTION_ID_ROW + ", " +
+                    "trans." + TRANSACTION_FROM_ACCOUNT_ROW + ", " +
+                    "trans." + TRANSACTION_TO_ACCOUNT_ROW + ", trans." + TRANSACTION_AMOUNT_ROW + ", " +
+                    "trans." + TRANSACTION_CURRENCY_ROW + " " +
+                    "from " + TRANSACTION_TABLE_NAME + " trans " +
+                    "join " + BALANCE_CHECKPOINT_TABLE_NAME + " cp " +
+                    "on cp." + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + " = trans." + TRANSACTION_ID_ROW + " " +
+                    "and cp." + BALANCE_CHECKPOINT_ACCOUNT_ROW + " = trans." + TRANSACTION_FROM_ACCOUNT_ROW + " " +
+                    "where trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.PROCESSING.getId();
+
+    private static LedgerDao ledgerDao;
+    private MoneyExchangeService moneyExchangeService;
+
+    private LedgerDao(MoneyExchangeService moneyExchangeService) {
+        this.moneyExchangeService = moneyExchangeService;
+    }
+
+    public static LedgerDao getInstance(MoneyExchangeService moneyExchangeService) {
+        if (ledgerDao == null) {
+            synchronized (LedgerDao.class) {
+                if (ledgerDao == null) {
+                    ledgerDao = new LedgerDao(moneyExchangeService);
+                }
+            }
+        }
+        return ledgerDao;
+    }
+
+    /**
+     * The consumer of Bank Accounts read with their open holds
+     */
+    @FunctionalInterface
+    public interface BankAccountHolds {
+        /**
+         * @param bankAccount the Bank Account with id, balance, blockedAmount and currency only
+         * @param holds       the number of its CREATED transactions
+         * @param heldAmount  the sum of their amounts exchanged into the currency of the Bank Account, every one
+         *                    rounded as it has been rounded once it has been added to blockedAmount
+         */
+        void accept(BankAccount bankAccount, int holds, BigDecimal heldAmount);
+    }
+
+    /**
+     * The consumer of money flows of one shard
+     */
+    public interface ShardFlows {
+        /**
+         * @param currency the currency of Bank Accounts
+         * @param balance  the sum of their balances
+         */
+        void balance(Currency currency, BigDecimal balance);
+
+        /**
+         * @param currency the currency of the Bank Account which balance has been changed
+         * @param amount   the change of the balance: the opening balance of the Bank Account created, the credit of
+         *                 the transfer or the debit of it as the negative amount. The amount is rounded as it has
+         *                 been rounded once the balance has been stored
+         * @param date     the date of the change
+         */
+        void settled(Currency currency, BigDecimal amount, Date date);
+
+        /**
+         * Follows {@link #settled(Currency, BigDecimal, Date)} if the other Bank Account of the transfer is in
+         * another shard
+         *
+         * @param transfer the transfer with its id, amount and currency
+         * @param credit   true if the target Bank Account has been credited, false if the source one has been debited
+         * @param date     the date of the change
+         */
+        void crossShardSettled(Transaction transfer, boolean credit, Date date);
+
+        /**
+         * @param transfer  the PROCESSING cross shard transfer
+         * @param debitDate the date its source Bank Account has been debited
+         */
+        void processing(Transaction transfer, Date debitDate);
+    }
+
+    /**
+     * @param shard the shard which Bank Accounts should be described
+     * @return the lowest and the highest id of Bank Accounts of the shard. null if there are no Bank Accounts
+     */
+    public long[] getBankAccountIdRange(int shard) {
+        return daoManager.executeQuery(shard, ConnectionPool.RECONCILIATION, GET_BANK_ACCOUNT_ID_RANGE_SQL,
+                getIdRange -> {
+                    try (ResultSet idRangeRS = getIdRange.executeQuery()) {
+                        if (idRangeRS.next() && idRangeRS.getObject(1) != null) {
+                            return new long[]{idRangeRS.getLong(1), idRangeRS.getLong(2)};
+                        }
+                    }
+
+                    return null;
+                }).getResult();
+    }
+
+    /**
+     * Passes every Bank Account of the shard which id is in the range provided to the consumer together with its
+     * open holds, in the ascending order of ids. The Bank Account and its holds are read by the same statement
+     *
+     * @param shard    the shard of Bank Accounts
+     * @param fromId   the lowest id of the range, inclusive
+     * @param toId     the highest id of the range, inclusive
+     * @param consumer the consumer of Bank Accounts
+     * @return the number of Bank Accounts passed
+     */
+    public int forEachBankAccountHolds(int shard, long fromId, long toId, BankAccountHolds consumer) {
+        return daoManager.executeQuery(shard, ConnectionPool.RECONCILIATION, GET_BANK_ACCOUNT_HOLDS_SQL,
+                getBankAccountHolds -> {
+                    int bankAccounts = 0;
+
+                    getBankAccountHolds.setLong(1, fromId);
+                    getBankAccountHolds.setLong(2, toId);
+                    try (ResultSet holdsRS = getBankAccountHolds.executeQuery()) {
+                        BankAccount bankAccount = null;
+                        int holds = 0;
+                        BigDecimal heldAmount = BigDecimal.ZERO;
+                        while (holdsRS.next()) {
+                            long id = holdsRS.getLong(BANK_ACCOUNT_ID_ROW);
+                            if (bankAccount == null || bankAccount.getId() != id) {
+                                if (bankAccount != null) {
+                                    consumer.accept(bankAccount, holds, heldAmount);
+                                }
+                                bankAccount = new BankAccount(id, null,
+                                        holdsRS.getBigDecimal(BANK_ACCOUNT_BALANCE_ROW),
+                                        holdsRS.getBigDecimal(BANK_ACCOUNT_BLOCKED_AMOUNT_ROW),
+                                        Currency.valueOf(holdsRS.getInt(BANK_ACCOUNT_CURRENCY_ID_ROW)));
+                                holds = 0;
+                                heldAmount = BigDecimal.ZERO;
+                                bankAccounts++;
+                            }
+
+                            BigDecimal holdAmount = holdsRS.getBigDecimal(HOLD_AMOUNT_ROW);
+                            if (holdAmount != null) {
+                                holds++;
+                                heldAmount = heldAmount.add(moneyExchangeService.exchange(
+                                        holdAmount,
+                                        Currency.valueOf(holdsRS.getInt(HOLD_CURRENCY_ROW)),
+                                        bankAccount.getCurrency()
+                                ).setScale(MONEY_SCALE, RoundingMode.HALF_UP));
+                            }
+                        }
+
+                        if (bankAccount != null) {
+                            consumer.accept(bankAccount, holds, heldAmount);
+                        }
+                    }
+
+                    return bankAccounts;
+                }).getResult();
+    }
+
+    /**
+     * Passes totals of balances of the shard, changes of balances which checkpoints have been created after the
+     * date provided and PROCESSING cross shard transfers to the consumer. All of them are read by the same
+     * statement. A change which transfer is not found is passed as zero, so it is reported as not conserved
+     *
+     * @param shard        the shard which flows should be read
+     * @param settledAfter only balances changed after this date are passed
+     * @param consumer     the consumer of flows
+     */
+    public void readShardFlows(int shard, Date settledAfter, ShardFlows consumer) {
+        daoManager.executeQuery(shard, ConnectionPool.RECONCILIATION, GET_SHARD_FLOWS_SQL, getShardFlows -> {
+            getShardFlows.setTimestamp(1, new Timestamp(settledAfter.getTime()));
+            try (ResultSet flowsRS = getShardFlows.executeQuery()) {
+                while (flowsRS.next()) {
+                    int flowType = flowsRS.getInt(FLOW_TYPE_ROW);
+                    if (flowType == BALANCE_FLOW_TYPE) {
+                        consumer.balance(Currency.valueOf(flowsRS.getInt(FLOW_CURRENCY_ROW)),
+                                flowsRS.getBigDecimal(FLOW_AMOUNT_ROW));
+                    } else if (flowType == CHECKPOINT_FLOW_TYPE) {
+                        readCheckpoint(shard, flowsRS, consumer);
+                    } else {
+                        consumer.processing(readTransfer(flowsRS), flowsRS.getTimestamp(FLOW_DATE_ROW));
+                    }
+                }
+            }
+
+            return null;
+        });
+    }
+
+    private void readCheckpoint(int shard, ResultSet flowsRS, ShardFlows consumer) throws SQLException {
+        Currency currency = Currency.valueOf(flowsRS.getInt(FLOW_CURRENCY_ROW));
+        BigDecimal balance = flowsRS.getBigDecimal(FLOW_AMOUNT_ROW);
+        Date date = flowsRS.getTimestamp(FLOW_DATE_ROW);
+
+        if (flowsRS.getLong(FLOW_TRANSACTION_ID_ROW) == BALANCE_CHECKPOINT_OPENING_TRANSACTION_ID) {
+            consumer.settled(currency, balance, date);
+            return;
+        }
+
+        Transaction transfer = readTransfer(flowsRS);
+        if (transfer.getAmount() == null) {
+            consumer.settled(currency, BigDecimal.ZERO, date);
+            return;
+        }
+
+        //The new balance is rounded HALF_UP once it is stored, so the tie is rounded away from zero of the balance
+        BigDecimal amount = moneyExchangeService.exchange(transfer.getAmount(), transfer.getCurrency(), currency);
+        boolean credit = transfer.getFromBankAccountId() == null ||
+                transfer.getFromBankAccountId() != flowsRS.getLong(FLOW_ACCOUNT_ROW);
+        boolean towardsZero = credit == balance.signum() < 0;
+        amount = amount.setScale(MONEY_SCALE, towardsZero ? RoundingMode.HALF_DOWN : RoundingMode.HALF_UP);
+
+        //The credit of the cross shard transfer has no source Bank Account, its transaction is in another shard
+        boolean crossShard = transfer.getFromBankAccountId() == null ||
+                shardOf(transfer.getToBankAccountId()) != shard;
+        consumer.settled(currency, credit ? amount : amount.negate(), date);
+        if (crossShard) {
+            consumer.crossShardSettled(transfer, credit, date);
+        }
+    }
+
+    private static Transaction readTransfer(ResultSet flowsRS) throws SQLException {
+        long fromBankAccountId = flowsRS.getLong(FLOW_FROM_ACCOUNT_ROW);
+        boolean fromFound = !flowsRS.wasNull();
+        long toBankAccountId = flowsRS.getLong(FLOW_TO_ACCOUNT_ROW);
+        boolean toFound = !flowsRS.wasNull();
+        int currencyId = flowsRS.getInt(FLOW_TRANSACTION_CURRENCY_ROW);
+        boolean currencyFound = !flowsRS.wasNull();
+
+        Transaction transfer = new Transaction(fromFound ? fromBankAccountId : null,
+                toFound ? toBankAccountId : null, flowsRS.getBigDecimal(FLOW_TRANSACTION_AMOUNT_ROW),
+                currencyFound ? Currency.valueOf(currencyId) : null);
+        transfer.setId(flowsRS.getLong(FLOW_TRANSACTION_ID_ROW));
+        return transfer;
+    }
+}
@@ -0,0 +1,336 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.RecurringPeriod;
+import com.revolut.money.transfer.model.RecurringPlan;
+import com.revolut.money.transfer.model.RecurringPlanStatus;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.MoneyExchangeService;
+import com.revolut.money.transfer.utils.RateLimitedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.*;
+
+/**
+ * Encapsulates all logic for Recurring Plan entity which is related to the database. Implements the singleton
+ * pattern.
+ * <p>
+ * The plan is stored in the shard of its source Bank Account, the same as Transactions it is expanded into. Due
+ * plans are found by the index on <code>expand_at</code>, which is null for plans which are not ACTIVE, so the cost
+ * of the search depends only on the number of plans due. Instances are inserted by the same connection as the plans
+ * they are expanded from are moved, so the plan and its instance are committed or rolled back together.
+ */
+public class RecurringPlanDao extends BaseDao {
+    private static final Logger log = LoggerFactory.getLogger(RecurringPlanDao.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log, 10, 60_000);
+
+    private static final String INSERT_PLAN_SQL =
+            "insert into " + RECURRING_PLAN_TABLE_NAME +
+                    " (" +
+                    RECURRING_PLAN_FROM_ACCOUNT_ROW + ", " +
+                    RECURRING_PLAN_TO_ACCOUNT_ROW + ", " +
+                    RECURRING_PLAN_AMOUNT_ROW + ", " +
+                    RECURRING_PLAN_CURRENCY_ROW + ", " +
+                    RECURRING_PLAN_PERIOD_ROW + ", " +
+                    RECURRING_PLAN_FIRST_EXECUTE_AT_ROW + ", " +
+                    RECURRING_PLAN_END_DATE_ROW + ", " +
+                    RECURRING_PLAN_STATUS_ROW + ", " +
+                    RECURRING_PLAN_EXPANDED_COUNT_ROW + ", " +
+                    RECURRING_PLAN_EXPAND_AT_ROW + ", " +
+                    RECURRING_PLAN_CREATION_DATE_ROW + ", " +
+                    RECURRING_PLAN_UPDATE_DATE_ROW +
+                    ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String GET_PLAN_BY_ID_SQL =
+            "select * from " + RECURRING_PLAN_TABLE_NAME + " " +
+                    "where " + RECURRING_PLAN_ID_ROW + " = ?";
+    private static final String GET_DUE_PLANS_FOR_UPDATE_SQL =
+            "select * from " + RECURRING_PLAN_TABLE_NAME + " " +
+                    "where " + RECURRING_PLAN_EXPAND_AT_ROW + " <= ? " +
+                    "order by " + RECURRING_PLAN_EXPAND_AT_ROW + " " +
+                    "limit ? for update";
+    private static final String UPDATE_EXPANDED_PLAN_SQL =
+            "update " + RECURRING_PLAN_TABLE_NAME +
+                    " set " +
+                    RECURRING_PLAN_STATUS_ROW + " = ?, " +
+                    RECURRING_PLAN_EXPANDED_COUNT_ROW + " = ?, " +
+                    RECURRING_PLAN_EXPAND_AT_ROW + " = ?, " +
+                    RECURRING_PLAN_LAST_TRANSACTION_ID_ROW + " = ?, " +
+                    RECURRING_PLAN_LAST_FAIL_MESSAGE_ROW + " = ?, " +
+                    RECURRING_PLAN_UPDATE_DATE_ROW + " = ? " +
+                    "where " + RECURRING_PLAN_ID_ROW + " = ?";
+    private static final String CANCEL_PLAN_SQL =
+            "update " + RECURRING_PLAN_TABLE_NAME +
+                    " set " +
+                    RECURRING_PLAN_STATUS_ROW + " = '" + RecurringPlanStatus.CANCELLED.name() + "', " +
+                    RECURRING_PLAN_EXPAND_AT_ROW + " = null, " +
+                    RECURRING_PLAN_UPDATE_DATE_ROW + " = ? " +
+                    "where " + RECURRING_PLAN_ID_ROW + " = ? " +
+                    "and " + RECURRING_PLAN_STATUS_ROW + " = '" + RecurringPlanStatus.ACTIVE.name() + "'";
+
+    private static RecurringPlanDao recurringPlanDao;
+    private TransactionDao transactionDao;
+
+    private RecurringPlanDao(MoneyExchangeService moneyExchangeService) {
+        transactionDao = TransactionDao.getInstance(moneyExchangeService);
+    }
+
+    public static RecurringPlanDao getInstance(MoneyExchangeService moneyExchangeService) {
+        if (recurringPlanDao == null) {
+            synchronized (RecurringPlanDao.class) {
+                if (recurringPlanDao == null) {
+                    recurringPlanDao = new RecurringPlanDao(moneyExchangeService);
+                }
+            }
+        }
+        return recurringPlanDao;
+    }
+
+    /**
+     * The expansion of due plans into Transactions. It is called while plans are locked, so a plan could not be
+     * expanded twice or cancelled in between.
+     */
+    public interface PlansExpansion {
+        /**
+         * Builds the next Transaction of every plan provided. Nothing is stored yet
+         *
+         * @param plans due plans in the order of their expansion time
+         * @return the next instance of every plan, in the same order
+         * @throws ObjectModificationException if Transactions could not be created now. Nothing is changed then
+         */
+        List<Transaction> instancesOf(List<RecurringPlan> plans) throws ObjectModificationException;
+
+        /**
+         * Moves every plan to its next instance. It is called once instances have been created or rejected but
+         * before they are committed
+         *
+         * @param plans     due plans in the order of their expansion time
+         * @param instances the result of creation of their instances, in the same order
+         */
+        void expanded(List<RecurringPlan> plans, List<Transaction> instances);
+
+        /**
+         * @param instances instances which have been committed together with their plans
+         */
+        void committed(List<Transaction> instances);
+    }
+
+    /**
+     * Creates the Recurring Plan in the shard of its source Bank Account
+     *
+     * @param plan the plan to be created
+     * @return the plan with the ID generated
+     * @throws ObjectModificationException if the ID has not been obtained
+     */
+    public RecurringPlan createPlan(RecurringPlan plan) throws ObjectModificationException {
+        RecurringPlan createdPlan = daoManager.executeQuery(shardOf(plan.getFromBankAccountId()),
+                ConnectionPool.WRITE, INSERT_PLAN_SQL,
+                new DaoManager.CreationQueryExecutor<>(plan, RecurringPlanDao::fillInPreparedStatement))
+                .getResult();
+
+        if (createdPlan == null) {
+            throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
+        }
+
+        return createdPlan;
+    }
+
+    /**
+     * Plans are changed by the expansion all the time, so they are always read from the primary
+     *
+     * @param id the id of Recurring Plan
+     * @return the plan or null if it does not exist
+     */
+    public RecurringPlan getPlanById(Long id) {
+        return daoManager.executeQuery(shardOf(id), ConnectionPool.READ, GET_PLAN_BY_ID_SQL, getPlan -> {
+            getPlan.setLong(1, id);
+            try (ResultSet planRS = getPlan.executeQuery()) {
+                return planRS.next() ? extractPlanFromResultSet(planRS) : null;
+            }
+        }).getResult();
+    }
+
+    /**
+     * Stops the expansion of the ACTIVE plan. Transactions which have been created already are not affected
+     *
+     * @param id the id of Recurring Plan
+     * @return the cancelled plan
+     * @throws ObjectModificationException if the plan does not exist or is not ACTIVE
+     */
+    public RecurringPlan cancelPlan(Long id) throws ObjectModificationException {
+        int cancelled = daoManager.executeQuery(shardOf(id), ConnectionPool.WRITE, CANCEL_PLAN_SQL, cancelPlan -> {
+            cancelPlan.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            cancelPlan.setLong(2, id);
+
+            return cancelPlan.executeUpdate();
+        }).getResult();
+
+        RecurringPlan plan = getPlanById(id);
+        if (plan == null) {
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+        }
+        if (cancelled == 0) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The plan is " + plan.getStatus() + " already");
+        }
+
+        return plan;
+    }
+
+    /**
+     * Expands one chunk of plans which expansion time has come in every shard. The chunk is locked by
+     * <code>SELECT ... FOR UPDATE</code>, its instances are inserted and the plans are moved to their next instance by
+     * the same connection and committed together. If anything fails in between, both instances and plans are rolled
+     * back and the chunk is left due, so every instance is created once by any number of concurrent expansions.
+     *
+     * @param now       only plans which expansion time is not after this date are expanded
+     * @param chunkSize the maximum number of plans to be expanded in every shard
+     * @param expansion the creation of the next Transaction of every plan
+     * @return the number of expanded plans. 0 means there is nothing more to expand
+     * @throws ObjectModificationException if the expansion has failed, the chunk is left due then
+     */
+    public int expandDuePlans(Date now, int chunkSize, PlansExpansion expansion) throws ObjectModificationException {
+        int expanded = 0;
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            expanded += expandDuePlans(shard, now, chunkSize, expansion);
+        }
+
+        return expanded;
+    }
+
+    /**
+     * Expands one chunk of due plans of the shard provided, see {@link #expandDuePlans(Date, int, PlansExpansion)}
+     */
+    int expandDuePlans(int shard, Date now, int chunkSize, PlansExpansion expansion)
+            throws ObjectModificationException {
+        Connection con = null;
+        try {
+            con = getConnection(shard, ConnectionPool.WRITE);
+
+            List<RecurringPlan> plans = daoManager.executeQueryInConnection(con, GET_DUE_PLANS_FOR_UPDATE_SQL,
+                    getPlans -> {
+                        List<RecurringPlan> duePlans = new ArrayList<>(chunkSize);
+
+                        getPlans.setTimestamp(1, new Timestamp(now.getTime()));
+                        getPlans.setInt(2, chunkSize);
+                        try (ResultSet plansRS = getPlans.executeQuery()) {
+                            while (plansRS.next()) {
+                                duePlans.add(extractPlanFromResultSet(plansRS));
+                            }
+                        }
+
+                        return duePlans;
+                    }).getResult();
+
+            if (plans.isEmpty()) {
+                con.commit();
+                return 0;
+            }
+
+            List<Transaction> instances = expansion.instancesOf(plans);
+            //Plans and their instances are stored in the shard of their source Bank Accounts
+            transactionDao.createTransactions(con, instances);
+            expansion.expanded(plans, instances);
+
+            daoManager.executeQueryInConnection(con, UPDATE_EXPANDED_PLAN_SQL, updatePlans -> {
+                Timestamp updateDate = new Timestamp(System.currentTimeMillis());
+                for (RecurringPlan plan : plans) {
+                    updatePlans.setString(1, plan.getStatus().name());
+                    updatePlans.setInt(2, plan.getExpandedCount());
+                    setTimestamp(updatePlans, 3, plan.getExpandAt());
+                    if (plan.getLastTransactionId() == null) {
+                        updatePlans.setNull(4, Types.BIGINT);
+                    } else {
+                        updatePlans.setLong(4, plan.getLastTransactionId());
+                    }
+                    updatePlans.setString(5, truncateFailMessage(plan.getLastFailMessage()));
+                    updatePlans.setTimestamp(6, updateDate);
+                    updatePlans.setLong(7, plan.getId());
+                    updatePlans.addBatch();
+                }
+
+                return updatePlans.executeBatch().length;
+            });
+
+            con.commit();
+
+            transactionDao.createdTransactions(instances);
+            expansion.committed(instances);
+
+            return plans.size();
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            throw e;
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+    }
+
+    private static void fillInPreparedStatement(PreparedStatement preparedStatement, RecurringPlan plan) {
+        try {
+            preparedStatement.setLong(1, plan.getFromBankAccountId());
+            preparedStatement.setLong(2, plan.getToBankAccountId());
+            preparedStatement.setBigDecimal(3, plan.getAmount());
+            preparedStatement.setInt(4, plan.getCurrency().getId());
+            preparedStatement.setString(5, plan.getPeriod().name());
+            preparedStatement.setTimestamp(6, new Timestamp(plan.getFirstExecuteAt().getTime()));
+            setTimestamp(preparedStatement, 7, plan.getEndDate());
+            preparedStatement.setString(8, plan.getStatus().name());
+            preparedStatement.setInt(9, plan.getExpandedCount());
+            setTimestamp(preparedStatement, 10, plan.getExpandAt());
+            preparedStatement.setTimestamp(11, new Timestamp(plan.getCreationDate().getTime()));
+            preparedStatement.setTimestamp(12, new Timestamp(plan.getUpdateDate().getTime()));
+        } catch (SQLException e) {
+            log.error("Recurring plans prepared statement could not be initialized by values", e);
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement preparedStatement, int index, Date date) throws SQLException {
+        preparedStatement.setTimestamp(index, date == null ? null : new Timestamp(date.getTime()));
+    }
+
+    private static String truncateFailMessage(String failMessage) {
+        return failMessage == null || failMessage.length() <= FAIL_MESSAGE_MAX_LENGTH ?
+                failMessage : failMessage.substring(0, FAIL_MESSAGE_MAX_LENGTH);
+    }
+
+    private static RecurringPlan extractPlanFromResultSet(ResultSet planRS) throws SQLException {
+        RecurringPlan plan = new RecurringPlan();
+        plan.setId(planRS.getLong(RECURRING_PLAN_ID_ROW));
+        plan.setFromBankAccountId(planRS.getLong(RECURRING_PLAN_FROM_ACCOUNT_ROW));
+        plan.setToBankAccountId(planRS.getLong(RECURRING_PLAN_TO_ACCOUNT_ROW));
+        plan.setAmount(planRS.getBigDecimal(RECURRING_PLAN_AMOUNT_ROW));
+        plan.setCurrency(Currency.valueOf(planRS.getInt(RECURRING_PLAN_CURRENCY_ROW)));
+        plan.setPeriod(RecurringPeriod.valueOf(planRS.getString(RECURRING_PLAN_PERIOD_ROW)));
+        plan.setFirstExecuteAt(planRS.getTimestamp(RECURRING_PLAN_FIRST_EXECUTE_AT_ROW));
+        plan.setEndDate(planRS.getTimestamp(RECURRING_PLAN_END_DATE_ROW));
+        plan.setStatus(RecurringPlanStatus.valueOf(planRS.getString(RECURRING_PLAN_STATUS_ROW)));
+        plan.setExpandedCount(planRS.getInt(RECURRING_PLAN_EXPANDED_COUNT_ROW));
+        plan.setExpandAt(planRS.getTimestamp(RECURRING_PLAN_EXPAND_AT_ROW));
+        long lastTransactionId = planRS.getLong(RECURRING_PLAN_LAST_TRANSACTION_ID_ROW);
+        plan.setLastTransactionId(planRS.wasNull() ? null : lastTransactionId);
+        plan.setLastFailMessage(planRS.getString(RECURRING_PLAN_LAST_FAIL_MESSAGE_ROW));
+        plan.setCreationDate(planRS.getTimestamp(RECURRING_PLAN_CREATION_DATE_ROW));
+        plan.setUpdateDate(planRS.getTimestamp(RECURRING_PLAN_UPDATE_DATE_ROW));
+        return plan;
+    }
+}
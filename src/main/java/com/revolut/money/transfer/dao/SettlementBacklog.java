@@ -0,0 +1,198 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.revolut.money.transfer.utils.Constants.ADMISSION_MAX_BACKLOG;
+import static com.revolut.money.transfer.utils.Constants.ADMISSION_MAX_BACKLOG_AGE_MILLIS;
+
+/**
+ * Tracks transactions waiting for the settlement, which are CREATED and hold funds of their source Bank Accounts,
+ * and decides if new ones could be admitted. Implements the singleton pattern.
+ * <p>
+ * The backlog is kept in memory and changed by every committed status change, so its depth and the age of the
+ * oldest transaction cost nothing to read. Changes could be reported out of order by concurrent threads, so the
+ * backlog is reconciled with CREATED transactions found by every run of the executor, which reads them anyway.
+ * New transactions are not admitted while the backlog is deeper or older than allowed, so the latency of the
+ * settlement stays bounded instead of the backlog growing without bound. Transactions scheduled for later are not
+ * waiting for the settlement until their execution time.
+ */
+public class SettlementBacklog {
+    private static final SettlementBacklog SETTLEMENT_BACKLOG =
+            new SettlementBacklog(ADMISSION_MAX_BACKLOG, ADMISSION_MAX_BACKLOG_AGE_MILLIS);
+
+    private volatile int maxDepth;
+    private volatile long maxAgeMillis;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final NavigableSet<Pending> oldestFirst = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong((Pending transaction) -> transaction.creationMillis)
+                    .thenComparingLong(transaction -> transaction.id));
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    SettlementBacklog(int maxDepth, long maxAgeMillis) {
+        this.maxDepth = maxDepth;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return the singleton object of SettlementBacklog class
+     */
+    public static SettlementBacklog getInstance() {
+        return SETTLEMENT_BACKLOG;
+    }
+
+    /**
+     * Changes limits of the backlog at runtime. Transactions which are already waiting are kept
+     *
+     * @param maxDepth     the number of waiting transactions from which new ones are not admitted
+     * @param maxAgeMillis the age of the oldest waiting transaction from which new ones are not admitted
+     */
+    public void setLimits(int maxDepth, long maxAgeMillis) {
+        this.maxDepth = maxDepth;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return the number of waiting transactions from which new ones are not admitted
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Reports the status change of the transaction which has been committed
+     *
+     * @param transaction the transaction with the new status
+     */
+    void published(Transaction transaction) {
+        if (transaction.getId() == null) {
+            return;
+        }
+
+        if (transaction.getStatus() == TransactionStatus.CREATED) {
+            long now = System.currentTimeMillis();
+            long creationMillis = transaction.getCreationDate() == null ? now : transaction.getCreationDate().getTime();
+            //The transaction scheduled for later is not waiting for the settlement until its execution time
+            if (transaction.getExecuteAt() != null && transaction.getExecuteAt().getTime() > creationMillis) {
+                if (transaction.getExecuteAt().getTime() > now) {
+                    return;
+                }
+                creationMillis = transaction.getExecuteAt().getTime();
+            }
+            add(transaction.getId(), creationMillis, now);
+        } else {
+            remove(transaction.getId());
+        }
+    }
+
+    /**
+     * Makes the backlog the same as CREATED transactions found in the database. Transactions reported after the
+     * search has been started are left as they are, as they could have been created or executed meanwhile.
+     *
+     * @param createdIds     ids of CREATED transactions
+     * @param searchedMillis the time the search has been started at
+     */
+    public void reconcile(Collection<Long> createdIds, long searchedMillis) {
+        for (Pending transaction : pending.values()) {
+            if (transaction.reportedMillis < searchedMillis && !createdIds.contains(transaction.id)) {
+                remove(transaction.id);
+            }
+        }
+
+        //The creation date is not known, so they are as old as the search
+        for (Long id : createdIds) {
+            if (!pending.containsKey(id)) {
+                add(id, searchedMillis, searchedMillis);
+            }
+        }
+    }
+
+    /**
+     * @return true if the new transaction could be created. Rejections are counted
+     */
+    public boolean tryAdmit() {
+        return tryAdmit(System.currentTimeMillis());
+    }
+
+    boolean tryAdmit(long now) {
+        if (getDepth() < maxDepth && getOldestAgeMillis(now) < maxAgeMillis) {
+            return true;
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return the number of transactions waiting for the settlement
+     */
+    public int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return how long the oldest transaction has been waiting for the settlement, 0 if there are none
+     */
+    public long getOldestAgeMillis() {
+        return getOldestAgeMillis(System.currentTimeMillis());
+    }
+
+    long getOldestAgeMillis(long now) {
+        for (Iterator<Pending> iterator = oldestFirst.iterator(); iterator.hasNext(); ) {
+            Pending oldest = iterator.next();
+            //It could be added after it has been removed by the concurrent thread
+            if (pending.get(oldest.id) != oldest) {
+                iterator.remove();
+                continue;
+            }
+
+            return Math.max(now - oldest.creationMillis, 0);
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the number of transactions which have not been admitted
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void add(Long id, long creationMillis, long reportedMillis) {
+        Pending transaction = new Pending(id, creationMillis, reportedMillis);
+        if (pending.putIfAbsent(id, transaction) == null) {
+            oldestFirst.add(transaction);
+        }
+    }
+
+    private void remove(Long id) {
+        Pending transaction = pending.remove(id);
+        if (transaction != null) {
+            oldestFirst.remove(transaction);
+        }
+    }
+
+    private static class Pending {
+        private final long id;
+        private final long creationMillis;
+        private final long reportedMillis;
+
+        private Pending(long id, long creationMillis, long reportedMillis) {
+            this.id = id;
+            this.creationMillis = creationMillis;
+            this.reportedMillis = reportedMillis;
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package com.revolut.money.transfer.dao;
 
+import com.revolut.money.transfer.db.ConnectionPool;
 import com.revolut.money.transfer.db.DaoManager;
 import com.revolut.money.transfer.exceptions.ExceptionType;
 import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
 import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.StatementEntry;
 import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
 import com.revolut.money.transfer.model.TransactionStatus;
 import com.revolut.money.transfer.service.MoneyExchangeService;
+import com.revolut.money.transfer.service.TransactionEventBroadcaster;
+import com.revolut.money.transfer.utils.RateLimitedLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import static com.revolut.money.transfer.utils.Constants.*;
 
@@ -30,6 +44,7 @@ import static com.revolut.money.transfer.utils.Constants.*;
  */
 public class TransactionDao extends  BaseDao{
     private static final Logger log = LoggerFactory.getLogger(TransactionDao.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log, 10, 60_000);
 
 
 
@@ -37,145 +52,1560 @@ public class TransactionDao extends  BaseDao{
     public static final String GET_TRANSACTIONS_BY_STATUS_SQL =
             "select id from " + TRANSACTION_TABLE_NAME + " trans " +
                     "where trans." + TRANSACTION_STATUS_ROW + " = ?";
+    public static final String GET_SOURCE_ACCOUNTS_BY_STATUS_SQL =
+            "select " + TRANSACTION_ID_ROW + ", " + TRANSACTION_FROM_ACCOUNT_ROW + " from " + TRANSACTION_TABLE_NAME +
+                    " trans where trans." + TRANSACTION_STATUS_ROW + " = ? " +
+                    "and trans." + TRANSACTION_EXECUTE_AT_ROW + " <= ? " +
+                    "order by trans." + TRANSACTION_ID_ROW;
+    private static final String GET_SCHEDULED_TRANSACTIONS_SQL =
+            "select " + TRANSACTION_ID_ROW + ", " + TRANSACTION_FROM_ACCOUNT_ROW + ", " + TRANSACTION_EXECUTE_AT_ROW +
+                    " from " + TRANSACTION_TABLE_NAME + " trans " +
+                    "where trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.CREATED.getId() + " " +
+                    "and trans." + TRANSACTION_EXECUTE_AT_ROW + " > ?";
     public static final String GET_TRANSACTIONS_BY_ID_SQL =
             "select * from " + TRANSACTION_TABLE_NAME + " trans " +
                     "where trans." + TRANSACTION_ID_ROW + " = ?";
     public static final String GET_TRANSACTIONS_FOR_UPDATE_BY_ID_SQL =
             GET_TRANSACTIONS_BY_ID_SQL + " for update";
+    public static final String GET_ARCHIVED_TRANSACTIONS_BY_ID_SQL =
+            "select * from " + TRANSACTION_ARCHIVE_TABLE_NAME + " trans " +
+                    "where trans." + TRANSACTION_ID_ROW + " = ?";
+    private static final String GET_SETTLED_TRANSACTION_IDS_FOR_UPDATE_SQL =
+            "select " + TRANSACTION_ID_ROW + " from " + TRANSACTION_TABLE_NAME + " trans " +
+                    "where trans." + TRANSACTION_STATUS_ROW + " in (" +
+                    TransactionStatus.FAILED.getId() + ", " + TransactionStatus.SUCCEED.getId() + ") " +
+                    "and trans." + TRANSACTION_UPDATE_DATE_ROW + " < ? " +
+                    "order by trans." + TRANSACTION_ID_ROW + " " +
+                    "limit ? for update";
+    private static final String GET_EXPIRED_HOLDS_FOR_UPDATE_SQL =
+            "select * from " + TRANSACTION_TABLE_NAME + " trans " +
+                    "where trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.CREATED.getId() + " " +
+                    "and trans." + TRANSACTION_EXECUTE_AT_ROW + " < ? " +
+                    "order by trans." + TRANSACTION_EXECUTE_AT_ROW + " " +
+                    "limit ? for update";
+    private static final String EXPIRE_HOLD_SQL =
+            "update " + TRANSACTION_TABLE_NAME +
+                    " set " +
+                    TRANSACTION_STATUS_ROW + " = ?, " +
+                    FAIL_CODE_ROW + " = ?, " +
+                    FAIL_MESSAGE_ROW + " = ?, " +
+                    TRANSACTION_UPDATE_DATE_ROW + " = ? " +
+                    "where " + TRANSACTION_ID_ROW + " = ?";
+    private static final String GET_STALE_CROSS_SHARD_TRANSACTIONS_SQL =
+            "select * from " + TRANSACTION_TABLE_NAME + " trans " +
+                    "where trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.PROCESSING.getId() + " " +
+                    "and trans." + TRANSACTION_UPDATE_DATE_ROW + " < ?";
+    private static final String COMPLETE_CROSS_SHARD_TRANSACTION_SQL =
+            "update " + TRANSACTION_TABLE_NAME +
+                    " set " +
+                    TRANSACTION_STATUS_ROW + " = " + TransactionStatus.SUCCEED.getId() + ", " +
+                    TRANSACTION_UPDATE_DATE_ROW + " = ? " +
+                    "where " + TRANSACTION_ID_ROW + " = ? " +
+                    "and " + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.PROCESSING.getId();
+    private static final String GET_CROSS_SHARD_CREDIT_SQL =
+            "select " + CROSS_SHARD_CREDIT_TRANSACTION_ID_ROW + " from " + CROSS_SHARD_CREDIT_TABLE_NAME + " " +
+                    "where " + CROSS_SHARD_CREDIT_TRANSACTION_ID_ROW + " = ?";
+    private static final String INSERT_CROSS_SHARD_CREDIT_SQL =
+            "insert into " + CROSS_SHARD_CREDIT_TABLE_NAME +
+                    " (" +
+                    CROSS_SHARD_CREDIT_TRANSACTION_ID_ROW + ", " +
+                    CROSS_SHARD_CREDIT_ACCOUNT_ROW + ", " +
+                    CROSS_SHARD_CREDIT_AMOUNT_ROW + ", " +
+                    CROSS_SHARD_CREDIT_TRANSACTION_AMOUNT_ROW + ", " +
+                    CROSS_SHARD_CREDIT_TRANSACTION_CURRENCY_ROW + ", " +
+                    CROSS_SHARD_CREDIT_CREATION_DATE_ROW +
+                    ") " +
+                    "values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_BALANCE_CHECKPOINT_SQL =
+            "insert into " + BALANCE_CHECKPOINT_TABLE_NAME +
+                    " (" +
+                    BALANCE_CHECKPOINT_ACCOUNT_ROW + ", " +
+                    BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + ", " +
+                    BALANCE_CHECKPOINT_BALANCE_ROW + ", " +
+                    BALANCE_CHECKPOINT_CREATION_DATE_ROW +
+                    ") " +
+                    "values (?, ?, ?, ?)";
+    private static final String TRANSACTION_COLUMNS =
+            TRANSACTION_ID_ROW + ", " +
+                    TRANSACTION_FROM_ACCOUNT_ROW + ", " +
+                    TRANSACTION_TO_ACCOUNT_ROW + ", " +
+                    TRANSACTION_AMOUNT_ROW + ", " +
+                    TRANSACTION_CURRENCY_ROW + ", " +
+                    TRANSACTION_STATUS_ROW + ", " +
+                    FAIL_MESSAGE_ROW + ", " +
+                    TRANSACTION_CREATION_DATE_ROW + ", " +
+                    TRANSACTION_UPDATE_DATE_ROW + ", " +
+                    FAIL_CODE_ROW + ", " +
+                    TRANSACTION_EXECUTE_AT_ROW;
+    private static final String INSERT_TRANSACTION_SQL =
+            "insert into " + TRANSACTION_TABLE_NAME +
+                    " (" +
+                    TRANSACTION_FROM_ACCOUNT_ROW + ", " +
+                    TRANSACTION_TO_ACCOUNT_ROW + ", " +
+                    TRANSACTION_AMOUNT_ROW + ", " +
+                    TRANSACTION_CURRENCY_ROW + ", " +
+                    TRANSACTION_STATUS_ROW + ", " +
+                    FAIL_MESSAGE_ROW + ", " +
+                    TRANSACTION_CREATION_DATE_ROW + ", " +
+                    TRANSACTION_UPDATE_DATE_ROW + ", " +
+                    FAIL_CODE_ROW + ", " +
+                    TRANSACTION_EXECUTE_AT_ROW +
+                    ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
     private static TransactionDao transactionDao;
     private BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+    private ContentionMonitor contentionMonitor = ContentionMonitor.getInstance();
+    private TransactionEventBroadcaster transactionEvents = TransactionEventBroadcaster.getInstance();
+    private SettlementBacklog settlementBacklog = SettlementBacklog.getInstance();
+    private ChangeDao changeDao = ChangeDao.getInstance();
     private MoneyExchangeService moneyExchangeService;
 
     private TransactionDao(MoneyExchangeService moneyExchangeService) {
         this.moneyExchangeService = moneyExchangeService;
     }
 
-    //Just for testing purpose
-    TransactionDao(DaoManager daoManager) {
-        this.daoManager = daoManager;
-    }
+    //Just for testing purpose
+    TransactionDao(DaoManager daoManager) {
+        this.daoManager = daoManager;
+    }
+
+    public static TransactionDao getInstance(MoneyExchangeService moneyExchangeService) {
+        if (transactionDao == null) {
+            synchronized (TransactionDao.class) {
+                if (transactionDao == null) {
+                    transactionDao = new TransactionDao(moneyExchangeService);
+                }
+            }
+        }
+        return transactionDao;
+    }
+
+    /**
+     * @return All Transactions which is exists in the database at the moment
+     * <p>
+     *
+     */
+    public Collection<Transaction> getAllTransactions() {
+        Collection<Transaction> transactions = new ArrayList<>();
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            transactions.addAll(daoManager.executeReadQuery(shard, GET_ALL_TRANSACTIONS_SQL, getAllTransactions -> {
+                Collection<Transaction> shardTransactions = new ArrayList<>();
+
+                try (ResultSet transactionsRS = getAllTransactions.executeQuery()) {
+                    if (transactionsRS != null) {
+                        while (transactionsRS.next()) {
+                            shardTransactions.add(extractTransactionFromResultSet(transactionsRS));
+                        }
+                    }
+                }
+
+                return shardTransactions;
+            }).getResult());
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Returns the list of Transactions which has specified status
+     *
+     * @param transactionStatus transaction's status to be returned
+     * @return list of Transaction's ID which has the status provided
+     */
+    public Collection<Long> getAllTransactionIdsByStatus(TransactionStatus transactionStatus) {
+        if (transactionStatus == null) {
+            return null;
+        }
+
+        Collection<Long> transactionIds = new ArrayList<>();
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            transactionIds.addAll(daoManager.executeQuery(shard, ConnectionPool.SETTLEMENT,
+                    GET_TRANSACTIONS_BY_STATUS_SQL, getTransactionsByStatus -> {
+                        Collection<Long> shardTransactionIds = new ArrayList<>();
+
+                        getTransactionsByStatus.setLong(1, transactionStatus.getId());
+                        try (ResultSet transactionsRS = getTransactionsByStatus.executeQuery()) {
+                            if (transactionsRS != null) {
+                                while (transactionsRS.next()) {
+                                    shardTransactionIds.add(transactionsRS.getLong(TRANSACTION_ID_ROW));
+                                }
+                            }
+                        }
+
+                        return shardTransactionIds;
+                    }).getResult());
+        }
+
+        return transactionIds;
+    }
+
+    /**
+     * Returns Transactions which has specified status together with their source Bank Accounts, so the caller may
+     * group them by the account before execution. Transactions scheduled for later are not returned, they are
+     * found by the index on the status and the execution time without reading them
+     *
+     * @param transactionStatus transaction's status to be returned
+     * @return the map of Transaction's ID to the ID of its source Bank Account in the order of creation within a shard
+     */
+    public Map<Long, Long> getSourceBankAccountIdsByStatus(TransactionStatus transactionStatus) {
+        if (transactionStatus == null) {
+            return null;
+        }
+
+        Map<Long, Long> sourceBankAccountIds = new LinkedHashMap<>();
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            sourceBankAccountIds.putAll(daoManager.executeQuery(shard, ConnectionPool.SETTLEMENT,
+                    GET_SOURCE_ACCOUNTS_BY_STATUS_SQL, getSourceAccountsByStatus -> {
+                        Map<Long, Long> shardSourceBankAccountIds = new LinkedHashMap<>();
+
+                        getSourceAccountsByStatus.setLong(1, transactionStatus.getId());
+                        getSourceAccountsByStatus.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                        try (ResultSet transactionsRS = getSourceAccountsByStatus.executeQuery()) {
+                            if (transactionsRS != null) {
+                                while (transactionsRS.next()) {
+                                    shardSourceBankAccountIds.put(transactionsRS.getLong(TRANSACTION_ID_ROW),
+                                            transactionsRS.getLong(TRANSACTION_FROM_ACCOUNT_ROW));
+                                }
+                            }
+                        }
+
+                        return shardSourceBankAccountIds;
+                    }).getResult());
+        }
+
+        return sourceBankAccountIds;
+    }
+
+    /**
+     * Passes CREATED Transactions scheduled for later to the consumer one by one as they are read, so millions of
+     * them are never held in memory at once. Only the id, the source Bank Account and the execution time are set
+     *
+     * @param executeAfter only transactions which should be executed after this date are passed
+     * @param consumer     the consumer of scheduled transactions
+     * @return the number of scheduled transactions
+     */
+    public int forEachScheduledTransaction(java.util.Date executeAfter, Consumer<Transaction> consumer) {
+        int scheduled = 0;
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            scheduled += daoManager.executeQuery(shard, ConnectionPool.SETTLEMENT,
+                    GET_SCHEDULED_TRANSACTIONS_SQL, getScheduledTransactions -> {
+                        int shardScheduled = 0;
+
+                        getScheduledTransactions.setTimestamp(1, new Timestamp(executeAfter.getTime()));
+                        try (ResultSet transactionsRS = getScheduledTransactions.executeQuery()) {
+                            while (transactionsRS.next()) {
+                                Transaction transaction = new Transaction();
+                                transaction.setId(transactionsRS.getLong(TRANSACTION_ID_ROW));
+                                transaction.setFromBankAccountId(transactionsRS.getLong(TRANSACTION_FROM_ACCOUNT_ROW));
+                                transaction.setExecuteAt(transactionsRS.getTimestamp(TRANSACTION_EXECUTE_AT_ROW));
+                                consumer.accept(transaction);
+                                shardScheduled++;
+                            }
+                        }
+
+                        return shardScheduled;
+                    }).getResult();
+        }
+
+        return scheduled;
+    }
+
+    /**
+     * Returns Transaction object by id specified
+     *
+     * @param id Transaction id
+     * @return Trnasaction object with id specified
+     */
+    public Transaction getTransactionById(Long id) {
+        Transaction transaction = getTransactionById(TRANSACTION_TABLE_NAME, GET_TRANSACTIONS_BY_ID_SQL, id);
+
+        if (transaction == null) {
+            transaction = getTransactionById(TRANSACTION_ARCHIVE_TABLE_NAME, GET_ARCHIVED_TRANSACTIONS_BY_ID_SQL, id);
+        }
+
+        return transaction;
+    }
+
+    /**
+     * Returns Transactions by ids specified. Ids are read by one <code>where id in (...)</code> query by one
+     * connection in every shard they belong to. Ids which are not found are looked up in the archive by the same
+     * connection, so moved Transactions are still returned.
+     *
+     * @param ids distinct Transaction ids
+     * @return found Transactions by their ids. Ids which do not exist are absent
+     */
+    public Map<Long, Transaction> getTransactionsByIds(Collection<Long> ids) {
+        Map<Long, Transaction> transactions = new HashMap<>();
+
+        for (Map.Entry<Integer, List<Long>> shardIds : groupByShard(ids).entrySet()) {
+            executeReadQuery(TRANSACTION_TABLE_NAME, shardIds.getKey(), shardIds.getValue(),
+                    getTransactionsByIdsSql(TRANSACTION_TABLE_NAME, shardIds.getValue().size()), getTransactions -> {
+                        readTransactionsByIds(getTransactions, shardIds.getValue(), transactions);
+
+                        List<Long> notFoundIds = new ArrayList<>();
+                        for (Long id : shardIds.getValue()) {
+                            if (!transactions.containsKey(id)) {
+                                notFoundIds.add(id);
+                            }
+                        }
+
+                        if (!notFoundIds.isEmpty()) {
+                            daoManager.executeQueryInConnection(getTransactions.getConnection(),
+                                    getTransactionsByIdsSql(TRANSACTION_ARCHIVE_TABLE_NAME, notFoundIds.size()),
+                                    getArchivedTransactions ->
+                                            readTransactionsByIds(getArchivedTransactions, notFoundIds, transactions));
+                        }
+
+                        return transactions;
+                    });
+        }
+
+        return transactions;
+    }
+
+    private static String getTransactionsByIdsSql(String table, int count) {
+        return "select * from " + table + " trans " +
+                "where trans." + TRANSACTION_ID_ROW + " in (" + placeholders(count) + ")";
+    }
+
+    private Map<Long, Transaction> readTransactionsByIds(PreparedStatement getTransactions, List<Long> ids,
+                                                         Map<Long, Transaction> transactions) throws SQLException {
+        int i = 1;
+        for (Long id : ids) {
+            getTransactions.setLong(i++, id);
+        }
+        try (ResultSet transactionsRS = getTransactions.executeQuery()) {
+            if (transactionsRS != null) {
+                while (transactionsRS.next()) {
+                    Transaction transaction = extractTransactionFromResultSet(transactionsRS);
+                    transactions.put(transaction.getId(), transaction);
+                }
+            }
+        }
+
+        return transactions;
+    }
+
+    private Transaction getTransactionById(String table, String query, Long id) {
+        return executeReadQuery(table, id, query, getTransactionById -> {
+            getTransactionById.setLong(1, id);
+            try (ResultSet transactionRS = getTransactionById.executeQuery()) {
+                if (transactionRS != null && transactionRS.first()) {
+                    return extractTransactionFromResultSet(transactionRS);
+                }
+            }
+
+            return null;
+        }).getResult();
+    }
+
+    /**
+     * Moves one chunk of settled (FAILED or SUCCEED) transactions which have not been updated since the date
+     * provided from the <code>transaction</code> table into the <code>transaction_archive</code> table in every
+     * shard. The chunk is moved in one database's transaction, so rows are locked only for the time of one chunk.
+     * {@link #getTransactionById(Long)} falls back to the archive, so moved transactions are still available by ID.
+     *
+     * @param settledBefore only transactions updated before this date will be moved
+     * @param chunkSize     the maximum number of transactions to be moved from every shard
+     * @return the number of moved transactions. 0 means there is nothing more to move
+     */
+    public int archiveTransactions(java.util.Date settledBefore, int chunkSize) {
+        int archived = 0;
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            archived += archiveTransactions(shard, settledBefore, chunkSize);
+        }
+
+        return archived;
+    }
+
+    private int archiveTransactions(int shard, java.util.Date settledBefore, int chunkSize) {
+        Connection con = null;
+        try {
+            con = getConnection(shard, ConnectionPool.SETTLEMENT);
+
+            List<Long> ids = daoManager.executeQueryInConnection(con, GET_SETTLED_TRANSACTION_IDS_FOR_UPDATE_SQL,
+                    getTransactionIds -> {
+                        List<Long> transactionIds = new ArrayList<>(chunkSize);
+
+                        getTransactionIds.setTimestamp(1, new Timestamp(settledBefore.getTime()));
+                        getTransactionIds.setInt(2, chunkSize);
+                        try (ResultSet transactionsRS = getTransactionIds.executeQuery()) {
+                            while (transactionsRS.next()) {
+                                transactionIds.add(transactionsRS.getLong(TRANSACTION_ID_ROW));
+                            }
+                        }
+
+                        return transactionIds;
+                    }).getResult();
+
+            if (ids.isEmpty()) {
+                con.commit();
+                return 0;
+            }
+
+            String ARCHIVE_TRANSACTIONS_SQL =
+                    "insert into " + TRANSACTION_ARCHIVE_TABLE_NAME + " (" + TRANSACTION_COLUMNS + ") " +
+                            "select " + TRANSACTION_COLUMNS + " from " + TRANSACTION_TABLE_NAME + " " +
+                            "where " + TRANSACTION_ID_ROW + " in (" + placeholders(ids.size()) + ")";
+            String DELETE_TRANSACTIONS_SQL =
+                    "delete from " + TRANSACTION_TABLE_NAME + " " +
+                            "where " + TRANSACTION_ID_ROW + " in (" + placeholders(ids.size()) + ")";
+
+            DaoManager.QueryExecutor<Integer> byIdsExecutor = statement -> {
+                for (int i = 0; i < ids.size(); i++) {
+                    statement.setLong(i + 1, ids.get(i));
+                }
+                return statement.executeUpdate();
+            };
+
+            int archived = daoManager.executeQueryInConnection(con, ARCHIVE_TRANSACTIONS_SQL, byIdsExecutor).getResult();
+            int deleted = daoManager.executeQueryInConnection(con, DELETE_TRANSACTIONS_SQL, byIdsExecutor).getResult();
+
+            if (archived != ids.size() || deleted != ids.size()) {
+                throw new SQLException("Archived " + archived + " and deleted " + deleted +
+                        " transactions instead of " + ids.size());
+            }
+
+            con.commit();
+
+            modified(TRANSACTION_TABLE_NAME, ids);
+            modified(TRANSACTION_ARCHIVE_TABLE_NAME, ids);
+
+            return ids.size();
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+    }
+
+    /**
+     * Releases one chunk of holds which have expired in every shard. The hold is the CREATED transaction itself: its
+     * amount is kept in blockedAmount of the source Bank Account until the transaction is executed, so the hold
+     * expires once the transaction has not been executed long after its execution time, e.g. because its
+     * execution has been failing with the database error. Expired transactions are marked as FAILED with
+     * {@link TransactionFailCode#HOLD_EXPIRED} and their amounts are released from blockedAmount.
+     * <p>
+     * Expired holds are found by the <code>(status_id, execute_at)</code> index, the same as due transactions, so
+     * the reaper never scans settled ones. The chunk is released in one database's transaction: transactions are
+     * locked first and their source Bank Accounts then in the ascending order of ids, the same order as the
+     * execution takes them, so the reaper and the executor could not deadlock each other.
+     *
+     * @param executeBefore only CREATED transactions which execution time is before this date are released
+     * @param chunkSize     the maximum number of holds to be released in every shard
+     * @return the number of released holds. 0 means there is nothing more to release
+     */
+    public int releaseExpiredHolds(java.util.Date executeBefore, int chunkSize) {
+        int released = 0;
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            released += releaseExpiredHolds(shard, executeBefore, chunkSize);
+        }
+
+        return released;
+    }
+
+    private int releaseExpiredHolds(int shard, java.util.Date executeBefore, int chunkSize) {
+        Connection con = null;
+        try {
+            con = getConnection(shard, ConnectionPool.SETTLEMENT);
+
+            List<Transaction> transactions = daoManager.executeQueryInConnection(con,
+                    GET_EXPIRED_HOLDS_FOR_UPDATE_SQL, getTransactions -> {
+                        List<Transaction> expiredTransactions = new ArrayList<>(chunkSize);
+
+                        getTransactions.setTimestamp(1, new Timestamp(executeBefore.getTime()));
+                        getTransactions.setInt(2, chunkSize);
+                        try (ResultSet transactionsRS = getTransactions.executeQuery()) {
+                            while (transactionsRS.next()) {
+                                expiredTransactions.add(extractTransactionFromResultSet(transactionsRS));
+                            }
+                        }
+
+                        return expiredTransactions;
+                    }).getResult();
+
+            if (transactions.isEmpty()) {
+                con.commit();
+                return 0;
+            }
+
+            Map<Long, List<Transaction>> transactionsBySource = new TreeMap<>();
+            for (Transaction transaction : transactions) {
+                transactionsBySource.computeIfAbsent(transaction.getFromBankAccountId(), id -> new ArrayList<>())
+                        .add(transaction);
+            }
+
+            for (Map.Entry<Long, List<Transaction>> sourceTransactions : transactionsBySource.entrySet()) {
+                BankAccount fromBankAccount = bankAccountDao.getForUpdateBankAccountById(con,
+                        sourceTransactions.getKey());
+                if (fromBankAccount == null) {
+                    continue;
+                }
+
+                for (Transaction transaction : sourceTransactions.getValue()) {
+                    releaseHold(con, transaction, fromBankAccount);
+                }
+            }
+
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (Transaction transaction : transactions) {
+                transaction.setStatus(TransactionStatus.FAILED);
+                transaction.setFailCode(TransactionFailCode.HOLD_EXPIRED);
+                transaction.setFailMessage("The transaction has not been executed till " + executeBefore);
+                transaction.setUpdateDate(now);
+            }
+
+            daoManager.executeQueryInConnection(con, EXPIRE_HOLD_SQL, expireHolds -> {
+                for (Transaction transaction : transactions) {
+                    expireHolds.setInt(1, transaction.getStatus().getId());
+                    expireHolds.setString(2, failCodeName(transaction));
+                    expireHolds.setString(3, truncateFailMessage(transaction.getFailMessage()));
+                    expireHolds.setTimestamp(4, now);
+                    expireHolds.setLong(5, transaction.getId());
+                    expireHolds.addBatch();
+                }
+
+                return expireHolds.executeBatch().length;
+            });
+            changeDao.transactionsChanged(con, transactions);
+
+            con.commit();
+
+            modified(BANK_ACCOUNT_TABLE_NAME, transactionsBySource.keySet());
+            modified(TRANSACTION_TABLE_NAME, createdTransactionIds(transactions));
+            for (Transaction transaction : transactions) {
+                published(transaction);
+            }
+
+            return transactions.size();
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Expired holds could not be released", e);
+            throw new InvalidOperationExecution(e);
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+    }
+
+    /**
+     * Recomputes blockedAmount of every Bank Account from its open holds and corrects the ones which differ. The
+     * open hold is the CREATED transaction from the Bank Account, blockedAmount should be the sum of their amounts
+     * exchanged into the currency of the Bank Account and rounded as the database rounds them on every update.
+     * <p>
+     * Bank Accounts are walked by chunks of ids. Every chunk is locked by <code>SELECT ... FOR UPDATE</code> and
+     * reconciled in its own database's transaction, so the creation and the execution of transactions of the chunk
+     * wait only for the time of one chunk, and holds are read by one query per chunk without locking them.
+     *
+     * @param chunkSize the maximum number of Bank Accounts to be locked at once
+     * @return the number of corrected Bank Accounts
+     */
+    public int reconcileBlockedAmounts(int chunkSize) {
+        int corrected = 0;
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            long afterId = 0;
+            int reconciled;
+            do {
+                BankAccount lastBankAccount = null;
+                Connection con = null;
+                try {
+                    con = getConnection(shard, ConnectionPool.SETTLEMENT);
+
+                    List<BankAccount> bankAccounts = bankAccountDao.getForUpdateBankAccounts(con, afterId, chunkSize);
+                    reconciled = bankAccounts.size();
+                    if (!bankAccounts.isEmpty()) {
+                        lastBankAccount = bankAccounts.get(bankAccounts.size() - 1);
+                        List<BankAccount> correctedBankAccounts = reconcileBlockedAmounts(con, bankAccounts);
+                        con.commit();
+
+                        for (BankAccount bankAccount : correctedBankAccounts) {
+                            modified(BANK_ACCOUNT_TABLE_NAME, bankAccount.getId());
+                        }
+                        corrected += correctedBankAccounts.size();
+                    } else {
+                        con.commit();
+                    }
+                } catch (RuntimeException | SQLException e) {
+                    DaoManager.safeRollback(con);
+                    failureLog.error("Unexpected exception", e);
+                    throw new InvalidOperationExecution(e);
+                } catch (ObjectModificationException e) {
+                    DaoManager.safeRollback(con);
+                    failureLog.error("Blocked amounts could not be reconciled", e);
+                    throw new InvalidOperationExecution(e);
+                } finally {
+                    DaoManager.quietlyClose(con);
+                }
+
+                if (lastBankAccount != null) {
+                    afterId = lastBankAccount.getId();
+                }
+            } while (reconciled == chunkSize);
+        }
+
+        return corrected;
+    }
+
+    /**
+     * @param con          the <code>Connection</code> which has locked Bank Accounts
+     * @param bankAccounts locked Bank Accounts of one shard
+     * @return Bank Accounts which blockedAmount has been corrected. The commit is up to the caller
+     */
+    private List<BankAccount> reconcileBlockedAmounts(Connection con, List<BankAccount> bankAccounts)
+            throws ObjectModificationException {
+        Map<Long, BankAccount> bankAccountsById = new LinkedHashMap<>();
+        Map<Long, BigDecimal> heldAmounts = new HashMap<>();
+        for (BankAccount bankAccount : bankAccounts) {
+            bankAccountsById.put(bankAccount.getId(), bankAccount);
+            heldAmounts.put(bankAccount.getId(), BigDecimal.ZERO);
+        }
+
+        String GET_HOLDS_SQL =
+                "select " + TRANSACTION_FROM_ACCOUNT_ROW + ", " + TRANSACTION_AMOUNT_ROW + ", " +
+                        TRANSACTION_CURRENCY_ROW + " from " + TRANSACTION_TABLE_NAME + " trans " +
+                        "where trans." + TRANSACTION_STATUS_ROW + " = " + TransactionStatus.CREATED.getId() + " " +
+                        "and trans." + TRANSACTION_FROM_ACCOUNT_ROW + " in (" + placeholders(bankAccounts.size()) + ")";
+
+        daoManager.executeQueryInConnection(con, GET_HOLDS_SQL, getHolds -> {
+            int i = 1;
+            for (Long bankAccountId : bankAccountsById.keySet()) {
+                getHolds.setLong(i++, bankAccountId);
+            }
+            try (ResultSet holdsRS = getHolds.executeQuery()) {
+                while (holdsRS.next()) {
+                    BankAccount bankAccount = bankAccountsById.get(holdsRS.getLong(TRANSACTION_FROM_ACCOUNT_ROW));
+                    BigDecimal heldAmount = moneyExchangeService.exchange(
+                            holdsRS.getBigDecimal(TRANSACTION_AMOUNT_ROW),
+                            Currency.valueOf(holdsRS.getInt(TRANSACTION_CURRENCY_ROW)),
+                            bankAccount.getCurrency()
+                    ).setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+                    heldAmounts.merge(bankAccount.getId(), heldAmount, BigDecimal::add);
+                }
+            }
+
+            return null;
+        });
+
+        List<BankAccount> correctedBankAccounts = new ArrayList<>();
+        for (BankAccount bankAccount : bankAccountsById.values()) {
+            BigDecimal heldAmount = heldAmounts.get(bankAccount.getId());
+            if (bankAccount.getBlockedAmount().compareTo(heldAmount) != 0) {
+                log.warn("Blocked amount {} of the bank account {} differs from its open holds {}, corrected",
+                        bankAccount.getBlockedAmount().toPlainString(), bankAccount.getId(),
+                        heldAmount.toPlainString());
+                bankAccount.setBlockedAmount(heldAmount);
+                bankAccountDao.updateBankAccount(bankAccount, con);
+                correctedBankAccounts.add(bankAccount);
+            }
+        }
+
+        return correctedBankAccounts;
+    }
+
+    /**
+     * Returns one page of the statement of the Bank Account: Transactions from or to it, newest first, with the
+     * balance of the Bank Account right after each of them. Pages are taken by the keyset of the last row seen, so
+     * every page costs the same: the <code>(from_account_id, creation_date)</code> and
+     * <code>(to_account_id, creation_date)</code> indexes are scanned from the keyset for <code>limit</code> rows.
+     * <p>
+     * Balances are never replayed from the history. Every settled side of the transfer stores the balance it has
+     * left on its Bank Account in the <code>balance_checkpoint</code> table, in the same database's transaction as
+     * the balance change itself, so the page only looks up checkpoints of its own rows.
+     * <p>
+     * Outgoing Transactions are stored in the shard of the Bank Account, incoming ones could be stored in any shard.
+     * The shard of the Bank Account is read the last: the credit of the cross shard transfer and its checkpoint are
+     * committed before the Transaction becomes SUCCEED in the source shard, so the checkpoint of the SUCCEED
+     * Transaction read from another shard is always found.
+     *
+     * @param bankAccountId the id of Bank Account
+     * @param beforeDate    the creation date of the last row of the previous page. null for the first page
+     * @param beforeId      the id of the last row of the previous page. null for the first page
+     * @param limit         the maximum number of rows to be returned
+     * @return rows created before the keyset provided ordered by creation date and id descending
+     */
+    public List<StatementEntry> getBankAccountStatement(Long bankAccountId, java.util.Date beforeDate, Long beforeId,
+                                                        int limit) {
+        int bankAccountShard = shardOf(bankAccountId);
+        Map<Long, Transaction> transactions = new HashMap<>();
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            if (shard != bankAccountShard) {
+                Connection con = null;
+                try {
+                    con = getConnection(shard, ConnectionPool.READ);
+                    readStatementTransactions(con, TRANSACTION_TO_ACCOUNT_ROW, bankAccountId, beforeDate, beforeId,
+                            limit, transactions);
+                } catch (SQLException e) {
+                    failureLog.error("Unexpected exception", e);
+                    throw new InvalidOperationExecution(e);
+                } finally {
+                    DaoManager.quietlyClose(con);
+                }
+            }
+        }
+
+        Connection con = null;
+        try {
+            con = getConnection(bankAccountShard, ConnectionPool.READ);
+            readStatementTransactions(con, TRANSACTION_FROM_ACCOUNT_ROW, bankAccountId, beforeDate, beforeId, limit,
+                    transactions);
+            readStatementTransactions(con, TRANSACTION_TO_ACCOUNT_ROW, bankAccountId, beforeDate, beforeId, limit,
+                    transactions);
+
+            List<Transaction> page = new ArrayList<>(transactions.values());
+            page.sort(Comparator.comparing(Transaction::getCreationDate).thenComparing(Transaction::getId).reversed());
+            if (page.size() > limit) {
+                page = page.subList(0, limit);
+            }
+
+            Map<Long, BigDecimal> balances = getBalanceCheckpoints(con, bankAccountId, page);
+
+            List<StatementEntry> statement = new ArrayList<>(page.size());
+            for (Transaction transaction : page) {
+                statement.add(new StatementEntry(transaction, balances.get(transaction.getId())));
+            }
+
+            return statement;
+        } catch (SQLException e) {
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+    }
+
+    /**
+     * Reads up to <code>limit</code> Transactions of the Bank Account before the keyset from the
+     * <code>transaction</code> table and then from the <code>transaction_archive</code> table. The Transaction
+     * archived between two queries is read twice, it is kept once by its id.
+     *
+     * @param accountRow the column of the Bank Account: <code>from_account_id</code> or <code>to_account_id</code>
+     */
+    private void readStatementTransactions(Connection con, String accountRow, Long bankAccountId,
+                                           java.util.Date beforeDate, Long beforeId, int limit,
+                                           Map<Long, Transaction> transactions) {
+        for (String table : new String[]{TRANSACTION_TABLE_NAME, TRANSACTION_ARCHIVE_TABLE_NAME}) {
+            String GET_STATEMENT_TRANSACTIONS_SQL =
+                    "select * from " + table + " trans " +
+                            "where trans." + accountRow + " = ? " +
+                            (beforeDate == null ? "" :
+                                    "and trans." + TRANSACTION_CREATION_DATE_ROW + " <= ? " +
+                                            "and (trans." + TRANSACTION_CREATION_DATE_ROW + " < ? " +
+                                            "or trans." + TRANSACTION_ID_ROW + " < ?) ") +
+                            "order by trans." + TRANSACTION_CREATION_DATE_ROW + " desc, " +
+                            "trans." + TRANSACTION_ID_ROW + " desc " +
+                            "limit ?";
+
+            daoManager.executeQueryInConnection(con, GET_STATEMENT_TRANSACTIONS_SQL, getTransactions -> {
+                int parameter = 1;
+                getTransactions.setLong(parameter++, bankAccountId);
+                if (beforeDate != null) {
+                    Timestamp before = new Timestamp(beforeDate.getTime());
+                    getTransactions.setTimestamp(parameter++, before);
+                    getTransactions.setTimestamp(parameter++, before);
+                    getTransactions.setLong(parameter++, beforeId);
+                }
+                getTransactions.setInt(parameter, limit);
+
+                try (ResultSet transactionsRS = getTransactions.executeQuery()) {
+                    while (transactionsRS.next()) {
+                        Transaction transaction = extractTransactionFromResultSet(transactionsRS);
+                        transactions.putIfAbsent(transaction.getId(), transaction);
+                    }
+                }
+
+                return transactions.size();
+            });
+        }
+    }
+
+    /**
+     * @return balances of the Bank Account stored by Transactions provided by their ids. Transactions which have not
+     * changed the balance are absent
+     */
+    private Map<Long, BigDecimal> getBalanceCheckpoints(Connection con, Long bankAccountId,
+                                                       List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String GET_BALANCE_CHECKPOINTS_SQL =
+                "select " + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + ", " + BALANCE_CHECKPOINT_BALANCE_ROW +
+                        " from " + BALANCE_CHECKPOINT_TABLE_NAME + " " +
+                        "where " + BALANCE_CHECKPOINT_ACCOUNT_ROW + " = ? " +
+                        "and " + BALANCE_CHECKPOINT_TRANSACTION_ID_ROW + " in (" +
+                        placeholders(transactions.size()) + ")";
+
+        return daoManager.executeQueryInConnection(con, GET_BALANCE_CHECKPOINTS_SQL, getCheckpoints -> {
+            Map<Long, BigDecimal> balances = new HashMap<>();
+
+            getCheckpoints.setLong(1, bankAccountId);
+            for (int i = 0; i < transactions.size(); i++) {
+                getCheckpoints.setLong(i + 2, transactions.get(i).getId());
+            }
+            try (ResultSet checkpointsRS = getCheckpoints.executeQuery()) {
+                while (checkpointsRS.next()) {
+                    balances.put(checkpointsRS.getLong(BALANCE_CHECKPOINT_TRANSACTION_ID_ROW),
+                            checkpointsRS.getBigDecimal(BALANCE_CHECKPOINT_BALANCE_ROW));
+                }
+            }
+
+            return balances;
+        }).getResult();
+    }
+
+    /**
+     * Stores balances which the settled Transaction has left on its Bank Accounts. The checkpoint is committed
+     * together with the balance change by the transaction of the connection provided.
+     *
+     * @param con           the <code>Connection</code> of the shard of Bank Accounts which has changed them
+     * @param transactionId the id of Transaction which has changed balances
+     * @param bankAccounts  Bank Accounts with their new balances
+     */
+    private void checkpointBalances(Connection con, Long transactionId, BankAccount... bankAccounts) {
+        daoManager.executeQueryInConnection(con, INSERT_BALANCE_CHECKPOINT_SQL, insertCheckpoints -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (BankAccount bankAccount : bankAccounts) {
+                insertCheckpoints.setLong(1, bankAccount.getId());
+                insertCheckpoints.setLong(2, transactionId);
+                insertCheckpoints.setBigDecimal(3, bankAccount.getBalance());
+                insertCheckpoints.setTimestamp(4, now);
+                insertCheckpoints.addBatch();
+            }
+
+            return insertCheckpoints.executeBatch().length;
+        });
+    }
+
+    /**
+     * The method is creating the Transaction object provided. The main idea of the implementation is to make all the
+     * operations related to transaction creation in one database's transaction. Operations are:
+     * <ul>
+     * <li>Add the transferring amount to blockedAmount from source Bank Account</li>
+     * <li>Create transaction in the database</li>
+     * </ul>
+     * We are moving the amount into the blocking state but not subtracting it from the balance until transaction will
+     * not be executed. We don't execute transaction at the time just to be more consistent in the situation when
+     * one instance of the server will be broken.
+     * <p>
+     * If something goes wrong all changes will be rolled back.
+     * Another problem is multithreading. The source Bank Account is read without locking and updated only if its
+     * version has not been changed meanwhile, otherwise everything is rolled back and repeated. Bank Accounts with
+     * frequent conflicts and the last attempt use database locking mechanism <code>SELECT ... FOR UPDATE</code>
+     * instead. All rows returned by this clause will be blocked until transaction will be commited.
+     *
+     * @param transaction Transaction to be created.
+     * @return created transaction with ID generated. null or exception if object has not been created
+     * @throws ObjectModificationException will be thrown if balance of the customer will be not enough for the moment.
+     */
+    public Transaction createTransaction(Transaction transaction) throws ObjectModificationException {
+        verify(transaction);
+
+        //The foreign key checks the target Bank Account only in the same shard
+        if (isCrossShard(transaction) && !bankAccountExists(transaction.getToBankAccountId())) {
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+        }
+
+        return withOptimisticRetries(forceLock -> createTransaction(transaction, forceLock));
+    }
+
+    private Transaction createTransaction(Transaction transaction, boolean forceLock)
+            throws ObjectModificationException {
+        boolean lock = forceLock || contentionMonitor.shouldLock(transaction.getFromBankAccountId());
+
+        Connection con = null;
+        try {
+            con = getConnection(shardOf(transaction.getFromBankAccountId()), ConnectionPool.WRITE);
+            BankAccount fromBankAccount = readBankAccount(con, transaction.getFromBankAccountId(), lock);
+
+            BigDecimal amountToWithdraw = moneyExchangeService.exchange(
+                    transaction.getAmount(),
+                    transaction.getCurrency(),
+                    fromBankAccount.getCurrency()
+            );
+
+            //Check that from bank account has enough money
+            if (fromBankAccount.getBalance().subtract(fromBankAccount.getBlockedAmount())
+                    .compareTo(amountToWithdraw) < 0) {
+                throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                        "The specified bank account could not transfer this amount of money. " +
+                                "His balance does not have enough money");
+            }
+
+            fromBankAccount.setBlockedAmount(fromBankAccount.getBlockedAmount().add(amountToWithdraw));
+
+            bankAccountDao.updateBankAccount(fromBankAccount, con);
+
+            transaction = daoManager.executeQueryInConnection(con, INSERT_TRANSACTION_SQL, insertTransaction(transaction))
+                    .getResult();
+
+            if (transaction == null) {
+                throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
+            }
+
+            con.commit();
+
+            contentionMonitor.committed(lock, fromBankAccount.getId());
+            modified(BANK_ACCOUNT_TABLE_NAME, fromBankAccount.getId());
+            modified(TRANSACTION_TABLE_NAME, transaction.getId());
+            published(transaction);
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            throw e;
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+
+        return transaction;
+    }
+
+    /**
+     * Batch form of {@link #createTransaction(Transaction)}. Transactions are grouped by the source Bank Account and
+     * every group is handled in its own database's transaction:
+     * <ul>
+     * <li>Lock the source Bank Account once by <code>SELECT ... FOR UPDATE</code>. The lock is taken once for the
+     * whole group, so the optimistic path of {@link #createTransaction(Transaction)} would not save anything</li>
+     * <li>Accept transactions in the provided order while the available balance is enough</li>
+     * <li>Add the summed amount of accepted transactions to blockedAmount from source Bank Account</li>
+     * <li>Insert all accepted transactions by one JDBC batch</li>
+     * </ul>
+     * Groups are processed in the ascending order of the source Bank Account id so two batches could not deadlock
+     * each other. Every group is created in the shard of its source Bank Account. Existence of all target Bank
+     * Accounts is checked by one query per shard before any group is processed.
+     * <p>
+     * The result has the same order as provided transactions. Created ones have an ID and CREATED status. Rejected
+     * ones have no ID, FAILED status and the reason in <code>failMessage</code>. Rejected transactions are not
+     * stored in the database.
+     *
+     * @param transactions Transactions to be created.
+     * @return the same transactions with the result of creation for each of them
+     */
+    public List<Transaction> createTransactions(List<Transaction> transactions) {
+        Map<Long, List<Transaction>> transactionsBySource = groupBySource(transactions);
+        if (transactionsBySource.isEmpty()) {
+            return transactions;
+        }
+
+        Set<Long> existingToBankAccountIds = getExistingToBankAccountIds(transactionsBySource);
+
+        //One connection per shard is used for all groups of the shard
+        Map<Integer, Connection> connections = new HashMap<>();
+        try {
+            for (Map.Entry<Long, List<Transaction>> sourceTransactions : transactionsBySource.entrySet()) {
+                int shard = shardOf(sourceTransactions.getKey());
+                Connection con = connections.get(shard);
+                try {
+                    if (con == null) {
+                        con = getConnection(shard, ConnectionPool.WRITE);
+                        connections.put(shard, con);
+                    }
+
+                    createTransactionsFromSource(con, sourceTransactions.getKey(), sourceTransactions.getValue(),
+                            existingToBankAccountIds);
+                    con.commit();
+
+                    created(sourceTransactions.getKey(), sourceTransactions.getValue());
+                } catch (RuntimeException | SQLException e) {
+                    DaoManager.safeRollback(con);
+                    log.error("Transactions of the bank account {} could not be created",
+                            sourceTransactions.getKey(), e);
+                    for (Transaction transaction : sourceTransactions.getValue()) {
+                        transaction.setId(null);
+                        reject(transaction, failCodeOf(e),
+                                "Transaction has been rolled back as it was unexpected exception");
+                    }
+                }
+            }
+        } finally {
+            for (Connection con : connections.values()) {
+                DaoManager.quietlyClose(con);
+            }
+        }
+
+        return transactions;
+    }
+
+    /**
+     * The form of {@link #createTransactions(List)} for the caller which stores its own changes together with
+     * transactions, e.g. the plan which transactions are expanded from. All groups are created by the connection
+     * provided, so all source Bank Accounts should be stored in its shard. The commit is up to the caller and
+     * {@link #createdTransactions(List)} should be called once it has been committed.
+     * <p>
+     * Transactions are rejected the same way as by {@link #createTransactions(List)}, but a failed group is not
+     * rolled back alone: the exception is thrown and the whole database's transaction should be rolled back.
+     *
+     * @param con          the <code>Connection</code> to be used for all queries
+     * @param transactions Transactions to be created
+     * @return the same transactions with the result of creation for each of them
+     */
+    List<Transaction> createTransactions(Connection con, List<Transaction> transactions) {
+        Map<Long, List<Transaction>> transactionsBySource = groupBySource(transactions);
+        if (transactionsBySource.isEmpty()) {
+            return transactions;
+        }
+
+        Set<Long> existingToBankAccountIds = getExistingToBankAccountIds(transactionsBySource);
+        try {
+            for (Map.Entry<Long, List<Transaction>> sourceTransactions : transactionsBySource.entrySet()) {
+                createTransactionsFromSource(con, sourceTransactions.getKey(), sourceTransactions.getValue(),
+                        existingToBankAccountIds);
+            }
+        } catch (SQLException e) {
+            throw new InvalidOperationExecution(e);
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Reports transactions created by {@link #createTransactions(Connection, List)} once they have been committed
+     *
+     * @param transactions the result of creation
+     */
+    void createdTransactions(List<Transaction> transactions) {
+        Map<Long, List<Transaction>> transactionsBySource = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getId() != null) {
+                transactionsBySource.computeIfAbsent(transaction.getFromBankAccountId(), id -> new ArrayList<>())
+                        .add(transaction);
+            }
+        }
+
+        for (Map.Entry<Long, List<Transaction>> sourceTransactions : transactionsBySource.entrySet()) {
+            created(sourceTransactions.getKey(), sourceTransactions.getValue());
+        }
+    }
+
+    /**
+     * Verifies transactions and groups valid ones by their source Bank Account. Invalid ones are rejected
+     *
+     * @return valid transactions in the ascending order of the source Bank Account id
+     */
+    private Map<Long, List<Transaction>> groupBySource(List<Transaction> transactions) {
+        Map<Long, List<Transaction>> transactionsBySource = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            try {
+                verify(transaction);
+            } catch (ObjectModificationException e) {
+                reject(transaction, TransactionFailCode.INVALID_TRANSACTION, e.getMessage());
+                continue;
+            }
+            transactionsBySource.computeIfAbsent(transaction.getFromBankAccountId(), id -> new ArrayList<>())
+                    .add(transaction);
+        }
+
+        return transactionsBySource;
+    }
+
+    private Set<Long> getExistingToBankAccountIds(Map<Long, List<Transaction>> transactionsBySource) {
+        Set<Long> toBankAccountIds = new HashSet<>();
+        for (List<Transaction> sourceTransactions : transactionsBySource.values()) {
+            for (Transaction transaction : sourceTransactions) {
+                toBankAccountIds.add(transaction.getToBankAccountId());
+            }
+        }
+
+        return bankAccountDao.getExistingBankAccountIds(toBankAccountIds);
+    }
+
+    /**
+     * Reports the committed group of transactions of one source Bank Account to the replica and to subscribers
+     */
+    private void created(Long fromBankAccountId, List<Transaction> transactions) {
+        modified(BANK_ACCOUNT_TABLE_NAME, fromBankAccountId);
+        modified(TRANSACTION_TABLE_NAME, createdTransactionIds(transactions));
+        for (Transaction transaction : transactions) {
+            if (transaction.getId() != null) {
+                published(transaction);
+            }
+        }
+    }
+
+    /**
+     * Creates the transactions of one source Bank Account for {@link #createTransactions(List)}. The connection
+     * will be not committed.
+     *
+     * @param con                      the <code>Connection</code> to be used for all queries
+     * @param fromBankAccountId        the source Bank Account of all provided transactions
+     * @param transactions             transactions to be created
+     * @param existingToBankAccountIds the target Bank Account ids which exist in the database
+     */
+    private void createTransactionsFromSource(Connection con, Long fromBankAccountId, List<Transaction> transactions,
+                                              Set<Long> existingToBankAccountIds) throws SQLException {
+        BankAccount fromBankAccount = bankAccountDao.getForUpdateBankAccountById(con, fromBankAccountId);
+
+        if (fromBankAccount == null) {
+            for (Transaction transaction : transactions) {
+                reject(transaction, TransactionFailCode.BANK_ACCOUNT_NOT_FOUND,
+                        ExceptionType.OBJECT_IS_NOT_FOUND.getMessage());
+            }
+            return;
+        }
+
+        BigDecimal availableAmount = fromBankAccount.getBalance().subtract(fromBankAccount.getBlockedAmount());
+        BigDecimal amountToBlock = BigDecimal.ZERO;
+        List<Transaction> acceptedTransactions = new ArrayList<>(transactions.size());
+
+        for (Transaction transaction : transactions) {
+            if (!existingToBankAccountIds.contains(transaction.getToBankAccountId())) {
+                reject(transaction, TransactionFailCode.BANK_ACCOUNT_NOT_FOUND,
+                        ExceptionType.OBJECT_IS_NOT_FOUND.getMessage());
+                continue;
+            }
+
+            BigDecimal amountToWithdraw = moneyExchangeService.exchange(
+                    transaction.getAmount(),
+                    transaction.getCurrency(),
+                    fromBankAccount.getCurrency()
+            );
+
+            if (availableAmount.subtract(amountToBlock).compareTo(amountToWithdraw) < 0) {
+                reject(transaction, TransactionFailCode.INSUFFICIENT_FUNDS,
+                        "The specified bank account could not transfer this amount of money. " +
+                        "His balance does not have enough money");
+                continue;
+            }
+
+            amountToBlock = amountToBlock.add(amountToWithdraw);
+            acceptedTransactions.add(transaction);
+        }
+
+        if (acceptedTransactions.isEmpty()) {
+            return;
+        }
+
+        fromBankAccount.setBlockedAmount(fromBankAccount.getBlockedAmount().add(amountToBlock));
+
+        try {
+            bankAccountDao.updateBankAccount(fromBankAccount, con);
+        } catch (ObjectModificationException e) {
+            throw new InvalidOperationExecution(e);
+        }
+
+        daoManager.executeQueryInConnection(con, INSERT_TRANSACTION_SQL, insertTransactions -> {
+            for (Transaction transaction : acceptedTransactions) {
+                fillInPreparedStatement(insertTransactions, transaction);
+                insertTransactions.addBatch();
+            }
+            insertTransactions.executeBatch();
+
+            try (ResultSet generatedKeys = insertTransactions.getGeneratedKeys()) {
+                for (Transaction transaction : acceptedTransactions) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException(ExceptionType.COULD_NOT_OBTAIN_ID.getMessage());
+                    }
+                    transaction.setId(generatedKeys.getLong(1));
+                }
+            }
+            changeDao.transactionsChanged(insertTransactions.getConnection(), acceptedTransactions);
+
+            return acceptedTransactions.size();
+        });
+    }
+
+    /**
+     * @return ids of the created transactions. Rejected ones have no id
+     */
+    private static List<Long> createdTransactionIds(List<Transaction> transactions) {
+        List<Long> ids = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (transaction.getId() != null) {
+                ids.add(transaction.getId());
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Marks the transaction as not created by {@link #createTransactions(List)}
+     *
+     * @param transaction the transaction which has been rejected
+     * @param failCode    the compact reason of rejection
+     * @param reason      the reason to be stored in <code>failMessage</code>
+     */
+    private static void reject(Transaction transaction, TransactionFailCode failCode, String reason) {
+        transaction.setStatus(TransactionStatus.FAILED);
+        transaction.setFailCode(failCode);
+        transaction.setFailMessage(reason);
+    }
+
+    /**
+     * Synchronous form of {@link #createTransaction(Transaction)} followed by {@link #executeTransaction(Long)}.
+     * Validation, debit of the source Bank Account, credit of the target Bank Account and the insert of the
+     * already SUCCEED transaction are made in one database's transaction. Nothing is moved into
+     * <code>blockedAmount</code> as the money is withdrawn straight away.
+     * <p>
+     * Bank Accounts are read and updated by the same optimistic or pessimistic way as
+     * {@link #executeTransaction(Long)} does. If something goes wrong all changes will be rolled back and nothing
+     * will be stored.
+     * <p>
+     * If Bank Accounts are in different shards the source one is debited together with the insert of the
+     * PROCESSING transaction and the target one is credited afterwards as {@link #executeTransaction(Long)} does.
+     *
+     * @param transaction Transaction to be created and executed.
+     * @return created transaction with ID generated and SUCCEED status. PROCESSING status means the target Bank
+     * Account of the cross shard transfer will be credited by the recovery
+     * @throws ObjectModificationException will be thrown if balance of the customer will be not enough for the moment.
+     */
+    public Transaction createAndExecuteTransaction(Transaction transaction) throws ObjectModificationException {
+        verify(transaction);
+
+        if (isCrossShard(transaction)) {
+            return createAndExecuteCrossShardTransaction(transaction);
+        }
+
+        return withOptimisticRetries(forceLock -> createAndExecuteTransaction(transaction, forceLock));
+    }
+
+    private Transaction createAndExecuteTransaction(Transaction transaction, boolean forceLock)
+            throws ObjectModificationException {
+        boolean lock = forceLock || contentionMonitor.shouldLock(
+                transaction.getFromBankAccountId(), transaction.getToBankAccountId());
+
+        Connection con = null;
+        try {
+            con = getConnection(shardOf(transaction.getFromBankAccountId()), ConnectionPool.WRITE);
+            BankAccount[] bankAccounts = readBankAccounts(con,
+                    transaction.getFromBankAccountId(), transaction.getToBankAccountId(), lock);
+            BankAccount fromBankAccount = bankAccounts[0];
+            BankAccount toBankAccount = bankAccounts[1];
+
+            if (fromBankAccount == null || toBankAccount == null) {
+                throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+            }
+
+            BigDecimal amountToWithdraw = moneyExchangeService.exchange(
+                    transaction.getAmount(),
+                    transaction.getCurrency(),
+                    fromBankAccount.getCurrency()
+            );
+
+            //Money which is already reserved by the CREATED transactions could not be used
+            if (fromBankAccount.getBalance().subtract(fromBankAccount.getBlockedAmount())
+                    .compareTo(amountToWithdraw) < 0) {
+                throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                        "The specified bank account could not transfer this amount of money. " +
+                                "His balance does not have enough money");
+            }
+
+            fromBankAccount.setBalance(fromBankAccount.getBalance().subtract(amountToWithdraw));
+
+            BigDecimal amountToTransfer = moneyExchangeService.exchange(
+                    transaction.getAmount(),
+                    transaction.getCurrency(),
+                    toBankAccount.getCurrency()
+            );
+
+            toBankAccount.setBalance(toBankAccount.getBalance().add(amountToTransfer));
+
+            updateBankAccounts(con, fromBankAccount, toBankAccount);
+
+            transaction.setStatus(TransactionStatus.SUCCEED);
+
+            transaction = daoManager.executeQueryInConnection(con, INSERT_TRANSACTION_SQL, insertTransaction(transaction))
+                    .getResult();
+
+            if (transaction == null) {
+                throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
+            }
+
+            checkpointBalances(con, transaction.getId(), fromBankAccount, toBankAccount);
+
+            con.commit();
+
+            contentionMonitor.committed(lock, fromBankAccount.getId(), toBankAccount.getId());
+            modified(BANK_ACCOUNT_TABLE_NAME, fromBankAccount.getId(), toBankAccount.getId());
+            modified(TRANSACTION_TABLE_NAME, transaction.getId());
+            published(transaction);
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            failureLog.error("Unexpected exception", e);
+            throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            throw e;
+        } finally {
+            DaoManager.quietlyClose(con);
+        }
+
+        return transaction;
+    }
+
+    /**
+     * Transaction execution method. The logic is to get IN PROGRESS transaction and make all necessary changes in
+     * linked bank accounts:
+     * <ul>
+     * <li>Subtract the transferring amount from balance from source Bank Account</li>
+     * <li>Subtract the transferring amount from blockedAmount from source Bank Account</li>
+     * <li>Add the transferring amount to balance to target Bank Account</li>
+     * <li>Set SUCCESS status for the transaction</li>
+     * <li>Update all changed objects in the database</li>
+     * </ul>
+     * The same synchronization logic is used as in {@link #createTransaction(Transaction)}. Bank Accounts are
+     * always updated in the ascending order of their ids, so two opposite transfers could not deadlock each other.
+     * Once transaction execution will be failed it will be marked with FAILED status and failMessage will be added
+     * to the transaction. The amount held in blockedAmount of the source Bank Account is released in the same
+     * database's transaction, so the failed transaction never keeps the money locked.
+     * <p>
+     * If Bank Accounts are in different shards the transfer is executed by the reserve/commit protocol. The amount
+     * reserved in blockedAmount is withdrawn from the source Bank Account and the transaction is marked as
+     * PROCESSING in one database's transaction of the source shard. Then the target Bank Account is credited by
+     * {@link #settleCrossShardTransfer(Transaction)}. If the process stops between these steps the money is never
+     * lost: the PROCESSING transaction is completed by {@link #recoverCrossShardTransfers(java.util.Date)}.
+     *
+     * @param id Transaction id to execute
+     * @throws ObjectModificationException if provided ID will be null or transaction with that ID will be already
+     *                                     executed somehow
+     */
+    public void executeTransaction(Long id) throws ObjectModificationException {
+        if (id == null) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The specified transaction doesn't exists");
+        }
+
+        withOptimisticRetries(forceLock -> {
+            executeTransaction(id, forceLock);
+            return null;
+        });
+    }
+
+    private void executeTransaction(Long id, boolean forceLock) throws ObjectModificationException {
+        Connection con = null;
+
+        Transaction transaction = null;
+        boolean crossShardReserved = false;
+        try {
+            con = getConnection(shardOf(id), ConnectionPool.SETTLEMENT);
+            transaction = getForUpdateTransactionById(id, con);
+
+            if (transaction.getStatus() != TransactionStatus.CREATED) {
+                throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                        "Could not execute transaction which is not in CREATED status");
+            }
+            if (transaction.getExecuteAt().getTime() > System.currentTimeMillis()) {
+                throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                        "Could not execute transaction before its execution time");
+            }
+
+            boolean lock;
+            if (isCrossShard(transaction)) {
+                lock = forceLock || contentionMonitor.shouldLock(transaction.getFromBankAccountId());
+                crossShardReserved = reserveCrossShardTransfer(transaction, con, lock);
+            } else {
+                lock = forceLock || contentionMonitor.shouldLock(
+                        transaction.getFromBankAccountId(), transaction.getToBankAccountId());
+                executeLocalTransfer(transaction, con, lock);
+            }
+
+            con.commit();
 
-    public static TransactionDao getInstance(MoneyExchangeService moneyExchangeService) {
-        if (transactionDao == null) {
-            synchronized (TransactionDao.class) {
-                if (transactionDao == null) {
-                    transactionDao = new TransactionDao(moneyExchangeService);
+            contentionMonitor.committed(lock, transaction.getFromBankAccountId(), transaction.getToBankAccountId());
+            published(transaction);
+        } catch (RuntimeException | SQLException e) {
+            DaoManager.safeRollback(con);
+            if (transaction != null) {
+                transaction.setStatus(TransactionStatus.FAILED);
+                transaction.setFailCode(failCodeOf(e));
+                transaction.setFailMessage(failMessageOf(e));
+                try {
+                    boolean failed = failCreatedTransaction(transaction, con);
+                    con.commit();
+                    if (failed) {
+                        published(transaction);
+                    }
+                } catch (RuntimeException | SQLException | ObjectModificationException updateException) {
+                    DaoManager.safeRollback(con);
+                    e.addSuppressed(updateException);
                 }
             }
+            failureLog.error("Execution of the transaction " + id + " has been rolled back", e);
+            throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            throw e;
+        } finally {
+            DaoManager.quietlyClose(con);
+
+            //Reported once everything is committed or rolled back. Reporting unchanged rows is harmless
+            if (transaction != null) {
+                modified(BANK_ACCOUNT_TABLE_NAME,
+                        transaction.getFromBankAccountId(), transaction.getToBankAccountId());
+                modified(TRANSACTION_TABLE_NAME, id);
+            }
+        }
+
+        //The connection of the source shard is already released. A failure here is completed by the recovery
+        if (crossShardReserved) {
+            settleCrossShardTransferQuietly(transaction);
         }
-        return transactionDao;
     }
 
     /**
-     * @return All Transactions which is exists in the database at the moment
-     * <p>
+     * Executes the transfer between Bank Accounts of the same shard. Both Bank Accounts are changed and the
+     * transaction is updated in the transaction of the connection provided, the commit is up to the caller.
      *
+     * @param transaction the locked CREATED transaction to be executed
+     * @param con         the <code>Connection</code> of the shard of both Bank Accounts
+     * @param lock        true if Bank Accounts should be locked by <code>SELECT ... FOR UPDATE</code>
      */
-    public Collection<Transaction> getAllTransactions() {
-        return daoManager.executeQuery(GET_ALL_TRANSACTIONS_SQL, getAllTransactions -> {
-            Collection<Transaction> transactions = new ArrayList<>();
+    private void executeLocalTransfer(Transaction transaction, Connection con, boolean lock)
+            throws ObjectModificationException {
+        BankAccount[] bankAccounts = readBankAccounts(con,
+                transaction.getFromBankAccountId(), transaction.getToBankAccountId(), lock);
+        BankAccount fromBankAccount = bankAccounts[0];
+        BankAccount toBankAccount = bankAccounts[1];
 
-            try (ResultSet transactionsRS = getAllTransactions.executeQuery()) {
-                if (transactionsRS != null) {
-                    while (transactionsRS.next()) {
-                        transactions.add(extractTransactionFromResultSet(transactionsRS));
-                    }
-                }
+        if (fromBankAccount == null || toBankAccount == null) {
+            transaction.setStatus(TransactionStatus.FAILED);
+            transaction.setFailCode(TransactionFailCode.BANK_ACCOUNT_NOT_FOUND);
+            transaction.setFailMessage(ExceptionType.OBJECT_IS_NOT_FOUND.getMessage());
+            if (fromBankAccount != null) {
+                releaseHold(con, transaction, fromBankAccount);
             }
+            updateTransaction(transaction, con);
+            return;
+        }
 
-            return transactions;
-        }).getResult();
+        BigDecimal amountToWithdraw = moneyExchangeService.exchange(
+                transaction.getAmount(),
+                transaction.getCurrency(),
+                fromBankAccount.getCurrency()
+        );
+        BigDecimal newBlockedAmount = fromBankAccount.getBlockedAmount().subtract(amountToWithdraw);
+        BigDecimal newBalance = fromBankAccount.getBalance().subtract(amountToWithdraw);
+
+        if (newBlockedAmount.compareTo(BigDecimal.ZERO) < 0 || newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            transaction.setStatus(TransactionStatus.FAILED);
+            transaction.setFailCode(TransactionFailCode.INSUFFICIENT_FUNDS);
+            transaction.setFailMessage("There is no enough money. Current balance is " +
+                    fromBankAccount.getBalance().toPlainString());
+            releaseHold(con, transaction, fromBankAccount);
+        } else {
+            fromBankAccount.setBlockedAmount(newBlockedAmount);
+            fromBankAccount.setBalance(newBalance);
+
+            BigDecimal amountToTransfer = moneyExchangeService.exchange(
+                    transaction.getAmount(),
+                    transaction.getCurrency(),
+                    toBankAccount.getCurrency()
+            );
+
+            toBankAccount.setBalance(toBankAccount.getBalance().add(amountToTransfer));
+
+            updateBankAccounts(con, fromBankAccount, toBankAccount);
+            checkpointBalances(con, transaction.getId(), fromBankAccount, toBankAccount);
+
+            transaction.setStatus(TransactionStatus.SUCCEED);
+        }
+
+        updateTransaction(transaction, con);
     }
 
     /**
-     * Returns the list of Transactions which has specified status
+     * Releases the amount held in blockedAmount of the source Bank Account by the CREATED transaction which is being
+     * marked as FAILED, so it could be spent by other transactions. The amount is never released below zero. The
+     * commit is up to the caller.
      *
-     * @param transactionStatus transaction's status to be returned
-     * @return list of Transaction's ID which has the status provided
+     * @param con             the <code>Connection</code> of the source shard
+     * @param transaction     the transaction which hold should be released
+     * @param fromBankAccount the source Bank Account read by the same connection
      */
-    public Collection<Long> getAllTransactionIdsByStatus(TransactionStatus transactionStatus) {
-        if (transactionStatus == null) {
-            return null;
-        }
+    private void releaseHold(Connection con, Transaction transaction, BankAccount fromBankAccount)
+            throws ObjectModificationException {
+        //Rounded as it has been rounded once it has been added to blockedAmount
+        BigDecimal heldAmount = moneyExchangeService.exchange(
+                transaction.getAmount(),
+                transaction.getCurrency(),
+                fromBankAccount.getCurrency()
+        ).setScale(MONEY_SCALE, RoundingMode.HALF_UP);
 
-        return daoManager.executeQuery(GET_TRANSACTIONS_BY_STATUS_SQL, getTransactionsByStatus -> {
-            Collection<Long> transactionIds = new ArrayList<>();
+        fromBankAccount.setBlockedAmount(fromBankAccount.getBlockedAmount().subtract(heldAmount).max(BigDecimal.ZERO));
+        bankAccountDao.updateBankAccount(fromBankAccount, con);
+    }
 
-            getTransactionsByStatus.setLong(1, transactionStatus.getId());
-            try (ResultSet transactionsRS = getTransactionsByStatus.executeQuery()) {
-                if (transactionsRS != null) {
-                    while (transactionsRS.next()) {
-                        transactionIds.add(transactionsRS.getLong(TRANSACTION_ID_ROW));
-                    }
-                }
-            }
+    /**
+     * Marks the transaction which execution has been rolled back as FAILED and releases its hold. The transaction
+     * is locked again and changed only if it is still CREATED, as it has been unlocked by the rollback. The commit
+     * is up to the caller.
+     *
+     * @param transaction the transaction with FAILED status and the reason of the failure
+     * @param con         the <code>Connection</code> of the source shard
+     * @return true if the transaction has been marked as FAILED
+     */
+    private boolean failCreatedTransaction(Transaction transaction, Connection con)
+            throws ObjectModificationException {
+        Transaction lockedTransaction = getForUpdateTransactionById(transaction.getId(), con);
+        if (lockedTransaction == null || lockedTransaction.getStatus() != TransactionStatus.CREATED) {
+            return false;
+        }
 
-            return transactionIds;
-        }).getResult();
+        BankAccount fromBankAccount = bankAccountDao.getForUpdateBankAccountById(con,
+                transaction.getFromBankAccountId());
+        if (fromBankAccount != null) {
+            releaseHold(con, transaction, fromBankAccount);
+        }
+        updateTransaction(transaction, con);
+
+        return true;
     }
 
     /**
-     * Returns Transaction object by id specified
-     *
-     * @param id Transaction id
-     * @return Trnasaction object with id specified
+     * @return true if the source and the target Bank Accounts of the transaction are stored in different shards
      */
-    public Transaction getTransactionById(Long id) {
-        return daoManager.executeQuery(GET_TRANSACTIONS_BY_ID_SQL, getTransactionById -> {
-            getTransactionById.setLong(1, id);
-            try (ResultSet transactionRS = getTransactionById.executeQuery()) {
-                if (transactionRS != null && transactionRS.first()) {
-                    return extractTransactionFromResultSet(transactionRS);
-                }
-            }
+    private static boolean isCrossShard(Transaction transaction) {
+        return shardOf(transaction.getFromBankAccountId()) != shardOf(transaction.getToBankAccountId());
+    }
 
-            return null;
-        }).getResult();
+    private boolean bankAccountExists(Long bankAccountId) {
+        return bankAccountDao.getExistingBankAccountIds(Collections.singletonList(bankAccountId))
+                .contains(bankAccountId);
     }
 
     /**
-     * The method is creating the Transaction object provided. The main idea of the implementation is to make all the
-     * operations related to transaction creation in one database's transaction. Operations are:
-     * <ul>
-     * <li>Add the transferring amount to blockedAmount from source Bank Account</li>
-     * <li>Create transaction in the database</li>
-     * </ul>
-     * We are moving the amount into the blocking state but not subtracting it from the balance until transaction will
-     * not be executed. We don't execute transaction at the time just to be more consistent in the situation when
-     * one instance of the server will be broken.
-     * <p>
-     * If something goes wrong all changes will be rolled back.
-     * Another problem is multithreading. To resolve this problem we are using database locking mechanism
-     * <code>SELECT ... FOR UPDATE</code>. All rows returned by this clause will be blocked until transaction will
-     * be commited.
-     *
-     * @param transaction Transaction to be created.
-     * @return created transaction with ID generated. null or exception if object has not been created
-     * @throws ObjectModificationException will be thrown if balance of the customer will be not enough for the moment.
+     * The first step of {@link #createAndExecuteTransaction(Transaction)} for Bank Accounts of different shards.
+     * The source Bank Account is debited and the PROCESSING transaction is inserted in one database's transaction
+     * of the source shard. Then the target Bank Account is credited.
      */
-    public Transaction createTransaction(Transaction transaction) throws ObjectModificationException {
-        String INSERT_TRANSACTION_SQL =
-                "insert into " + TRANSACTION_TABLE_NAME +
-                        " (" +
-                        TRANSACTION_FROM_ACCOUNT_ROW + ", " +
-                        TRANSACTION_TO_ACCOUNT_ROW + ", " +
-                        TRANSACTION_AMOUNT_ROW + ", " +
-                        TRANSACTION_CURRENCY_ROW + ", " +
-                        TRANSACTION_STATUS_ROW + ", " +
-                        FAIL_MESSAGE_ROW + ", " +
-                        TRANSACTION_CREATION_DATE_ROW + ", " +
-                        TRANSACTION_UPDATE_DATE_ROW +
-                        ") values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private Transaction createAndExecuteCrossShardTransaction(Transaction transaction)
+            throws ObjectModificationException {
+        if (!bankAccountExists(transaction.getToBankAccountId())) {
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+        }
 
-        verify(transaction);
+        Transaction createdTransaction = withOptimisticRetries(forceLock ->
+                debitCrossShardTransaction(transaction, forceLock));
+
+        settleCrossShardTransferQuietly(createdTransaction);
+
+        return createdTransaction;
+    }
 
+    private Transaction debitCrossShardTransaction(Transaction transaction, boolean forceLock)
+            throws ObjectModificationException {
+        boolean lock = forceLock || contentionMonitor.shouldLock(transaction.getFromBankAccountId());
 
         Connection con = null;
         try {
-             con = getConnection();
-            BankAccount fromBankAccount = bankAccountDao.
-                    getForUpdateBankAccountById(con, transaction.getFromBankAccountId());
+            con = getConnection(shardOf(transaction.getFromBankAccountId()), ConnectionPool.WRITE);
+            BankAccount fromBankAccount = readBankAccount(con, transaction.getFromBankAccountId(), lock);
+
+            if (fromBankAccount == null) {
+                throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+            }
 
             BigDecimal amountToWithdraw = moneyExchangeService.exchange(
                     transaction.getAmount(),
@@ -183,7 +1613,7 @@ public class TransactionDao extends  BaseDao{
                     fromBankAccount.getCurrency()
             );
 
-            //Check that from bank account has enough money
+            //Money which is already reserved by the CREATED transactions could not be used
             if (fromBankAccount.getBalance().subtract(fromBankAccount.getBlockedAmount())
                     .compareTo(amountToWithdraw) < 0) {
                 throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
@@ -191,89 +1621,156 @@ public class TransactionDao extends  BaseDao{
                                 "His balance does not have enough money");
             }
 
-            fromBankAccount.setBlockedAmount(fromBankAccount.getBlockedAmount().add(amountToWithdraw));
+            fromBankAccount.setBalance(fromBankAccount.getBalance().subtract(amountToWithdraw));
 
             bankAccountDao.updateBankAccount(fromBankAccount, con);
 
-            transaction = daoManager.executeQueryInConnection(con, INSERT_TRANSACTION_SQL,
-                    new DaoManager.CreationQueryExecutor<>(transaction, TransactionDao::fillInPreparedStatement)).getResult();
+            transaction.setStatus(TransactionStatus.PROCESSING);
+
+            transaction = daoManager.executeQueryInConnection(con, INSERT_TRANSACTION_SQL, insertTransaction(transaction))
+                    .getResult();
 
             if (transaction == null) {
-                throw new ObjectModificationException(ExceptionType.COULD_NOT_OBTAIN_ID);
+                throw ObjectModificationException.of(ExceptionType.COULD_NOT_OBTAIN_ID);
             }
 
+            checkpointBalances(con, transaction.getId(), fromBankAccount);
+
             con.commit();
+
+            contentionMonitor.committed(lock, fromBankAccount.getId());
+            modified(BANK_ACCOUNT_TABLE_NAME, fromBankAccount.getId());
+            modified(TRANSACTION_TABLE_NAME, transaction.getId());
+            published(transaction);
         } catch (RuntimeException | SQLException e) {
             DaoManager.safeRollback(con);
-            log.error("Unexpected exception", e);
+            failureLog.error("Unexpected exception", e);
             throw new InvalidOperationExecution(e);
+        } catch (ObjectModificationException e) {
+            DaoManager.safeRollback(con);
+            throw e;
         } finally {
             DaoManager.quietlyClose(con);
         }
 
         return transaction;
-
     }
 
     /**
-     * Transaction execution method. The logic is to get IN PROGRESS transaction and make all necessary changes in
-     * linked bank accounts:
-     * <ul>
-     * <li>Subtract the transferring amount from balance from source Bank Account</li>
-     * <li>Subtract the transferring amount from blockedAmount from source Bank Account</li>
-     * <li>Add the transferring amount to balance to target Bank Account</li>
-     * <li>Set SUCCESS status for the transaction</li>
-     * <li>Update all changed objects in the database</li>
-     * </ul>
-     * The same synchronization logic is used as in {@link #createTransaction(Transaction)}
-     * Once transaction execution will be failed it will be marked with FAILED status and failMessage will be added
-     * to the transaction
+     * The reserve step of {@link #executeTransaction(Long)} for Bank Accounts of different shards. The amount
+     * reserved in blockedAmount is withdrawn from the source Bank Account and the transaction is marked as
+     * PROCESSING. The commit is up to the caller.
      *
-     * @param id Transaction id to execute
-     * @throws ObjectModificationException if provided ID will be null or transaction with that ID will be already
-     *                                     executed somehow
+     * @param transaction the locked CREATED transaction to be executed
+     * @param con         the <code>Connection</code> of the source shard
+     * @param lock        true if the source Bank Account should be locked by <code>SELECT ... FOR UPDATE</code>
+     * @return true if the transfer is reserved and the target Bank Account should be credited, false if the
+     * transaction has been marked as FAILED
      */
-    public void executeTransaction(Long id) throws ObjectModificationException {
-        if (id == null) {
-            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
-                    "The specified transaction doesn't exists");
+    private boolean reserveCrossShardTransfer(Transaction transaction, Connection con, boolean lock)
+            throws ObjectModificationException {
+        BankAccount fromBankAccount = readBankAccount(con, transaction.getFromBankAccountId(), lock);
+
+        if (fromBankAccount == null || !bankAccountExists(transaction.getToBankAccountId())) {
+            transaction.setStatus(TransactionStatus.FAILED);
+            transaction.setFailCode(TransactionFailCode.BANK_ACCOUNT_NOT_FOUND);
+            transaction.setFailMessage(ExceptionType.OBJECT_IS_NOT_FOUND.getMessage());
+            if (fromBankAccount != null) {
+                releaseHold(con, transaction, fromBankAccount);
+            }
+            updateTransaction(transaction, con);
+            return false;
         }
 
-        Connection con = null;
+        BigDecimal amountToWithdraw = moneyExchangeService.exchange(
+                transaction.getAmount(),
+                transaction.getCurrency(),
+                fromBankAccount.getCurrency()
+        );
+        BigDecimal newBlockedAmount = fromBankAccount.getBlockedAmount().subtract(amountToWithdraw);
+        BigDecimal newBalance = fromBankAccount.getBalance().subtract(amountToWithdraw);
 
-        Transaction transaction = null;
-        try {
-            con = daoManager.getConnection();
-            transaction = getForUpdateTransactionById(id, con);
+        if (newBlockedAmount.compareTo(BigDecimal.ZERO) < 0 || newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            transaction.setStatus(TransactionStatus.FAILED);
+            transaction.setFailCode(TransactionFailCode.INSUFFICIENT_FUNDS);
+            transaction.setFailMessage("There is no enough money. Current balance is " +
+                    fromBankAccount.getBalance().toPlainString());
+            releaseHold(con, transaction, fromBankAccount);
+            updateTransaction(transaction, con);
+            return false;
+        }
 
-            if (transaction.getStatus() != TransactionStatus.CREATED) {
-                throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
-                        "Could not execute transaction which is not in CREATED status");
-            }
+        fromBankAccount.setBlockedAmount(newBlockedAmount);
+        fromBankAccount.setBalance(newBalance);
 
-            BankAccount fromBankAccount = bankAccountDao.
-                    getForUpdateBankAccountById(con, transaction.getFromBankAccountId());
+        bankAccountDao.updateBankAccount(fromBankAccount, con);
+        checkpointBalances(con, transaction.getId(), fromBankAccount);
 
-            BankAccount toBankAccount = bankAccountDao.
-                    getForUpdateBankAccountById(con, transaction.getToBankAccountId());
+        transaction.setStatus(TransactionStatus.PROCESSING);
+        updateTransaction(transaction, con);
 
-            BigDecimal amountToWithdraw = moneyExchangeService.exchange(
-                    transaction.getAmount(),
-                    transaction.getCurrency(),
-                    fromBankAccount.getCurrency()
-            );
-            BigDecimal newBlockedAmount = fromBankAccount.getBlockedAmount().subtract(amountToWithdraw);
-            BigDecimal newBalance = fromBankAccount.getBalance().subtract(amountToWithdraw);
+        return true;
+    }
 
-            if (newBlockedAmount.compareTo(BigDecimal.ZERO) < 0 || newBalance.compareTo(BigDecimal.ZERO) < 0) {
-                transaction.setStatus(TransactionStatus.FAILED);
-                transaction.setFailMessage(String.format("There is no enough money. Current balance is %f",
-                        fromBankAccount.getBalance().doubleValue()));
-            } else {
-                fromBankAccount.setBlockedAmount(newBlockedAmount);
-                fromBankAccount.setBalance(newBalance);
+    /**
+     * The commit step of the cross shard transfer. The target Bank Account is credited and the credit is recorded
+     * in the <code>cross_shard_credit</code> table of the target shard in one database's transaction. The record
+     * makes the step idempotent: the transfer which has been already credited is never credited again, even if
+     * two recoveries run at the same time, as the second insert violates the primary key and rolls back the credit.
+     * Then the PROCESSING transaction is marked as SUCCEED in the source shard.
+     *
+     * @param transaction the PROCESSING transaction which source Bank Account is already debited
+     */
+    void settleCrossShardTransfer(Transaction transaction) {
+        creditCrossShardTransfer(transaction);
+
+        daoManager.executeQuery(shardOf(transaction.getId()), ConnectionPool.SETTLEMENT,
+                COMPLETE_CROSS_SHARD_TRANSACTION_SQL, completeTransaction -> {
+                    completeTransaction.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                    completeTransaction.setLong(2, transaction.getId());
+
+                    int completed = completeTransaction.executeUpdate();
+                    if (completed > 0) {
+                        changeDao.transactionChanged(completeTransaction.getConnection(), transaction.getId(),
+                                TransactionStatus.SUCCEED);
+                    }
+
+                    return completed;
+                });
+
+        transaction.setStatus(TransactionStatus.SUCCEED);
+        modified(TRANSACTION_TABLE_NAME, transaction.getId());
+        published(transaction);
+    }
+
+    private void settleCrossShardTransferQuietly(Transaction transaction) {
+        try {
+            settleCrossShardTransfer(transaction);
+        } catch (RuntimeException e) {
+            failureLog.error("The cross shard transaction " + transaction.getId() +
+                    " will be completed by the recovery", e);
+        }
+    }
 
-                bankAccountDao.updateBankAccount(fromBankAccount, con);
+    private void creditCrossShardTransfer(Transaction transaction) {
+        Connection con = null;
+        try {
+            con = getConnection(shardOf(transaction.getToBankAccountId()), ConnectionPool.SETTLEMENT);
+
+            boolean credited = daoManager.executeQueryInConnection(con, GET_CROSS_SHARD_CREDIT_SQL, getCredit -> {
+                getCredit.setLong(1, transaction.getId());
+                try (ResultSet creditRS = getCredit.executeQuery()) {
+                    return creditRS != null && creditRS.next();
+                }
+            }).getResult();
+
+            if (!credited) {
+                BankAccount toBankAccount = bankAccountDao.getForUpdateBankAccountById(con,
+                        transaction.getToBankAccountId());
+
+                if (toBankAccount == null) {
+                    throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+                }
 
                 BigDecimal amountToTransfer = moneyExchangeService.exchange(
                         transaction.getAmount(),
@@ -284,31 +1781,204 @@ public class TransactionDao extends  BaseDao{
                 toBankAccount.setBalance(toBankAccount.getBalance().add(amountToTransfer));
 
                 bankAccountDao.updateBankAccount(toBankAccount, con);
+                checkpointBalances(con, transaction.getId(), toBankAccount);
 
-                transaction.setStatus(TransactionStatus.SUCCEED);
-            }
+                daoManager.executeQueryInConnection(con, INSERT_CROSS_SHARD_CREDIT_SQL, insertCredit -> {
+                    insertCredit.setLong(1, transaction.getId());
+                    insertCredit.setLong(2, transaction.getToBankAccountId());
+                    insertCredit.setBigDecimal(3, amountToTransfer);
+                    insertCredit.setBigDecimal(4, transaction.getAmount());
+                    insertCredit.setInt(5, transaction.getCurrency().getId());
+                    insertCredit.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
 
-            updateTransaction(transaction, con);
+                    return insertCredit.executeUpdate();
+                });
+            }
 
             con.commit();
-        } catch (RuntimeException | SQLException e) {
+
+            modified(BANK_ACCOUNT_TABLE_NAME, transaction.getToBankAccountId());
+        } catch (RuntimeException | SQLException | ObjectModificationException e) {
             DaoManager.safeRollback(con);
-            if (transaction != null) {
-                transaction.setStatus(TransactionStatus.FAILED);
-                StringWriter sw = new StringWriter();
-                e.printStackTrace(new PrintWriter(sw));
-                String exceptionAsString = String.format("Transaction has been rolled back as it was unexpected exception: %s",
-                        sw.toString()).substring(0, 5000);
-                transaction.setFailMessage(exceptionAsString);
-                updateTransaction(transaction);
-            }
-            log.error("Unexpected exception", e);
             throw new InvalidOperationExecution(e);
         } finally {
             DaoManager.quietlyClose(con);
         }
     }
 
+    /**
+     * Completes cross shard transfers which source Bank Account has been debited but which have not been settled,
+     * for example because the process has been stopped between two steps. Transfers are only rolled forward, so
+     * the money withdrawn is always credited to the target Bank Account.
+     *
+     * @param updatedBefore only PROCESSING transactions updated before this date will be completed. It should be
+     *                      far enough in the past to not interfere with transfers being executed right now
+     * @return the number of completed transactions
+     */
+    public int recoverCrossShardTransfers(java.util.Date updatedBefore) {
+        int recovered = 0;
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            Collection<Transaction> staleTransactions = daoManager.executeQuery(shard, ConnectionPool.SETTLEMENT,
+                    GET_STALE_CROSS_SHARD_TRANSACTIONS_SQL, getTransactions -> {
+                        Collection<Transaction> transactions = new ArrayList<>();
+
+                        getTransactions.setTimestamp(1, new Timestamp(updatedBefore.getTime()));
+                        try (ResultSet transactionsRS = getTransactions.executeQuery()) {
+                            if (transactionsRS != null) {
+                                while (transactionsRS.next()) {
+                                    transactions.add(extractTransactionFromResultSet(transactionsRS));
+                                }
+                            }
+                        }
+
+                        return transactions;
+                    }).getResult();
+
+            for (Transaction transaction : staleTransactions) {
+                try {
+                    settleCrossShardTransfer(transaction);
+                    recovered++;
+                } catch (RuntimeException e) {
+                    failureLog.error("The cross shard transaction " + transaction.getId() +
+                            " could not be recovered", e);
+                }
+            }
+        }
+
+        if (recovered > 0) {
+            log.info("{} cross shard transaction(s) have been recovered", recovered);
+        }
+
+        return recovered;
+    }
+
+    /**
+     * Executes the work optimistically and repeats it from the beginning after every conflict. The attempt after
+     * the last optimistic one locks Bank Accounts, so the work is always done after a bounded number of attempts.
+     *
+     * @param work the work which opens, commits and closes its own database's transaction
+     * @return the result of the work
+     * @throws ObjectModificationException any exception of the work except conflicts of the optimistic attempts
+     */
+    private static <T> T withOptimisticRetries(OptimisticWork<T> work) throws ObjectModificationException {
+        for (int attempt = 1; ; attempt++) {
+            boolean forceLock = attempt > OPTIMISTIC_LOCKING_MAX_ATTEMPTS;
+            try {
+                return work.execute(forceLock);
+            } catch (ObjectModificationException e) {
+                if (forceLock || e.getType() != ExceptionType.CONCURRENT_MODIFICATION) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface OptimisticWork<T> {
+        /**
+         * @param forceLock true if Bank Accounts should be locked regardless of their conflict rate
+         */
+        T execute(boolean forceLock) throws ObjectModificationException;
+    }
+
+    /**
+     * @param con  the <code>Connection</code> to be used for this query
+     * @param id   the Bank Account id
+     * @param lock true if the Bank Account should be locked by <code>SELECT ... FOR UPDATE</code>
+     * @return the Bank Account with its version. null if not found
+     */
+    private BankAccount readBankAccount(Connection con, Long id, boolean lock) {
+        return lock ? bankAccountDao.getForUpdateBankAccountById(con, id) : bankAccountDao.getBankAccountById(con, id);
+    }
+
+    /**
+     * Reads both Bank Accounts of the transfer. Locked accounts are always locked in the ascending order of their
+     * ids, so two opposite transfers executed at the same time could not deadlock each other.
+     *
+     * @param con               the <code>Connection</code> to be used for these queries
+     * @param fromBankAccountId the source Bank Account id
+     * @param toBankAccountId   the target Bank Account id
+     * @param lock              true if Bank Accounts should be locked by <code>SELECT ... FOR UPDATE</code>
+     * @return the source and the target Bank Accounts in this order. Any of them could be null if not found
+     */
+    private BankAccount[] readBankAccounts(Connection con, Long fromBankAccountId, Long toBankAccountId,
+                                           boolean lock) {
+        if (fromBankAccountId.compareTo(toBankAccountId) <= 0) {
+            BankAccount fromBankAccount = readBankAccount(con, fromBankAccountId, lock);
+            return new BankAccount[]{fromBankAccount, readBankAccount(con, toBankAccountId, lock)};
+        }
+
+        BankAccount toBankAccount = readBankAccount(con, toBankAccountId, lock);
+        return new BankAccount[]{readBankAccount(con, fromBankAccountId, lock), toBankAccount};
+    }
+
+    /**
+     * Updates both Bank Accounts of the transfer in the ascending order of their ids. The update takes the row lock
+     * even if the row has been read without locking, so the order prevents deadlocks of opposite transfers.
+     */
+    private void updateBankAccounts(Connection con, BankAccount fromBankAccount, BankAccount toBankAccount)
+            throws ObjectModificationException {
+        if (fromBankAccount.getId().compareTo(toBankAccount.getId()) <= 0) {
+            bankAccountDao.updateBankAccount(fromBankAccount, con);
+            bankAccountDao.updateBankAccount(toBankAccount, con);
+        } else {
+            bankAccountDao.updateBankAccount(toBankAccount, con);
+            bankAccountDao.updateBankAccount(fromBankAccount, con);
+        }
+    }
+
+    /**
+     * Reports the committed status change of the transaction to subscribers and to the settlement backlog
+     */
+    private void published(Transaction transaction) {
+        transactionEvents.published(transaction);
+        settlementBacklog.published(transaction);
+    }
+
+    /**
+     * @param e the exception which interrupted the transaction execution
+     * @return the compact failure code of the exception
+     */
+    private static TransactionFailCode failCodeOf(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return TransactionFailCode.DATABASE_ERROR;
+            }
+        }
+
+        return TransactionFailCode.UNEXPECTED_ERROR;
+    }
+
+    /**
+     * Builds the short failure detail from the root cause of the exception. The stack trace is not rendered as it
+     * is written only into the rate limited log.
+     *
+     * @param e the exception which interrupted the transaction execution
+     * @return the root cause class name and message
+     */
+    private static String failMessageOf(Throwable e) {
+        Throwable rootCause = e;
+        while (rootCause.getCause() != null && rootCause.getCause() != rootCause) {
+            rootCause = rootCause.getCause();
+        }
+
+        String message = rootCause.getMessage();
+        return message == null ? rootCause.getClass().getSimpleName() :
+                rootCause.getClass().getSimpleName() + ": " + message;
+    }
+
+    /**
+     * @return the fail message cut to the length of <code>failMessage</code> column
+     */
+    private static String truncateFailMessage(String failMessage) {
+        if (failMessage == null || failMessage.length() <= FAIL_MESSAGE_MAX_LENGTH) {
+            return failMessage;
+        }
+
+        return failMessage.substring(0, FAIL_MESSAGE_MAX_LENGTH);
+    }
+
     /**
      * Returns the Transaction by the ID specified. Method which is not closing the connection once
      * result will be obtained.
@@ -330,6 +2000,26 @@ public class TransactionDao extends  BaseDao{
         }).getResult();
     }
 
+    /**
+     * @param transaction the Transaction to be inserted
+     * @return the executor of <code>INSERT_TRANSACTION_SQL</code> which sets the generated id into the Transaction
+     * and logs the new Transaction into the change log in the same database's transaction
+     */
+    private DaoManager.QueryExecutor<Transaction> insertTransaction(Transaction transaction) {
+        DaoManager.QueryExecutor<Transaction> creationQueryExecutor =
+                new DaoManager.CreationQueryExecutor<>(transaction, TransactionDao::fillInPreparedStatement);
+
+        return insertTransaction -> {
+            Transaction createdTransaction = creationQueryExecutor.execute(insertTransaction);
+            if (createdTransaction != null) {
+                changeDao.transactionChanged(insertTransaction.getConnection(), createdTransaction.getId(),
+                        createdTransaction.getStatus());
+            }
+
+            return createdTransaction;
+        };
+    }
+
     /**
      * Updates the Transaction with changed parameters <code>status, failMessage and updateDate</code>. The method
      * is private as it should not be used by anyone except this class
@@ -354,6 +2044,7 @@ public class TransactionDao extends  BaseDao{
                 "update " + TRANSACTION_TABLE_NAME +
                         " set " +
                         TRANSACTION_STATUS_ROW + " = ?, " +
+                        FAIL_CODE_ROW + " = ?, " +
                         FAIL_MESSAGE_ROW + " = ?, " +
                         TRANSACTION_UPDATE_DATE_ROW + " = ? " +
                         "where " + TRANSACTION_ID_ROW + " = ?";
@@ -362,22 +2053,30 @@ public class TransactionDao extends  BaseDao{
 
         DaoManager.QueryExecutor<Integer> queryExecutor = updateTransaction -> {
             updateTransaction.setInt(1, transaction.getStatus().getId());
-            updateTransaction.setString(2, transaction.getFailMessage());
-            updateTransaction.setDate(3, new Date(new java.util.Date().getTime()));
-            updateTransaction.setLong(4, transaction.getId());
+            updateTransaction.setString(2, failCodeName(transaction));
+            updateTransaction.setString(3, truncateFailMessage(transaction.getFailMessage()));
+            updateTransaction.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            updateTransaction.setLong(5, transaction.getId());
+
+            int updated = updateTransaction.executeUpdate();
+            if (updated > 0) {
+                changeDao.transactionChanged(updateTransaction.getConnection(), transaction.getId(),
+                        transaction.getStatus());
+            }
 
-            return updateTransaction.executeUpdate();
+            return updated;
         };
 
         int result;
         if (con == null) {
-            result = daoManager.executeQuery(UPDATE_TRANSACTION_SQL, queryExecutor).getResult();
+            result = daoManager.executeQuery(shardOf(transaction.getId()), ConnectionPool.WRITE,
+                    UPDATE_TRANSACTION_SQL, queryExecutor).getResult();
         } else {
             result = daoManager.executeQueryInConnection(con, UPDATE_TRANSACTION_SQL, queryExecutor).getResult();
         }
 
         if (result == 0) {
-            throw new ObjectModificationException(ExceptionType.OBJECT_IS_NOT_FOUND);
+            throw ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
         }
     }
 
@@ -390,21 +2089,32 @@ public class TransactionDao extends  BaseDao{
      * @param transaction       the Transaction which should be used to fill in
      */
     private static void fillInPreparedStatement(PreparedStatement preparedStatement, Transaction transaction) {
+        //The transaction which is not scheduled could be executed since its creation
+        if (transaction.getExecuteAt() == null) {
+            transaction.setExecuteAt(transaction.getCreationDate());
+        }
+
         try {
             preparedStatement.setLong(1, transaction.getFromBankAccountId());
             preparedStatement.setLong(2, transaction.getToBankAccountId());
             preparedStatement.setBigDecimal(3, transaction.getAmount());
             preparedStatement.setInt(4, transaction.getCurrency().getId());
             preparedStatement.setInt(5, transaction.getStatus().getId());
-            preparedStatement.setString(6, transaction.getFailMessage());
-            preparedStatement.setDate(7, new Date(transaction.getCreationDate().getTime()));
-            preparedStatement.setDate(8, new Date(transaction.getUpdateDate().getTime()));
+            preparedStatement.setString(6, truncateFailMessage(transaction.getFailMessage()));
+            preparedStatement.setTimestamp(7, new Timestamp(transaction.getCreationDate().getTime()));
+            preparedStatement.setTimestamp(8, new Timestamp(transaction.getUpdateDate().getTime()));
+            preparedStatement.setString(9, failCodeName(transaction));
+            preparedStatement.setTimestamp(10, new Timestamp(transaction.getExecuteAt().getTime()));
         } catch (SQLException e) {
             log.error("Transactions prepared statement could not be initialized by values", e);
         }
 
     }
 
+    private static String failCodeName(Transaction transaction) {
+        return transaction.getFailCode() == null ? null : transaction.getFailCode().name();
+    }
+
     /**
      * The opposite method to {@link #fillInPreparedStatement(PreparedStatement, Transaction)} which is
      * extracts Transaction parameters from the result set
@@ -422,8 +2132,11 @@ public class TransactionDao extends  BaseDao{
         transaction.setCurrency(Currency.valueOf(transactionsRS.getInt(TRANSACTION_CURRENCY_ROW)));
         transaction.setStatus(TransactionStatus.valueOf(transactionsRS.getInt(TRANSACTION_STATUS_ROW)));
         transaction.setFailMessage(transactionsRS.getString(FAIL_MESSAGE_ROW));
-        transaction.setCreationDate(transactionsRS.getDate(TRANSACTION_CREATION_DATE_ROW));
-        transaction.setUpdateDate(transactionsRS.getDate(TRANSACTION_UPDATE_DATE_ROW));
+        String failCode = transactionsRS.getString(FAIL_CODE_ROW);
+        transaction.setFailCode(failCode == null ? null : TransactionFailCode.valueOf(failCode));
+        transaction.setCreationDate(transactionsRS.getTimestamp(TRANSACTION_CREATION_DATE_ROW));
+        transaction.setUpdateDate(transactionsRS.getTimestamp(TRANSACTION_UPDATE_DATE_ROW));
+        transaction.setExecuteAt(transactionsRS.getTimestamp(TRANSACTION_EXECUTE_AT_ROW));
         return transaction;
     }
 }
@@ -0,0 +1,50 @@
+package com.revolut.money.transfer.db;
+
+/**
+ * The independent connection pools of the application. Every workload takes connections only from its own pool so
+ * busy background settlement could not starve API reads and vice versa. The size of every pool could be overridden
+ * by the <code>transfer.pool.&lt;name&gt;.size</code> system property
+ */
+public enum ConnectionPool {
+    /**
+     * Read only queries of the API
+     */
+    READ(10),
+    /**
+     * Interactive writes of the API: transaction and bank account creation and update
+     */
+    WRITE(10),
+    /**
+     * Background settlement and maintenance jobs
+     */
+    SETTLEMENT(4),
+    /**
+     * Read only scans of the ledger reconciliation. The size of the pool limits the number of ranges scanned at once
+     */
+    RECONCILIATION(2),
+    /**
+     * Read only queries of the API served by the replica database. See {@link ReadRoutingDataSource}
+     */
+    REPLICA(10);
+
+    private final int defaultSize;
+
+    ConnectionPool(int defaultSize) {
+        this.defaultSize = defaultSize;
+    }
+
+    public String getPoolName() {
+        return "transfer-" + name().toLowerCase();
+    }
+
+    /**
+     * @return true if the pool is connected to the replica database instead of the primary one
+     */
+    public boolean isReplica() {
+        return this == REPLICA;
+    }
+
+    public int getSize() {
+        return Integer.getInteger("transfer.pool." + name().toLowerCase() + ".size", defaultSize);
+    }
+}
@@ -2,6 +2,7 @@ package com.revolut.money.transfer.db;
 
 import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
 import com.revolut.money.transfer.model.BaseModel;
+import com.revolut.money.transfer.utils.RateLimitedLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,27 +12,94 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 
 /**
  * Utilities class contains a number of methods to manipulate with the data base.
- * This class is the owner of DataSource Factory and responsible for selecting required DataSource
+ * This class is the owner of DataSource Factory and responsible for selecting required DataSource.
+ * Methods without the shard parameter use the first shard.
+ * <p>
+ * Failures are logged through the rate limited log once, where they have happened. Failures of nested queries
+ * which have been already wrapped into <code>InvalidOperationExecution</code> are rethrown as they are.
  */
 public class DaoManager {
 
     private static final Logger log = LoggerFactory.getLogger(DaoManager.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log, 10, 60_000);
 
     private static final DaoManager DAO_MANAGER = new DaoManager();
 
-    private static final DataSource DATA_SOURCE = DataSourceFactory.getH2DataSource();
+    private static final List<Map<ConnectionPool, DataSource>> DATA_SOURCES = new ArrayList<>();
+
+    static {
+        for (int shard = 0; shard < DataSourceFactory.getShardCount(); shard++) {
+            Map<ConnectionPool, DataSource> shardDataSources = new EnumMap<>(ConnectionPool.class);
+            for (ConnectionPool pool : ConnectionPool.values()) {
+                shardDataSources.put(pool, DataSourceFactory.getH2DataSource(shard, pool));
+            }
+            DATA_SOURCES.add(shardDataSources);
+        }
+    }
 
     private DaoManager() {
 
     }
 
+    /**
+     * @return the connection from the {@link ConnectionPool#WRITE} pool
+     */
     public  Connection getConnection() throws SQLException {
-        return DATA_SOURCE.getConnection();
+        return getConnection(ConnectionPool.WRITE);
+    }
+
+    /**
+     * @param pool the pool which connection should be provided
+     * @return the connection from the particular pool
+     */
+    public Connection getConnection(ConnectionPool pool) throws SQLException {
+        return getConnection(0, pool);
+    }
+
+    /**
+     * @param shard the shard which database should be used
+     * @param pool  the pool which connection should be provided
+     * @return the connection from the particular pool of the shard
+     */
+    public Connection getConnection(int shard, ConnectionPool pool) throws SQLException {
+        return DATA_SOURCES.get(shard).get(pool).getConnection();
+    }
+
+    /**
+     * Starts every connection pool of every shard by taking one connection from it. Pools are started lazily by the
+     * first connection requested otherwise, so the first requests served would wait for connections to be opened.
+     */
+    public void startPools() {
+        for (Map<ConnectionPool, DataSource> shardDataSources : DATA_SOURCES) {
+            for (DataSource dataSource : shardDataSources.values()) {
+                quietlyClose(obtainConnection(dataSource));
+            }
+        }
+    }
+
+    private static Connection obtainConnection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * @param shard the shard which pools should be described
+     * @return the connection wait time and usage metrics of every pool of the shard
+     */
+    public Map<ConnectionPool, PoolMetrics> getPoolMetrics(int shard) {
+        return H2DataSource.getPoolMetrics(shard);
     }
 
     /**
@@ -63,11 +131,68 @@ public class DaoManager {
      * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
      */
     public <E> QueryResult<E> executeQuery(String query, QueryExecutor<E> queryExecutor) {
+        return executeQuery(ConnectionPool.WRITE, query, queryExecutor);
+    }
+
+    /**
+     * The same logic as for the <code>executeQuery</code> method but the connection is taken from the read routing
+     * DataSource: from the replica while it is fresh enough and from the {@link ConnectionPool#READ} pool otherwise.
+     * Should be used only for queries which don't modify and lock anything and could return data as old as the
+     * replica staleness bound. Use <code>executeQuery(ConnectionPool.READ, ...)</code> to read the latest data.
+     *
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    public <E> QueryResult<E> executeReadQuery(String query, QueryExecutor<E> queryExecutor) {
+        return executeReadQuery(0, query, queryExecutor);
+    }
+
+    /**
+     * The same logic as for the <code>executeReadQuery</code> method but the query is executed in the shard provided.
+     *
+     * @param shard         the shard which database should be used
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    public <E> QueryResult<E> executeReadQuery(int shard, String query, QueryExecutor<E> queryExecutor) {
+        return executeQuery(DataSourceFactory.getReadRoutingDataSource(shard), query, queryExecutor);
+    }
+
+    /**
+     * The same logic as for the <code>executeQuery</code> method but the connection is taken from the pool provided.
+     *
+     * @param pool          the pool which connection should be used
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    public <E> QueryResult<E> executeQuery(ConnectionPool pool, String query, QueryExecutor<E> queryExecutor) {
+        return executeQuery(0, pool, query, queryExecutor);
+    }
+
+    /**
+     * The same logic as for the <code>executeQuery</code> method but the connection is taken from the pool of the
+     * shard provided.
+     *
+     * @param shard         the shard which database should be used
+     * @param pool          the pool which connection should be used
+     * @param query         the query string which will be passed into <code>Connection.preparedStatement</code> method
+     * @param queryExecutor the executor with only one method accepting <code>PreparedStatement</code> instance created
+     * @return query result object with the only method <code>getResult</code> returns the result of queryExecutor
+     */
+    public <E> QueryResult<E> executeQuery(int shard, ConnectionPool pool, String query,
+                                           QueryExecutor<E> queryExecutor) {
+        return executeQuery(DATA_SOURCES.get(shard).get(pool), query, queryExecutor);
+    }
+
+    private <E> QueryResult<E> executeQuery(DataSource dataSource, String query, QueryExecutor<E> queryExecutor) {
         Connection con = null;
         PreparedStatement preparedStatement = null;
 
         try {
-            con = DATA_SOURCE.getConnection();
+            con = dataSource.getConnection();
             preparedStatement = con.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
 
             QueryResult<E> qr = new QueryResult<>(queryExecutor.execute(preparedStatement));
@@ -77,8 +202,7 @@ public class DaoManager {
             return qr;
         } catch (Throwable th) {
             safeRollback(con);
-            log.error("Unexpected exception", th);
-            throw new InvalidOperationExecution(th);
+            throw wrap(th);
         } finally {
             quietlyClose(preparedStatement);
 
@@ -104,19 +228,33 @@ public class DaoManager {
 
             return new QueryResult<>(queryExecutor.execute(preparedStatement));
         } catch (Throwable th) {
-            log.error("Unexpected exception", th);
-            throw new InvalidOperationExecution(th);
+            throw wrap(th);
         } finally {
             quietlyClose(preparedStatement);
         }
     }
 
+    /**
+     * Logs the failure unless it has been already logged by the nested query
+     *
+     * @param th the failure of the query
+     * @return the exception to be thrown
+     */
+    private static InvalidOperationExecution wrap(Throwable th) {
+        if (th instanceof InvalidOperationExecution) {
+            return (InvalidOperationExecution) th;
+        }
+
+        failureLog.error("Unexpected exception", th);
+        return new InvalidOperationExecution(th);
+    }
+
     private static void quietlyClose(PreparedStatement preparedStatement) {
         if (preparedStatement != null) {
             try {
                 preparedStatement.close();
             } catch (SQLException e) {
-                log.error("Unexpected exception", e);
+                failureLog.error("Unexpected exception", e);
             }
         }
 
@@ -127,7 +265,7 @@ public class DaoManager {
             try {
                 con.close();
             } catch (SQLException e) {
-                log.error("Unexpected exception", e);
+                failureLog.error("Unexpected exception", e);
             }
         }
     }
@@ -137,7 +275,7 @@ public class DaoManager {
             try {
                 con.rollback();
             } catch (SQLException e) {
-                log.error("Unexpected exception", e);
+                failureLog.error("Unexpected exception", e);
             }
         }
     }
@@ -1,12 +1,25 @@
 package com.revolut.money.transfer.db;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.SHARD_COUNT;
 
 /**
  * This class provides various DataSources
  */
 public class DataSourceFactory {
+    private static final List<DataSource> READ_ROUTING_DATA_SOURCES = new ArrayList<>(SHARD_COUNT);
 
+    static {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            READ_ROUTING_DATA_SOURCES.add(new ReadRoutingDataSource(
+                    H2DataSource.getInstance(shard, ConnectionPool.READ),
+                    H2DataSource.getInstance(shard, ConnectionPool.REPLICA),
+                    ReplicaSynchronizer.getInstance()));
+        }
+    }
 
     /**
      * This method provides H2DataSource
@@ -16,6 +29,52 @@ public class DataSourceFactory {
             return H2DataSource.getInstance();
     }
 
+    /**
+     * This method provides H2DataSource of the particular connection pool
+     * @param pool the pool which connections should be provided
+     * @return
+     */
+    public static DataSource getH2DataSource(ConnectionPool pool){
+        return H2DataSource.getInstance(pool);
+    }
+
+    /**
+     * This method provides H2DataSource of the particular connection pool of the shard
+     * @param shard the shard which database should be used
+     * @param pool the pool which connections should be provided
+     * @return
+     */
+    public static DataSource getH2DataSource(int shard, ConnectionPool pool){
+        return H2DataSource.getInstance(shard, pool);
+    }
+
+    /**
+     * This method provides the DataSource for read only queries which is routed to the replica while it is fresh
+     * enough and to the {@link ConnectionPool#READ} pool of the primary otherwise
+     * @param shard the shard which database should be used
+     * @return
+     */
+    public static DataSource getReadRoutingDataSource(int shard){
+        return READ_ROUTING_DATA_SOURCES.get(shard);
+    }
+
+    /**
+     * @return the number of shards which Bank Accounts are partitioned across
+     */
+    public static int getShardCount(){
+        return SHARD_COUNT;
+    }
+
+    /**
+     * Bank Accounts and Transactions are partitioned by the hash of their id which is the id itself, so
+     * every shard generates only ids which belong to it
+     * @param id the id of Bank Account or Transaction
+     * @return the shard where the row with the id provided is stored
+     */
+    public static int getShard(Long id){
+        return (int) Math.floorMod(id, (long) SHARD_COUNT);
+    }
+
     /**
      * This method provides MySQLDataSource. Right now It is returning same H2DataSource
      * @return
@@ -5,10 +5,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.revolut.money.transfer.utils.Constants.BANK_ACCOUNT_ID_ROW;
+import static com.revolut.money.transfer.utils.Constants.BANK_ACCOUNT_TABLE_NAME;
+import static com.revolut.money.transfer.utils.Constants.RECURRING_PLAN_ID_ROW;
+import static com.revolut.money.transfer.utils.Constants.RECURRING_PLAN_TABLE_NAME;
+import static com.revolut.money.transfer.utils.Constants.SHARD_COUNT;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_ID_ROW;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_TABLE_NAME;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_TO_ACCOUNT_ROW;
 
 /**
- * Provides a singleton object which has <code>getConnection</code> method and abstracts the application from the
- * particular database implementation.
+ * Provides singleton objects which have <code>getConnection</code> method and abstracts the application from the
+ * particular database implementation. Every shard is the separate in-memory primary database with its own
+ * connection pool for every {@link ConnectionPool}. {@link ConnectionPool#REPLICA} of the shard is connected to the
+ * second in-memory database kept in sync by {@link ReplicaSynchronizer}.
+ * <p>
+ * There is only one shard by default. Once the <code>transfer.shards.count</code> system property is more than 1,
+ * ids of Bank Accounts and Transactions are generated by every shard with the step of shards count, so the shard of
+ * the row is always <code>id mod shards count</code>. Transactions are stored in the shard of the source Bank Account.
  * <p>
  * TODO: Use the interface and provide this object into DTO class constructor directly. To be able replace the database
  * implementation easily
@@ -16,31 +41,156 @@ import javax.sql.DataSource;
 public class H2DataSource {
     private static final Logger log = LoggerFactory.getLogger(H2DataSource.class);
 
-    private static final HikariDataSource ds;
+    //The database is kept alive while the JVM is running even if there is no open connection.
+    //Lock timeout is enough to wait for all concurrent transfers of the same account
+    private static final String JDBC_URL = "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;TRACE_LEVEL_FILE=4";
+    private static final String REPLICA_JDBC_URL = "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;TRACE_LEVEL_FILE=4";
+    private static final String DATABASE_NAME = "test";
+    private static final String REPLICA_DATABASE_NAME = "replica";
+    //TODO login and password should be provided trough system variables
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "passsword";
+
+    private static final List<Map<ConnectionPool, HikariDataSource>> dataSources = new ArrayList<>(SHARD_COUNT);
+    private static final List<Map<ConnectionPool, PoolMetrics>> poolMetrics = new ArrayList<>(SHARD_COUNT);
 
     static {
-        ds = new HikariDataSource();
-        //initializing the in-memry H2 database and initialize it by the schema and some initial data
-        ds.setJdbcUrl("jdbc:h2:mem:test;" +
-                "INIT=RUNSCRIPT FROM 'classpath:db_schema/schema.sql'\\;RUNSCRIPT FROM 'classpath:db_schema/init_data.sql';" +
-                "TRACE_LEVEL_FILE=4");
-        //TODO login and password should be provided trough system variables
-        ds.setUsername("user");
-        ds.setPassword("passsword");
-        //We are using frequently manual transaction management in the app. So we don't want to have transaction
-        //commit for each request
-        ds.setAutoCommit(false);
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            //initializing the in-memry H2 databases by the schema and some initial data. It should be done only once.
+            //Otherwise every new connection of the pools would try to insert initial data again
+            initDatabase(jdbcUrl(shard, false), shard);
+            //The replica starts from the same initial data and then receives only rows changed on the primary, so
+            //the rows could arrive in any order. Integrity is already checked by the primary
+            initDatabase(jdbcUrl(shard, true), shard, "SET REFERENTIAL_INTEGRITY FALSE");
+
+            Map<ConnectionPool, HikariDataSource> shardDataSources = new EnumMap<>(ConnectionPool.class);
+            Map<ConnectionPool, PoolMetrics> shardPoolMetrics = new EnumMap<>(ConnectionPool.class);
+
+            for (ConnectionPool pool : ConnectionPool.values()) {
+                PoolMetrics metrics = new PoolMetrics();
+
+                HikariDataSource ds = new HikariDataSource();
+                ds.setPoolName(shard == 0 ? pool.getPoolName() : pool.getPoolName() + "-shard" + shard);
+                ds.setJdbcUrl(jdbcUrl(shard, pool.isReplica()));
+                ds.setUsername(USERNAME);
+                ds.setPassword(PASSWORD);
+                ds.setMaximumPoolSize(pool.getSize());
+                ds.setMetricsTrackerFactory(metrics);
+                //We are using frequently manual transaction management in the app. So we don't want to have
+                //transaction commit for each request
+                ds.setAutoCommit(false);
+
+                shardDataSources.put(pool, ds);
+                shardPoolMetrics.put(pool, metrics);
+            }
 
-        log.info("The database has been initialized");
+            dataSources.add(shardDataSources);
+            poolMetrics.add(Collections.unmodifiableMap(shardPoolMetrics));
+        }
+
+        log.info("The database has been initialized with {} shard(s)", SHARD_COUNT);
     }
 
     private H2DataSource() {
 
     }
 
-    public static DataSource getInstance(){
-        return ds;
+    private static String jdbcUrl(int shard, boolean replica) {
+        String databaseName = replica ? REPLICA_DATABASE_NAME : DATABASE_NAME;
+
+        return String.format(replica ? REPLICA_JDBC_URL : JDBC_URL,
+                shard == 0 ? databaseName : databaseName + "_shard" + shard);
+    }
+
+    private static void initDatabase(String jdbcUrl, int shard, String... additionalStatements) {
+        try (Connection con = DriverManager.getConnection(jdbcUrl, USERNAME, PASSWORD);
+             Statement statement = con.createStatement()) {
+            statement.execute("RUNSCRIPT FROM 'classpath:db_schema/schema.sql'");
+            statement.execute("RUNSCRIPT FROM 'classpath:db_schema/init_data.sql'");
+            if (SHARD_COUNT > 1) {
+                initShard(statement, shard);
+            }
+            for (String additionalStatement : additionalStatements) {
+                statement.execute(additionalStatement);
+            }
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
     }
 
+    /**
+     * Keeps only initial Bank Accounts of the shard and makes the shard to generate only ids which belong to it.
+     * The target Bank Account of the transaction could be in another shard, so its foreign key is dropped.
+     */
+    private static void initShard(Statement statement, int shard) throws SQLException {
+        restartIdentity(statement, BANK_ACCOUNT_TABLE_NAME, BANK_ACCOUNT_ID_ROW, shard);
+        restartIdentity(statement, TRANSACTION_TABLE_NAME, TRANSACTION_ID_ROW, shard);
+        restartIdentity(statement, RECURRING_PLAN_TABLE_NAME, RECURRING_PLAN_ID_ROW, shard);
+
+        statement.execute("delete from " + BANK_ACCOUNT_TABLE_NAME + " " +
+                "where mod(" + BANK_ACCOUNT_ID_ROW + ", " + SHARD_COUNT + ") <> " + shard);
 
+        String constraintName = null;
+        try (ResultSet constraintRS = statement.executeQuery("select FK_NAME " +
+                "from INFORMATION_SCHEMA.CROSS_REFERENCES " +
+                "where FKTABLE_NAME = '" + TRANSACTION_TABLE_NAME.toUpperCase() + "' " +
+                "and FKCOLUMN_NAME = '" + TRANSACTION_TO_ACCOUNT_ROW.toUpperCase() + "'")) {
+            if (constraintRS.next()) {
+                constraintName = constraintRS.getString(1);
+            }
+        }
+        if (constraintName != null) {
+            statement.execute("alter table " + TRANSACTION_TABLE_NAME + " drop constraint " + constraintName);
+        }
+    }
+
+    /**
+     * Restarts the identity of the table from the first id after already existing ones which belongs to the shard.
+     * Every next id is generated with the step of shards count.
+     */
+    private static void restartIdentity(Statement statement, String table, String idColumn, int shard)
+            throws SQLException {
+        long maxId;
+        try (ResultSet maxIdRS = statement.executeQuery(
+                "select coalesce(max(" + idColumn + "), 0) from " + table)) {
+            maxIdRS.next();
+            maxId = maxIdRS.getLong(1);
+        }
+
+        String sequenceName;
+        try (ResultSet sequenceRS = statement.executeQuery("select SEQUENCE_NAME from INFORMATION_SCHEMA.COLUMNS " +
+                "where TABLE_NAME = '" + table.toUpperCase() + "' and COLUMN_NAME = '" + idColumn.toUpperCase() + "'")) {
+            sequenceRS.next();
+            sequenceName = sequenceRS.getString(1);
+        }
+
+        long startWith = maxId + 1 + Math.floorMod(shard - (maxId + 1), SHARD_COUNT);
+        statement.execute("alter sequence " + sequenceName +
+                " restart with " + startWith + " increment by " + SHARD_COUNT);
+    }
+
+    /**
+     * @return the data source of {@link ConnectionPool#WRITE} pool of the first shard
+     */
+    public static DataSource getInstance() {
+        return getInstance(ConnectionPool.WRITE);
+    }
+
+    /**
+     * @return the data source of the pool of the first shard
+     */
+    public static DataSource getInstance(ConnectionPool pool) {
+        return getInstance(0, pool);
+    }
+
+    public static DataSource getInstance(int shard, ConnectionPool pool) {
+        return dataSources.get(shard).get(pool);
+    }
+
+    /**
+     * @return the connection wait time and usage metrics of every pool of the shard
+     */
+    public static Map<ConnectionPool, PoolMetrics> getPoolMetrics(int shard) {
+        return poolMetrics.get(shard);
+    }
 }
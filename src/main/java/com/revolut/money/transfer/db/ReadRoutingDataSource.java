@@ -0,0 +1,86 @@
+package com.revolut.money.transfer.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * The DataSource for read only queries which don't lock anything. Connections are taken from the replica while it is
+ * fresh enough according to {@link ReplicaSynchronizer#isFresh()} and from the primary otherwise, so a read never
+ * returns data older than the staleness bound.
+ * <p>
+ * Writes and <code>SELECT ... FOR UPDATE</code> queries should never use this DataSource.
+ */
+public class ReadRoutingDataSource implements DataSource {
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaSynchronizer replicaSynchronizer;
+
+    public ReadRoutingDataSource(DataSource primary, DataSource replica, ReplicaSynchronizer replicaSynchronizer) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaSynchronizer = replicaSynchronizer;
+    }
+
+    /**
+     * @return the DataSource which should serve the next read
+     */
+    DataSource route() {
+        return replicaSynchronizer.isFresh() ? replica : primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route().getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+        replica.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+        replica.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+
+        throw new SQLException("DataSource of type [" + getClass().getName() + "] cannot be unwrapped as [" +
+                iface.getName() + "]");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
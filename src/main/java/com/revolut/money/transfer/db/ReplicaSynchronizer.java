@@ -0,0 +1,279 @@
+package com.revolut.money.transfer.db;
+
+import com.revolut.money.transfer.utils.RateLimitedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.REPLICA_ENABLED;
+import static com.revolut.money.transfer.utils.Constants.REPLICA_MAX_STALENESS_MILLIS;
+import static com.revolut.money.transfer.utils.Constants.REPLICA_SYNC_CHUNK_SIZE;
+import static com.revolut.money.transfer.utils.Constants.REPLICA_SYNC_PERIOD_MILLIS;
+
+/**
+ * Keeps the replica database in sync with the primary one. DAOs report ids of the rows they have changed once the
+ * change is committed and the background job copies the current state of these rows from the primary into the
+ * replica of the same shard. Rows which don't exist in the primary anymore are deleted from the replica. Implements
+ * the singleton pattern.
+ * <p>
+ * The replica is fresh while its lag, the time since the start of the last fully applied synchronization, is not
+ * more than the staleness bound. Rows changed after that moment are recently modified and should be read from the
+ * primary, so clients always see their own writes.
+ */
+public class ReplicaSynchronizer {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSynchronizer.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log, 10, 60_000);
+
+    //All replicated tables have the id primary key
+    private static final String ID_COLUMN = "id";
+
+    private static final ReplicaSynchronizer REPLICA_SYNCHRONIZER = new ReplicaSynchronizer();
+
+    private final Map<String, Set<Long>> pendingIds = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Long>> modificationTimes = new ConcurrentHashMap<>();
+    private volatile long appliedUpTo = System.nanoTime();
+
+    private ReplicaSynchronizer() {
+        if (REPLICA_ENABLED) {
+            ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+            executorService.scheduleWithFixedDelay(this::synchronizeQuietly,
+                    REPLICA_SYNC_PERIOD_MILLIS, REPLICA_SYNC_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the singleton object of ReplicaSynchronizer class
+     */
+    public static ReplicaSynchronizer getInstance() {
+        return REPLICA_SYNCHRONIZER;
+    }
+
+    /**
+     * @see #markModified(String, Collection)
+     */
+    public void markModified(String table, Long... ids) {
+        markModified(table, Arrays.asList(ids));
+    }
+
+    /**
+     * Queues the rows to be copied into the replica. Should be called only after the change has been committed,
+     * otherwise the synchronization could copy the previous state of the rows and never come back to them.
+     *
+     * @param table the table where rows have been changed
+     * @param ids   the ids of inserted, updated or deleted rows
+     */
+    public void markModified(String table, Collection<Long> ids) {
+        if (!REPLICA_ENABLED || ids.isEmpty()) {
+            return;
+        }
+
+        Set<Long> pending = pendingIds.computeIfAbsent(table, t -> ConcurrentHashMap.newKeySet());
+        Map<Long, Long> times = modificationTimes.computeIfAbsent(table, t -> new ConcurrentHashMap<>());
+
+        for (Long id : ids) {
+            if (id != null) {
+                pending.add(id);
+            }
+        }
+
+        //The time is taken after ids have been queued, so any synchronization started after this time will see them
+        long now = System.nanoTime();
+        for (Long id : ids) {
+            if (id != null) {
+                times.merge(id, now, Math::max);
+            }
+        }
+    }
+
+    /**
+     * @param table the table of the row
+     * @param id    the id of the row
+     * @return true if the row has been changed after the last applied synchronization and the replica could
+     * return its previous state
+     */
+    public boolean isRecentlyModified(String table, Long id) {
+        Map<Long, Long> times = modificationTimes.get(table);
+        Long modificationTime = times == null ? null : times.get(id);
+
+        return modificationTime != null && modificationTime - appliedUpTo >= 0;
+    }
+
+    /**
+     * @return true if the replica is enabled and its lag is within the staleness bound
+     */
+    public boolean isFresh() {
+        return REPLICA_ENABLED && getLagMillis() <= REPLICA_MAX_STALENESS_MILLIS;
+    }
+
+    /**
+     * @return the time in milliseconds since the start of the last fully applied synchronization
+     */
+    public long getLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - appliedUpTo);
+    }
+
+    /**
+     * @return the number of rows waiting to be copied into the replica
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (Set<Long> pending : pendingIds.values()) {
+            count += pending.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Copies all queued rows from the primary into the replica. Rows which could not be copied are queued again and
+     * the lag keeps growing until they will be copied.
+     *
+     * @throws SQLException if any of rows could not be copied
+     */
+    public synchronized void synchronize() throws SQLException {
+        long start = System.nanoTime();
+
+        for (Map.Entry<String, Set<Long>> tablePendingIds : pendingIds.entrySet()) {
+            List<Long> ids = new ArrayList<>();
+            for (Iterator<Long> iterator = tablePendingIds.getValue().iterator(); iterator.hasNext(); ) {
+                ids.add(iterator.next());
+                iterator.remove();
+            }
+
+            Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+            for (Long id : ids) {
+                idsByShard.computeIfAbsent(DataSourceFactory.getShard(id), shard -> new ArrayList<>()).add(id);
+            }
+
+            try {
+                for (Map.Entry<Integer, List<Long>> shardIds : idsByShard.entrySet()) {
+                    List<Long> chunkIds = shardIds.getValue();
+                    for (int from = 0; from < chunkIds.size(); from += REPLICA_SYNC_CHUNK_SIZE) {
+                        copyRows(shardIds.getKey(), tablePendingIds.getKey(),
+                                chunkIds.subList(from, Math.min(from + REPLICA_SYNC_CHUNK_SIZE, chunkIds.size())));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                tablePendingIds.getValue().addAll(ids);
+                throw e;
+            }
+        }
+
+        appliedUpTo = start;
+
+        for (Map<Long, Long> times : modificationTimes.values()) {
+            times.values().removeIf(time -> time - start < 0);
+        }
+    }
+
+    private void synchronizeQuietly() {
+        try {
+            synchronize();
+        } catch (SQLException | RuntimeException e) {
+            failureLog.error("The replica could not be synchronized, the lag is " + getLagMillis() + " ms", e);
+        }
+    }
+
+    /**
+     * Copies the current state of the rows from the primary into the replica by one <code>MERGE</code> batch and
+     * deletes rows which don't exist in the primary anymore.
+     *
+     * @param shard the shard of all rows
+     * @param table the table to be synchronized
+     * @param ids   the ids of rows to be copied
+     */
+    private void copyRows(int shard, String table, List<Long> ids) throws SQLException {
+        String SELECT_ROWS_SQL = "select * from " + table + " where " + ID_COLUMN + " in (" +
+                placeholders(ids.size()) + ")";
+
+        Connection primaryCon = null;
+        Connection replicaCon = null;
+        try {
+            primaryCon = DataSourceFactory.getH2DataSource(shard, ConnectionPool.READ).getConnection();
+            replicaCon = DataSourceFactory.getH2DataSource(shard, ConnectionPool.REPLICA).getConnection();
+
+            Set<Long> existingIds = new HashSet<>();
+            try (PreparedStatement selectRows = primaryCon.prepareStatement(SELECT_ROWS_SQL)) {
+                setIds(selectRows, ids);
+                try (ResultSet rowsRS = selectRows.executeQuery()) {
+                    ResultSetMetaData metaData = rowsRS.getMetaData();
+                    try (PreparedStatement mergeRows = replicaCon.prepareStatement(mergeSql(table, metaData))) {
+                        while (rowsRS.next()) {
+                            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                                mergeRows.setObject(i, rowsRS.getObject(i));
+                            }
+                            mergeRows.addBatch();
+                            existingIds.add(rowsRS.getLong(ID_COLUMN));
+                        }
+                        if (!existingIds.isEmpty()) {
+                            mergeRows.executeBatch();
+                        }
+                    }
+                }
+            }
+
+            List<Long> deletedIds = new ArrayList<>(ids);
+            deletedIds.removeAll(existingIds);
+            if (!deletedIds.isEmpty()) {
+                String DELETE_ROWS_SQL = "delete from " + table + " where " + ID_COLUMN + " in (" +
+                        placeholders(deletedIds.size()) + ")";
+                try (PreparedStatement deleteRows = replicaCon.prepareStatement(DELETE_ROWS_SQL)) {
+                    setIds(deleteRows, deletedIds);
+                    deleteRows.executeUpdate();
+                }
+            }
+
+            replicaCon.commit();
+            primaryCon.commit();
+        } catch (SQLException | RuntimeException e) {
+            DaoManager.safeRollback(replicaCon);
+            DaoManager.safeRollback(primaryCon);
+            throw e;
+        } finally {
+            DaoManager.quietlyClose(replicaCon);
+            DaoManager.quietlyClose(primaryCon);
+        }
+    }
+
+    /**
+     * @return <code>MERGE</code> statement which inserts or replaces the row with all columns of the result set
+     */
+    private static String mergeSql(String table, ResultSetMetaData metaData) throws SQLException {
+        List<String> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnName(i));
+        }
+
+        return "merge into " + table + " (" + String.join(", ", columns) + ") key (" + ID_COLUMN + ") " +
+                "values (" + placeholders(columns.size()) + ")";
+    }
+
+    private static void setIds(PreparedStatement preparedStatement, List<Long> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            preparedStatement.setLong(i + 1, ids.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -1,22 +1,31 @@
 package com.revolut.money.transfer.exceptions;
 
+import com.revolut.money.transfer.utils.RateLimitedLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 
+import static com.revolut.money.transfer.utils.Constants.ADMISSION_RETRY_AFTER_SECONDS;
+
 /**
  * This class is an Exception Mapper which is responsible for common error output generation.
  * It handles any error fired and transform to appropriate <code>ApplicationException</code> object.
  * This exception object will be returned to the client with the appropriate status.
+ * <p>
+ * Business errors and client errors are expected outcomes of requests, they are logged only at the debug level
+ * without the stack trace. Other errors are logged with the stack trace through the rate limited log, so a burst of
+ * failing requests does not turn into a burst of logging.
  */
 @Provider
 public class ApplicationExceptionMapper implements ExceptionMapper<Throwable> {
     private static final Logger log = LoggerFactory.getLogger(ApplicationExceptionMapper.class);
+    private static final RateLimitedLogger failureLog = new RateLimitedLogger(log, 10, 60_000);
 
     @Override
     public Response toResponse(Throwable exception) {
@@ -37,16 +46,40 @@ public class ApplicationExceptionMapper implements ExceptionMapper<Throwable> {
             if (type == ExceptionType.OBJECT_IS_MALFORMED) {
                 serverError = serverError.status(Response.Status.INTERNAL_SERVER_ERROR);
             }
+            if (type == ExceptionType.SETTLEMENT_BACKLOG_EXCEEDED) {
+                serverError = serverError.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, ADMISSION_RETRY_AFTER_SECONDS);
+            }
             applicationException = new ApplicationException(type, exception.getMessage());
         } else {
             applicationException = new ApplicationException(ExceptionType.UNEXPECTED_EXCEPTION,
                     exception.getMessage());
         }
 
-        log.error("Uncaught exception", exception);
+        if (isExpected(exception)) {
+            log.debug("Request has been rejected: {}", exception.getMessage());
+        } else {
+            failureLog.error("Uncaught exception", exception);
+        }
         return serverError.entity(applicationException).build();
     }
 
+    /**
+     * @return true if the exception is the business error or the error of the client
+     */
+    private static boolean isExpected(Throwable exception) {
+        if (exception instanceof ObjectModificationException) {
+            return true;
+        }
+        if (exception instanceof WebApplicationException) {
+            Response response = ((WebApplicationException) exception).getResponse();
+            return response != null &&
+                    response.getStatusInfo().getFamily() == Response.Status.Family.CLIENT_ERROR;
+        }
+
+        return false;
+    }
+
     private static String computeExceptionMessage(Response response) {
         Response.StatusType statusInfo;
         if (response != null) {
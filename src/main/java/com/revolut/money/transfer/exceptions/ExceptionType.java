@@ -8,6 +8,9 @@ public enum ExceptionType {
     OBJECT_IS_MALFORMED("The entity passed has been malformed"),
     OBJECT_IS_NOT_FOUND("The entity with provided ID has not been found"),
     COULD_NOT_OBTAIN_ID("The system could not generate ID for this entity. Creation is failed."),
+    CONCURRENT_MODIFICATION("The entity has been modified concurrently"),
+    RATE_LIMIT_EXCEEDED("The client has made too many requests"),
+    SETTLEMENT_BACKLOG_EXCEEDED("The settlement is behind, new transactions are not accepted for a while"),
     UNEXPECTED_EXCEPTION("Unexpected exception");
 
     private String message;
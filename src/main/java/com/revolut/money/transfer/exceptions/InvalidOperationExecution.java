@@ -3,9 +3,11 @@ package com.revolut.money.transfer.exceptions;
 /**
  * Runtime exception which is used to be thrown when operation could not be executed. Most of time
  * when some unexpected SQLException occurred.
+ * <p>
+ * It only wraps the cause, so its own stack trace is not filled in: the cause keeps the one which matters.
  */
 public class InvalidOperationExecution extends RuntimeException {
     public InvalidOperationExecution(Throwable cause) {
-        super(cause);
+        super(cause == null ? null : cause.toString(), cause, true, false);
     }
 }
@@ -1,28 +1,52 @@
 package com.revolut.money.transfer.exceptions;
 
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * The exception which is thrown once some validation or data consistency error detected. It has additional
  * field {@link ExceptionType} which specify additional nature of the exception
+ * <p>
+ * It is an expected outcome of the request, not a bug, so it does not fill in the stack trace: the type and the
+ * message are all the client and the log need. The cause, if any, keeps its own stack trace. Exceptions without
+ * the message are not changed once created, so one instance per type is shared, see {@link #of(ExceptionType)}.
  */
 public class ObjectModificationException extends Exception {
+    private static final Map<ExceptionType, ObjectModificationException> PREALLOCATED =
+            new EnumMap<>(ExceptionType.class);
+
+    static {
+        for (ExceptionType exceptionType : ExceptionType.values()) {
+            PREALLOCATED.put(exceptionType, new ObjectModificationException(exceptionType));
+        }
+    }
+
     private ExceptionType type;
 
     public ObjectModificationException(ExceptionType exceptionType, Throwable cause) {
-        super(exceptionType.getMessage(), cause);
+        super(exceptionType.getMessage(), cause, false, false);
         type = exceptionType;
     }
 
     public ObjectModificationException(ExceptionType exceptionType) {
-        super(exceptionType.getMessage());
+        super(exceptionType.getMessage(), null, false, false);
         type = exceptionType;
     }
 
     public ObjectModificationException(ExceptionType exceptionType, String message) {
-        super(exceptionType.getMessage() + ": " + message);
+        super(exceptionType.getMessage() + ": " + message, null, false, false);
         type = exceptionType;
     }
 
+    /**
+     * @param exceptionType the type of the exception
+     * @return the shared exception of the type without the additional message and the cause
+     */
+    public static ObjectModificationException of(ExceptionType exceptionType) {
+        return PREALLOCATED.get(exceptionType);
+    }
+
     public ExceptionType getType() {
         return type;
     }
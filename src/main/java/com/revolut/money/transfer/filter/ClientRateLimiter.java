@@ -0,0 +1,104 @@
+package com.revolut.money.transfer.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets of clients. Every client could make <code>burst</code> requests at once and then
+ * <code>permitsPerSecond</code> requests per second.
+ * <p>
+ * The bucket is the single <code>AtomicLong</code> with the time when it would be full again, so a permit is taken by
+ * one compare-and-set without locks. The bucket which is full already is the same as the absent one, so such buckets
+ * are removed once the number of clients reaches <code>maxClients</code>, not more often than once per second. If all
+ * of them are still in use, new clients share one overflow bucket until some of them are removed, so the memory is
+ * bounded even if requests come from many addresses.
+ */
+public class ClientRateLimiter {
+    private static final long SWEEP_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long permitNanos;
+    private final long burstNanos;
+    private final int maxClients;
+    //Times are counted from the creation, so they are never negative and zero is the full bucket
+    private final long startNanos = System.nanoTime();
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflowBucket = new AtomicLong();
+    private final AtomicLong lastSweep = new AtomicLong(-SWEEP_PERIOD_NANOS);
+
+    public ClientRateLimiter(double permitsPerSecond, int burst, int maxClients) {
+        if (permitsPerSecond <= 0 || burst <= 0 || maxClients <= 0) {
+            throw new IllegalArgumentException("The rate, the burst and the number of clients should be positive");
+        }
+
+        this.permitNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1);
+        this.burstNanos = permitNanos * burst;
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Takes the permit from the bucket of the client if there is one
+     *
+     * @param client the remote address of the client
+     * @return 0 if the permit has been taken, otherwise the number of nanoseconds until the next permit
+     */
+    public long tryAcquire(String client) {
+        return tryAcquire(client, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param now nanoseconds since the creation of the limiter
+     */
+    long tryAcquire(String client, long now) {
+        AtomicLong bucket = bucketOf(client, now);
+
+        while (true) {
+            long fullAt = bucket.get();
+            long nextFullAt = Math.max(fullAt, now) + permitNanos;
+            long waitNanos = nextFullAt - now - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullAt, nextFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of buckets of separate clients
+     */
+    int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucketOf(String client, long now) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        if (buckets.size() >= maxClients) {
+            sweep(now);
+            if (buckets.size() >= maxClients) {
+                return overflowBucket;
+            }
+        }
+
+        return buckets.computeIfAbsent(client, key -> new AtomicLong());
+    }
+
+    /**
+     * Removes full buckets. The permit taken from the bucket while it is being removed is lost, which only lets
+     * the client make one more request
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_PERIOD_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+}
@@ -0,0 +1,61 @@
+package com.revolut.money.transfer.filter;
+
+import com.revolut.money.transfer.controller.HealthController;
+import com.revolut.money.transfer.exceptions.ApplicationException;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import org.glassfish.grizzly.http.server.Request;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests of the client which is over its budget by <code>429 Too Many Requests</code> with
+ * <code>Retry-After</code> before they are matched to resources, so a single client flooding the service could not
+ * take all database connections. Clients are told apart by the remote address only: keys sent by clients are not
+ * authenticated, so the flooding client would get the new budget by every new key and fill all buckets with them.
+ * Readiness checks of the load balancer are never limited.
+ */
+@PreMatching
+@Priority(Priorities.AUTHENTICATION)
+public class RateLimitFilter implements ContainerRequestFilter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String HEALTH_PATH = HealthController.BASE_URL.substring(1);
+
+    private final ClientRateLimiter rateLimiter;
+
+    @Inject
+    private Provider<Request> grizzlyRequest;
+
+    public RateLimitFilter(ClientRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (requestContext.getUriInfo().getPath().startsWith(HEALTH_PATH)) {
+            return;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(grizzlyRequest.get().getRemoteAddr());
+        if (waitNanos == 0) {
+            return;
+        }
+
+        long retryAfterSeconds = (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+        requestContext.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ApplicationException(ExceptionType.RATE_LIMIT_EXCEEDED,
+                        "Retry in " + retryAfterSeconds + " s"))
+                .build());
+    }
+}
@@ -0,0 +1,40 @@
+package com.revolut.money.transfer.json;
+
+import com.revolut.money.transfer.model.BankAccount;
+
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Writes {@link BankAccount} and collections of them as JSON with the same fields as Jackson does
+ */
+@Provider
+public class BankAccountJsonWriter extends ModelJsonWriter<BankAccount> {
+    private static final byte[] ID = JsonOutput.encode("{\"id\":");
+    private static final byte[] OWNER_NAME = JsonOutput.encode(",\"ownerName\":");
+    private static final byte[] BALANCE = JsonOutput.encode(",\"balance\":");
+    private static final byte[] BLOCKED_AMOUNT = JsonOutput.encode(",\"blockedAmount\":");
+    private static final byte[] CURRENCY = JsonOutput.encode(",\"currency\":");
+    private static final byte[] VERSION = JsonOutput.encode(",\"version\":");
+
+    public BankAccountJsonWriter() {
+        super(BankAccount.class);
+    }
+
+    @Override
+    protected void writeObject(BankAccount bankAccount, JsonOutput out) throws IOException {
+        out.writeRaw(ID);
+        out.writeNumber(bankAccount.getId());
+        out.writeRaw(OWNER_NAME);
+        out.writeString(bankAccount.getOwnerName());
+        out.writeRaw(BALANCE);
+        out.writeNumber(bankAccount.getBalance());
+        out.writeRaw(BLOCKED_AMOUNT);
+        out.writeNumber(bankAccount.getBlockedAmount());
+        out.writeRaw(CURRENCY);
+        out.writeEnum(bankAccount.getCurrency());
+        out.writeRaw(VERSION);
+        out.writeNumber(bankAccount.getVersion());
+        out.writeRaw('}');
+    }
+}
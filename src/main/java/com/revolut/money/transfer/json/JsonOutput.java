@@ -0,0 +1,214 @@
+package com.revolut.money.transfer.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Writes JSON values as UTF-8 straight into the buffer which is flushed into the output stream once it is full.
+ * Numbers and dates are formatted digit by digit and strings are encoded char by char, so no intermediate strings
+ * or byte arrays are created. Field names and other constant parts are expected to be encoded once by
+ * {@link #encode(String)}.
+ * <p>
+ * Values are written the same way the default Jackson <code>ObjectMapper</code> writes them: dates are the number of
+ * milliseconds, <code>BigDecimal</code> is its <code>toString()</code>, enums are their names and null is
+ * <code>null</code>.
+ */
+public class JsonOutput {
+    private static final int BUFFER_SIZE = 8192;
+    //The longest long value is 20 chars with the sign
+    private static final int MAX_LONG_LENGTH = 20;
+    private static final byte[] NULL = encode("null");
+    private static final byte[] LONG_MIN_VALUE = encode(String.valueOf(Long.MIN_VALUE));
+    private static final byte[] HEX_DIGITS = encode("0123456789ABCDEF");
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    public JsonOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param constant the constant part of JSON, e.g. the field name with quotes and the colon
+     * @return UTF-8 bytes to be written by {@link #writeRaw(byte[])}
+     */
+    public static byte[] encode(String constant) {
+        return constant.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void writeRaw(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public void writeRaw(char ascii) throws IOException {
+        ensureCapacity(1);
+        buffer[position++] = (byte) ascii;
+    }
+
+    public void writeNull() throws IOException {
+        writeRaw(NULL);
+    }
+
+    public void writeNumber(Long value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeNumber(value.longValue());
+        }
+    }
+
+    public void writeNumber(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(LONG_MIN_VALUE);
+            return;
+        }
+
+        ensureCapacity(MAX_LONG_LENGTH);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+
+        int length = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += length;
+    }
+
+    /**
+     * Writes <code>toString()</code> of the value. It is cached by <code>BigDecimal</code> itself, so the same value
+     * is formatted only once
+     */
+    public void writeNumber(BigDecimal value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeAscii(value.toString());
+        }
+    }
+
+    public void writeDate(Date value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeNumber(value.getTime());
+        }
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeString(value.name());
+        }
+    }
+
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+            return;
+        }
+
+        writeRaw('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeAsciiChar(c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                ensureCapacity(3);
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeRaw('"');
+    }
+
+    /**
+     * Writes everything buffered into the output stream. The stream itself is not flushed
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    private void writeAsciiChar(char c) throws IOException {
+        ensureCapacity(6);
+        if (c == '"' || c == '\\') {
+            buffer[position++] = '\\';
+            buffer[position++] = (byte) c;
+        } else if (c >= 0x20) {
+            buffer[position++] = (byte) c;
+        } else if (c == '\n') {
+            writeShortEscape('n');
+        } else if (c == '\r') {
+            writeShortEscape('r');
+        } else if (c == '\t') {
+            writeShortEscape('t');
+        } else if (c == '\b') {
+            writeShortEscape('b');
+        } else if (c == '\f') {
+            writeShortEscape('f');
+        } else {
+            buffer[position++] = '\\';
+            buffer[position++] = 'u';
+            buffer[position++] = '0';
+            buffer[position++] = '0';
+            buffer[position++] = HEX_DIGITS[c >> 4];
+            buffer[position++] = HEX_DIGITS[c & 0xF];
+        }
+    }
+
+    private void writeShortEscape(char escape) {
+        buffer[position++] = '\\';
+        buffer[position++] = (byte) escape;
+    }
+
+    private void writeAscii(String value) throws IOException {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
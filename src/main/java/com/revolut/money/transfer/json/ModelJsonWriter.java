@@ -0,0 +1,93 @@
+package com.revolut.money.transfer.json;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * The base of hand-written JSON writers of model classes. Writes the model object or the collection of them straight
+ * into the entity stream by {@link JsonOutput} instead of the reflective Jackson serialization.
+ * <p>
+ * The collection is written by this writer only if its element type is known, so resources should return
+ * collections wrapped into <code>GenericEntity</code>. Other collections are still written by Jackson.
+ *
+ * @param <T> the model class written
+ */
+@Produces(MediaType.APPLICATION_JSON)
+public abstract class ModelJsonWriter<T> implements MessageBodyWriter<Object> {
+    private final Class<T> modelClass;
+
+    protected ModelJsonWriter(Class<T> modelClass) {
+        this.modelClass = modelClass;
+    }
+
+    /**
+     * Writes the JSON object of the model object which is not null
+     */
+    protected abstract void writeObject(T object, JsonOutput out) throws IOException;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (!MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType)) {
+            return false;
+        }
+
+        return modelClass.isAssignableFrom(type) || isCollectionOfModel(type, genericType);
+    }
+
+    @Override
+    public long getSize(Object object, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object object, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        JsonOutput out = new JsonOutput(entityStream);
+        if (object instanceof Collection) {
+            writeArray((Collection<?>) object, out);
+        } else {
+            writeObject(modelClass.cast(object), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the JSON array of model objects
+     */
+    private void writeArray(Collection<?> objects, JsonOutput out) throws IOException {
+        out.writeRaw('[');
+        boolean first = true;
+        for (Object object : objects) {
+            if (!first) {
+                out.writeRaw(',');
+            }
+            first = false;
+
+            if (object == null) {
+                out.writeNull();
+            } else {
+                writeObject(modelClass.cast(object), out);
+            }
+        }
+        out.writeRaw(']');
+    }
+
+    private boolean isCollectionOfModel(Class<?> type, Type genericType) {
+        if (!Collection.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+            return false;
+        }
+
+        Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        return typeArguments.length == 1 && typeArguments[0] instanceof Class &&
+                modelClass.isAssignableFrom((Class<?>) typeArguments[0]);
+    }
+}
@@ -0,0 +1,55 @@
+package com.revolut.money.transfer.json;
+
+import com.revolut.money.transfer.model.Transaction;
+
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Writes {@link Transaction} and collections of them as JSON with the same fields as Jackson does
+ */
+@Provider
+public class TransactionJsonWriter extends ModelJsonWriter<Transaction> {
+    private static final byte[] ID = JsonOutput.encode("{\"id\":");
+    private static final byte[] FROM_BANK_ACCOUNT_ID = JsonOutput.encode(",\"fromBankAccountId\":");
+    private static final byte[] TO_BANK_ACCOUNT_ID = JsonOutput.encode(",\"toBankAccountId\":");
+    private static final byte[] AMOUNT = JsonOutput.encode(",\"amount\":");
+    private static final byte[] CURRENCY = JsonOutput.encode(",\"currency\":");
+    private static final byte[] CREATION_DATE = JsonOutput.encode(",\"creationDate\":");
+    private static final byte[] UPDATE_DATE = JsonOutput.encode(",\"updateDate\":");
+    private static final byte[] EXECUTE_AT = JsonOutput.encode(",\"executeAt\":");
+    private static final byte[] STATUS = JsonOutput.encode(",\"status\":");
+    private static final byte[] FAIL_MESSAGE = JsonOutput.encode(",\"failMessage\":");
+    private static final byte[] FAIL_CODE = JsonOutput.encode(",\"failCode\":");
+
+    public TransactionJsonWriter() {
+        super(Transaction.class);
+    }
+
+    @Override
+    protected void writeObject(Transaction transaction, JsonOutput out) throws IOException {
+        out.writeRaw(ID);
+        out.writeNumber(transaction.getId());
+        out.writeRaw(FROM_BANK_ACCOUNT_ID);
+        out.writeNumber(transaction.getFromBankAccountId());
+        out.writeRaw(TO_BANK_ACCOUNT_ID);
+        out.writeNumber(transaction.getToBankAccountId());
+        out.writeRaw(AMOUNT);
+        out.writeNumber(transaction.getAmount());
+        out.writeRaw(CURRENCY);
+        out.writeEnum(transaction.getCurrency());
+        out.writeRaw(CREATION_DATE);
+        out.writeDate(transaction.getCreationDate());
+        out.writeRaw(UPDATE_DATE);
+        out.writeDate(transaction.getUpdateDate());
+        out.writeRaw(EXECUTE_AT);
+        out.writeDate(transaction.getExecuteAt());
+        out.writeRaw(STATUS);
+        out.writeEnum(transaction.getStatus());
+        out.writeRaw(FAIL_MESSAGE);
+        out.writeString(transaction.getFailMessage());
+        out.writeRaw(FAIL_CODE);
+        out.writeEnum(transaction.getFailCode());
+        out.writeRaw('}');
+    }
+}
@@ -8,7 +8,8 @@ import java.util.Random;
  * Bank Account entity model. Relates to the database table <code>bank_account</code>. Defines the bank account of
  * individual with <code>ownerName</code>. It has <code>balance</code> in specific money <code>currency</code>. Once
  * there is any PLANNED transferring transaction in the system relates to this Bank Account, the transaction amount is
- * reserved in <code>blockedAmount</code> field
+ * reserved in <code>blockedAmount</code> field. <code>version</code> is incremented by every change of the balance and
+ * is used to detect concurrent modifications without locking the row
  */
 public class BankAccount extends BaseModel {
 
@@ -16,6 +17,7 @@ public class BankAccount extends BaseModel {
     private BigDecimal balance;
     private BigDecimal blockedAmount;
     private Currency currency;
+    private Long version;
 
     public BankAccount() {
     }
@@ -70,6 +72,14 @@ public class BankAccount extends BaseModel {
         this.currency = currency;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,76 @@
+package com.revolut.money.transfer.model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Change entity model. Relates to the database table <code>change_log</code>. Describes one committed change of the
+ * Transaction or of the Bank Account balance. <code>seq</code> is the monotonic sequence number of the change in its
+ * shard. Transaction changes have the new {@link TransactionStatus} <code>status</code>, Bank Account changes have
+ * the new <code>balance</code> and <code>blockedAmount</code>.
+ */
+public class Change {
+    private Long seq;
+    private ChangeType type;
+    private Long entityId;
+    private TransactionStatus status;
+    private BigDecimal balance;
+    private BigDecimal blockedAmount;
+    private Date changeDate;
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public void setType(ChangeType type) {
+        this.type = type;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public BigDecimal getBlockedAmount() {
+        return blockedAmount;
+    }
+
+    public void setBlockedAmount(BigDecimal blockedAmount) {
+        this.blockedAmount = blockedAmount;
+    }
+
+    public Date getChangeDate() {
+        return changeDate;
+    }
+
+    public void setChangeDate(Date changeDate) {
+        this.changeDate = changeDate;
+    }
+}
@@ -0,0 +1,9 @@
+package com.revolut.money.transfer.model;
+
+/**
+ * The kind of the entity changed. Stored by name in the <code>entity_type</code> column of the change log
+ */
+public enum ChangeType {
+    TRANSACTION,
+    BANK_ACCOUNT
+}
@@ -0,0 +1,68 @@
+package com.revolut.money.transfer.model;
+
+import java.math.BigDecimal;
+
+/**
+ * One Bank Account which breaks the invariant of the ledger. <code>actual</code> is the value stored in the Bank
+ * Account and <code>expected</code> is the value it should have, both in the currency of the Bank Account.
+ * <code>bankAccountId</code> is null if money is not conserved, then both values are totals of the currency
+ */
+public class LedgerDiscrepancy {
+    private Long bankAccountId;
+    private LedgerDiscrepancyType type;
+    private Currency currency;
+    private BigDecimal expected;
+    private BigDecimal actual;
+
+    public LedgerDiscrepancy() {
+    }
+
+    public LedgerDiscrepancy(Long bankAccountId, LedgerDiscrepancyType type, Currency currency,
+                             BigDecimal expected, BigDecimal actual) {
+        this.bankAccountId = bankAccountId;
+        this.type = type;
+        this.currency = currency;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public Long getBankAccountId() {
+        return bankAccountId;
+    }
+
+    public void setBankAccountId(Long bankAccountId) {
+        this.bankAccountId = bankAccountId;
+    }
+
+    public LedgerDiscrepancyType getType() {
+        return type;
+    }
+
+    public void setType(LedgerDiscrepancyType type) {
+        this.type = type;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getExpected() {
+        return expected;
+    }
+
+    public void setExpected(BigDecimal expected) {
+        this.expected = expected;
+    }
+
+    public BigDecimal getActual() {
+        return actual;
+    }
+
+    public void setActual(BigDecimal actual) {
+        this.actual = actual;
+    }
+}
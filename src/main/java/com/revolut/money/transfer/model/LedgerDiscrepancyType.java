@@ -0,0 +1,23 @@
+package com.revolut.money.transfer.model;
+
+/**
+ * The kind of the broken invariant of the Bank Account or of the whole ledger found by the ledger reconciliation
+ */
+public enum LedgerDiscrepancyType {
+    /**
+     * blockedAmount differs from the sum of the open holds, CREATED transactions from the Bank Account
+     */
+    BLOCKED_AMOUNT_MISMATCH,
+    NEGATIVE_BALANCE,
+    NEGATIVE_BLOCKED_AMOUNT,
+    /**
+     * Balances of the shard in the currency differ from their previous totals changed by opening balances and
+     * transfers settled since then
+     */
+    BALANCE_NOT_CONSERVED,
+    /**
+     * Cross shard transfers in the currency which are debited but not credited differ from the previous ones changed
+     * by debits and credits settled since then
+     */
+    IN_FLIGHT_NOT_CONSERVED
+}
@@ -0,0 +1,86 @@
+package com.revolut.money.transfer.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The result of the ledger reconciliation: totals per currency and Bank Accounts which break invariants of the
+ * ledger. Only the first <code>discrepancies</code> in the order of ids are kept, <code>discrepancyCount</code> is
+ * the number of all of them. Money is checked to be conserved between <code>cutDate</code> of the previous report
+ * and the one of this report.
+ */
+public class LedgerReport {
+    private Date startDate;
+    private Date endDate;
+    private Date cutDate;
+    private long bankAccounts;
+    private long holds;
+    private List<LedgerTotals> totals = new ArrayList<>();
+    private long discrepancyCount;
+    private List<LedgerDiscrepancy> discrepancies = new ArrayList<>();
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public Date getCutDate() {
+        return cutDate;
+    }
+
+    public void setCutDate(Date cutDate) {
+        this.cutDate = cutDate;
+    }
+
+    public long getBankAccounts() {
+        return bankAccounts;
+    }
+
+    public void setBankAccounts(long bankAccounts) {
+        this.bankAccounts = bankAccounts;
+    }
+
+    public long getHolds() {
+        return holds;
+    }
+
+    public void setHolds(long holds) {
+        this.holds = holds;
+    }
+
+    public List<LedgerTotals> getTotals() {
+        return totals;
+    }
+
+    public void setTotals(List<LedgerTotals> totals) {
+        this.totals = totals;
+    }
+
+    public long getDiscrepancyCount() {
+        return discrepancyCount;
+    }
+
+    public void setDiscrepancyCount(long discrepancyCount) {
+        this.discrepancyCount = discrepancyCount;
+    }
+
+    public List<LedgerDiscrepancy> getDiscrepancies() {
+        return discrepancies;
+    }
+
+    public void setDiscrepancies(List<LedgerDiscrepancy> discrepancies) {
+        this.discrepancies = discrepancies;
+    }
+}
@@ -0,0 +1,82 @@
+package com.revolut.money.transfer.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals of all Bank Accounts in one currency found by the ledger reconciliation. <code>heldAmount</code> is the
+ * sum of the open holds, CREATED transactions from these Bank Accounts exchanged into the currency, so it equals
+ * <code>blockedAmount</code> unless there are discrepancies. <code>inFlightAmount</code> is the sum of cross shard
+ * transfers in the currency which have been debited but not credited at the cut date of the report
+ */
+public class LedgerTotals {
+    private Currency currency;
+    private long bankAccounts;
+    private BigDecimal balance = BigDecimal.ZERO;
+    private BigDecimal blockedAmount = BigDecimal.ZERO;
+    private long holds;
+    private BigDecimal heldAmount = BigDecimal.ZERO;
+    private BigDecimal inFlightAmount = BigDecimal.ZERO;
+
+    public LedgerTotals() {
+    }
+
+    public LedgerTotals(Currency currency) {
+        this.currency = currency;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public long getBankAccounts() {
+        return bankAccounts;
+    }
+
+    public void setBankAccounts(long bankAccounts) {
+        this.bankAccounts = bankAccounts;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    public BigDecimal getBlockedAmount() {
+        return blockedAmount;
+    }
+
+    public void setBlockedAmount(BigDecimal blockedAmount) {
+        this.blockedAmount = blockedAmount;
+    }
+
+    public long getHolds() {
+        return holds;
+    }
+
+    public void setHolds(long holds) {
+        this.holds = holds;
+    }
+
+    public BigDecimal getHeldAmount() {
+        return heldAmount;
+    }
+
+    public void setHeldAmount(BigDecimal heldAmount) {
+        this.heldAmount = heldAmount;
+    }
+
+    public BigDecimal getInFlightAmount() {
+        return inFlightAmount;
+    }
+
+    public void setInFlightAmount(BigDecimal inFlightAmount) {
+        this.inFlightAmount = inFlightAmount;
+    }
+}
@@ -0,0 +1,54 @@
+package com.revolut.money.transfer.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of reading several Bank Accounts or Transactions by their ids at once. <code>found</code> contains the
+ * objects in the order their ids have been requested, every id once. <code>missingIds</code> contains the requested
+ * ids which do not exist.
+ *
+ * @param <E> the type of objects read
+ */
+public class MultiGetResult<E> {
+    private List<E> found = new ArrayList<>();
+    private List<Long> missingIds = new ArrayList<>();
+
+    /**
+     * @param ids     distinct requested ids in the order of the request
+     * @param objects found objects by their ids
+     * @param <E>     the type of objects read
+     * @return found objects and missing ids in the order of the request
+     */
+    public static <E> MultiGetResult<E> of(Collection<Long> ids, Map<Long, E> objects) {
+        MultiGetResult<E> result = new MultiGetResult<>();
+        for (Long id : ids) {
+            E object = objects.get(id);
+            if (object == null) {
+                result.missingIds.add(id);
+            } else {
+                result.found.add(object);
+            }
+        }
+
+        return result;
+    }
+
+    public List<E> getFound() {
+        return found;
+    }
+
+    public void setFound(List<E> found) {
+        this.found = found;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+}
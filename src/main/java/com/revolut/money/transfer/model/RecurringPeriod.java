@@ -0,0 +1,30 @@
+package com.revolut.money.transfer.model;
+
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+/**
+ * The period of the {@link RecurringPlan}. Stored by name in the <code>period</code> column of the recurring plan
+ */
+public enum RecurringPeriod {
+    WEEKLY(ChronoUnit.WEEKS), MONTHLY(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    RecurringPeriod(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Every time is counted from the first one, so monthly plans stay on their day of the month. The day which does
+     * not exist in a shorter month is moved to the last day of that month for that month only.
+     *
+     * @param first   the time of the first instance
+     * @param periods the number of periods after the first instance, could be negative
+     * @return the time of the instance in UTC
+     */
+    public Date plus(Date first, long periods) {
+        return Date.from(first.toInstant().atZone(ZoneOffset.UTC).plus(periods, unit).toInstant());
+    }
+}
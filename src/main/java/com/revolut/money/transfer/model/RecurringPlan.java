@@ -0,0 +1,144 @@
+package com.revolut.money.transfer.model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Recurring Plan entity model. Relates to the database table <code>recurring_plan</code>. Defines the standing order
+ * of <code>fromBankAccount</code> to transfer <code>amount</code> in <code>currency</code> currency to the
+ * <code>toBankAccount</code> every {@link RecurringPeriod} <code>period</code> starting from
+ * <code>firstExecuteAt</code> and not after <code>endDate</code> if it is specified.
+ * <p>
+ * The plan is expanded into Transactions one by one: <code>expandedCount</code> instances have been created so far
+ * and the next one is created at <code>expandAt</code>, one period before its execution time. The id of the last
+ * created Transaction or the reason why it could not be created are kept in <code>lastTransactionId</code> and
+ * <code>lastFailMessage</code>.
+ */
+public class RecurringPlan extends BaseModel {
+    private Long fromBankAccountId;
+    private Long toBankAccountId;
+    private BigDecimal amount;
+    private Currency currency;
+    private RecurringPeriod period;
+    private Date firstExecuteAt;
+    private Date endDate;
+    private RecurringPlanStatus status;
+    private Integer expandedCount;
+    private Date expandAt;
+    private Long lastTransactionId;
+    private String lastFailMessage;
+    private Date creationDate;
+    private Date updateDate;
+
+    public Long getFromBankAccountId() {
+        return fromBankAccountId;
+    }
+
+    public void setFromBankAccountId(Long fromBankAccountId) {
+        this.fromBankAccountId = fromBankAccountId;
+    }
+
+    public Long getToBankAccountId() {
+        return toBankAccountId;
+    }
+
+    public void setToBankAccountId(Long toBankAccountId) {
+        this.toBankAccountId = toBankAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public RecurringPeriod getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(RecurringPeriod period) {
+        this.period = period;
+    }
+
+    public Date getFirstExecuteAt() {
+        return firstExecuteAt;
+    }
+
+    public void setFirstExecuteAt(Date firstExecuteAt) {
+        this.firstExecuteAt = firstExecuteAt;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public RecurringPlanStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RecurringPlanStatus status) {
+        this.status = status;
+    }
+
+    public Integer getExpandedCount() {
+        return expandedCount;
+    }
+
+    public void setExpandedCount(Integer expandedCount) {
+        this.expandedCount = expandedCount;
+    }
+
+    public Date getExpandAt() {
+        return expandAt;
+    }
+
+    public void setExpandAt(Date expandAt) {
+        this.expandAt = expandAt;
+    }
+
+    public Long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public void setLastTransactionId(Long lastTransactionId) {
+        this.lastTransactionId = lastTransactionId;
+    }
+
+    public String getLastFailMessage() {
+        return lastFailMessage;
+    }
+
+    public void setLastFailMessage(String lastFailMessage) {
+        this.lastFailMessage = lastFailMessage;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Date creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public void setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+    }
+}
@@ -0,0 +1,11 @@
+package com.revolut.money.transfer.model;
+
+/**
+ * The status of the {@link RecurringPlan}. Stored by name in the <code>status</code> column of the recurring plan.
+ * Only ACTIVE plans are expanded into Transactions
+ */
+public enum RecurringPlanStatus {
+    ACTIVE,
+    FINISHED,
+    CANCELLED
+}
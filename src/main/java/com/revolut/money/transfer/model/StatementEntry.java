@@ -0,0 +1,38 @@
+package com.revolut.money.transfer.model;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of the Bank Account statement. Relates to the Transaction from or to the Bank Account and to its row of
+ * the database table <code>balance_checkpoint</code>. <code>balance</code> is the balance of the Bank Account right
+ * after the Transaction has been applied to it. It is null while the Transaction has not changed the balance yet or
+ * if it has been FAILED.
+ */
+public class StatementEntry {
+    private Transaction transaction;
+    private BigDecimal balance;
+
+    public StatementEntry() {
+    }
+
+    public StatementEntry(Transaction transaction, BigDecimal balance) {
+        this.transaction = transaction;
+        this.balance = balance;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -10,7 +10,9 @@ import java.util.Objects;
  * Transaction entity model. Relates to the database table <code>transaction</code>. Defines the transferring transaction
  * which is initialized by <code>fromBankAccount</code> who wants to transfer money to the <code>toBankAccount</code>
  * of <code>amount</code> in <code>currency</code> currency. Additionally this class controls the creation and last
- * update dates alongside with the actual {@link TransactionStatus} <code>status</code>  and <code>failMessage</code> in case of FAIL status.
+ * update dates alongside with the actual {@link TransactionStatus} <code>status</code>, {@link TransactionFailCode}
+ * <code>failCode</code> and <code>failMessage</code> in case of FAIL status. The transaction is not executed before
+ * <code>executeAt</code>, which is the creation date unless the transaction is scheduled for later.
  */
 public class Transaction extends BaseModel {
     private Long fromBankAccountId;
@@ -19,8 +21,10 @@ public class Transaction extends BaseModel {
     private Currency currency;
     private Date creationDate;
     private Date updateDate;
+    private Date executeAt;
     private TransactionStatus status;
     private String failMessage;
+    private TransactionFailCode failCode;
 
     public Transaction() {
         this.creationDate = new Date();
@@ -87,6 +91,14 @@ public class Transaction extends BaseModel {
         this.updateDate = updateDate;
     }
 
+    public Date getExecuteAt() {
+        return executeAt;
+    }
+
+    public void setExecuteAt(Date executeAt) {
+        this.executeAt = executeAt;
+    }
+
     public TransactionStatus getStatus() {
         return status;
     }
@@ -103,6 +115,14 @@ public class Transaction extends BaseModel {
         this.failMessage = failMessage;
     }
 
+    public TransactionFailCode getFailCode() {
+        return failCode;
+    }
+
+    public void setFailCode(TransactionFailCode failCode) {
+        this.failCode = failCode;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
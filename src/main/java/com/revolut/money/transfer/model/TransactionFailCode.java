@@ -0,0 +1,14 @@
+package com.revolut.money.transfer.model;
+
+/**
+ * The compact reason of the transaction failure. Stored by name in the <code>fail_code</code> column alongside the
+ * short human readable <code>failMessage</code>
+ */
+public enum TransactionFailCode {
+    INVALID_TRANSACTION,
+    BANK_ACCOUNT_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    DATABASE_ERROR,
+    UNEXPECTED_ERROR,
+    HOLD_EXPIRED
+}
@@ -0,0 +1,135 @@
+package com.revolut.money.transfer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes tasks of every Bank Account one by one in the order of their submission while tasks of different Bank
+ * Accounts are executed in parallel by the small pool of threads. Every active Bank Account owns the mailbox which is
+ * scheduled on the pool only while it has tasks, so tasks submitted for the same account never run at the same time
+ * and never wait for each other's row locks.
+ * <p>
+ * Transfers are submitted by their source Bank Account only, so two transfers into the same target Bank Account from
+ * different sources, A to B and C to B, still run in parallel and contend on the row of B. The contention is left to
+ * the row lock or the optimistic retry of the DAO, the same as without mailboxes.
+ * <p>
+ * Mailboxes which have been idle longer than the idle time are evicted, so the memory is proportional to the number
+ * of active Bank Accounts.
+ */
+public class AccountMailboxes {
+    private static final Logger log = LoggerFactory.getLogger(AccountMailboxes.class);
+
+    //The number of tasks executed by a mailbox before the thread is given to another mailbox
+    private static final int THROUGHPUT = 16;
+
+    private final ExecutorService executorService;
+    private final long idleMillis;
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads    the number of threads which execute tasks of all mailboxes
+     * @param idleMillis the time after which the mailbox without tasks is evicted
+     */
+    public AccountMailboxes(int threads, long idleMillis) {
+        this.executorService = Executors.newFixedThreadPool(threads);
+        this.idleMillis = idleMillis;
+
+        ScheduledExecutorService evictionExecutorService = Executors.newSingleThreadScheduledExecutor();
+        evictionExecutorService.scheduleWithFixedDelay(this::evictIdleMailboxes,
+                idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the task into the mailbox of the Bank Account. The task will be executed after all tasks submitted for
+     * this Bank Account before.
+     *
+     * @param bankAccountId the Bank Account which the task changes
+     * @param task          the task to be executed
+     * @return the future which is completed once the task is executed, exceptionally if the task has failed
+     */
+    public CompletableFuture<Void> submit(Long bankAccountId, Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        //The task is added under the lock of the map entry, so the mailbox could not be evicted at the same time
+        Mailbox mailbox = mailboxes.compute(bankAccountId, (id, existingMailbox) -> {
+            Mailbox targetMailbox = existingMailbox == null ? new Mailbox() : existingMailbox;
+            targetMailbox.tasks.add(() -> {
+                try {
+                    task.run();
+                    done.complete(null);
+                } catch (Throwable e) {
+                    done.completeExceptionally(e);
+                }
+            });
+            return targetMailbox;
+        });
+        mailbox.schedule();
+
+        return done;
+    }
+
+    /**
+     * @return the number of mailboxes which are not evicted yet
+     */
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    void evictIdleMailboxes() {
+        long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+
+        int evicted = 0;
+        for (Long bankAccountId : mailboxes.keySet()) {
+            if (mailboxes.computeIfPresent(bankAccountId, (id, mailbox) ->
+                    mailbox.isIdle() && mailbox.lastActive - idleSince < 0 ? null : mailbox) == null) {
+                evicted++;
+            }
+        }
+
+        if (evicted > 0) {
+            log.debug("{} idle mailboxes have been evicted, {} are active", evicted, mailboxes.size());
+        }
+    }
+
+    private class Mailbox implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastActive = System.nanoTime();
+
+        private void schedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executorService.execute(this);
+            }
+        }
+
+        private boolean isIdle() {
+            return tasks.isEmpty() && !scheduled.get();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                for (int i = 0; i < THROUGHPUT && (task = tasks.poll()) != null; i++) {
+                    task.run();
+                }
+            } finally {
+                lastActive = System.nanoTime();
+                scheduled.set(false);
+                //Tasks added after the last poll but before the flag has been reset are not lost
+                schedule();
+            }
+        }
+    }
+}
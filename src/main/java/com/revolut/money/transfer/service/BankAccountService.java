@@ -2,8 +2,10 @@ package com.revolut.money.transfer.service;
 
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.MultiGetResult;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface BankAccountService {
 
@@ -11,8 +13,12 @@ public interface BankAccountService {
 
     BankAccount getBankAccountById(Long id);
 
+    MultiGetResult<BankAccount> getBankAccountsByIds(List<Long> ids) throws ObjectModificationException;
+
     void updateBankAccount(BankAccount bankAccount) throws ObjectModificationException;
 
     BankAccount createBankAccount(BankAccount bankAccount) throws ObjectModificationException;
 
+    List<BankAccount> createBankAccounts(List<BankAccount> bankAccounts) throws ObjectModificationException;
+
 }
@@ -3,10 +3,18 @@ package com.revolut.money.transfer.service;
 import com.revolut.money.transfer.core.AbstractService;
 import com.revolut.money.transfer.core.Services;
 import com.revolut.money.transfer.dao.BankAccountDao;
+import com.revolut.money.transfer.exceptions.ExceptionType;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.MultiGetResult;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.revolut.money.transfer.utils.Constants.MAX_BANK_ACCOUNTS_BATCH_SIZE;
+import static com.revolut.money.transfer.utils.Constants.MAX_MULTI_GET_IDS;
 
 /**
  * Right now the proxy service under the {@link BankAccountDao}. Should be used to abstract the presentation layer
@@ -43,6 +51,28 @@ public class BankAccountServiceImpl extends AbstractService implements BankAccou
         return BankAccountDao.getInstance().getBankAccountById(id);
     }
 
+    /**
+     * Returns Bank Accounts by ids by one query in every shard. Duplicate ids are collapsed.
+     *
+     * @param ids Bank Account ids
+     * @return found Bank Accounts and ids which do not exist, in the order of the first occurrence of ids
+     * @throws ObjectModificationException if there are no ids or more than allowed
+     */
+    public MultiGetResult<BankAccount> getBankAccountsByIds(List<Long> ids) throws ObjectModificationException {
+        if (ids == null || ids.isEmpty()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "At least one bank account id should be provided");
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.size() > MAX_MULTI_GET_IDS) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "Not more than " + MAX_MULTI_GET_IDS + " bank account ids should be provided");
+        }
+
+        return MultiGetResult.of(distinctIds, BankAccountDao.getInstance().getBankAccountsByIds(distinctIds));
+    }
+
     public void updateBankAccount(BankAccount bankAccount) throws ObjectModificationException {
         BankAccountDao.getInstance().updateBankAccountSafe(bankAccount);
     }
@@ -50,4 +80,17 @@ public class BankAccountServiceImpl extends AbstractService implements BankAccou
     public BankAccount createBankAccount(BankAccount bankAccount) throws ObjectModificationException {
         return BankAccountDao.getInstance().createBankAccount(bankAccount);
     }
+
+    public List<BankAccount> createBankAccounts(List<BankAccount> bankAccounts) throws ObjectModificationException {
+        if (bankAccounts == null || bankAccounts.isEmpty()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The batch should contain at least one bank account");
+        }
+        if (bankAccounts.size() > MAX_BANK_ACCOUNTS_BATCH_SIZE) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The batch should not contain more than " + MAX_BANK_ACCOUNTS_BATCH_SIZE + " bank accounts");
+        }
+
+        return BankAccountDao.getInstance().createBankAccounts(bankAccounts);
+    }
 }
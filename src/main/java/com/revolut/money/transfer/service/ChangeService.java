@@ -0,0 +1,12 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.Change;
+
+import java.util.List;
+
+public interface ChangeService {
+
+    List<Change> getChanges(int shard, long since, int limit) throws ObjectModificationException;
+
+}
@@ -0,0 +1,61 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.core.AbstractService;
+import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.dao.ChangeDao;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.Change;
+
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.CHANGE_FEED_MAX_LIMIT;
+
+/**
+ * Right now the proxy service under the {@link ChangeDao}. Should be used to abstract the presentation layer
+ * from the persistence layer
+ */
+public class ChangeServiceImpl extends AbstractService implements ChangeService {
+    private static ChangeServiceImpl cs = null;
+
+    private ChangeServiceImpl(Services services) {
+        super(services);
+    }
+
+    public static ChangeServiceImpl getInstance(Services services) {
+        if (cs == null) {
+            synchronized (ChangeServiceImpl.class) {
+                if (cs == null) {
+                    cs = new ChangeServiceImpl(services);
+                }
+            }
+        }
+        return cs;
+    }
+
+    /**
+     * Returns the next page of the change feed of the shard
+     *
+     * @param shard the shard which changes should be returned
+     * @param since the last sequence number the consumer has seen. 0 to read the feed from the beginning
+     * @param limit the maximum number of changes to be returned
+     * @return changes in the order of their sequence numbers
+     * @throws ObjectModificationException if the shard does not exist or parameters are out of range
+     */
+    public List<Change> getChanges(int shard, long since, int limit) throws ObjectModificationException {
+        if (shard < 0 || shard >= DataSourceFactory.getShardCount()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_NOT_FOUND, "The shard does not exist");
+        }
+        if (since < 0) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The sequence number should not be negative");
+        }
+        if (limit <= 0 || limit > CHANGE_FEED_MAX_LIMIT) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The limit should be between 1 and " + CHANGE_FEED_MAX_LIMIT);
+        }
+
+        return ChangeDao.getInstance().getChanges(shard, since, limit);
+    }
+}
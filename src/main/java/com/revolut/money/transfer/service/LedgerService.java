@@ -0,0 +1,10 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.model.LedgerReport;
+
+public interface LedgerService {
+
+    LedgerReport reconcileLedger();
+
+    LedgerReport getLastReport();
+}
@@ -0,0 +1,519 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.core.AbstractService;
+import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.dao.LedgerDao;
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.LedgerDiscrepancy;
+import com.revolut.money.transfer.model.LedgerDiscrepancyType;
+import com.revolut.money.transfer.model.LedgerReport;
+import com.revolut.money.transfer.model.LedgerTotals;
+import com.revolut.money.transfer.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_MAX_DISCREPANCIES;
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_PERIOD_HOURS;
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_RANGE_SIZE;
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS;
+
+/**
+ * Checks invariants of every Bank Account of the ledger: blockedAmount equals the sum of its open holds and no
+ * balance or blockedAmount is negative. Totals of balances, blocked and held amounts are reported per currency.
+ * <p>
+ * Then it checks that money is conserved since the previous report. Balances are compared at the cut date, the
+ * start of the reconciliation minus <code>transfer.ledger.reconciliation.settle.margin.millis</code>, so every
+ * transfer settled before it is committed. Every balance change is checkpointed together with it, so totals of
+ * balances of the shard at the cut date are its current totals minus changes checkpointed after it, both read by
+ * one statement. They should equal totals at the previous cut date plus opening balances of Bank Accounts created
+ * and transfers settled between the two cut dates, every one exchanged and rounded as it has been stored. Cross
+ * shard transfers debited but not credited at the cut date, the PROCESSING ones and the ones which credit has been
+ * checkpointed after it, should equal the previous ones plus transfers debited and minus transfers credited between
+ * the two cut dates. The shard which balances differ is read again, as a transfer settled while it has been read
+ * could be seen only partially. Differences are reported per shard and currency of balances and per currency of
+ * transfers in flight, the first report only sets totals to compare with. A cross shard transfer which stays PROCESSING after its credit for longer than the margin is reported as
+ * well, until it is completed by the recovery.
+ * <p>
+ * Bank Accounts of every shard are split into ranges of ids which are reconciled in parallel by fork/join, every
+ * range by one streaming query of the {@link LedgerDao}. Only the totals of the range and a bounded number of
+ * discrepancies are kept, so the heap used does not depend on the number of Bank Accounts. Nothing is locked, so
+ * transfers settled while the range is read could make the Bank Account look inconsistent: such a Bank Account is
+ * read again once the range is read and reported only if it is still inconsistent. Totals are not a snapshot of one
+ * moment while transfers are settled.
+ * <p>
+ * The reconciliation runs once per <code>transfer.ledger.reconciliation.period.hours</code>, its last report is kept
+ * in memory. Discrepancies are only reported, blockedAmount is corrected by
+ * {@link TransactionsService#reconcileBlockedAmounts()}.
+ */
+public class LedgerServiceImpl extends AbstractService implements LedgerService {
+    private static final Logger log = LoggerFactory.getLogger(LedgerServiceImpl.class);
+    //Reads of the shard until its balances are conserved
+    private static final int MAX_SHARD_FLOW_READS = 3;
+
+    private static LedgerServiceImpl ls = null;
+    private static ScheduledExecutorService reconciliationExecutorService =
+            Executors.newSingleThreadScheduledExecutor();
+    //Every range takes one connection of the reconciliation pool of its shard
+    private static ForkJoinPool reconciliationPool = new ForkJoinPool(ConnectionPool.RECONCILIATION.getSize());
+    private LedgerDao ledgerDao;
+    private volatile LedgerReport lastReport;
+    private LedgerCut lastCut;
+
+    private LedgerServiceImpl(Services services) {
+        super(services);
+        this.ledgerDao = LedgerDao.getInstance(services.getMoneyExchangeService());
+        reconciliationExecutorService.scheduleWithFixedDelay(this::reconcileLedgerQuietly,
+                LEDGER_RECONCILIATION_PERIOD_HOURS, LEDGER_RECONCILIATION_PERIOD_HOURS, TimeUnit.HOURS);
+        log.info("Ledger Reconciliation planned");
+    }
+
+    public static LedgerServiceImpl getInstance(Services services) {
+        if (ls == null) {
+            synchronized (LedgerServiceImpl.class) {
+                if (ls == null) {
+                    ls = new LedgerServiceImpl(services);
+                }
+            }
+        }
+        return ls;
+    }
+
+    /**
+     * Reconciles all Bank Accounts of all shards, checks that money is conserved since the previous report and keeps
+     * the report as the last one. Reconciliations never overlap
+     *
+     * @return the report with totals per currency and the first discrepancies found: ledger ones and then ones of
+     * Bank Accounts in the order of ids
+     */
+    public synchronized LedgerReport reconcileLedger() {
+        Date startDate = new Date();
+
+        List<RangeReconciliation> shards = new ArrayList<>();
+        int shardCount = DataSourceFactory.getShardCount();
+        for (int shard = 0; shard < shardCount; shard++) {
+            long[] idRange = ledgerDao.getBankAccountIdRange(shard);
+            if (idRange != null) {
+                //Ids of the shard are spread by the number of shards, so the range is widened to keep its size
+                shards.add(new RangeReconciliation(shard, idRange[0], idRange[1],
+                        (long) LEDGER_RECONCILIATION_RANGE_SIZE * shardCount));
+            }
+        }
+
+        LedgerPartial bankAccountsLedger = reconciliationPool.invoke(new LedgerReconciliation(shards));
+
+        LedgerPartial ledger = new LedgerPartial();
+        LedgerCut cut = checkConservation(startDate, ledger);
+        ledger.merge(bankAccountsLedger);
+        for (Map.Entry<Currency, BigDecimal> inFlight : cut.inFlight.entrySet()) {
+            ledger.totals.computeIfAbsent(inFlight.getKey(), LedgerTotals::new).setInFlightAmount(inFlight.getValue());
+        }
+        lastCut = cut;
+
+        LedgerReport report = new LedgerReport();
+        report.setStartDate(startDate);
+        report.setEndDate(new Date());
+        report.setCutDate(cut.cutDate);
+        report.setBankAccounts(ledger.bankAccounts);
+        report.setHolds(ledger.holds);
+        report.setTotals(new ArrayList<>(ledger.totals.values()));
+        report.setDiscrepancyCount(ledger.discrepancyCount);
+        report.setDiscrepancies(ledger.discrepancies);
+
+        if (report.getDiscrepancyCount() > 0) {
+            log.warn("The ledger of {} bank accounts has {} discrepancies", report.getBankAccounts(),
+                    report.getDiscrepancyCount());
+        } else {
+            log.info("The ledger of {} bank accounts is consistent", report.getBankAccounts());
+        }
+        lastReport = report;
+
+        return report;
+    }
+
+    /**
+     * @return the report of the last reconciliation. null if the ledger has not been reconciled yet
+     */
+    public LedgerReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Reads flows of every shard and reports differences of totals at the cut date from the ones expected by the
+     * previous cut into the ledger provided
+     *
+     * @param startDate the start of the reconciliation
+     * @param ledger    the ledger which discrepancies should be added to
+     * @return totals at the cut date
+     */
+    private LedgerCut checkConservation(Date startDate, LedgerPartial ledger) {
+        LedgerCut previous = lastCut;
+        Date cutDate = new Date(startDate.getTime() - LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS);
+        if (previous != null && cutDate.before(previous.cutDate)) {
+            cutDate = previous.cutDate;
+        }
+        Date settledAfter = previous != null ? previous.cutDate : cutDate;
+
+        LedgerCut cut = new LedgerCut(cutDate);
+        List<ShardFlowTotals> shards = new ArrayList<>();
+        int shardCount = DataSourceFactory.getShardCount();
+        for (int shard = 0; shard < shardCount; shard++) {
+            ShardFlowTotals flows = null;
+            Map<Currency, BigDecimal> expected = null;
+            for (int read = 0; read < MAX_SHARD_FLOW_READS && (flows == null || !flows.conserves(expected)); read++) {
+                flows = new ShardFlowTotals(cutDate);
+                ledgerDao.readShardFlows(shard, settledAfter, flows);
+                expected = previous != null ? flows.expectedBalances(previous.balances.get(shard)) : null;
+            }
+
+            if (expected != null) {
+                Map<Currency, BigDecimal> actual = flows.balancesAtCut();
+                for (Currency currency : currencies(expected, actual)) {
+                    BigDecimal expectedBalance = expected.getOrDefault(currency, BigDecimal.ZERO);
+                    BigDecimal actualBalance = actual.getOrDefault(currency, BigDecimal.ZERO);
+                    if (expectedBalance.compareTo(actualBalance) != 0) {
+                        log.warn("Balances of the shard {} in {} are not conserved: expected {}, actual {}",
+                                shard, currency, expectedBalance, actualBalance);
+                        ledger.discrepancy(new LedgerDiscrepancy(null, LedgerDiscrepancyType.BALANCE_NOT_CONSERVED,
+                                currency, expectedBalance, actualBalance));
+                    }
+                }
+            }
+            cut.balances.add(flows.balancesAtCut());
+            shards.add(flows);
+        }
+
+        //The transfer is in flight if it is debited before the cut date and not credited before it
+        Set<Long> debitedAfterCut = new HashSet<>();
+        Map<Long, Transaction> inFlight = new HashMap<>();
+        for (ShardFlowTotals flows : shards) {
+            debitedAfterCut.addAll(flows.debitedAfterCut);
+        }
+        for (ShardFlowTotals flows : shards) {
+            for (Transaction credited : flows.creditedAfterCut) {
+                if (!debitedAfterCut.contains(credited.getId())) {
+                    inFlight.put(credited.getId(), credited);
+                }
+            }
+        }
+        for (ShardFlowTotals flows : shards) {
+            for (Transaction processing : flows.processing) {
+                inFlight.putIfAbsent(processing.getId(), processing);
+            }
+        }
+        for (Transaction transfer : inFlight.values()) {
+            add(cut.inFlight, transfer.getCurrency(), transfer.getAmount());
+        }
+
+        if (previous != null) {
+            Map<Currency, BigDecimal> expected = new EnumMap<>(previous.inFlight);
+            for (ShardFlowTotals flows : shards) {
+                for (Map.Entry<Currency, BigDecimal> debited : flows.crossShardDebited.entrySet()) {
+                    add(expected, debited.getKey(), debited.getValue());
+                }
+                for (Map.Entry<Currency, BigDecimal> credited : flows.crossShardCredited.entrySet()) {
+                    add(expected, credited.getKey(), credited.getValue().negate());
+                }
+            }
+
+            for (Currency currency : currencies(expected, cut.inFlight)) {
+                BigDecimal expectedAmount = expected.getOrDefault(currency, BigDecimal.ZERO);
+                BigDecimal actualAmount = cut.inFlight.getOrDefault(currency, BigDecimal.ZERO);
+                if (expectedAmount.compareTo(actualAmount) != 0) {
+                    log.warn("Cross shard transfers in {} in flight are not conserved: expected {}, actual {}",
+                            currency, expectedAmount, actualAmount);
+                    ledger.discrepancy(new LedgerDiscrepancy(null, LedgerDiscrepancyType.IN_FLIGHT_NOT_CONSERVED,
+                            currency, expectedAmount, actualAmount));
+                }
+            }
+        }
+
+        return cut;
+    }
+
+    private static Set<Currency> currencies(Map<Currency, BigDecimal> first, Map<Currency, BigDecimal> second) {
+        Set<Currency> currencies = EnumSet.noneOf(Currency.class);
+        currencies.addAll(first.keySet());
+        currencies.addAll(second.keySet());
+        return currencies;
+    }
+
+    private static void add(Map<Currency, BigDecimal> totals, Currency currency, BigDecimal amount) {
+        totals.merge(currency, amount, BigDecimal::add);
+    }
+
+    private void reconcileLedgerQuietly() {
+        try {
+            reconcileLedger();
+        } catch (RuntimeException e) {
+            log.error("Ledger reconciliation has been interrupted", e);
+        }
+    }
+
+    /**
+     * Reconciles all shards in parallel and merges their results in the order of shards
+     */
+    private static class LedgerReconciliation extends RecursiveTask<LedgerPartial> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RangeReconciliation> shards;
+
+        private LedgerReconciliation(List<RangeReconciliation> shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        protected LedgerPartial compute() {
+            invokeAll(shards);
+
+            LedgerPartial ledger = new LedgerPartial();
+            for (RangeReconciliation shard : shards) {
+                ledger.merge(shard.join());
+            }
+
+            return ledger;
+        }
+    }
+
+    /**
+     * Reconciles Bank Accounts of one shard which ids are in the range provided. The range is split in halves until
+     * it is not wider than the range size, so every leaf reads a bounded number of Bank Accounts by one query
+     */
+    private class RangeReconciliation extends RecursiveTask<LedgerPartial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int shard;
+        private final long fromId;
+        private final long toId;
+        private final long rangeSize;
+
+        private RangeReconciliation(int shard, long fromId, long toId, long rangeSize) {
+            this.shard = shard;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected LedgerPartial compute() {
+            if (toId - fromId < rangeSize) {
+                return reconcileRange();
+            }
+
+            long middleId = fromId + (toId - fromId) / 2;
+            RangeReconciliation lower = new RangeReconciliation(shard, fromId, middleId, rangeSize);
+            RangeReconciliation upper = new RangeReconciliation(shard, middleId + 1, toId, rangeSize);
+            lower.fork();
+            LedgerPartial upperLedger = upper.compute();
+
+            LedgerPartial ledger = lower.join();
+            ledger.merge(upperLedger);
+            return ledger;
+        }
+
+        private LedgerPartial reconcileRange() {
+            LedgerPartial ledger = new LedgerPartial();
+            TreeSet<Long> suspects = new TreeSet<>();
+
+            ledgerDao.forEachBankAccountHolds(shard, fromId, toId, (bankAccount, holds, heldAmount) -> {
+                ledger.add(bankAccount, holds, heldAmount);
+
+                if (bankAccount.getBalance().signum() < 0) {
+                    ledger.discrepancy(new LedgerDiscrepancy(bankAccount.getId(),
+                            LedgerDiscrepancyType.NEGATIVE_BALANCE, bankAccount.getCurrency(),
+                            BigDecimal.ZERO, bankAccount.getBalance()));
+                }
+                if (bankAccount.getBlockedAmount().signum() < 0) {
+                    ledger.discrepancy(new LedgerDiscrepancy(bankAccount.getId(),
+                            LedgerDiscrepancyType.NEGATIVE_BLOCKED_AMOUNT, bankAccount.getCurrency(),
+                            BigDecimal.ZERO, bankAccount.getBlockedAmount()));
+                }
+                if (bankAccount.getBlockedAmount().compareTo(heldAmount) != 0) {
+                    suspects.add(bankAccount.getId());
+                }
+            });
+
+            if (!suspects.isEmpty()) {
+                //Read again, the transfer which has been settled at the moment the range was read is completed now
+                ledgerDao.forEachBankAccountHolds(shard, suspects.first(), suspects.last(),
+                        (bankAccount, holds, heldAmount) -> {
+                            if (suspects.contains(bankAccount.getId()) &&
+                                    bankAccount.getBlockedAmount().compareTo(heldAmount) != 0) {
+                                ledger.discrepancy(new LedgerDiscrepancy(bankAccount.getId(),
+                                        LedgerDiscrepancyType.BLOCKED_AMOUNT_MISMATCH, bankAccount.getCurrency(),
+                                        heldAmount, bankAccount.getBlockedAmount()));
+                            }
+                        });
+            }
+
+            return ledger;
+        }
+    }
+
+    /**
+     * Totals of the ledger at the cut date: balances per shard and currency and cross shard transfers in flight per
+     * currency of transfers
+     */
+    private static class LedgerCut {
+        private final Date cutDate;
+        private final List<Map<Currency, BigDecimal>> balances = new ArrayList<>();
+        private final Map<Currency, BigDecimal> inFlight = new EnumMap<>(Currency.class);
+
+        private LedgerCut(Date cutDate) {
+            this.cutDate = cutDate;
+        }
+    }
+
+    /**
+     * Flows of one shard read by one statement split by the cut date. Only transfers settled after the cut date are
+     * kept one by one, so the memory used depends on the margin and not on the period between reports
+     */
+    private static class ShardFlowTotals implements LedgerDao.ShardFlows {
+        private final Date cutDate;
+        private final Map<Currency, BigDecimal> balances = new EnumMap<>(Currency.class);
+        private final Map<Currency, BigDecimal> settled = new EnumMap<>(Currency.class);
+        private final Map<Currency, BigDecimal> settledAfterCut = new EnumMap<>(Currency.class);
+        private final Map<Currency, BigDecimal> crossShardDebited = new EnumMap<>(Currency.class);
+        private final Map<Currency, BigDecimal> crossShardCredited = new EnumMap<>(Currency.class);
+        private final Set<Long> debitedAfterCut = new HashSet<>();
+        private final List<Transaction> creditedAfterCut = new ArrayList<>();
+        private final List<Transaction> processing = new ArrayList<>();
+
+        private ShardFlowTotals(Date cutDate) {
+            this.cutDate = cutDate;
+        }
+
+        @Override
+        public void balance(Currency currency, BigDecimal balance) {
+            add(balances, currency, balance);
+        }
+
+        @Override
+        public void settled(Currency currency, BigDecimal amount, Date date) {
+            add(date.after(cutDate) ? settledAfterCut : settled, currency, amount);
+        }
+
+        @Override
+        public void crossShardSettled(Transaction transfer, boolean credit, Date date) {
+            if (date.after(cutDate)) {
+                if (credit) {
+                    creditedAfterCut.add(transfer);
+                } else {
+                    debitedAfterCut.add(transfer.getId());
+                }
+            } else {
+                add(credit ? crossShardCredited : crossShardDebited, transfer.getCurrency(), transfer.getAmount());
+            }
+        }
+
+        @Override
+        public void processing(Transaction transfer, Date debitDate) {
+            if (!debitDate.after(cutDate)) {
+                processing.add(transfer);
+            }
+        }
+
+        private Map<Currency, BigDecimal> balancesAtCut() {
+            Map<Currency, BigDecimal> balancesAtCut = new EnumMap<>(balances);
+            for (Map.Entry<Currency, BigDecimal> change : settledAfterCut.entrySet()) {
+                add(balancesAtCut, change.getKey(), change.getValue().negate());
+            }
+            return balancesAtCut;
+        }
+
+        private Map<Currency, BigDecimal> expectedBalances(Map<Currency, BigDecimal> previousBalances) {
+            Map<Currency, BigDecimal> expected = new EnumMap<>(Currency.class);
+            expected.putAll(previousBalances);
+            for (Map.Entry<Currency, BigDecimal> change : settled.entrySet()) {
+                add(expected, change.getKey(), change.getValue());
+            }
+            return expected;
+        }
+
+        private boolean conserves(Map<Currency, BigDecimal> expected) {
+            if (expected == null) {
+                return true;
+            }
+
+            Map<Currency, BigDecimal> actual = balancesAtCut();
+            for (Currency currency : currencies(expected, actual)) {
+                if (expected.getOrDefault(currency, BigDecimal.ZERO)
+                        .compareTo(actual.getOrDefault(currency, BigDecimal.ZERO)) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Totals and discrepancies of the part of the ledger. Only the first discrepancies are kept
+     */
+    private static class LedgerPartial {
+        private final Map<Currency, LedgerTotals> totals = new EnumMap<>(Currency.class);
+        private final List<LedgerDiscrepancy> discrepancies = new ArrayList<>();
+        private long bankAccounts;
+        private long holds;
+        private long discrepancyCount;
+
+        private void add(BankAccount bankAccount, int holds, BigDecimal heldAmount) {
+            LedgerTotals currencyTotals = totals.computeIfAbsent(bankAccount.getCurrency(), LedgerTotals::new);
+            currencyTotals.setBankAccounts(currencyTotals.getBankAccounts() + 1);
+            currencyTotals.setBalance(currencyTotals.getBalance().add(bankAccount.getBalance()));
+            currencyTotals.setBlockedAmount(currencyTotals.getBlockedAmount().add(bankAccount.getBlockedAmount()));
+            currencyTotals.setHolds(currencyTotals.getHolds() + holds);
+            currencyTotals.setHeldAmount(currencyTotals.getHeldAmount().add(heldAmount));
+
+            this.bankAccounts++;
+            this.holds += holds;
+        }
+
+        private void discrepancy(LedgerDiscrepancy discrepancy) {
+            discrepancyCount++;
+            if (discrepancies.size() < LEDGER_RECONCILIATION_MAX_DISCREPANCIES) {
+                discrepancies.add(discrepancy);
+            }
+        }
+
+        private void merge(LedgerPartial other) {
+            for (LedgerTotals otherTotals : other.totals.values()) {
+                LedgerTotals currencyTotals = totals.computeIfAbsent(otherTotals.getCurrency(), LedgerTotals::new);
+                currencyTotals.setBankAccounts(currencyTotals.getBankAccounts() + otherTotals.getBankAccounts());
+                currencyTotals.setBalance(currencyTotals.getBalance().add(otherTotals.getBalance()));
+                currencyTotals.setBlockedAmount(currencyTotals.getBlockedAmount()
+                        .add(otherTotals.getBlockedAmount()));
+                currencyTotals.setHolds(currencyTotals.getHolds() + otherTotals.getHolds());
+                currencyTotals.setHeldAmount(currencyTotals.getHeldAmount().add(otherTotals.getHeldAmount()));
+            }
+
+            bankAccounts += other.bankAccounts;
+            holds += other.holds;
+            discrepancyCount += other.discrepancyCount;
+            for (LedgerDiscrepancy discrepancy : other.discrepancies) {
+                if (discrepancies.size() >= LEDGER_RECONCILIATION_MAX_DISCREPANCIES) {
+                    break;
+                }
+                discrepancies.add(discrepancy);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.RecurringPlan;
+
+import java.util.Date;
+
+public interface RecurringPlanService {
+
+    RecurringPlan createPlan(RecurringPlan plan) throws ObjectModificationException;
+
+    RecurringPlan getPlanById(Long id);
+
+    RecurringPlan cancelPlan(Long id) throws ObjectModificationException;
+
+    int expandPlans(Date now);
+}
@@ -0,0 +1,236 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.core.AbstractService;
+import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.dao.RecurringPlanDao;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.RecurringPlan;
+import com.revolut.money.transfer.model.RecurringPlanStatus;
+import com.revolut.money.transfer.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.MAX_TRANSACTIONS_BATCH_SIZE;
+import static com.revolut.money.transfer.utils.Constants.RECURRING_PLAN_CHUNK_SIZE;
+import static com.revolut.money.transfer.utils.Constants.RECURRING_PLAN_PERIOD_SECONDS;
+
+/**
+ * Manages standing orders and expands them into Transactions lazily: every plan has only its next instance created
+ * as a Transaction scheduled for its execution time, one period before that time. Plans are never expanded into
+ * the whole schedule, so a plan costs one row however long it lasts and cancelling it affects only instances which
+ * have not been created yet.
+ * <p>
+ * Due plans are expanded by chunks. Every chunk is admitted the same way as a batch of Transactions, its instances
+ * hold funds the same way as any other Transaction and are committed together with the plans they are expanded from.
+ * A spike of due plans, as at the start of the month, is spread over many small database's transactions instead of
+ * one burst, and instances are then released at their execution time into the mailboxes of their source Bank
+ * Accounts by the {@link TransferScheduler}. While the settlement backlog is too large, the expansion is postponed
+ * till the next run.
+ */
+public class RecurringPlanServiceImpl extends AbstractService implements RecurringPlanService {
+    private static final Logger log = LoggerFactory.getLogger(RecurringPlanServiceImpl.class);
+
+    private static RecurringPlanServiceImpl rps = null;
+    private static ScheduledExecutorService expansionExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private RecurringPlanDao recurringPlanDao = RecurringPlanDao.getInstance(services.getMoneyExchangeService());
+    private RecurringPlanDao.PlansExpansion plansExpansion = new RecurringPlanDao.PlansExpansion() {
+        @Override
+        public List<Transaction> instancesOf(List<RecurringPlan> plans) throws ObjectModificationException {
+            return RecurringPlanServiceImpl.this.instancesOf(plans);
+        }
+
+        @Override
+        public void expanded(List<RecurringPlan> plans, List<Transaction> instances) {
+            RecurringPlanServiceImpl.this.expanded(plans, instances);
+        }
+
+        @Override
+        public void committed(List<Transaction> instances) {
+            services.getTransactionsService().schedule(instances);
+        }
+    };
+
+    private RecurringPlanServiceImpl(Services services) {
+        super(services);
+        expansionExecutorService.scheduleWithFixedDelay(() -> expandPlans(new Date()),
+                RECURRING_PLAN_PERIOD_SECONDS, RECURRING_PLAN_PERIOD_SECONDS, TimeUnit.SECONDS);
+        log.info("Recurring Plan Expansion planned");
+    }
+
+    public static RecurringPlanServiceImpl getInstance(Services services) {
+        if (rps == null) {
+            synchronized (RecurringPlanServiceImpl.class) {
+                if (rps == null) {
+                    rps = new RecurringPlanServiceImpl(services);
+                }
+            }
+        }
+        return rps;
+    }
+
+    /**
+     * Creates the ACTIVE plan. Its first instance is created right away if its execution time is closer than one
+     * period, otherwise one period before it
+     *
+     * @param plan the plan with <code>fromBankAccountId, toBankAccountId, amount, currency, period,
+     *             firstExecuteAt</code> and optional <code>endDate</code>. Other fields are ignored
+     * @return the created plan with the ID generated
+     * @throws ObjectModificationException if the plan is invalid or Bank Accounts do not exist
+     */
+    public RecurringPlan createPlan(RecurringPlan plan) throws ObjectModificationException {
+        validate(plan);
+
+        Date now = new Date();
+        plan.setStatus(RecurringPlanStatus.ACTIVE);
+        plan.setExpandedCount(0);
+        plan.setExpandAt(plan.getPeriod().plus(plan.getFirstExecuteAt(), -1));
+        plan.setLastTransactionId(null);
+        plan.setLastFailMessage(null);
+        plan.setCreationDate(now);
+        plan.setUpdateDate(now);
+
+        return recurringPlanDao.createPlan(plan);
+    }
+
+    public RecurringPlan getPlanById(Long id) {
+        return recurringPlanDao.getPlanById(id);
+    }
+
+    /**
+     * Stops the plan. Its instance which has been created already is executed at its time
+     *
+     * @param id the id of Recurring Plan
+     * @return the cancelled plan
+     * @throws ObjectModificationException if the plan does not exist or is not ACTIVE
+     */
+    public RecurringPlan cancelPlan(Long id) throws ObjectModificationException {
+        return recurringPlanDao.cancelPlan(id);
+    }
+
+    /**
+     * Expands plans which expansion time has come by chunks until none are left. Instances missed while the service
+     * has been stopped are created one per plan and chunk, they are executed at once as their time has passed.
+     *
+     * @param now only plans which expansion time is not after this date are expanded
+     * @return the number of created instances, including the ones which could not be created
+     */
+    public int expandPlans(Date now) {
+        int expanded = 0;
+        try {
+            int chunk;
+            do {
+                chunk = recurringPlanDao.expandDuePlans(now,
+                        Math.min(RECURRING_PLAN_CHUNK_SIZE, MAX_TRANSACTIONS_BATCH_SIZE), plansExpansion);
+                expanded += chunk;
+            } while (chunk > 0);
+        } catch (ObjectModificationException e) {
+            log.warn("Recurring plans expansion has been postponed: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Recurring plans expansion has been interrupted", e);
+        }
+
+        if (expanded > 0) {
+            log.info("{} recurring plans have been expanded", expanded);
+        }
+        return expanded;
+    }
+
+    /**
+     * Builds the next instance of every plan as one batch. Plans have been validated once they have been created,
+     * so instances are only admitted
+     *
+     * @param plans due plans locked by the DAO
+     * @return the next instance of every plan
+     * @throws ObjectModificationException if the batch has not been admitted. Plans are left as they are then
+     */
+    private List<Transaction> instancesOf(List<RecurringPlan> plans) throws ObjectModificationException {
+        services.getTransactionsService().admitTransactions();
+
+        List<Transaction> instances = new ArrayList<>(plans.size());
+        for (RecurringPlan plan : plans) {
+            Transaction instance = new Transaction(plan.getFromBankAccountId(), plan.getToBankAccountId(),
+                    plan.getAmount(), plan.getCurrency());
+            instance.setExecuteAt(plan.getPeriod().plus(plan.getFirstExecuteAt(), plan.getExpandedCount()));
+            instances.add(instance);
+        }
+
+        return instances;
+    }
+
+    /**
+     * Moves every plan to its next instance. The instance which could not be created, e.g. because of the
+     * insufficient balance, is skipped and its reason is kept in the plan, the same as a bank skips the standing
+     * order it could not pay
+     *
+     * @param plans     due plans locked by the DAO
+     * @param instances the result of creation of their instances
+     */
+    private void expanded(List<RecurringPlan> plans, List<Transaction> instances) {
+        for (int i = 0; i < plans.size(); i++) {
+            RecurringPlan plan = plans.get(i);
+            Transaction instance = instances.get(i);
+            if (instance.getId() != null) {
+                plan.setLastTransactionId(instance.getId());
+                plan.setLastFailMessage(null);
+            } else {
+                plan.setLastFailMessage(instance.getFailMessage());
+            }
+
+            int expandedCount = plan.getExpandedCount() + 1;
+            plan.setExpandedCount(expandedCount);
+            Date nextExecuteAt = plan.getPeriod().plus(plan.getFirstExecuteAt(), expandedCount);
+            if (plan.getEndDate() != null && nextExecuteAt.after(plan.getEndDate())) {
+                plan.setStatus(RecurringPlanStatus.FINISHED);
+                plan.setExpandAt(null);
+            } else {
+                //The execution time of the instance just created
+                plan.setExpandAt(plan.getPeriod().plus(plan.getFirstExecuteAt(), expandedCount - 1));
+            }
+        }
+    }
+
+    /**
+     * @param plan the plan provided by the client
+     * @throws ObjectModificationException if required fields are missing or wrong or Bank Accounts do not exist
+     */
+    private void validate(RecurringPlan plan) throws ObjectModificationException {
+        if (plan.getFromBankAccountId() == null || plan.getToBankAccountId() == null) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The plan has not provided from Bank Account or to Bank Account values");
+        }
+        if (plan.getFromBankAccountId().equals(plan.getToBankAccountId())) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The sender and recipient should not be same");
+        }
+        if (plan.getAmount() == null || plan.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The amount should be more than 0");
+        }
+        if (plan.getCurrency() == null || plan.getPeriod() == null || plan.getFirstExecuteAt() == null) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The plan has not provided the currency, the period or the first execution time");
+        }
+        if (plan.getFirstExecuteAt().getTime() < System.currentTimeMillis()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The first execution time should not be in the past");
+        }
+        if (plan.getEndDate() != null && plan.getEndDate().before(plan.getFirstExecuteAt())) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The end date should not be before the first execution time");
+        }
+        if (services.getAccountService().getBankAccountById(plan.getFromBankAccountId()) == null ||
+                services.getAccountService().getBankAccountById(plan.getToBankAccountId()) == null) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_NOT_FOUND,
+                    "The provided bank account does not exist");
+        }
+    }
+}
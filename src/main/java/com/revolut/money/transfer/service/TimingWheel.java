@@ -0,0 +1,172 @@
+package com.revolut.money.transfer.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hierarchical timing wheel which holds values until their deadlines. Not thread safe, the caller should synchronize.
+ * <p>
+ * The time is split into ticks. Every level is the ring of <code>wheelSize</code> buckets, the bucket of the first
+ * level is one tick, the bucket of every next level is the whole ring of the previous one. The value is added into
+ * the lowest level which ring still reaches its deadline, so adding it is O(1) however far the deadline is. Every tick
+ * releases the single bucket of the first level, and once the ring of a level has been passed, the next bucket of
+ * the upper level is spread over the lower ones. Buckets are never searched, so the cost of the tick does not depend
+ * on the number of values held.
+ * <p>
+ * Values are released at the first tick which is not earlier than their deadline, so never before it and not later
+ * than one tick after it.
+ *
+ * @param <T> the type of values held
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final ToLongFunction<T> deadlineOf;
+    private final List<ArrayDeque<T>[]> levels = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis  the duration of the tick in milliseconds
+     * @param wheelSize   the number of buckets in every level
+     * @param startMillis the time of the wheel creation
+     * @param deadlineOf  the function returning the deadline of the value in milliseconds
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis, ToLongFunction<T> deadlineOf) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException(
+                    "The tick should be positive and the wheel should have 2 buckets at least");
+        }
+
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.deadlineOf = deadlineOf;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Adds the value if its deadline has not been reached yet
+     *
+     * @param value the value to be held until its deadline
+     * @return false if the deadline has been reached already and the value has not been added
+     */
+    public boolean add(T value) {
+        if (tickOf(value) <= currentTick) {
+            return false;
+        }
+
+        place(value);
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to the time provided and passes all values which deadlines have been reached to the consumer
+     *
+     * @param nowMillis the current time
+     * @param expired   the consumer of values which deadlines have been reached
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+
+        while (currentTick < targetTick) {
+            //Nothing to release on the way, so ticks are not walked one by one
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+
+            currentTick++;
+            cascade();
+
+            ArrayDeque<T> bucket = bucket(0, currentTick);
+            if (bucket != null) {
+                size -= bucket.size();
+                for (T value = bucket.poll(); value != null; value = bucket.poll()) {
+                    expired.accept(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of values held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Spreads buckets of upper levels which rings have been reached by the current tick over lower levels, the
+     * highest one first so its values could be spread further down by the next lower one
+     */
+    private void cascade() {
+        int highestLevel = 0;
+        long levelTick = currentTick;
+        while (highestLevel + 1 < levels.size() && levelTick % wheelSize == 0) {
+            levelTick /= wheelSize;
+            highestLevel++;
+        }
+
+        for (int level = highestLevel; level > 0; level--) {
+            ArrayDeque<T> bucket = bucket(level, currentTick / pow(level));
+            if (bucket != null) {
+                for (T value = bucket.poll(); value != null; value = bucket.poll()) {
+                    place(value);
+                }
+            }
+        }
+    }
+
+    private void place(T value) {
+        long slot = tickOf(value);
+        long currentSlot = currentTick;
+
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) {
+                levels.add(newLevel());
+            }
+            if (slot - currentSlot < wheelSize) {
+                ArrayDeque<T>[] buckets = levels.get(level);
+                int index = (int) Math.floorMod(slot, (long) wheelSize);
+                if (buckets[index] == null) {
+                    buckets[index] = new ArrayDeque<>();
+                }
+                buckets[index].add(value);
+                return;
+            }
+
+            slot = Math.floorDiv(slot, wheelSize);
+            currentSlot = Math.floorDiv(currentSlot, wheelSize);
+        }
+    }
+
+    private ArrayDeque<T> bucket(int level, long slot) {
+        return levels.isEmpty() ? null : levels.get(level)[(int) Math.floorMod(slot, (long) wheelSize)];
+    }
+
+    /**
+     * @return the first tick which is not earlier than the deadline of the value
+     */
+    private long tickOf(T value) {
+        return -Math.floorDiv(-deadlineOf.applyAsLong(value), tickMillis);
+    }
+
+    private long pow(int level) {
+        long result = 1;
+        for (int i = 0; i < level; i++) {
+            result *= wheelSize;
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ArrayDeque<T>[] newLevel() {
+        return new ArrayDeque[wheelSize];
+    }
+}
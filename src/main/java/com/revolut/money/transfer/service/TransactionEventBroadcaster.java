@@ -0,0 +1,262 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_EVENTS_HEARTBEAT_SECONDS;
+
+/**
+ * Pushes committed status changes of Transactions to the clients subscribed by Server-Sent Events to a particular
+ * Transaction or to all Transactions of a particular Bank Account. Implements the singleton pattern.
+ * <p>
+ * Subscribers are only kept as open event sinks, no thread is waiting for them. Events are written by the single
+ * thread of the broadcaster, so the thread which has committed the change never waits for slow clients. Streams of
+ * a Transaction are closed once it is SUCCEED or FAILED. Sinks of disconnected clients are dropped once writing
+ * of the next event or heartbeat comment fails. Once the server stops, all sinks are closed and its factory of events
+ * is dropped, so the heartbeat is never sent through the runtime which has been shut down.
+ */
+public class TransactionEventBroadcaster {
+    private static final Logger log = LoggerFactory.getLogger(TransactionEventBroadcaster.class);
+
+    private static final TransactionEventBroadcaster TRANSACTION_EVENT_BROADCASTER = new TransactionEventBroadcaster();
+
+    private final Map<Long, Set<SseEventSink>> transactionSinks = new ConcurrentHashMap<>();
+    private final Map<Long, Set<SseEventSink>> bankAccountSinks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private volatile Sse sse;
+
+    private TransactionEventBroadcaster() {
+        executorService.scheduleWithFixedDelay(this::sendHeartbeat,
+                TRANSACTION_EVENTS_HEARTBEAT_SECONDS, TRANSACTION_EVENTS_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the singleton object of TransactionEventBroadcaster class
+     */
+    public static TransactionEventBroadcaster getInstance() {
+        return TRANSACTION_EVENT_BROADCASTER;
+    }
+
+    /**
+     * Subscribes the client to status changes of the Transaction. The caller should send the current status after
+     * the subscription, so the change committed meanwhile could not be missed.
+     *
+     * @param transactionId the id of Transaction
+     * @param eventSink     the open stream of the client
+     * @param sse           the factory of events
+     */
+    public void subscribeToTransaction(Long transactionId, SseEventSink eventSink, Sse sse) {
+        this.sse = sse;
+        subscribe(transactionSinks, transactionId, eventSink);
+    }
+
+    /**
+     * Subscribes the client to status changes of all Transactions from or to the Bank Account
+     *
+     * @param bankAccountId the id of Bank Account
+     * @param eventSink     the open stream of the client
+     * @param sse           the factory of events
+     */
+    public void subscribeToBankAccount(Long bankAccountId, SseEventSink eventSink, Sse sse) {
+        this.sse = sse;
+        subscribe(bankAccountSinks, bankAccountId, eventSink);
+    }
+
+    /**
+     * Removes the subscription which could not be served, for example because the Transaction does not exist. The
+     * stream itself is left to the caller.
+     *
+     * @param transactionId the id of Transaction
+     * @param eventSink     the stream of the client
+     */
+    public void unsubscribeFromTransaction(Long transactionId, SseEventSink eventSink) {
+        remove(transactionSinks, transactionId, eventSink);
+    }
+
+    /**
+     * Sends the status of the Transaction to the client. The stream is closed if the status is final.
+     *
+     * @param transactionId the id of Transaction the client has been subscribed to
+     * @param eventSink     the open stream of the client
+     * @param transaction   the current state of Transaction
+     */
+    public void sendCurrentStatus(Long transactionId, SseEventSink eventSink, Transaction transaction) {
+        Transaction snapshot = snapshotOf(transaction);
+        executorService.execute(() -> {
+            send(transactionSinks, transactionId, eventSink, eventOf(snapshot));
+            if (isFinal(snapshot.getStatus())) {
+                unsubscribe(transactionSinks, transactionId, eventSink);
+            }
+        });
+    }
+
+    /**
+     * Reports the status change of the Transaction which has been committed. Does nothing if neither the
+     * Transaction nor its Bank Accounts have subscribers.
+     *
+     * @param transaction the Transaction with the new status
+     */
+    public void published(Transaction transaction) {
+        if (!transactionSinks.containsKey(transaction.getId())
+                && !bankAccountSinks.containsKey(transaction.getFromBankAccountId())
+                && !bankAccountSinks.containsKey(transaction.getToBankAccountId())) {
+            return;
+        }
+
+        Transaction snapshot = snapshotOf(transaction);
+        executorService.execute(() -> broadcast(snapshot));
+    }
+
+    /**
+     * Closes streams of all subscribers of the server which stops. Clients of the next server subscribe again
+     */
+    public void closeSubscriptions() {
+        sse = null;
+        closeAll(transactionSinks);
+        closeAll(bankAccountSinks);
+    }
+
+    /**
+     * @return the number of open streams of all Transactions and Bank Accounts
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Set<SseEventSink> eventSinks : transactionSinks.values()) {
+            count += eventSinks.size();
+        }
+        for (Set<SseEventSink> eventSinks : bankAccountSinks.values()) {
+            count += eventSinks.size();
+        }
+
+        return count;
+    }
+
+    private void broadcast(Transaction transaction) {
+        OutboundSseEvent event = eventOf(transaction);
+
+        sendAll(transactionSinks, transaction.getId(), event);
+        sendAll(bankAccountSinks, transaction.getFromBankAccountId(), event);
+        sendAll(bankAccountSinks, transaction.getToBankAccountId(), event);
+
+        if (isFinal(transaction.getStatus())) {
+            Set<SseEventSink> eventSinks = transactionSinks.remove(transaction.getId());
+            if (eventSinks != null) {
+                eventSinks.forEach(SseEventSink::close);
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        Sse currentSse = sse;
+        if (currentSse == null) {
+            return;
+        }
+
+        try {
+            OutboundSseEvent heartbeat = currentSse.newEventBuilder().comment("heartbeat").build();
+            transactionSinks.keySet().forEach(id -> sendAll(transactionSinks, id, heartbeat));
+            bankAccountSinks.keySet().forEach(id -> sendAll(bankAccountSinks, id, heartbeat));
+        } catch (RuntimeException e) {
+            log.error("Could not send the heartbeat to subscribers", e);
+        }
+    }
+
+    private void sendAll(Map<Long, Set<SseEventSink>> sinks, Long id, OutboundSseEvent event) {
+        Set<SseEventSink> eventSinks = sinks.get(id);
+        if (eventSinks != null) {
+            for (SseEventSink eventSink : eventSinks) {
+                send(sinks, id, eventSink, event);
+            }
+        }
+    }
+
+    private void send(Map<Long, Set<SseEventSink>> sinks, Long id, SseEventSink eventSink, OutboundSseEvent event) {
+        if (eventSink.isClosed()) {
+            unsubscribe(sinks, id, eventSink);
+            return;
+        }
+
+        try {
+            eventSink.send(event).whenComplete((result, e) -> {
+                if (e != null) {
+                    unsubscribe(sinks, id, eventSink);
+                }
+            });
+        } catch (RuntimeException e) {
+            unsubscribe(sinks, id, eventSink);
+        }
+    }
+
+    private static void closeAll(Map<Long, Set<SseEventSink>> sinks) {
+        for (Iterator<Set<SseEventSink>> iterator = sinks.values().iterator(); iterator.hasNext(); ) {
+            for (SseEventSink eventSink : iterator.next()) {
+                try {
+                    eventSink.close();
+                } catch (RuntimeException e) {
+                    log.debug("The stream could not be closed", e);
+                }
+            }
+            iterator.remove();
+        }
+    }
+
+    private static void subscribe(Map<Long, Set<SseEventSink>> sinks, Long id, SseEventSink eventSink) {
+        sinks.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(eventSink);
+    }
+
+    private static void unsubscribe(Map<Long, Set<SseEventSink>> sinks, Long id, SseEventSink eventSink) {
+        eventSink.close();
+        remove(sinks, id, eventSink);
+    }
+
+    private static void remove(Map<Long, Set<SseEventSink>> sinks, Long id, SseEventSink eventSink) {
+        sinks.computeIfPresent(id, (key, eventSinks) -> {
+            eventSinks.remove(eventSink);
+            return eventSinks.isEmpty() ? null : eventSinks;
+        });
+    }
+
+    private OutboundSseEvent eventOf(Transaction transaction) {
+        return sse.newEventBuilder()
+                .id(String.valueOf(transaction.getId()))
+                .name(transaction.getStatus().name())
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(Transaction.class, transaction)
+                .build();
+    }
+
+    private static boolean isFinal(TransactionStatus status) {
+        return status == TransactionStatus.SUCCEED || status == TransactionStatus.FAILED;
+    }
+
+    /**
+     * The Transaction object could be changed by the caller after the return, so the copy is sent
+     */
+    private static Transaction snapshotOf(Transaction transaction) {
+        Transaction snapshot = new Transaction(transaction.getFromBankAccountId(), transaction.getToBankAccountId(),
+                transaction.getAmount(), transaction.getCurrency());
+        snapshot.setId(transaction.getId());
+        snapshot.setCreationDate(transaction.getCreationDate());
+        snapshot.setUpdateDate(transaction.getUpdateDate());
+        snapshot.setStatus(transaction.getStatus());
+        snapshot.setFailCode(transaction.getFailCode());
+        snapshot.setFailMessage(transaction.getFailMessage());
+        snapshot.setExecuteAt(transaction.getExecuteAt());
+
+        return snapshot;
+    }
+}
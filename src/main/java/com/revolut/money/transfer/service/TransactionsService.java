@@ -1,9 +1,13 @@
 package com.revolut.money.transfer.service;
 
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.MultiGetResult;
+import com.revolut.money.transfer.model.StatementEntry;
 import com.revolut.money.transfer.model.Transaction;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 public interface TransactionsService {
 
@@ -11,7 +15,28 @@ public interface TransactionsService {
 
     Transaction getTransactionById(Long id);
 
+    MultiGetResult<Transaction> getTransactionsByIds(List<Long> ids) throws ObjectModificationException;
+
+    List<StatementEntry> getBankAccountStatement(Long bankAccountId, Long beforeDate, Long beforeId, int limit)
+            throws ObjectModificationException;
+
     Transaction createTransaction(Transaction transaction) throws ObjectModificationException;
 
+    List<Transaction> createTransactions(List<Transaction> transactions) throws ObjectModificationException;
+
+    void admitTransactions() throws ObjectModificationException;
+
+    void schedule(List<Transaction> transactions);
+
+    Transaction createAndExecuteTransaction(Transaction transaction) throws ObjectModificationException;
+
     void executeTransactions();
+
+    int archiveTransactions(Date settledBefore);
+
+    int recoverCrossShardTransfers(Date updatedBefore);
+
+    int releaseExpiredHolds(Date executeBefore);
+
+    int reconcileBlockedAmounts();
 }
@@ -2,20 +2,49 @@ package com.revolut.money.transfer.service;
 
 import com.revolut.money.transfer.core.AbstractService;
 import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.dao.SettlementBacklog;
 import com.revolut.money.transfer.dao.TransactionDao;
 import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.MultiGetResult;
+import com.revolut.money.transfer.model.StatementEntry;
 import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
 import com.revolut.money.transfer.model.TransactionStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static com.revolut.money.transfer.utils.Constants.ACCOUNT_MAILBOX_IDLE_MILLIS;
+import static com.revolut.money.transfer.utils.Constants.ACCOUNT_MAILBOX_THREADS;
+import static com.revolut.money.transfer.utils.Constants.CROSS_SHARD_RECOVERY_DELAY_SECONDS;
+import static com.revolut.money.transfer.utils.Constants.HOLD_CHUNK_SIZE;
+import static com.revolut.money.transfer.utils.Constants.HOLD_EXPIRY_MINUTES;
+import static com.revolut.money.transfer.utils.Constants.HOLD_RECONCILIATION_PERIOD_MINUTES;
+import static com.revolut.money.transfer.utils.Constants.HOLD_REAPER_PERIOD_SECONDS;
+import static com.revolut.money.transfer.utils.Constants.MAX_MULTI_GET_IDS;
+import static com.revolut.money.transfer.utils.Constants.MAX_TRANSACTIONS_BATCH_SIZE;
+import static com.revolut.money.transfer.utils.Constants.SCHEDULER_TICK_MILLIS;
+import static com.revolut.money.transfer.utils.Constants.SCHEDULER_WHEEL_SIZE;
+import static com.revolut.money.transfer.utils.Constants.STATEMENT_MAX_LIMIT;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_ARCHIVE_AGE_MINUTES;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_ARCHIVE_CHUNK_SIZE;
+import static com.revolut.money.transfer.utils.Constants.TRANSACTION_ARCHIVE_PERIOD_SECONDS;
+
 /**
  * Right now the proxy service under the {@link TransactionDao}. Should be used to abstract the presentation layer
  * from the persistence layer.
@@ -30,6 +59,12 @@ public class TransactionsServiceImpl extends AbstractService implements Transact
     private static TransactionsService ts;
     private TransactionDao transactionDao;
     private static ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    //Maintenance jobs share one thread, so they never take more than one settlement connection
+    private static ScheduledExecutorService maintenanceExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private static AccountMailboxes accountMailboxes =
+            new AccountMailboxes(ACCOUNT_MAILBOX_THREADS, ACCOUNT_MAILBOX_IDLE_MILLIS);
+    private SettlementBacklog settlementBacklog = SettlementBacklog.getInstance();
+    private TransferScheduler transferScheduler;
 
 
     public void setTransactionDao(TransactionDao transactionDao) {
@@ -42,10 +77,25 @@ public class TransactionsServiceImpl extends AbstractService implements Transact
     TransactionsServiceImpl(Services services) {
         super(services);
         this.transactionDao = TransactionDao.getInstance(services.getMoneyExchangeService());
+        this.transferScheduler = new TransferScheduler(SCHEDULER_TICK_MILLIS, SCHEDULER_WHEEL_SIZE,
+                this::executeScheduledTransaction);
+        executorService.execute(this::scheduleTransactions);
         executorService.scheduleAtFixedRate(() ->
                         ts.executeTransactions(),
                 0, 5, TimeUnit.SECONDS);
         log.info("Transaction Executor planned");
+        maintenanceExecutorService.scheduleWithFixedDelay(() ->
+                        ts.archiveTransactions(new Date(System.currentTimeMillis() -
+                                TimeUnit.MINUTES.toMillis(TRANSACTION_ARCHIVE_AGE_MINUTES))),
+                TRANSACTION_ARCHIVE_PERIOD_SECONDS, TRANSACTION_ARCHIVE_PERIOD_SECONDS, TimeUnit.SECONDS);
+        log.info("Transaction Archiver planned");
+        maintenanceExecutorService.scheduleWithFixedDelay(() ->
+                        ts.releaseExpiredHolds(new Date(System.currentTimeMillis() -
+                                TimeUnit.MINUTES.toMillis(HOLD_EXPIRY_MINUTES))),
+                HOLD_REAPER_PERIOD_SECONDS, HOLD_REAPER_PERIOD_SECONDS, TimeUnit.SECONDS);
+        maintenanceExecutorService.scheduleWithFixedDelay(() -> ts.reconcileBlockedAmounts(),
+                HOLD_RECONCILIATION_PERIOD_MINUTES, HOLD_RECONCILIATION_PERIOD_MINUTES, TimeUnit.MINUTES);
+        log.info("Hold Reaper planned");
     }
 
     public static TransactionsService getInstance(Services services) {
@@ -63,14 +113,58 @@ public class TransactionsServiceImpl extends AbstractService implements Transact
         return transactionDao.getAllTransactions();
     }
 
-    private Collection<Long> getAllTransactionIdsByStatus(TransactionStatus transactionStatus) {
-        return transactionDao.getAllTransactionIdsByStatus(transactionStatus);
-    }
-
     public Transaction getTransactionById(Long id) {
         return transactionDao.getTransactionById(id);
     }
 
+    /**
+     * Returns Transactions by ids by one query in every shard. Duplicate ids are collapsed.
+     *
+     * @param ids Transaction ids
+     * @return found Transactions and ids which do not exist, in the order of the first occurrence of ids
+     * @throws ObjectModificationException if there are no ids or more than allowed
+     */
+    public MultiGetResult<Transaction> getTransactionsByIds(List<Long> ids) throws ObjectModificationException {
+        if (ids == null || ids.isEmpty()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "At least one transaction id should be provided");
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.size() > MAX_MULTI_GET_IDS) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "Not more than " + MAX_MULTI_GET_IDS + " transaction ids should be provided");
+        }
+
+        return MultiGetResult.of(distinctIds, transactionDao.getTransactionsByIds(distinctIds));
+    }
+
+    /**
+     * Returns one page of the statement of the Bank Account, newest Transactions first. The next page is requested
+     * by the creation date and the id of the last Transaction of the previous one.
+     *
+     * @param bankAccountId the id of Bank Account
+     * @param beforeDate    the creation date in milliseconds of the last row seen. null for the first page
+     * @param beforeId      the id of the last row seen. null for the first page
+     * @param limit         the maximum number of rows to be returned
+     * @return rows of the statement with the balance of the Bank Account after each Transaction
+     * @throws ObjectModificationException if only one part of the keyset is provided or the limit is out of range
+     */
+    public List<StatementEntry> getBankAccountStatement(Long bankAccountId, Long beforeDate, Long beforeId,
+                                                        int limit) throws ObjectModificationException {
+        if ((beforeDate == null) != (beforeId == null)) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The creation date and the id of the last row should be provided together");
+        }
+        if (limit <= 0 || limit > STATEMENT_MAX_LIMIT) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The limit should be between 1 and " + STATEMENT_MAX_LIMIT);
+        }
+
+        return transactionDao.getBankAccountStatement(bankAccountId,
+                beforeDate == null ? null : new Date(beforeDate), beforeId, limit);
+    }
+
     /**
      * Make it possible to create money transfer from one account to another.
      * The result of execution is created transaction with actual status. Usually it is "IN PROGRESS"
@@ -79,8 +173,157 @@ public class TransactionsServiceImpl extends AbstractService implements Transact
      * fields except id
      *
      * @return transaction object with the actual ID
+     * @throws ObjectModificationException if the transaction is invalid or the settlement backlog is too large
      */
     public Transaction createTransaction(Transaction transaction) throws ObjectModificationException {
+        admitTransactions();
+        validate(transaction);
+
+        Transaction createdTransaction = transactionDao.createTransaction(transaction);
+        scheduleIfLater(createdTransaction);
+
+        return createdTransaction;
+    }
+
+    /**
+     * Batch form of {@link #createTransaction(Transaction)}. Each transaction is validated separately and the invalid
+     * ones are returned with FAILED status and the reason in <code>failMessage</code>. All valid transactions are
+     * created by {@link TransactionDao#createTransactions(List)}
+     *
+     * @return transactions in the same order with the result of creation for each of them
+     * @throws ObjectModificationException if the batch is empty or larger than allowed or the settlement backlog is
+     *                                     too large, in which case none of the transactions are created
+     */
+    public List<Transaction> createTransactions(List<Transaction> transactions) throws ObjectModificationException {
+        if (transactions == null || transactions.isEmpty()) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The batch should contain at least one transaction");
+        }
+        if (transactions.size() > MAX_TRANSACTIONS_BATCH_SIZE) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The batch should not contain more than " + MAX_TRANSACTIONS_BATCH_SIZE + " transactions");
+        }
+        admitTransactions();
+
+        List<Transaction> validTransactions = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            try {
+                validate(transaction);
+                validTransactions.add(transaction);
+            } catch (ObjectModificationException e) {
+                transaction.setStatus(TransactionStatus.FAILED);
+                transaction.setFailCode(TransactionFailCode.INVALID_TRANSACTION);
+                transaction.setFailMessage(e.getMessage());
+            }
+        }
+
+        if (!validTransactions.isEmpty()) {
+            transactionDao.createTransactions(validTransactions);
+            for (Transaction transaction : validTransactions) {
+                scheduleIfLater(transaction);
+            }
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Synchronous form of {@link #createTransaction(Transaction)}. The transaction is validated, created and executed
+     * at once so the caller receives the final SUCCEED status without waiting for the scheduled executor. It does not
+     * add to the settlement backlog, so it is admitted even if the backlog is too large.
+     *
+     * @return executed transaction object with the actual ID
+     * @throws ObjectModificationException if the transaction is invalid or scheduled for later
+     */
+    public Transaction createAndExecuteTransaction(Transaction transaction) throws ObjectModificationException {
+        validate(transaction);
+        if (isScheduledForLater(transaction)) {
+            throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
+                    "The transaction executed at once could not be scheduled for later");
+        }
+
+        return transactionDao.createAndExecuteTransaction(transaction);
+    }
+
+    /**
+     * Sheds new transactions while the settlement is behind, so the client is told to retry later at once instead of
+     * its transaction waiting for the executor longer and longer. It is also used by the caller which creates
+     * transactions in its own database's transaction
+     *
+     * @throws ObjectModificationException if the settlement backlog is too large
+     */
+    public void admitTransactions() throws ObjectModificationException {
+        if (!settlementBacklog.tryAdmit()) {
+            throw new ObjectModificationException(ExceptionType.SETTLEMENT_BACKLOG_EXCEEDED,
+                    settlementBacklog.getDepth() + " transactions are waiting for the settlement, the oldest one for " +
+                            settlementBacklog.getOldestAgeMillis() + " ms");
+        }
+    }
+
+    /**
+     * Passes created transactions scheduled for later to the {@link TransferScheduler}. It is used by the caller
+     * which creates transactions in its own database's transaction once they have been committed
+     *
+     * @param transactions the result of creation. Rejected ones are skipped
+     */
+    public void schedule(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            scheduleIfLater(transaction);
+        }
+    }
+
+    /**
+     * Passes the created transaction scheduled for later to the {@link TransferScheduler}, so it is executed once its
+     * execution time has come. Other transactions are left to the transaction executor
+     */
+    private void scheduleIfLater(Transaction transaction) {
+        if (transaction != null && transaction.getId() != null &&
+                transaction.getStatus() == TransactionStatus.CREATED && isScheduledForLater(transaction)) {
+            transferScheduler.schedule(transaction);
+        }
+    }
+
+    private static boolean isScheduledForLater(Transaction transaction) {
+        return transaction.getExecuteAt() != null && transaction.getExecuteAt().getTime() > System.currentTimeMillis();
+    }
+
+    /**
+     * Fills the {@link TransferScheduler} with CREATED transactions scheduled for later which are stored in the
+     * database. Transactions which are due already are left to the transaction executor
+     */
+    private void scheduleTransactions() {
+        try {
+            int scheduled = transactionDao.forEachScheduledTransaction(new Date(), transferScheduler::schedule);
+            log.info("{} scheduled transactions are waiting for their execution time", scheduled);
+        } catch (RuntimeException e) {
+            log.error("Scheduled transactions could not be read, they will be executed by the transaction executor", e);
+        }
+    }
+
+    /**
+     * Executes the scheduled transaction released by the {@link TransferScheduler} in the mailbox of its source Bank
+     * Account, so it is never executed concurrently with other transactions of that account
+     */
+    private void executeScheduledTransaction(Long transactionId, Long fromBankAccountId) {
+        accountMailboxes.submit(fromBankAccountId, () -> {
+            try {
+                transactionDao.executeTransaction(transactionId);
+            } catch (ObjectModificationException e) {
+                //It could have been executed by the transaction executor already
+                log.debug("Scheduled transaction with id {} has not been executed: {}", transactionId, e.getMessage());
+            } catch (InvalidOperationExecution e) {
+                //The failure is already stored in the transaction and logged by the DAO
+            }
+        });
+    }
+
+    /**
+     * Verifies the transaction provided by the client before it will be passed to the persistence layer
+     *
+     * @param transaction transaction to be checked
+     * @throws ObjectModificationException if accounts are not specified or the same or amount is not positive
+     */
+    private void validate(Transaction transaction) throws ObjectModificationException {
         if (transaction.getFromBankAccountId() == null || transaction.getToBankAccountId() == null) {
             throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
                     "The transaction has not provided from Bank Account or to Bank Account values");
@@ -89,29 +332,144 @@ public class TransactionsServiceImpl extends AbstractService implements Transact
             throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
                     "The sender and recipient should not be same");
         }
-        if (transaction.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+        if (transaction.getAmount() == null || transaction.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED,
                     "The amount should be more than 0");
         }
-
-        return transactionDao.createTransaction(transaction);
     }
 
     /**
      * Here we are taking all  transactions in Created State and executing them.
-     * After execution the transaction status will be changed
+     * After execution the transaction status will be changed. Cross shard transactions which have been stuck in
+     * PROCESSING state longer than the recovery delay are completed first.
+     * <p>
+     * Every transaction is passed into the mailbox of its source Bank Account, so transactions of the same account
+     * are executed one by one in the order of creation and never wait for each other's locks while transactions of
+     * different accounts are executed in parallel. The method returns once all of them are executed.
+     * <p>
+     * CREATED transactions found are reconciled with the {@link SettlementBacklog}, so changes reported to it out of
+     * order do not stay there longer than till the next run.
      */
     public void executeTransactions() {
         log.info("Starting of Transaction executor");
-        Collection<Long> plannedTransactionIds = getAllTransactionIdsByStatus(TransactionStatus.CREATED);
+        recoverCrossShardTransfers(new Date(System.currentTimeMillis() -
+                TimeUnit.SECONDS.toMillis(CROSS_SHARD_RECOVERY_DELAY_SECONDS)));
 
-        for (Long transactionId : plannedTransactionIds) {
-            try {
-                transactionDao.executeTransaction(transactionId);
-            } catch (ObjectModificationException e) {
-                log.error("Could not execute transaction with id %d", transactionId, e);
-            }
+        long searched = System.currentTimeMillis();
+        Map<Long, Long> plannedTransactions = transactionDao.getSourceBankAccountIdsByStatus(TransactionStatus.CREATED);
+        settlementBacklog.reconcile(plannedTransactions.keySet(), searched);
+
+        List<CompletableFuture<Void>> executions = new ArrayList<>(plannedTransactions.size());
+        for (Map.Entry<Long, Long> plannedTransaction : plannedTransactions.entrySet()) {
+            Long transactionId = plannedTransaction.getKey();
+            executions.add(accountMailboxes.submit(plannedTransaction.getValue(), () -> {
+                try {
+                    transactionDao.executeTransaction(transactionId);
+                } catch (ObjectModificationException e) {
+                    if (e.getType() == ExceptionType.OBJECT_IS_MALFORMED) {
+                        //It has been executed by the scheduler since it was found, as every due scheduled
+                        //transaction is passed to its mailbox by both of them
+                        log.debug("Transaction with id {} has not been executed: {}", transactionId, e.getMessage());
+                    } else {
+                        log.error("Could not execute transaction with id {}", transactionId, e);
+                    }
+                } catch (InvalidOperationExecution e) {
+                    //The failure is already stored in the transaction and logged by the DAO. Others should be executed
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(executions.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            //Others have been executed anyway, the failed one will be picked up again by the next run
+            log.error("Transaction execution has failed", e.getCause());
         }
         log.info("Transaction executor ended");
     }
+
+    /**
+     * Completes cross shard transactions which source Bank Account has been already debited but which target Bank
+     * Account has not been credited yet.
+     *
+     * @param updatedBefore only transactions in PROCESSING state updated before this date will be completed
+     * @return the number of completed transactions
+     */
+    public int recoverCrossShardTransfers(Date updatedBefore) {
+        try {
+            return transactionDao.recoverCrossShardTransfers(updatedBefore);
+        } catch (RuntimeException e) {
+            log.error("Cross shard transactions recovery has been interrupted", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Moves settled transactions which have not been updated since the date provided into the archive by chunks.
+     * Every chunk is moved in its own database's transaction so live settlement is never blocked for long.
+     *
+     * @param settledBefore only transactions updated before this date will be archived
+     * @return the number of archived transactions
+     */
+    public int archiveTransactions(Date settledBefore) {
+        int archived = 0;
+        try {
+            int chunk;
+            do {
+                chunk = transactionDao.archiveTransactions(settledBefore, TRANSACTION_ARCHIVE_CHUNK_SIZE);
+                archived += chunk;
+            } while (chunk > 0);
+        } catch (RuntimeException e) {
+            log.error("Transaction archiving has been interrupted", e);
+        }
+
+        if (archived > 0) {
+            log.info("{} transactions have been archived", archived);
+        }
+        return archived;
+    }
+
+    /**
+     * Marks CREATED transactions which have not been executed long after their execution time as FAILED and releases
+     * their amounts from blockedAmount of source Bank Accounts by chunks. Every chunk is released in its own
+     * database's transaction.
+     *
+     * @param executeBefore only CREATED transactions which execution time is before this date are released
+     * @return the number of released holds
+     */
+    public int releaseExpiredHolds(Date executeBefore) {
+        int released = 0;
+        try {
+            int chunk;
+            do {
+                chunk = transactionDao.releaseExpiredHolds(executeBefore, HOLD_CHUNK_SIZE);
+                released += chunk;
+            } while (chunk > 0);
+        } catch (RuntimeException e) {
+            log.error("Expired holds release has been interrupted", e);
+        }
+
+        if (released > 0) {
+            log.warn("{} expired holds have been released", released);
+        }
+        return released;
+    }
+
+    /**
+     * Recomputes blockedAmount of all Bank Accounts from their CREATED transactions and corrects the ones which
+     * differ, so the amount leaked by a failure is not locked forever.
+     *
+     * @return the number of corrected Bank Accounts
+     */
+    public int reconcileBlockedAmounts() {
+        try {
+            int corrected = transactionDao.reconcileBlockedAmounts(HOLD_CHUNK_SIZE);
+            if (corrected > 0) {
+                log.warn("Blocked amounts of {} bank accounts have been corrected", corrected);
+            }
+            return corrected;
+        } catch (RuntimeException e) {
+            log.error("Blocked amounts reconciliation has been interrupted", e);
+            return 0;
+        }
+    }
 }
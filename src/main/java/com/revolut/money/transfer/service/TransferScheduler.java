@@ -0,0 +1,105 @@
+package com.revolut.money.transfer.service;
+
+import com.revolut.money.transfer.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds transactions scheduled for later in the {@link TimingWheel} and releases every one of them once its execution
+ * time has come, so it is executed at that time instead of the next run of the transaction executor.
+ * <p>
+ * Only the id, the source Bank Account and the execution time are held, so millions of scheduled transactions fit
+ * into memory. They are not persisted separately: the wheel is filled by the query of the index on the status and
+ * the execution time on startup. The transaction executor picks up due transactions anyway, so a transaction which
+ * has been lost by the wheel is executed late but never missed.
+ */
+public class TransferScheduler {
+    private static final Logger log = LoggerFactory.getLogger(TransferScheduler.class);
+
+    private final TimingWheel<ScheduledTransfer> timingWheel;
+    private final BiConsumer<Long, Long> release;
+
+    /**
+     * @param tickMillis the precision of releases in milliseconds
+     * @param wheelSize  the number of buckets in every level of the wheel
+     * @param release    the consumer of the id of the due transaction and the id of its source Bank Account
+     */
+    public TransferScheduler(long tickMillis, int wheelSize, BiConsumer<Long, Long> release) {
+        this.timingWheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis(),
+                transfer -> transfer.executeAtMillis);
+        this.release = release;
+
+        ScheduledExecutorService tickExecutorService = Executors.newSingleThreadScheduledExecutor();
+        tickExecutorService.scheduleAtFixedRate(() -> tick(System.currentTimeMillis()),
+                tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Holds the CREATED transaction until its execution time. The transaction which is due already is released at once
+     *
+     * @param transaction the transaction with the id, the source Bank Account and the execution time
+     */
+    public void schedule(Transaction transaction) {
+        ScheduledTransfer transfer = new ScheduledTransfer(transaction.getId(), transaction.getFromBankAccountId(),
+                transaction.getExecuteAt().getTime());
+
+        boolean held;
+        synchronized (timingWheel) {
+            held = timingWheel.add(transfer);
+        }
+        if (!held) {
+            release(transfer);
+        }
+    }
+
+    /**
+     * @return the number of transactions which are waiting for their execution time
+     */
+    public int getScheduledCount() {
+        synchronized (timingWheel) {
+            return timingWheel.size();
+        }
+    }
+
+    /**
+     * Releases transactions which execution time has come by the time provided
+     */
+    void tick(long nowMillis) {
+        List<ScheduledTransfer> due = new ArrayList<>();
+        synchronized (timingWheel) {
+            timingWheel.advance(nowMillis, due::add);
+        }
+
+        for (ScheduledTransfer transfer : due) {
+            release(transfer);
+        }
+    }
+
+    private void release(ScheduledTransfer transfer) {
+        try {
+            release.accept(transfer.transactionId, transfer.fromBankAccountId);
+        } catch (RuntimeException e) {
+            //The transaction executor will pick it up
+            log.error("Scheduled transaction with id {} could not be released", transfer.transactionId, e);
+        }
+    }
+
+    private static class ScheduledTransfer {
+        private final long transactionId;
+        private final long fromBankAccountId;
+        private final long executeAtMillis;
+
+        private ScheduledTransfer(long transactionId, long fromBankAccountId, long executeAtMillis) {
+            this.transactionId = transactionId;
+            this.fromBankAccountId = fromBankAccountId;
+            this.executeAtMillis = executeAtMillis;
+        }
+    }
+}
@@ -5,6 +5,9 @@ public class Constants {
     public static final Long TATA_BANK_ACCOUNT_ID = 1L;
     public static final Long SIEMENS_BANK_ACCOUNT_ID = 2L;
     public static final Long NAGARRO_BANK_ACCOUNT_ID = 3L;
+    public static final int MAX_TRANSACTIONS_BATCH_SIZE = 50000;
+    public static final int MAX_BANK_ACCOUNTS_BATCH_SIZE = 50000;
+    public static final int DEFAULT_IMPORT_CHUNK_SIZE = 1000;
 
     // Bank Account Table column
     public static final String BANK_ACCOUNT_TABLE_NAME = "bank_account";
@@ -13,6 +16,9 @@ public class Constants {
     public static final String BANK_ACCOUNT_BALANCE_ROW = "balance";
     public static final String BANK_ACCOUNT_BLOCKED_AMOUNT_ROW = "blocked_amount";
     public static final String BANK_ACCOUNT_CURRENCY_ID_ROW = "currency_id";
+    public static final String BANK_ACCOUNT_VERSION_ROW = "version";
+    //The scale of all money columns, amounts are rounded HALF_UP to it once they are stored
+    public static final int MONEY_SCALE = 4;
 
     //Transaction Table Column
     public static final String TRANSACTION_TABLE_NAME = "transaction";
@@ -25,5 +31,163 @@ public class Constants {
     public static final String TRANSACTION_UPDATE_DATE_ROW = "update_date";
     public static final String TRANSACTION_STATUS_ROW = "status_id";
     public static final String FAIL_MESSAGE_ROW = "failMessage";
+    public static final String FAIL_CODE_ROW = "fail_code";
+    public static final String TRANSACTION_EXECUTE_AT_ROW = "execute_at";
+    public static final int FAIL_MESSAGE_MAX_LENGTH = 256;
+
+    //Transaction Archive Table has the same columns as Transaction Table
+    public static final String TRANSACTION_ARCHIVE_TABLE_NAME = "transaction_archive";
+
+    //Transaction archiving settings which could be overridden by the system properties
+    public static final long TRANSACTION_ARCHIVE_AGE_MINUTES = Long.getLong("transfer.archive.age.minutes", 24 * 60);
+    public static final int TRANSACTION_ARCHIVE_CHUNK_SIZE = Integer.getInteger("transfer.archive.chunk.size", 1000);
+    public static final long TRANSACTION_ARCHIVE_PERIOD_SECONDS = Long.getLong("transfer.archive.period.seconds", 60);
+
+    //Hold expiry and reconciliation settings which could be overridden by the system properties
+    public static final long HOLD_EXPIRY_MINUTES = Long.getLong("transfer.holds.expiry.minutes", 60);
+    public static final int HOLD_CHUNK_SIZE = Integer.getInteger("transfer.holds.chunk.size", 1000);
+    public static final long HOLD_REAPER_PERIOD_SECONDS = Long.getLong("transfer.holds.reaper.period.seconds", 60);
+    public static final long HOLD_RECONCILIATION_PERIOD_MINUTES =
+            Long.getLong("transfer.holds.reconciliation.period.minutes", 60);
+
+    //Ledger reconciliation settings which could be overridden by the system properties. Ranges are scanned in
+    //parallel by as many threads as the reconciliation pool has connections
+    public static final long LEDGER_RECONCILIATION_PERIOD_HOURS =
+            Long.getLong("transfer.ledger.reconciliation.period.hours", 24);
+    public static final int LEDGER_RECONCILIATION_RANGE_SIZE =
+            Integer.getInteger("transfer.ledger.reconciliation.range.size", 10_000);
+    public static final int LEDGER_RECONCILIATION_MAX_DISCREPANCIES =
+            Integer.getInteger("transfer.ledger.reconciliation.max.discrepancies", 1000);
+    //Money is checked to be conserved at the moment this margin before the reconciliation, so every transfer
+    //settled before that moment is committed by the time the ledger is read
+    public static final long LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS =
+            Long.getLong("transfer.ledger.reconciliation.settle.margin.millis", 60_000);
+
+    //Cross shard transfer credits. One row per transaction credited in the shard of the target Bank Account
+    public static final String CROSS_SHARD_CREDIT_TABLE_NAME = "cross_shard_credit";
+    public static final String CROSS_SHARD_CREDIT_TRANSACTION_ID_ROW = "transaction_id";
+    public static final String CROSS_SHARD_CREDIT_ACCOUNT_ROW = "to_account_id";
+    public static final String CROSS_SHARD_CREDIT_AMOUNT_ROW = "amount";
+    public static final String CROSS_SHARD_CREDIT_TRANSACTION_AMOUNT_ROW = "transaction_amount";
+    public static final String CROSS_SHARD_CREDIT_TRANSACTION_CURRENCY_ROW = "transaction_currency_id";
+    public static final String CROSS_SHARD_CREDIT_CREATION_DATE_ROW = "creation_date";
+
+    //Balance Checkpoint Table columns. One row per settled transfer side or opened Bank Account in its shard
+    public static final String BALANCE_CHECKPOINT_TABLE_NAME = "balance_checkpoint";
+    public static final String BALANCE_CHECKPOINT_ACCOUNT_ROW = "bank_account_id";
+    public static final String BALANCE_CHECKPOINT_TRANSACTION_ID_ROW = "transaction_id";
+    public static final String BALANCE_CHECKPOINT_BALANCE_ROW = "balance";
+    public static final String BALANCE_CHECKPOINT_CREATION_DATE_ROW = "creation_date";
+    //The checkpoint of the opening balance of the Bank Account created has this transaction id
+    public static final long BALANCE_CHECKPOINT_OPENING_TRANSACTION_ID = 0L;
+
+    //Recurring Plan Table columns. One row per standing order in the shard of its source Bank Account
+    public static final String RECURRING_PLAN_TABLE_NAME = "recurring_plan";
+    public static final String RECURRING_PLAN_ID_ROW = "id";
+    public static final String RECURRING_PLAN_FROM_ACCOUNT_ROW = "from_account_id";
+    public static final String RECURRING_PLAN_TO_ACCOUNT_ROW = "to_account_id";
+    public static final String RECURRING_PLAN_AMOUNT_ROW = "amount";
+    public static final String RECURRING_PLAN_CURRENCY_ROW = "currency_id";
+    public static final String RECURRING_PLAN_PERIOD_ROW = "period";
+    public static final String RECURRING_PLAN_FIRST_EXECUTE_AT_ROW = "first_execute_at";
+    public static final String RECURRING_PLAN_END_DATE_ROW = "end_date";
+    public static final String RECURRING_PLAN_STATUS_ROW = "status";
+    public static final String RECURRING_PLAN_EXPANDED_COUNT_ROW = "expanded_count";
+    public static final String RECURRING_PLAN_EXPAND_AT_ROW = "expand_at";
+    public static final String RECURRING_PLAN_LAST_TRANSACTION_ID_ROW = "last_transaction_id";
+    public static final String RECURRING_PLAN_LAST_FAIL_MESSAGE_ROW = "last_fail_message";
+    public static final String RECURRING_PLAN_CREATION_DATE_ROW = "creation_date";
+    public static final String RECURRING_PLAN_UPDATE_DATE_ROW = "update_date";
+
+    //Recurring plan expansion settings which could be overridden by the system properties. Due plans are expanded
+    //into Transactions by chunks, every chunk is created by one batch
+    public static final int RECURRING_PLAN_CHUNK_SIZE = Integer.getInteger("transfer.plans.chunk.size", 1000);
+    public static final long RECURRING_PLAN_PERIOD_SECONDS = Long.getLong("transfer.plans.period.seconds", 1);
+
+    //Reading of Bank Accounts and Transactions by ids which could be overridden by the system properties
+    public static final int MAX_MULTI_GET_IDS = Integer.getInteger("transfer.multiget.max.ids", 500);
+
+    //Bank Account statement settings which could be overridden by the system properties
+    public static final int STATEMENT_MAX_LIMIT = Integer.getInteger("transfer.statement.max.limit", 1000);
+
+    //Change Log Table column. One row per committed change of Transaction or Bank Account balance in every shard
+    public static final String CHANGE_LOG_TABLE_NAME = "change_log";
+    public static final String CHANGE_LOG_ID_ROW = "id";
+    public static final String CHANGE_LOG_SEQ_ROW = "seq";
+    public static final String CHANGE_LOG_ENTITY_TYPE_ROW = "entity_type";
+    public static final String CHANGE_LOG_ENTITY_ID_ROW = "entity_id";
+    public static final String CHANGE_LOG_STATUS_ROW = "status_id";
+    public static final String CHANGE_LOG_BALANCE_ROW = "balance";
+    public static final String CHANGE_LOG_BLOCKED_AMOUNT_ROW = "blocked_amount";
+    public static final String CHANGE_LOG_CHANGE_DATE_ROW = "change_date";
+
+    //Change feed settings which could be overridden by the system properties
+    public static final int CHANGE_FEED_MAX_LIMIT = Integer.getInteger("transfer.changes.max.limit", 1000);
+
+    //Startup settings which could be overridden by the system properties
+    public static final boolean WARM_UP_ENABLED =
+            Boolean.parseBoolean(System.getProperty("transfer.warmup.enabled", "false"));
+    public static final int WARM_UP_ITERATIONS = Integer.getInteger("transfer.warmup.iterations", 500);
+    public static final boolean WARM_UP_EXIT =
+            Boolean.parseBoolean(System.getProperty("transfer.warmup.exit", "false"));
+
+    //Response compression settings which could be overridden by the system properties. Responses shorter than
+    //the minimum size are sent as is, as gzip would cost more than it saves on them
+    public static final boolean COMPRESSION_ENABLED =
+            Boolean.parseBoolean(System.getProperty("transfer.compression.enabled", "true"));
+    public static final int COMPRESSION_MIN_SIZE = Integer.getInteger("transfer.compression.min.size", 1024);
+
+    //Per client rate limiting settings which could be overridden by the system properties. Clients are told apart
+    //by the remote address only
+    public static final boolean RATE_LIMIT_ENABLED =
+            Boolean.parseBoolean(System.getProperty("transfer.ratelimit.enabled", "true"));
+    public static final double RATE_LIMIT_PERMITS_PER_SECOND =
+            Double.parseDouble(System.getProperty("transfer.ratelimit.permits.per.second", "1000"));
+    public static final int RATE_LIMIT_BURST = Integer.getInteger("transfer.ratelimit.burst", 2000);
+    public static final int RATE_LIMIT_MAX_CLIENTS = Integer.getInteger("transfer.ratelimit.max.clients", 10_000);
+
+    //Admission control settings which could be overridden by the system properties. New transactions are rejected
+    //while more of them are waiting for the settlement or the oldest one has been waiting longer
+    public static final int ADMISSION_MAX_BACKLOG = Integer.getInteger("transfer.admission.max.backlog", 100_000);
+    public static final long ADMISSION_MAX_BACKLOG_AGE_MILLIS =
+            Long.getLong("transfer.admission.max.backlog.age.millis", 60_000);
+    public static final int ADMISSION_RETRY_AFTER_SECONDS =
+            Integer.getInteger("transfer.admission.retry.after.seconds", 5);
+
+    //Scheduled transactions settings which could be overridden by the system properties. Transactions are released
+    //not earlier than their execution time and not later than one tick after it
+    public static final long SCHEDULER_TICK_MILLIS = Long.getLong("transfer.scheduler.tick.millis", 10);
+    public static final int SCHEDULER_WHEEL_SIZE = Integer.getInteger("transfer.scheduler.wheel.size", 512);
+
+    //Sharding settings which could be overridden by the system properties
+    public static final int SHARD_COUNT = Integer.getInteger("transfer.shards.count", 1);
+    public static final long CROSS_SHARD_RECOVERY_DELAY_SECONDS =
+            Long.getLong("transfer.shards.recovery.delay.seconds", 60);
+
+    //Read replica settings which could be overridden by the system properties
+    public static final boolean REPLICA_ENABLED =
+            Boolean.parseBoolean(System.getProperty("transfer.replica.enabled", "true"));
+    public static final long REPLICA_MAX_STALENESS_MILLIS = Long.getLong("transfer.replica.max.staleness.millis", 1000);
+    public static final long REPLICA_SYNC_PERIOD_MILLIS = Long.getLong("transfer.replica.sync.period.millis", 50);
+    public static final int REPLICA_SYNC_CHUNK_SIZE = Integer.getInteger("transfer.replica.sync.chunk.size", 1000);
+
+    //Optimistic locking settings which could be overridden by the system properties
+    public static final boolean OPTIMISTIC_LOCKING_ENABLED =
+            Boolean.parseBoolean(System.getProperty("transfer.locking.optimistic.enabled", "true"));
+    public static final int OPTIMISTIC_LOCKING_MAX_ATTEMPTS =
+            Integer.getInteger("transfer.locking.optimistic.max.attempts", 3);
+    public static final double OPTIMISTIC_LOCKING_CONFLICT_THRESHOLD =
+            Double.parseDouble(System.getProperty("transfer.locking.conflict.threshold", "0.2"));
+    public static final long OPTIMISTIC_LOCKING_COOL_DOWN_MILLIS =
+            Long.getLong("transfer.locking.cool.down.millis", 1000);
+
+    //Per account execution settings which could be overridden by the system properties. One settlement connection
+    //of the default pool is left for the archiver and the cross shard recovery
+    public static final int ACCOUNT_MAILBOX_THREADS = Integer.getInteger("transfer.mailbox.threads", 3);
+    public static final long ACCOUNT_MAILBOX_IDLE_MILLIS = Long.getLong("transfer.mailbox.idle.millis", 60_000);
+
+    //The period of comments sent to Server-Sent Events subscribers to detect disconnected clients
+    public static final long TRANSACTION_EVENTS_HEARTBEAT_SECONDS =
+            Long.getLong("transfer.events.heartbeat.seconds", 15);
 
 }
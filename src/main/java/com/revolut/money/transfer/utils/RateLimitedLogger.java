@@ -0,0 +1,57 @@
+package com.revolut.money.transfer.utils;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps the logger to write not more than <code>permits</code> error messages with stack traces per
+ * <code>intervalMillis</code>. Other messages are only counted and the number of suppressed ones is reported with
+ * the next written message. Used on failure paths which could be hit by thousands of requests at once.
+ */
+public class RateLimitedLogger {
+    private final Logger log;
+    private final int permits;
+    private final long intervalMillis;
+
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public RateLimitedLogger(Logger log, int permits, long intervalMillis) {
+        this.log = log;
+        this.permits = permits;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Writes the message with the stack trace if the limit for the current interval is not exceeded
+     *
+     * @param message the message to be written
+     * @param th      the exception which stack trace should be written
+     */
+    public void error(String message, Throwable th) {
+        if (!tryAcquire()) {
+            suppressed.incrementAndGet();
+            return;
+        }
+
+        long suppressedCount = suppressed.getAndSet(0);
+        if (suppressedCount > 0) {
+            log.error(message + " (" + suppressedCount + " similar messages have been suppressed)", th);
+        } else {
+            log.error(message, th);
+        }
+    }
+
+    private boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= intervalMillis && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+        }
+
+        return used.incrementAndGet() <= permits;
+    }
+}
@@ -10,6 +10,7 @@ CREATE TABLE IF NOT EXISTS bank_account (
   balance DECIMAL(19,4) NOT NULL,
   blocked_amount DECIMAL(19,4) NOT NULL,
   currency_id INT NOT NULL,
+  version BIGINT DEFAULT 0 NOT NULL,
   FOREIGN KEY(currency_id) REFERENCES currency(id)
 );
 
@@ -27,10 +28,99 @@ CREATE TABLE IF NOT EXISTS transaction (
   creation_date TIMESTAMP NOT NULL,
   update_date TIMESTAMP,
   status_id INT NOT NULL,
-  failMessage VARCHAR(5000),
+  failMessage VARCHAR(256),
+  fail_code VARCHAR(32),
+  execute_at TIMESTAMP NOT NULL,
 
   FOREIGN KEY(from_account_id) REFERENCES bank_account(id),
   FOREIGN KEY(to_account_id) REFERENCES bank_account(id),
   FOREIGN KEY(currency_id) REFERENCES currency(id),
   FOREIGN KEY(status_id) REFERENCES transaction_status(id)
-)
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS transaction_status_update_date_idx ON transaction(status_id, update_date);
+CREATE INDEX IF NOT EXISTS transaction_status_execute_at_idx ON transaction(status_id, execute_at);
+CREATE INDEX IF NOT EXISTS transaction_from_account_creation_date_idx ON transaction(from_account_id, creation_date);
+CREATE INDEX IF NOT EXISTS transaction_to_account_creation_date_idx ON transaction(to_account_id, creation_date);
+
+CREATE TABLE IF NOT EXISTS transaction_archive (
+  id BIGINT PRIMARY KEY,
+  from_account_id BIGINT NOT NULL,
+  to_account_id BIGINT NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  currency_id INT NOT NULL,
+  creation_date TIMESTAMP NOT NULL,
+  update_date TIMESTAMP,
+  status_id INT NOT NULL,
+  failMessage VARCHAR(256),
+  fail_code VARCHAR(32),
+  execute_at TIMESTAMP,
+
+  FOREIGN KEY(currency_id) REFERENCES currency(id),
+  FOREIGN KEY(status_id) REFERENCES transaction_status(id)
+);
+
+CREATE INDEX IF NOT EXISTS transaction_archive_from_account_creation_date_idx
+  ON transaction_archive(from_account_id, creation_date);
+CREATE INDEX IF NOT EXISTS transaction_archive_to_account_creation_date_idx
+  ON transaction_archive(to_account_id, creation_date);
+
+CREATE TABLE IF NOT EXISTS cross_shard_credit (
+  transaction_id BIGINT PRIMARY KEY,
+  to_account_id BIGINT NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  transaction_amount DECIMAL(19,4) NOT NULL,
+  transaction_currency_id INT NOT NULL,
+  creation_date TIMESTAMP NOT NULL,
+
+  FOREIGN KEY(to_account_id) REFERENCES bank_account(id),
+  FOREIGN KEY(transaction_currency_id) REFERENCES currency(id)
+);
+
+CREATE TABLE IF NOT EXISTS balance_checkpoint (
+  bank_account_id BIGINT NOT NULL,
+  transaction_id BIGINT NOT NULL,
+  balance DECIMAL(19,4) NOT NULL,
+  creation_date TIMESTAMP NOT NULL,
+
+  PRIMARY KEY(bank_account_id, transaction_id),
+  FOREIGN KEY(bank_account_id) REFERENCES bank_account(id)
+);
+
+CREATE INDEX IF NOT EXISTS balance_checkpoint_creation_date_idx ON balance_checkpoint(creation_date);
+
+CREATE TABLE IF NOT EXISTS recurring_plan (
+  id IDENTITY,
+  from_account_id BIGINT NOT NULL,
+  to_account_id BIGINT NOT NULL,
+  amount DECIMAL(19,4) NOT NULL,
+  currency_id INT NOT NULL,
+  period VARCHAR(16) NOT NULL,
+  first_execute_at TIMESTAMP NOT NULL,
+  end_date TIMESTAMP,
+  status VARCHAR(16) NOT NULL,
+  expanded_count INT DEFAULT 0 NOT NULL,
+  expand_at TIMESTAMP,
+  last_transaction_id BIGINT,
+  last_fail_message VARCHAR(256),
+  creation_date TIMESTAMP NOT NULL,
+  update_date TIMESTAMP NOT NULL,
+
+  FOREIGN KEY(from_account_id) REFERENCES bank_account(id),
+  FOREIGN KEY(currency_id) REFERENCES currency(id)
+);
+
+CREATE INDEX IF NOT EXISTS recurring_plan_expand_at_idx ON recurring_plan(expand_at);
+
+CREATE TABLE IF NOT EXISTS change_log (
+  id IDENTITY,
+  seq BIGINT,
+  entity_type VARCHAR(16) NOT NULL,
+  entity_id BIGINT NOT NULL,
+  status_id INT,
+  balance DECIMAL(19,4),
+  blocked_amount DECIMAL(19,4),
+  change_date TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS change_log_seq_idx ON change_log(seq);
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.revolut.money.transfer;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.service.BankAccountService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+public class BankAccountsImportApplicationTest {
+    private BankAccountService bankAccountService = ServiceFactory.createServices().getAccountService();
+
+    /**
+     * Tests that all valid lines will be imported by chunks and malformed ones and ones which block money will be
+     * skipped
+     */
+    @Test
+    public void testImportBankAccounts() throws IOException, ObjectModificationException, SQLException {
+        //The list of bank accounts is read from the replica, so it should receive all previous changes first
+        ReplicaSynchronizer.getInstance().synchronize();
+        int initialSize = bankAccountService.getAllBankAccounts().size();
+
+        String csv = "owner_name,balance,blocked_amount,currency\n" +
+                "Import Account 1,10.5,0,EUR\n" +
+                "Import Account 2,20,1,USD\n" +
+                "Import Account 3,not a number,0,INR\n" +
+                "\n" +
+                "Import Account 4,30,0,INR\n" +
+                "Import Account 5,40,0,GBP\n" +
+                "Import Account 6,50,0,EUR\n";
+
+        long imported = new BankAccountsImportApplication(bankAccountService::createBankAccounts, 2)
+                .importBankAccounts(new BufferedReader(new StringReader(csv)));
+
+        assertEquals(imported, 3);
+        ReplicaSynchronizer.getInstance().synchronize();
+        assertEquals(bankAccountService.getAllBankAccounts().size(), initialSize + 3);
+    }
+
+    /**
+     * Tests that chunks are sent to the running service by batch requests
+     */
+    @Test
+    public void testImportBankAccountsToService() throws IOException, ObjectModificationException {
+        String csv = "owner_name,balance,blocked_amount,currency\n" +
+                "Service Import Account 1,10,0,EUR\n" +
+                "Service Import Account 2,20,0,USD\n" +
+                "Service Import Account 3,30,0,INR\n";
+        List<BankAccount> created = new ArrayList<>();
+
+        HttpServer server = MoneyTransferApplication.startServer();
+        Client client = ClientBuilder.newClient();
+        try {
+            BankAccountsImportApplication.BankAccountsSink serviceSink =
+                    BankAccountsImportApplication.toService(client.target(MoneyTransferApplication.BASE_URI));
+            long imported = new BankAccountsImportApplication(bankAccounts -> {
+                List<BankAccount> chunk = serviceSink.createBankAccounts(bankAccounts);
+                created.addAll(chunk);
+                return chunk;
+            }, 2).importBankAccounts(new BufferedReader(new StringReader(csv)));
+
+            assertEquals(imported, 3);
+        } finally {
+            client.close();
+            server.shutdownNow();
+        }
+
+        assertEquals(created.size(), 3);
+        for (BankAccount bankAccount : created) {
+            BankAccount createdAccount = bankAccountService.getBankAccountById(bankAccount.getId());
+            assertEquals(createdAccount.getOwnerName(), bankAccount.getOwnerName());
+            assertThat(createdAccount.getBalance(), Matchers.comparesEqualTo(bankAccount.getBalance()));
+        }
+    }
+
+    /**
+     * Tests that all bank accounts will be created by one call and get generated ids
+     */
+    @Test
+    public void testCreateBankAccounts() throws ObjectModificationException {
+        List<BankAccount> bankAccounts = bankAccountService.createBankAccounts(Arrays.asList(
+                new BankAccount("Batch Account 1", BigDecimal.ONE, BigDecimal.ZERO, Currency.EUR),
+                new BankAccount("Batch Account 2", BigDecimal.TEN, BigDecimal.ZERO, Currency.USD)
+        ));
+
+        for (BankAccount bankAccount : bankAccounts) {
+            assertNotNull(bankAccount.getId());
+            BankAccount createdAccount = bankAccountService.getBankAccountById(bankAccount.getId());
+            assertEquals(createdAccount.getOwnerName(), bankAccount.getOwnerName());
+            assertThat(createdAccount.getBalance(), Matchers.comparesEqualTo(bankAccount.getBalance()));
+        }
+    }
+}
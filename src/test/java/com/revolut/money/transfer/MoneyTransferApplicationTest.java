@@ -0,0 +1,116 @@
+package com.revolut.money.transfer;
+
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.HealthController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.service.BankAccountService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.revolut.money.transfer.utils.Constants.TATA_BANK_ACCOUNT_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This Test starts the server and logs the time to the first served request, then warms the server up, logs the
+ * latency of requests before and after it and verifies that the warm-up has not changed balances.
+ */
+public class MoneyTransferApplicationTest {
+    private static final Logger log = LoggerFactory.getLogger(MoneyTransferApplicationTest.class);
+
+    private static final int REQUESTS_COUNT = 500;
+
+    private static HttpServer server;
+    private static WebTarget target;
+    private static int firstResponseStatus;
+
+    private BankAccountService bankAccountService = ServiceFactory.createServices().getAccountService();
+
+    @BeforeClass
+    public static void beforeAll() {
+        long start = System.nanoTime();
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+
+        Response response = target.path(HealthController.BASE_URL).path(HealthController.READY_PATH).request().get();
+        log.info("Time to the first request: {} ms", (System.nanoTime() - start) / 1_000_000);
+        //Asserted by the test, so the server is always shut down even if it has not become ready
+        firstResponseStatus = response.getStatus();
+        response.close();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the started server is reported ready, starting from the first request
+     */
+    @Test
+    public void testReadiness() {
+        assertEquals(firstResponseStatus, Response.Status.OK.getStatusCode());
+
+        Response response = target.path(HealthController.BASE_URL).path(HealthController.READY_PATH).request().get();
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(response.readEntity(String.class), "{\"ready\":true}");
+    }
+
+    /**
+     * Tests that money is only moved back and forth between warm-up Bank Accounts. Logs the latency of requests
+     * before and after the warm-up
+     */
+    @Test
+    public void testWarmUp() throws SQLException {
+        logLatency("before the warm-up");
+        List<Long> bankAccountIds = new ApplicationWarmUp(target, 20).warmUp();
+        logLatency("after the warm-up");
+
+        assertEquals(bankAccountIds.size(), 2);
+        for (Long bankAccountId : bankAccountIds) {
+            BankAccount bankAccount = bankAccountService.getBankAccountById(bankAccountId);
+
+            assertEquals(bankAccount.getOwnerName(), ApplicationWarmUp.OWNER_NAME);
+            assertThat(bankAccount.getBalance(), Matchers.comparesEqualTo(ApplicationWarmUp.INITIAL_BALANCE));
+            assertThat(bankAccount.getBlockedAmount(), Matchers.comparesEqualTo(BigDecimal.ZERO));
+        }
+
+        //Lists of Bank Accounts are read from the replica, so it should receive warm-up accounts before other tests
+        ReplicaSynchronizer.getInstance().synchronize();
+    }
+
+    private static void logLatency(String name) {
+        long[] latencies = new long[REQUESTS_COUNT];
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            long start = System.nanoTime();
+            Response response = target.path(BankAccountsController.BASE_URL)
+                    .path(TATA_BANK_ACCOUNT_ID.toString()).request().get();
+            response.readEntity(String.class);
+            latencies[i] = System.nanoTime() - start;
+
+            assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        }
+
+        long first = latencies[0];
+        Arrays.sort(latencies);
+        log.info("{} requests {}: first {} us, p50 {} us, p99 {} us, max {} us", REQUESTS_COUNT, name,
+                first / 1000, latencies[REQUESTS_COUNT / 2] / 1000, latencies[REQUESTS_COUNT * 99 / 100] / 1000,
+                latencies[REQUESTS_COUNT - 1] / 1000);
+    }
+}
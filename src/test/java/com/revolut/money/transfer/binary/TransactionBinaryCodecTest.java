@@ -0,0 +1,174 @@
+package com.revolut.money.transfer.binary;
+
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
+import com.revolut.money.transfer.model.TransactionStatus;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that transactions survive the round trip through the binary encoding and malformed bodies are
+ * rejected
+ */
+public class TransactionBinaryCodecTest {
+
+    /**
+     * Tests that only the fields of the create request are encoded and decoded as they were
+     */
+    @Test
+    public void testCreateRequests() {
+        Transaction transaction = new Transaction(1L, Long.MAX_VALUE, new BigDecimal("-12345678901234567890.0100"),
+                Currency.INR);
+        transaction.setId(5L);
+        transaction.setExecuteAt(new Date(3000L));
+        Transaction empty = new Transaction(null, null, null, null);
+
+        List<Transaction> decoded = TransactionBinaryCodec.decodeCreateRequests(ByteBuffer.wrap(
+                TransactionBinaryCodec.encodeCreateRequests(Arrays.asList(transaction, empty))));
+
+        assertEquals(decoded.size(), 2);
+        assertEquals(decoded.get(0).getFromBankAccountId(), transaction.getFromBankAccountId());
+        assertEquals(decoded.get(0).getToBankAccountId(), transaction.getToBankAccountId());
+        assertEquals(decoded.get(0).getAmount(), transaction.getAmount());
+        assertEquals(decoded.get(0).getCurrency(), transaction.getCurrency());
+        assertEquals(decoded.get(0).getExecuteAt(), transaction.getExecuteAt());
+        assertNull(decoded.get(0).getId());
+        assertNull(decoded.get(1).getFromBankAccountId());
+        assertNull(decoded.get(1).getToBankAccountId());
+        assertNull(decoded.get(1).getAmount());
+        assertNull(decoded.get(1).getCurrency());
+        assertNull(decoded.get(1).getExecuteAt());
+    }
+
+    /**
+     * Tests that all fields of the status are encoded and decoded as they were
+     */
+    @Test
+    public void testStatuses() {
+        Transaction transaction = new Transaction(1L, 2L, BigDecimal.ZERO, Currency.EUR);
+        transaction.setId(Long.MAX_VALUE);
+        transaction.setStatus(TransactionStatus.FAILED);
+        transaction.setFailCode(TransactionFailCode.UNEXPECTED_ERROR);
+        transaction.setFailMessage("Euro € emoji 💸");
+        transaction.setCreationDate(new Date(1000L));
+        transaction.setUpdateDate(new Date(2000L));
+        transaction.setExecuteAt(new Date(3000L));
+
+        Transaction decoded = TransactionBinaryCodec.decodeStatuses(ByteBuffer.wrap(
+                TransactionBinaryCodec.encodeStatuses(Collections.singletonList(transaction)))).get(0);
+
+        assertEquals(decoded.getId(), transaction.getId());
+        assertEquals(decoded.getFromBankAccountId(), transaction.getFromBankAccountId());
+        assertEquals(decoded.getToBankAccountId(), transaction.getToBankAccountId());
+        assertEquals(decoded.getAmount(), transaction.getAmount());
+        assertEquals(decoded.getCurrency(), transaction.getCurrency());
+        assertEquals(decoded.getStatus(), transaction.getStatus());
+        assertEquals(decoded.getFailCode(), transaction.getFailCode());
+        assertEquals(decoded.getFailMessage(), transaction.getFailMessage());
+        assertEquals(decoded.getCreationDate(), transaction.getCreationDate());
+        assertEquals(decoded.getUpdateDate(), transaction.getUpdateDate());
+        assertEquals(decoded.getExecuteAt(), transaction.getExecuteAt());
+
+        Transaction empty = new Transaction();
+        empty.setCreationDate(null);
+        empty.setStatus(null);
+        empty.setFailMessage(null);
+        decoded = TransactionBinaryCodec.decodeStatuses(ByteBuffer.wrap(
+                TransactionBinaryCodec.encodeStatuses(Collections.singletonList(empty)))).get(0);
+
+        assertNull(decoded.getId());
+        assertNull(decoded.getStatus());
+        assertNull(decoded.getFailCode());
+        assertNull(decoded.getFailMessage());
+        assertNull(decoded.getCreationDate());
+    }
+
+    /**
+     * Tests that the decoder skips fields appended to the record by the newer encoder
+     */
+    @Test
+    public void testLongerRecord() {
+        byte[] record = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(1L, 2L, BigDecimal.ONE, Currency.USD)));
+        ByteBuffer buffer = ByteBuffer.allocate(record.length * 2 + 2);
+        for (int i = 0; i < 2; i++) {
+            buffer.putInt(record.length - Integer.BYTES + 1);
+            buffer.put(record, Integer.BYTES, record.length - Integer.BYTES);
+            buffer.put((byte) 42);
+        }
+        buffer.flip();
+
+        List<Transaction> decoded = TransactionBinaryCodec.decodeCreateRequests(buffer);
+
+        assertEquals(decoded.size(), 2);
+        assertEquals(decoded.get(1).getAmount(), BigDecimal.ONE);
+        assertEquals(decoded.get(1).getCurrency(), Currency.USD);
+    }
+
+    /**
+     * Tests that the record of the older encoder without the execution time is still read
+     */
+    @Test
+    public void testRecordWithoutExecuteAt() {
+        byte[] record = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(1L, 2L, BigDecimal.ONE, Currency.USD)));
+        ByteBuffer buffer = ByteBuffer.allocate(record.length - Long.BYTES);
+        buffer.putInt(record.length - Integer.BYTES - Long.BYTES);
+        buffer.put(record, Integer.BYTES, record.length - Integer.BYTES - Long.BYTES);
+        buffer.flip();
+
+        Transaction decoded = TransactionBinaryCodec.decodeCreateRequests(buffer).get(0);
+
+        assertEquals(decoded.getAmount(), BigDecimal.ONE);
+        assertNull(decoded.getExecuteAt());
+    }
+
+    /**
+     * Tests that the empty body is the empty list
+     */
+    @Test
+    public void testEmptyBody() {
+        assertTrue(TransactionBinaryCodec.decodeCreateRequests(ByteBuffer.allocate(0)).isEmpty());
+        assertEquals(TransactionBinaryCodec.encodeStatuses(Collections.emptyList()).length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTruncatedBody() {
+        byte[] body = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(1L, 2L, BigDecimal.ONE, Currency.USD)));
+
+        TransactionBinaryCodec.decodeCreateRequests(ByteBuffer.wrap(body, 0, body.length - 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testShortRecord() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES * 3);
+        buffer.putInt(Long.BYTES);
+        buffer.putLong(1L);
+        buffer.putLong(2L);
+        buffer.putLong(3L);
+        buffer.flip();
+
+        TransactionBinaryCodec.decodeCreateRequests(buffer);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCurrency() {
+        byte[] body = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(1L, 2L, BigDecimal.ONE, Currency.USD)));
+        body[Integer.BYTES + Long.BYTES * 2] = 127;
+
+        TransactionBinaryCodec.decodeCreateRequests(ByteBuffer.wrap(body));
+    }
+}
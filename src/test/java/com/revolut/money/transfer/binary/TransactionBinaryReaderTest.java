@@ -0,0 +1,109 @@
+package com.revolut.money.transfer.binary;
+
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This Test verifies that the binary body is read whether its length is known or not and the body longer than the
+ * largest batch is rejected before it is allocated or read to its end
+ */
+public class TransactionBinaryReaderTest {
+    private TransactionBinaryReader reader = new TransactionBinaryReader();
+
+    /**
+     * Tests that the body is read by its Content-Length and without it
+     */
+    @Test
+    public void testBodyIsRead() throws IOException {
+        byte[] body = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(1L, 2L, BigDecimal.ONE, Currency.EUR)));
+
+        assertEquals(read(headers(String.valueOf(body.length)), new ByteArrayInputStream(body)).size(), 1);
+        assertEquals(read(headers(null), new ByteArrayInputStream(body)).size(), 1);
+    }
+
+    /**
+     * Tests that the body which Content-Length is larger than the largest batch is rejected before anything is read
+     */
+    @Test
+    public void testTooLargeContentLengthIsRejected() throws IOException {
+        EndlessInputStream entityStream = new EndlessInputStream();
+
+        assertTooLarge(headers("2000000000"), entityStream);
+        assertEquals(entityStream.read, 0);
+    }
+
+    /**
+     * Tests that the body without Content-Length is rejected once it is read past the largest batch
+     */
+    @Test
+    public void testTooLongStreamIsRejected() throws IOException {
+        EndlessInputStream entityStream = new EndlessInputStream();
+
+        assertTooLarge(headers(null), entityStream);
+        assertTrue(entityStream.read <= TransactionBinaryReader.MAX_BODY_SIZE + 1);
+    }
+
+    private void assertTooLarge(MultivaluedMap<String, String> headers, InputStream entityStream)
+            throws IOException {
+        try {
+            read(headers, entityStream);
+            fail("The body longer than the largest batch has been read");
+        } catch (WebApplicationException e) {
+            assertEquals(e.getResponse().getStatus(), Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Transaction> read(MultivaluedMap<String, String> headers, InputStream entityStream)
+            throws IOException {
+        return (List<Transaction>) reader.readFrom(Object.class, List.class, new Annotation[0],
+                TransactionBinaryCodec.MEDIA_TYPE_TYPE, headers, entityStream);
+    }
+
+    private static MultivaluedMap<String, String> headers(String contentLength) {
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        if (contentLength != null) {
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, contentLength);
+        }
+
+        return headers;
+    }
+
+    /**
+     * The body which never ends
+     */
+    private static class EndlessInputStream extends InputStream {
+        private long read;
+
+        @Override
+        public int read() {
+            read++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            read += len;
+            return len;
+        }
+    }
+}
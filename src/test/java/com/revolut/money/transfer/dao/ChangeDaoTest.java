@@ -0,0 +1,123 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.model.Change;
+import com.revolut.money.transfer.model.ChangeType;
+import com.revolut.money.transfer.model.TransactionStatus;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ChangeDaoTest {
+    private static final int PAGE_SIZE = 1000;
+    private static final long HELD_OPEN_MILLIS = 1500;
+    private static final Long HELD_TRANSACTION_ID = -1L;
+    private static final Long COMMITTED_TRANSACTION_ID = -2L;
+
+    private ChangeDao changeDao = ChangeDao.getInstance();
+    private DaoManager daoManager = DaoManager.getInstance();
+
+    /**
+     * Tests that the change of the writer which has been held open is returned after the change committed before it
+     * once it is committed, even if the feed has been read past the committed change in the meantime
+     */
+    @Test
+    public void testChangeOfHeldOpenWriterIsNotSkipped() throws Exception {
+        long since = readToEnd(0);
+
+        List<Change> changes = new ArrayList<>();
+        Connection heldCon = daoManager.getConnection(0, ConnectionPool.WRITE);
+        try {
+            changeDao.transactionChanged(heldCon, HELD_TRANSACTION_ID, TransactionStatus.SUCCEED);
+
+            try (Connection con = daoManager.getConnection(0, ConnectionPool.WRITE)) {
+                changeDao.transactionChanged(con, COMMITTED_TRANSACTION_ID, TransactionStatus.SUCCEED);
+                con.commit();
+            }
+
+            //The feed is read repeatedly while the writer is held open
+            long heldOpenUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HELD_OPEN_MILLIS);
+            while (System.nanoTime() < heldOpenUntil) {
+                since = readChanges(since, changes);
+                Thread.sleep(100);
+            }
+
+            assertEquals(changes.size(), 1);
+            assertEquals(changes.get(0).getEntityId(), COMMITTED_TRANSACTION_ID);
+
+            heldCon.commit();
+        } finally {
+            DaoManager.safeRollback(heldCon);
+            DaoManager.quietlyClose(heldCon);
+        }
+
+        readChanges(since, changes);
+
+        assertEquals(changes.size(), 2);
+        assertEquals(changes.get(1).getEntityId(), HELD_TRANSACTION_ID);
+        assertTrue(changes.get(1).getSeq() > changes.get(0).getSeq());
+    }
+
+    /**
+     * Tests that sequence numbers of the feed have no gaps, even if the change has been rolled back
+     */
+    @Test
+    public void testRolledBackChangeLeavesNoGap() throws Exception {
+        long since = readToEnd(0);
+
+        try (Connection con = daoManager.getConnection(0, ConnectionPool.WRITE)) {
+            changeDao.transactionChanged(con, HELD_TRANSACTION_ID, TransactionStatus.FAILED);
+            con.rollback();
+
+            changeDao.transactionChanged(con, COMMITTED_TRANSACTION_ID, TransactionStatus.FAILED);
+            con.commit();
+        }
+
+        List<Change> changes = changeDao.getChanges(0, since, PAGE_SIZE);
+
+        assertTrue(!changes.isEmpty());
+        long expectedSeq = since + 1;
+        for (Change change : changes) {
+            assertEquals(change.getSeq().longValue(), expectedSeq++);
+            assertTrue(!change.getEntityId().equals(HELD_TRANSACTION_ID));
+        }
+    }
+
+    /**
+     * Reads changes of the test transactions after the sequence number provided
+     *
+     * @return the last sequence number seen
+     */
+    private long readChanges(long since, List<Change> testChanges) {
+        for (Change change : changeDao.getChanges(0, since, PAGE_SIZE)) {
+            assertEquals(change.getSeq().longValue(), since + 1);
+            since = change.getSeq();
+
+            if (change.getType() == ChangeType.TRANSACTION && change.getEntityId() < 0) {
+                testChanges.add(change);
+            }
+        }
+
+        return since;
+    }
+
+    private long readToEnd(int shard) {
+        long since = 0;
+        List<Change> changes;
+        do {
+            changes = changeDao.getChanges(shard, since, PAGE_SIZE);
+            if (!changes.isEmpty()) {
+                since = changes.get(changes.size() - 1).getSeq();
+            }
+        } while (changes.size() == PAGE_SIZE);
+
+        return since;
+    }
+}
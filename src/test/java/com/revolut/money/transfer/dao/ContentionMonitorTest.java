@@ -0,0 +1,103 @@
+package com.revolut.money.transfer.dao;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ContentionMonitorTest {
+    private static final Long QUIET_ACCOUNT_ID = 1L;
+    private static final Long HOT_ACCOUNT_ID = 2L;
+    private static final long COOL_DOWN_MILLIS = 1000;
+    private static final long COOL_DOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(COOL_DOWN_MILLIS);
+
+    /**
+     * Tests that accounts without conflicts are never locked and not even tracked
+     */
+    @Test
+    public void testQuietAccountsAreNotLocked() {
+        ContentionMonitor contentionMonitor = new ContentionMonitor(true, 0.2, COOL_DOWN_MILLIS);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(contentionMonitor.shouldLock(QUIET_ACCOUNT_ID));
+            contentionMonitor.committed(false, QUIET_ACCOUNT_ID);
+        }
+
+        assertEquals(contentionMonitor.getOptimisticCommits(), 100);
+        assertEquals(contentionMonitor.getConflictRate(QUIET_ACCOUNT_ID), 0.0);
+        assertEquals(contentionMonitor.getHotAccountCount(), 0);
+    }
+
+    /**
+     * Tests that the account is locked once its conflict rate crosses the threshold, locked commits do not cool it
+     * down and it comes back to the optimistic path once the cool-down is over and optimistic commits succeed
+     */
+    @Test
+    public void testHotAccountIsLockedUntilConflictsAreOver() {
+        ContentionMonitor contentionMonitor = new ContentionMonitor(true, 0.2, COOL_DOWN_MILLIS);
+        long now = 0;
+
+        contentionMonitor.conflictedAt(now, HOT_ACCOUNT_ID);
+        assertFalse(contentionMonitor.shouldLockAt(now, QUIET_ACCOUNT_ID, HOT_ACCOUNT_ID));
+
+        contentionMonitor.conflictedAt(now, HOT_ACCOUNT_ID);
+        contentionMonitor.conflictedAt(now, HOT_ACCOUNT_ID);
+        assertTrue(contentionMonitor.shouldLockAt(now, QUIET_ACCOUNT_ID, HOT_ACCOUNT_ID));
+        assertEquals(contentionMonitor.getHotAccountCountAt(now), 1);
+        assertEquals(contentionMonitor.getConflicts(), 3);
+
+        for (int i = 0; i < 100; i++) {
+            contentionMonitor.committed(true, HOT_ACCOUNT_ID);
+        }
+        assertTrue(contentionMonitor.shouldLockAt(now, HOT_ACCOUNT_ID));
+
+        now += COOL_DOWN_NANOS;
+        assertFalse(contentionMonitor.shouldLockAt(now, HOT_ACCOUNT_ID));
+        for (int i = 0; i < 100 && contentionMonitor.getConflictRate(HOT_ACCOUNT_ID) >= 0.2; i++) {
+            assertFalse(contentionMonitor.shouldLockAt(now, HOT_ACCOUNT_ID));
+            contentionMonitor.committed(false, HOT_ACCOUNT_ID);
+        }
+        assertFalse(contentionMonitor.shouldLockAt(now, HOT_ACCOUNT_ID));
+        assertEquals(contentionMonitor.getHotAccountCountAt(now), 0);
+    }
+
+    /**
+     * Tests that the account under steady contention stays locked: every optimistic attempt conflicts and every
+     * locked one commits, so the account is tried optimistically only once per cool-down
+     */
+    @Test
+    public void testAccountUnderSteadyContentionStaysLocked() {
+        ContentionMonitor contentionMonitor = new ContentionMonitor(true, 0.2, COOL_DOWN_MILLIS);
+        long step = TimeUnit.MILLISECONDS.toNanos(1);
+        int transfers = 10_000;
+
+        int optimisticAttempts = 0;
+        for (long now = 0; now < transfers * step; now += step) {
+            if (contentionMonitor.shouldLockAt(now, HOT_ACCOUNT_ID)) {
+                contentionMonitor.committed(true, HOT_ACCOUNT_ID);
+            } else {
+                optimisticAttempts++;
+                contentionMonitor.conflictedAt(now, HOT_ACCOUNT_ID);
+            }
+        }
+
+        //3 conflicts make the account hot, then one attempt per cool-down
+        long coolDowns = transfers * step / COOL_DOWN_NANOS;
+        assertTrue(optimisticAttempts <= 3 + coolDowns, optimisticAttempts + " optimistic attempts");
+        assertTrue(contentionMonitor.shouldLockAt(transfers * step, HOT_ACCOUNT_ID));
+        assertEquals(contentionMonitor.getHotAccountCountAt(transfers * step), 1);
+    }
+
+    /**
+     * Tests that every account is locked once optimistic locking is switched off
+     */
+    @Test
+    public void testOptimisticLockingDisabled() {
+        ContentionMonitor contentionMonitor = new ContentionMonitor(false, 0.2, COOL_DOWN_MILLIS);
+
+        assertTrue(contentionMonitor.shouldLock(QUIET_ACCOUNT_ID));
+    }
+}
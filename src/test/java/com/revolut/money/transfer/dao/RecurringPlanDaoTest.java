@@ -0,0 +1,146 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.RecurringPeriod;
+import com.revolut.money.transfer.model.RecurringPlan;
+import com.revolut.money.transfer.model.RecurringPlanStatus;
+import com.revolut.money.transfer.model.Transaction;
+import org.hamcrest.Matchers;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class RecurringPlanDaoTest {
+    private static final int CHUNK_SIZE = 10_000;
+    private static final String COUNT_TRANSACTIONS_SQL =
+            "select count(*) from " + TRANSACTION_TABLE_NAME + " where " + TRANSACTION_FROM_ACCOUNT_ROW + " = ?";
+
+    private RecurringPlanDao recurringPlanDao =
+            RecurringPlanDao.getInstance(ServiceFactory.createServices().getMoneyExchangeService());
+    private BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+    private DaoManager daoManager = DaoManager.getInstance();
+
+    /**
+     * Tests that the instance is rolled back together with its plan if the plan could not be moved to its next
+     * instance after the instance has been inserted, so the plan is left due and its instance is not duplicated
+     */
+    @Test
+    public void testInstanceIsRolledBackIfPlanUpdateFails() throws Exception {
+        BankAccount fromBankAccount = bankAccountDao.createBankAccount(
+                new BankAccount("Plan From Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+        BankAccount toBankAccount = bankAccountDao.createBankAccount(
+                new BankAccount("Plan To Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+
+        //Far ahead, so the plan is not expanded by the running expansion in the meantime
+        Date firstExecuteAt = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+        Date expandAt = RecurringPeriod.WEEKLY.plus(firstExecuteAt, -1);
+        RecurringPlan plan = recurringPlanDao.createPlan(createPlan(fromBankAccount.getId(), toBankAccount.getId(),
+                firstExecuteAt, expandAt));
+
+        List<Transaction> createdInstances = new ArrayList<>();
+        List<Transaction> committedInstances = new ArrayList<>();
+        RecurringPlanDao.PlansExpansion failingExpansion = new RecurringPlanDao.PlansExpansion() {
+            @Override
+            public List<Transaction> instancesOf(List<RecurringPlan> plans) {
+                List<Transaction> instances = new ArrayList<>(plans.size());
+                for (RecurringPlan duePlan : plans) {
+                    Transaction instance = new Transaction(duePlan.getFromBankAccountId(),
+                            duePlan.getToBankAccountId(), duePlan.getAmount(), duePlan.getCurrency());
+                    instance.setExecuteAt(firstExecuteAt);
+                    instances.add(instance);
+                }
+                return instances;
+            }
+
+            @Override
+            public void expanded(List<RecurringPlan> plans, List<Transaction> instances) {
+                for (int i = 0; i < plans.size(); i++) {
+                    if (plans.get(i).getId().equals(plan.getId())) {
+                        createdInstances.add(instances.get(i));
+                        //The update of the plan fails as the status is required
+                        plans.get(i).setStatus(null);
+                    }
+                }
+            }
+
+            @Override
+            public void committed(List<Transaction> instances) {
+                committedInstances.addAll(instances);
+            }
+        };
+
+        int shard = BaseDao.shardOf(fromBankAccount.getId());
+        try {
+            recurringPlanDao.expandDuePlans(shard, expandAt, CHUNK_SIZE, failingExpansion);
+            fail("The failed update of plans has not been reported");
+        } catch (InvalidOperationExecution e) {
+            //expected
+        }
+
+        assertEquals(createdInstances.size(), 1);
+        assertNotNull(createdInstances.get(0).getId());
+        assertTrue(committedInstances.isEmpty());
+
+        assertEquals(countTransactionsFrom(shard, fromBankAccount.getId()), 0);
+        assertThat(bankAccountDao.getBankAccountById(fromBankAccount.getId()).getBlockedAmount(),
+                Matchers.comparesEqualTo(BigDecimal.ZERO));
+
+        RecurringPlan duePlan = recurringPlanDao.getPlanById(plan.getId());
+        assertEquals(duePlan.getStatus(), RecurringPlanStatus.ACTIVE);
+        assertEquals(duePlan.getExpandedCount(), Integer.valueOf(0));
+        assertEquals(duePlan.getExpandAt(), expandAt);
+        assertNull(duePlan.getLastTransactionId());
+    }
+
+    private int countTransactionsFrom(int shard, Long fromBankAccountId) throws Exception {
+        try (Connection con = daoManager.getConnection(shard, ConnectionPool.WRITE);
+             PreparedStatement countTransactions = con.prepareStatement(COUNT_TRANSACTIONS_SQL)) {
+            countTransactions.setLong(1, fromBankAccountId);
+            try (ResultSet countRS = countTransactions.executeQuery()) {
+                countRS.next();
+                return countRS.getInt(1);
+            } finally {
+                con.rollback();
+            }
+        }
+    }
+
+    private static RecurringPlan createPlan(Long fromBankAccountId, Long toBankAccountId, Date firstExecuteAt,
+                                            Date expandAt) {
+        Date now = new Date();
+        RecurringPlan plan = new RecurringPlan();
+        plan.setFromBankAccountId(fromBankAccountId);
+        plan.setToBankAccountId(toBankAccountId);
+        plan.setAmount(BigDecimal.ONE);
+        plan.setCurrency(Currency.EUR);
+        plan.setPeriod(RecurringPeriod.WEEKLY);
+        plan.setFirstExecuteAt(firstExecuteAt);
+        plan.setStatus(RecurringPlanStatus.ACTIVE);
+        plan.setExpandedCount(0);
+        plan.setExpandAt(expandAt);
+        plan.setCreationDate(now);
+        plan.setUpdateDate(now);
+        return plan;
+    }
+}
@@ -0,0 +1,94 @@
+package com.revolut.money.transfer.dao;
+
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies the depth and the age of the settlement backlog by the time passed explicitly
+ */
+public class SettlementBacklogTest {
+
+    /**
+     * Tests that transactions are admitted until the backlog is as deep as allowed and again once it is settled
+     */
+    @Test
+    public void testMaxDepth() {
+        SettlementBacklog settlementBacklog = new SettlementBacklog(2, Long.MAX_VALUE);
+        long now = System.currentTimeMillis();
+
+        assertTrue(settlementBacklog.tryAdmit(now));
+        settlementBacklog.published(transaction(1L, TransactionStatus.CREATED, now));
+        assertTrue(settlementBacklog.tryAdmit(now));
+        settlementBacklog.published(transaction(2L, TransactionStatus.CREATED, now));
+        assertFalse(settlementBacklog.tryAdmit(now));
+        assertEquals(settlementBacklog.getDepth(), 2);
+
+        settlementBacklog.published(transaction(1L, TransactionStatus.SUCCEED, now));
+        assertTrue(settlementBacklog.tryAdmit(now));
+        assertEquals(settlementBacklog.getDepth(), 1);
+        assertEquals(settlementBacklog.getRejected(), 1);
+    }
+
+    /**
+     * Tests that transactions are not admitted while the oldest one has been waiting too long
+     */
+    @Test
+    public void testMaxAge() {
+        SettlementBacklog settlementBacklog = new SettlementBacklog(100, 1000);
+
+        settlementBacklog.published(transaction(1L, TransactionStatus.CREATED, 0));
+        settlementBacklog.published(transaction(2L, TransactionStatus.CREATED, 500));
+        assertEquals(settlementBacklog.getOldestAgeMillis(999), 999);
+        assertTrue(settlementBacklog.tryAdmit(999));
+        assertFalse(settlementBacklog.tryAdmit(1000));
+
+        settlementBacklog.published(transaction(1L, TransactionStatus.FAILED, 1000));
+        assertEquals(settlementBacklog.getOldestAgeMillis(1000), 500);
+        assertTrue(settlementBacklog.tryAdmit(1000));
+
+        settlementBacklog.published(transaction(2L, TransactionStatus.SUCCEED, 1000));
+        assertEquals(settlementBacklog.getOldestAgeMillis(1000), 0);
+    }
+
+    /**
+     * Tests that transactions missed or not removed are fixed by the reconciliation, except the ones reported after
+     * the search has been started
+     */
+    @Test
+    public void testReconcile() {
+        SettlementBacklog settlementBacklog = new SettlementBacklog(100, Long.MAX_VALUE);
+
+        settlementBacklog.published(transaction(1L, TransactionStatus.CREATED, 0));
+        long searched = System.currentTimeMillis() + 1;
+        settlementBacklog.reconcile(Arrays.asList(2L, 3L), searched);
+        assertEquals(settlementBacklog.getDepth(), 2);
+        assertEquals(settlementBacklog.getOldestAgeMillis(searched + 10), 10);
+
+        settlementBacklog.reconcile(Collections.singletonList(3L), searched + 1);
+        assertEquals(settlementBacklog.getDepth(), 1);
+
+        //Created after the search, so it could not have been found
+        settlementBacklog.published(transaction(4L, TransactionStatus.CREATED, searched));
+        settlementBacklog.reconcile(Collections.emptyList(), 0);
+        assertEquals(settlementBacklog.getDepth(), 2);
+    }
+
+    private static Transaction transaction(Long id, TransactionStatus status, long creationMillis) {
+        Transaction transaction = new Transaction(1L, 2L, BigDecimal.ONE, Currency.EUR);
+        transaction.setId(id);
+        transaction.setStatus(status);
+        transaction.setCreationDate(new Date(creationMillis));
+        return transaction;
+    }
+}
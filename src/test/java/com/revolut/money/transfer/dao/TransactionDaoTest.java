@@ -1,11 +1,15 @@
 package com.revolut.money.transfer.dao;
 
 import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ConnectionPool;
 import com.revolut.money.transfer.db.DaoManager;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
 import com.revolut.money.transfer.exceptions.ObjectModificationException;
 import com.revolut.money.transfer.model.BankAccount;
 import com.revolut.money.transfer.model.Currency;
 import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
 import com.revolut.money.transfer.model.TransactionStatus;
 import com.revolut.money.transfer.service.MoneyExchangeService;
 import com.revolut.money.transfer.utils.Constants;
@@ -14,8 +18,11 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.stream.Collectors;
 
 import static com.revolut.money.transfer.utils.Constants.*;
@@ -56,11 +63,12 @@ public class TransactionDaoTest {
 
         testList = Arrays.asList(transaction1, transaction2);
 
-        when(daoManager.executeQuery(eq(TransactionDao.GET_ALL_TRANSACTIONS_SQL), any())).thenReturn(
+        when(daoManager.executeReadQuery(anyInt(), eq(TransactionDao.GET_ALL_TRANSACTIONS_SQL), any())).thenReturn(
                 new DaoManager.QueryResult<>(testList)
         );
 
-        when(daoManager.executeQuery(eq(TransactionDao.GET_TRANSACTIONS_BY_STATUS_SQL), any())).thenReturn(
+        when(daoManager.executeQuery(anyInt(), eq(ConnectionPool.SETTLEMENT), eq(TransactionDao.GET_TRANSACTIONS_BY_STATUS_SQL),
+                any())).thenReturn(
                 new DaoManager.QueryResult<>(testList.stream().map(Transaction::getId).collect(Collectors.toList()))
         );
 
@@ -160,6 +168,178 @@ public class TransactionDaoTest {
         assertThat(vladInitialBlocked, Matchers.comparesEqualTo(vlad.getBlockedAmount()));
     }
 
+    @Test
+    public void testTransactionCreationAndExecution() throws ObjectModificationException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+        BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+
+        Transaction transaction = new Transaction(
+                Constants.NAGARRO_BANK_ACCOUNT_ID,
+                TATA_BANK_ACCOUNT_ID,
+                BigDecimal.ONE,
+                Currency.USD
+        );
+
+        BankAccount vlad = bankAccountDao.getBankAccountById(Constants.NAGARRO_BANK_ACCOUNT_ID);
+        BankAccount sergey = bankAccountDao.getBankAccountById(TATA_BANK_ACCOUNT_ID);
+
+        BigDecimal vladInitialBalance = vlad.getBalance();
+        BigDecimal vladInitialBlocked = vlad.getBlockedAmount();
+        BigDecimal sergeyInitialBalance = sergey.getBalance();
+
+        Transaction resultTransaction = transactionDao.createAndExecuteTransaction(transaction);
+
+        assertNotNull(resultTransaction.getId());
+        assertEquals(resultTransaction.getStatus(), TransactionStatus.SUCCEED);
+        assertEquals(transactionDao.getTransactionById(resultTransaction.getId()).getStatus(), TransactionStatus.SUCCEED);
+
+        vlad = bankAccountDao.getBankAccountById(Constants.NAGARRO_BANK_ACCOUNT_ID);
+        sergey = bankAccountDao.getBankAccountById(TATA_BANK_ACCOUNT_ID);
+
+        assertThat(vladInitialBalance.subtract(BigDecimal.ONE), Matchers.comparesEqualTo(vlad.getBalance()));
+        assertThat(vladInitialBlocked, Matchers.comparesEqualTo(vlad.getBlockedAmount()));
+        assertThat(sergeyInitialBalance.add(
+                moneyExchangeService.exchange(BigDecimal.ONE, Currency.USD, sergey.getCurrency())),
+                Matchers.comparesEqualTo(sergey.getBalance()));
+    }
+
+    @Test(expectedExceptions = ObjectModificationException.class)
+    public void testWrongTransactionCreationAndExecution() throws ObjectModificationException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+
+        Transaction transaction = new Transaction(
+                SIEMENS_BANK_ACCOUNT_ID,
+                Constants.NAGARRO_BANK_ACCOUNT_ID,
+                BigDecimal.valueOf(10000),
+                Currency.EUR
+        );
+
+        transactionDao.createAndExecuteTransaction(transaction);
+    }
+
+    /**
+     * Tests that settled transaction will be moved into the archive and still will be available by ID
+     */
+    @Test
+    public void testTransactionArchiving() throws ObjectModificationException, SQLException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+
+        Transaction transaction = transactionDao.createAndExecuteTransaction(new Transaction(
+                TATA_BANK_ACCOUNT_ID,
+                SIEMENS_BANK_ACCOUNT_ID,
+                BigDecimal.ONE,
+                Currency.INR
+        ));
+
+        int archived;
+        do {
+            archived = transactionDao.archiveTransactions(new Date(System.currentTimeMillis() + 60_000), 10);
+        } while (archived > 0);
+
+        //The list of transactions is read from the replica which should receive the archiving first
+        ReplicaSynchronizer.getInstance().synchronize();
+        assertFalse(transactionDao.getAllTransactions().contains(transaction));
+
+        Transaction archivedTransaction = transactionDao.getTransactionById(transaction.getId());
+        assertNotNull(archivedTransaction);
+        assertEquals(archivedTransaction.getStatus(), TransactionStatus.SUCCEED);
+        assertThat(archivedTransaction.getAmount(), Matchers.comparesEqualTo(BigDecimal.ONE));
+    }
+
+    /**
+     * Tests that the transaction failed because of the insufficient balance releases its hold
+     */
+    @Test
+    public void testFailedTransactionReleasesHold()
+            throws ObjectModificationException, SQLException, InterruptedException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+        BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+
+        BankAccount from = bankAccountDao.createBankAccount(
+                new BankAccount("Hold Account 1", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+        BankAccount to = bankAccountDao.createBankAccount(
+                new BankAccount("Hold Account 2", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+
+        Transaction transaction = new Transaction(from.getId(), to.getId(), BigDecimal.valueOf(5), Currency.EUR);
+        //Not executed by the transaction executor before the balance is lowered
+        Date executeAt = new Date(System.currentTimeMillis() + 2000);
+        transaction.setExecuteAt(executeAt);
+        transaction = transactionDao.createTransaction(transaction);
+
+        try (Connection con = DataSourceFactory.getH2DataSource(DataSourceFactory.getShard(from.getId()),
+                ConnectionPool.WRITE).getConnection()) {
+            BankAccount lockedFrom = bankAccountDao.getForUpdateBankAccountById(con, from.getId());
+            lockedFrom.setBalance(BigDecimal.ONE);
+            bankAccountDao.updateBankAccount(lockedFrom, con);
+            con.commit();
+        }
+
+        Thread.sleep(Math.max(0, executeAt.getTime() - System.currentTimeMillis()));
+        try {
+            transactionDao.executeTransaction(transaction.getId());
+        } catch (ObjectModificationException e) {
+            //Already executed by the transaction executor
+        }
+
+        Transaction failedTransaction = transactionDao.getTransactionById(transaction.getId());
+        assertEquals(failedTransaction.getStatus(), TransactionStatus.FAILED);
+        assertEquals(failedTransaction.getFailCode(), TransactionFailCode.INSUFFICIENT_FUNDS);
+        assertThat(bankAccountDao.getBankAccountById(from.getId()).getBlockedAmount(),
+                Matchers.comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    /**
+     * Tests that the transaction which has not been executed long after its execution time is failed by the reaper
+     * and its hold is released
+     */
+    @Test
+    public void testExpiredHoldRelease() throws ObjectModificationException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+        BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+
+        BankAccount from = bankAccountDao.createBankAccount(
+                new BankAccount("Expired Hold Account 1", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+        BankAccount to = bankAccountDao.createBankAccount(
+                new BankAccount("Expired Hold Account 2", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+
+        Transaction transaction = new Transaction(from.getId(), to.getId(), BigDecimal.ONE, Currency.EUR);
+        Date executeAt = new Date(946_684_800_000L); //2000-01-01
+        transaction.setExecuteAt(executeAt);
+        transaction = transactionDao.createTransaction(transaction);
+
+        int released;
+        do {
+            released = transactionDao.releaseExpiredHolds(new Date(executeAt.getTime() + 1), 10);
+        } while (released > 0);
+
+        //The transaction executor could have executed it first
+        Transaction releasedTransaction = transactionDao.getTransactionById(transaction.getId());
+        assertNotEquals(releasedTransaction.getStatus(), TransactionStatus.CREATED);
+        if (releasedTransaction.getStatus() == TransactionStatus.FAILED) {
+            assertEquals(releasedTransaction.getFailCode(), TransactionFailCode.HOLD_EXPIRED);
+            assertThat(bankAccountDao.getBankAccountById(from.getId()).getBalance(),
+                    Matchers.comparesEqualTo(BigDecimal.TEN));
+        }
+        assertThat(bankAccountDao.getBankAccountById(from.getId()).getBlockedAmount(),
+                Matchers.comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    /**
+     * Tests that blockedAmount which differs from open holds of the Bank Account is corrected
+     */
+    @Test
+    public void testBlockedAmountReconciliation() throws ObjectModificationException {
+        TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
+        BankAccountDao bankAccountDao = BankAccountDao.getInstance();
+
+        BankAccount leaked = bankAccountDao.createBankAccount(
+                new BankAccount("Leaked Hold Account", BigDecimal.TEN, BigDecimal.ONE, Currency.USD));
+
+        assertTrue(transactionDao.reconcileBlockedAmounts(2) >= 1);
+        assertThat(bankAccountDao.getBankAccountById(leaked.getId()).getBlockedAmount(),
+                Matchers.comparesEqualTo(BigDecimal.ZERO));
+    }
+
     @Test(expectedExceptions = ObjectModificationException.class)
     public void testWrongTransactionCreation() throws ObjectModificationException {
         TransactionDao transactionDao = TransactionDao.getInstance(moneyExchangeService);
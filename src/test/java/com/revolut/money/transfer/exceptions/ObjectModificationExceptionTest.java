@@ -0,0 +1,51 @@
+package com.revolut.money.transfer.exceptions;
+
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ObjectModificationExceptionTest {
+
+    /**
+     * Tests that business exceptions don't fill in the stack trace but keep the one of the cause
+     */
+    @Test
+    public void testStackTraceIsNotFilledIn() {
+        SQLException cause = new SQLException("Connection is closed");
+
+        assertEquals(new ObjectModificationException(ExceptionType.OBJECT_IS_MALFORMED, "Amount").getStackTrace()
+                .length, 0);
+        ObjectModificationException withCause = new ObjectModificationException(ExceptionType.UNEXPECTED_EXCEPTION,
+                cause);
+        assertEquals(withCause.getStackTrace().length, 0);
+        assertSame(withCause.getCause(), cause);
+        assertTrue(cause.getStackTrace().length > 0);
+
+        InvalidOperationExecution invalidOperationExecution = new InvalidOperationExecution(cause);
+        assertEquals(invalidOperationExecution.getStackTrace().length, 0);
+        assertEquals(invalidOperationExecution.getMessage(), cause.toString());
+    }
+
+    /**
+     * Tests that exceptions without the message are shared and could not be changed by the thrower
+     */
+    @Test
+    public void testPreallocatedExceptionsAreShared() {
+        ObjectModificationException notFound = ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND);
+
+        assertSame(ObjectModificationException.of(ExceptionType.OBJECT_IS_NOT_FOUND), notFound);
+        assertEquals(notFound.getType(), ExceptionType.OBJECT_IS_NOT_FOUND);
+        assertEquals(notFound.getMessage(), ExceptionType.OBJECT_IS_NOT_FOUND.getMessage());
+
+        notFound.addSuppressed(new IllegalStateException());
+        notFound.setStackTrace(new StackTraceElement[]{new StackTraceElement("Dao", "get", "Dao.java", 1)});
+        assertEquals(notFound.getSuppressed().length, 0);
+        assertEquals(notFound.getStackTrace().length, 0);
+        assertNull(notFound.getCause());
+    }
+}
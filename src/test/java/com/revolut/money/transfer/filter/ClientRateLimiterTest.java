@@ -0,0 +1,101 @@
+package com.revolut.money.transfer.filter;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies token buckets of clients by the time passed explicitly
+ */
+public class ClientRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tests that the burst is allowed at once and then permits come at the rate
+     */
+    @Test
+    public void testBurstAndRate() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 5, 100);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(rateLimiter.tryAcquire("client", 0), 0);
+        }
+        long waitNanos = rateLimiter.tryAcquire("client", 0);
+        assertEquals(waitNanos, SECOND / 10);
+
+        assertTrue(rateLimiter.tryAcquire("client", waitNanos - 1) > 0);
+        assertEquals(rateLimiter.tryAcquire("client", waitNanos), 0);
+        assertTrue(rateLimiter.tryAcquire("client", waitNanos) > 0);
+
+        //The bucket is full again in the half of second, but not fuller than the burst
+        long later = 10 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(rateLimiter.tryAcquire("client", later), 0);
+        }
+        assertTrue(rateLimiter.tryAcquire("client", later) > 0);
+    }
+
+    /**
+     * Tests that clients have separate buckets
+     */
+    @Test
+    public void testSeparateClients() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 1, 100);
+
+        assertEquals(rateLimiter.tryAcquire("first", 0), 0);
+        assertTrue(rateLimiter.tryAcquire("first", 0) > 0);
+        assertEquals(rateLimiter.tryAcquire("second", 0), 0);
+    }
+
+    /**
+     * Tests that new clients share the overflow bucket while all buckets are in use and full buckets are removed to
+     * give place to new clients
+     */
+    @Test
+    public void testMaxClients() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 1, 2);
+
+        assertEquals(rateLimiter.tryAcquire("first", 0), 0);
+        assertEquals(rateLimiter.tryAcquire("second", 0), 0);
+        assertEquals(rateLimiter.tryAcquire("third", 0), 0);
+        assertTrue(rateLimiter.tryAcquire("fourth", 0) > 0);
+        assertEquals(rateLimiter.size(), 2);
+
+        assertEquals(rateLimiter.tryAcquire("fourth", 2 * SECOND), 0);
+        assertEquals(rateLimiter.size(), 1);
+        assertTrue(rateLimiter.tryAcquire("fourth", 2 * SECOND) > 0);
+    }
+
+    /**
+     * Tests that concurrent requests of the same client take exactly the burst
+     */
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(0.001, 1000, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger permitted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (rateLimiter.tryAcquire("client") == 0) {
+                        permitted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+
+        assertEquals(permitted.get(), 1000);
+    }
+}
@@ -0,0 +1,134 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.core.Services;
+import com.revolut.money.transfer.dao.TransactionDao;
+import com.revolut.money.transfer.exceptions.InvalidOperationExecution;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This Test executes transfers whose source Bank Accounts follow the Zipf distribution, so a few accounts take most
+ * of the transfers, once by the sequential loop over the DAO and once by the per account mailboxes of
+ * {@link TransactionsService#executeTransactions()}. It logs the throughput of both and verifies no money is lost.
+ */
+public class AccountMailboxesExecutionTest {
+    private static final Logger log = LoggerFactory.getLogger(AccountMailboxesExecutionTest.class);
+
+    private Services services = ServiceFactory.createServices();
+    private TransactionsService transactionsServiceImpl = services.getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = services.getAccountService();
+    private TransactionDao transactionDao = TransactionDao.getInstance(services.getMoneyExchangeService());
+
+    private static final int ACCOUNTS_COUNT = 50;
+    private static final int TRANSFERS_COUNT = 2000;
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000L);
+
+    private List<Long> bankAccountIds = new ArrayList<>();
+    private double[] zipfCumulativeWeights = new double[ACCOUNTS_COUNT];
+
+    @BeforeClass
+    public void initData() throws ObjectModificationException {
+        double totalWeight = 0;
+        for (int i = 0; i < ACCOUNTS_COUNT; i++) {
+            bankAccountIds.add(bankAccountServiceImpl.createBankAccount(
+                    new BankAccount("Zipf Account " + i, INITIAL_BALANCE, BigDecimal.ZERO, Currency.EUR)).getId());
+            totalWeight += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            zipfCumulativeWeights[i] = totalWeight;
+        }
+        for (int i = 0; i < ACCOUNTS_COUNT; i++) {
+            zipfCumulativeWeights[i] /= totalWeight;
+        }
+    }
+
+    @Test
+    public void testSequentialExecution() throws ObjectModificationException {
+        List<Transaction> transactions = createZipfTransactions(new Random(1));
+
+        long start = System.nanoTime();
+        for (Transaction transaction : transactions) {
+            try {
+                transactionDao.executeTransaction(transaction.getId());
+            } catch (ObjectModificationException | InvalidOperationExecution e) {
+                //Could be already executed by the scheduled executor
+            }
+        }
+        logThroughput("Sequential execution", start);
+
+        verifyExecuted(transactions);
+    }
+
+    @Test(dependsOnMethods = "testSequentialExecution")
+    public void testMailboxExecution() throws ObjectModificationException {
+        List<Transaction> transactions = createZipfTransactions(new Random(2));
+
+        long start = System.nanoTime();
+        transactionsServiceImpl.executeTransactions();
+        logThroughput("Mailbox execution", start);
+
+        verifyExecuted(transactions);
+    }
+
+    private List<Transaction> createZipfTransactions(Random random) throws ObjectModificationException {
+        List<Transaction> transactions = new ArrayList<>(TRANSFERS_COUNT);
+        for (int i = 0; i < TRANSFERS_COUNT; i++) {
+            int from = zipfAccount(random);
+            int to = (from + 1 + random.nextInt(ACCOUNTS_COUNT - 1)) % ACCOUNTS_COUNT;
+            transactions.add(new Transaction(bankAccountIds.get(from), bankAccountIds.get(to),
+                    BigDecimal.ONE, Currency.EUR));
+        }
+
+        return transactionsServiceImpl.createTransactions(transactions);
+    }
+
+    private int zipfAccount(Random random) {
+        double value = random.nextDouble();
+        for (int i = 0; i < ACCOUNTS_COUNT - 1; i++) {
+            if (value < zipfCumulativeWeights[i]) {
+                return i;
+            }
+        }
+
+        return ACCOUNTS_COUNT - 1;
+    }
+
+    private void logThroughput(String name, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("{}: {} Zipf transfers in {} ms, {} transfers/s", name, TRANSFERS_COUNT, elapsedNanos / 1_000_000,
+                TRANSFERS_COUNT * 1_000_000_000L / Math.max(elapsedNanos, 1));
+    }
+
+    private void verifyExecuted(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            assertEquals(transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus(),
+                    TransactionStatus.SUCCEED);
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long bankAccountId : bankAccountIds) {
+            BankAccount bankAccount = bankAccountServiceImpl.getBankAccountById(bankAccountId);
+            assertThat(bankAccount.getBlockedAmount(), Matchers.comparesEqualTo(BigDecimal.ZERO));
+            total = total.add(bankAccount.getBalance());
+        }
+        assertThat(total, Matchers.comparesEqualTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS_COUNT))));
+    }
+}
@@ -0,0 +1,104 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.MetricsController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.dao.SettlementBacklog;
+import com.revolut.money.transfer.exceptions.ApplicationException;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.TransactionsService;
+import com.revolut.money.transfer.utils.Constants;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test creates transactions faster than they are settled and verifies that new ones are rejected by
+ * <code>503 Service Unavailable</code> with <code>Retry-After</code> until the backlog is settled. The backlog is
+ * limited to a few transactions more than it already has while the test is run.
+ */
+public class AdmissionControlTest {
+    private static final int MAX_BACKLOG = 20;
+
+    private static SettlementBacklog settlementBacklog = SettlementBacklog.getInstance();
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+
+    @BeforeClass
+    public void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+        //Transactions left by other tests are settled first, so the backlog is not emptied by the executor later
+        transactionsServiceImpl.executeTransactions();
+        settlementBacklog.setLimits(settlementBacklog.getDepth() + MAX_BACKLOG,
+                Constants.ADMISSION_MAX_BACKLOG_AGE_MILLIS);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public static void afterAll() {
+        settlementBacklog.setLimits(Constants.ADMISSION_MAX_BACKLOG, Constants.ADMISSION_MAX_BACKLOG_AGE_MILLIS);
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that transactions are rejected once the backlog is full and admitted again once it is settled
+     */
+    @Test
+    public void testBacklogIsShed() {
+        Response rejection = null;
+        //The executor could settle the backlog meanwhile, so it is filled a few times at most
+        for (int i = 0; i < MAX_BACKLOG * 10 && rejection == null; i++) {
+            Response response = create();
+            if (response.getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+                rejection = response;
+            } else {
+                assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+                response.close();
+            }
+        }
+
+        assertTrue(rejection != null, "The backlog has not been shed");
+        assertEquals(rejection.getHeaderString(HttpHeaders.RETRY_AFTER),
+                String.valueOf(Constants.ADMISSION_RETRY_AFTER_SECONDS));
+        assertEquals(rejection.readEntity(ApplicationException.class).getType(),
+                ExceptionType.SETTLEMENT_BACKLOG_EXCEEDED.name());
+
+        Map<String, Number> metrics = target.path(MetricsController.BASE_URL).path(MetricsController.BACKLOG_PATH)
+                .request().get(new GenericType<Map<String, Number>>() {});
+        assertTrue(metrics.get("depth").intValue() <= settlementBacklog.getMaxDepth());
+        assertTrue(metrics.get("rejected").longValue() >= 1);
+
+        transactionsServiceImpl.executeTransactions();
+
+        Response response = create();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        response.close();
+    }
+
+    private static Response create() {
+        Transaction transaction = new Transaction(Constants.TATA_BANK_ACCOUNT_ID, Constants.SIEMENS_BANK_ACCOUNT_ID,
+                new BigDecimal("0.01"), Currency.EUR);
+
+        return target.path(TransactionsController.BASE_URL).request()
+                .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE));
+    }
+}
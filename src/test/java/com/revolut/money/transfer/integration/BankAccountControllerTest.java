@@ -4,6 +4,7 @@ import com.revolut.money.transfer.MoneyTransferApplication;
 import com.revolut.money.transfer.controller.BankAccountsController;
 import com.revolut.money.transfer.core.ServiceFactory;
 import com.revolut.money.transfer.dao.BankAccountDao;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
 import com.revolut.money.transfer.model.BankAccount;
 import com.revolut.money.transfer.model.Currency;
 import com.revolut.money.transfer.service.BankAccountServiceImpl;
@@ -22,6 +23,7 @@ import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Random;
 
@@ -54,7 +56,9 @@ public class BankAccountControllerTest {
      * Tests that all bank accounts will be returned from the database
      */
     @Test
-    public void testGetAllBankAccounts() {
+    public void testGetAllBankAccounts() throws SQLException {
+        //The list of bank accounts is read from the replica, so it should receive all previous changes first
+        ReplicaSynchronizer.getInstance().synchronize();
         Response response = target.path(BankAccountsController.BASE_URL)
                 .request().get();
 
@@ -0,0 +1,152 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.StatementEntry;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This Test makes transfers from and to the Bank Account and reads its statement page by page by the keyset of the
+ * last row, verifying the order of rows and the balance after each of them.
+ */
+public class BankAccountStatementTest {
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that outgoing and incoming transactions are returned newest first with the running balance
+     */
+    @Test
+    public void testStatementPages() throws ObjectModificationException {
+        Long bankAccountId = createBankAccount("Statement Account", BigDecimal.valueOf(100));
+        Long firstBankAccountId = createBankAccount("Statement First Account", BigDecimal.ZERO);
+        Long secondBankAccountId = createBankAccount("Statement Second Account", BigDecimal.ZERO);
+
+        Transaction first = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(bankAccountId, firstBankAccountId, BigDecimal.TEN, Currency.EUR));
+        Transaction second = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(bankAccountId, secondBankAccountId, BigDecimal.valueOf(5), Currency.EUR));
+        Transaction third = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(firstBankAccountId, bankAccountId, BigDecimal.valueOf(3), Currency.EUR));
+
+        List<StatementEntry> firstPage = getStatement(bankAccountId, null, null, 2);
+        assertEquals(firstPage.size(), 2);
+        assertEntry(firstPage.get(0), third, BigDecimal.valueOf(88));
+        assertEntry(firstPage.get(1), second, BigDecimal.valueOf(85));
+
+        Transaction last = firstPage.get(1).getTransaction();
+        List<StatementEntry> secondPage = getStatement(bankAccountId, last.getCreationDate().getTime(),
+                last.getId(), 2);
+        assertEquals(secondPage.size(), 1);
+        assertEntry(secondPage.get(0), first, BigDecimal.valueOf(90));
+
+        List<StatementEntry> firstBankAccountStatement = getStatement(firstBankAccountId, null, null, 10);
+        assertEquals(firstBankAccountStatement.size(), 2);
+        assertEntry(firstBankAccountStatement.get(0), third, BigDecimal.valueOf(7));
+        assertEntry(firstBankAccountStatement.get(1), first, BigDecimal.TEN);
+    }
+
+    /**
+     * Tests that the transaction which has not changed the balance yet is returned without the balance
+     */
+    @Test
+    public void testCreatedTransactionHasNoBalance() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Statement Created From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Statement Created To Account", BigDecimal.ZERO);
+
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        List<StatementEntry> statement = getStatement(toBankAccountId, null, null, 10);
+        assertEquals(statement.size(), 1);
+        assertEquals(statement.get(0).getTransaction().getId(), transaction.getId());
+        if (statement.get(0).getTransaction().getStatus() == transaction.getStatus()) {
+            assertNull(statement.get(0).getBalance());
+        }
+    }
+
+    /**
+     * Tests that the statement of not existing Bank Account is not found
+     */
+    @Test
+    public void testNotExistingBankAccount() {
+        Response response = target.path(BankAccountsController.BASE_URL).path(String.valueOf(Long.MAX_VALUE))
+                .path(BankAccountsController.TRANSACTIONS_PATH).request().get();
+
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    /**
+     * Tests that the keyset without the creation date is rejected
+     */
+    @Test
+    public void testIncompleteKeyset() throws ObjectModificationException {
+        Long bankAccountId = createBankAccount("Statement Keyset Account", BigDecimal.ZERO);
+
+        Response response = target.path(BankAccountsController.BASE_URL).path(bankAccountId.toString())
+                .path(BankAccountsController.TRANSACTIONS_PATH)
+                .queryParam(BankAccountsController.BEFORE_ID_PARAM, 1).request().get();
+
+        assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+
+    private List<StatementEntry> getStatement(Long bankAccountId, Long beforeDate, Long beforeId, int limit) {
+        WebTarget statementTarget = target.path(BankAccountsController.BASE_URL).path(bankAccountId.toString())
+                .path(BankAccountsController.TRANSACTIONS_PATH)
+                .queryParam(BankAccountsController.LIMIT_PARAM, limit);
+        if (beforeDate != null) {
+            statementTarget = statementTarget
+                    .queryParam(BankAccountsController.BEFORE_DATE_PARAM, beforeDate)
+                    .queryParam(BankAccountsController.BEFORE_ID_PARAM, beforeId);
+        }
+
+        return statementTarget.request().get(new GenericType<List<StatementEntry>>() {
+        });
+    }
+
+    private static void assertEntry(StatementEntry entry, Transaction transaction, BigDecimal balance) {
+        assertEquals(entry.getTransaction().getId(), transaction.getId());
+        assertThat(entry.getBalance(), Matchers.comparesEqualTo(balance));
+    }
+
+    private Long createBankAccount(String ownerName, BigDecimal balance) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, balance, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
@@ -0,0 +1,125 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This Test creates the same amount of transactions by the single and the batch creation and compares the throughput.
+ * It verifies the amount blocked in the source accounts as well.
+ */
+public class BatchTransactionCreationTest {
+    private static final Logger log = LoggerFactory.getLogger(BatchTransactionCreationTest.class);
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(100000L);
+    private static final BigDecimal TRANSACTION_AMOUNT = BigDecimal.ONE;
+    private static final int TRANSACTIONS_COUNT = 500;
+
+    private Long singleFromBankAccountId;
+    private Long batchFromBankAccountId;
+    private Long toBankAccountId;
+
+    @BeforeClass
+    public void initData() throws ObjectModificationException {
+        singleFromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Single Bank Account", INITIAL_BALANCE, BigDecimal.ZERO, Currency.EUR)).getId();
+        batchFromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Batch Bank Account", INITIAL_BALANCE, BigDecimal.ZERO, Currency.EUR)).getId();
+        toBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Target Bank Account", BigDecimal.ZERO, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+
+    @Test
+    public void testBatchCreationThroughput() throws ObjectModificationException {
+        long singleStart = System.nanoTime();
+        for (int i = 0; i < TRANSACTIONS_COUNT; i++) {
+            transactionsServiceImpl.createTransaction(
+                    new Transaction(singleFromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR));
+        }
+        long singleTime = System.nanoTime() - singleStart;
+
+        List<Transaction> transactions = new ArrayList<>(TRANSACTIONS_COUNT);
+        for (int i = 0; i < TRANSACTIONS_COUNT; i++) {
+            transactions.add(new Transaction(batchFromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR));
+        }
+
+        long batchStart = System.nanoTime();
+        List<Transaction> createdTransactions = transactionsServiceImpl.createTransactions(transactions);
+        long batchTime = System.nanoTime() - batchStart;
+
+        log.info("{} transactions created one by one in {} ms ({} per second), by the batch in {} ms ({} per second)",
+                TRANSACTIONS_COUNT,
+                singleTime / 1_000_000, TRANSACTIONS_COUNT * 1_000_000_000L / Math.max(singleTime, 1),
+                batchTime / 1_000_000, TRANSACTIONS_COUNT * 1_000_000_000L / Math.max(batchTime, 1));
+
+        assertEquals(createdTransactions.size(), TRANSACTIONS_COUNT);
+        for (Transaction transaction : createdTransactions) {
+            assertNotNull(transaction.getId());
+            assertEquals(transaction.getStatus(), TransactionStatus.CREATED);
+        }
+
+        BigDecimal expectedAmount = TRANSACTION_AMOUNT.multiply(BigDecimal.valueOf(TRANSACTIONS_COUNT));
+        assertReserved(singleFromBankAccountId, INITIAL_BALANCE, expectedAmount);
+        assertReserved(batchFromBankAccountId, INITIAL_BALANCE, expectedAmount);
+    }
+
+    @Test
+    public void testBatchCreationWithRejectedTransactions() throws ObjectModificationException {
+        Long fromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Partial Bank Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.valueOf(6), Currency.EUR));
+        transactions.add(new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.valueOf(6), Currency.EUR));
+        transactions.add(new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.valueOf(4), Currency.EUR));
+        transactions.add(new Transaction(fromBankAccountId, new Random().nextLong(), BigDecimal.ONE, Currency.EUR));
+        transactions.add(new Transaction(fromBankAccountId, fromBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        List<Transaction> result = transactionsServiceImpl.createTransactions(transactions);
+
+        assertEquals(result.get(0).getStatus(), TransactionStatus.CREATED);
+        assertNotNull(result.get(0).getId());
+        assertEquals(result.get(1).getStatus(), TransactionStatus.FAILED);
+        assertNull(result.get(1).getId());
+        assertEquals(result.get(2).getStatus(), TransactionStatus.CREATED);
+        assertNotNull(result.get(2).getId());
+        assertEquals(result.get(3).getStatus(), TransactionStatus.FAILED);
+        assertEquals(result.get(4).getStatus(), TransactionStatus.FAILED);
+
+        assertReserved(fromBankAccountId, BigDecimal.TEN, BigDecimal.TEN);
+    }
+
+    /**
+     * The scheduled executor could execute some of created transactions in the middle of the test. So we are checking
+     * the sum of executed and blocked amounts which doesn't depend on it.
+     */
+    private void assertReserved(Long bankAccountId, BigDecimal initialBalance, BigDecimal expectedAmount) {
+        BankAccount bankAccount = bankAccountServiceImpl.getBankAccountById(bankAccountId);
+
+        assertThat(initialBalance.subtract(bankAccount.getBalance()).add(bankAccount.getBlockedAmount()),
+                Matchers.comparesEqualTo(expectedAmount));
+    }
+}
@@ -0,0 +1,250 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.binary.TransactionBinaryCodec;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test creates and reads transactions through the compact binary API by the client codec and verifies that
+ * JSON stays the default. The throughput of batch creation by both encodings is logged.
+ */
+public class BinaryTransferApiTest {
+    private static final Logger log = LoggerFactory.getLogger(BinaryTransferApiTest.class);
+
+    private static final MediaType BINARY = TransactionBinaryCodec.MEDIA_TYPE_TYPE;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000);
+    private static final BigDecimal TRANSACTION_AMOUNT = new BigDecimal("0.01");
+    private static final int BATCH_SIZE = 100;
+    private static final int REQUESTS_COUNT = 100;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+
+    private Long fromBankAccountId;
+    private Long toBankAccountId;
+
+    @BeforeClass
+    public void beforeAll() throws ObjectModificationException {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+
+        fromBankAccountId = createBankAccount("Binary From Account");
+        toBankAccountId = createBankAccount("Binary To Account");
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the transaction created by the binary request is executed and returned with its final status
+     */
+    @Test
+    public void testCreateTransaction() {
+        Response response = target.path(TransactionsController.BASE_URL)
+                .queryParam(TransactionsController.SYNC_PARAM, true).request(BINARY)
+                .post(binaryEntity(new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR)));
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(response.getMediaType(), BINARY);
+        List<Transaction> transactions = readStatuses(response);
+        assertEquals(transactions.size(), 1);
+        Transaction transaction = transactions.get(0);
+        assertNotNull(transaction.getId());
+        assertEquals(transaction.getStatus(), TransactionStatus.SUCCEED);
+        assertEquals(transaction.getFromBankAccountId(), fromBankAccountId);
+        assertThat(transaction.getAmount(), Matchers.comparesEqualTo(BigDecimal.ONE));
+        assertNotNull(transaction.getCreationDate());
+
+        response = target.path(TransactionsController.BASE_URL).path(transaction.getId().toString())
+                .request(BINARY).get();
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(readStatuses(response).get(0).getStatus(), TransactionStatus.SUCCEED);
+    }
+
+    /**
+     * Tests that the batch is created in the same order and rejected transactions are returned with their reasons
+     */
+    @Test
+    public void testCreateTransactions() {
+        List<Transaction> batch = Arrays.asList(
+                new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR),
+                new Transaction(fromBankAccountId, fromBankAccountId, TRANSACTION_AMOUNT, Currency.EUR));
+
+        Response response = target.path(TransactionsController.BASE_URL).path(TransactionsController.BATCH_PATH)
+                .request(BINARY).post(Entity.entity(TransactionBinaryCodec.encodeCreateRequests(batch), BINARY));
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        List<Transaction> transactions = readStatuses(response);
+        assertEquals(transactions.size(), 2);
+        assertNotNull(transactions.get(0).getId());
+        assertEquals(transactions.get(0).getStatus(), TransactionStatus.CREATED);
+        assertNull(transactions.get(1).getId());
+        assertEquals(transactions.get(1).getStatus(), TransactionStatus.FAILED);
+        assertEquals(transactions.get(1).getFailCode(), TransactionFailCode.INVALID_TRANSACTION);
+        assertNotNull(transactions.get(1).getFailMessage());
+    }
+
+    /**
+     * Tests that the binary request is answered by JSON unless the binary response is accepted
+     */
+    @Test
+    public void testJsonIsDefault() {
+        Response response = target.path(TransactionsController.BASE_URL).request()
+                .post(binaryEntity(new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT,
+                        Currency.EUR)));
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(response.getMediaType(), MediaType.APPLICATION_JSON_TYPE);
+        Transaction transaction = response.readEntity(Transaction.class);
+        assertNotNull(transaction.getId());
+
+        response = target.path(TransactionsController.BASE_URL).path(transaction.getId().toString())
+                .request().get();
+
+        assertEquals(response.getMediaType(), MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(response.readEntity(Transaction.class).getId(), transaction.getId());
+    }
+
+    /**
+     * Tests that truncated and multi-record bodies of the single transaction are rejected
+     */
+    @Test
+    public void testMalformedBody() {
+        byte[] body = TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(
+                new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR)));
+
+        Response response = target.path(TransactionsController.BASE_URL).request(BINARY)
+                .post(Entity.entity(Arrays.copyOf(body, body.length - 1), BINARY));
+        assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+        response.close();
+
+        byte[] twoRecords = TransactionBinaryCodec.encodeCreateRequests(Arrays.asList(
+                new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR),
+                new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR)));
+        response = target.path(TransactionsController.BASE_URL).request(BINARY)
+                .post(Entity.entity(twoRecords, BINARY));
+        assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+        response.close();
+    }
+
+    /**
+     * Tests that the body which Content-Length is larger than the largest batch is rejected before it is sent
+     */
+    @Test
+    public void testTooLargeBody() throws IOException {
+        URI uri = target.path(TransactionsController.BASE_URL).getUri();
+        try (Socket socket = new Socket(uri.getHost(), uri.getPort())) {
+            socket.setSoTimeout(10_000);
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+            writer.write("POST " + uri.getPath() + " HTTP/1.1\r\n" +
+                    "Host: " + uri.getHost() + ":" + uri.getPort() + "\r\n" +
+                    "Content-Type: " + TransactionBinaryCodec.MEDIA_TYPE + "\r\n" +
+                    "Accept: " + TransactionBinaryCodec.MEDIA_TYPE + "\r\n" +
+                    "Content-Length: 2000000000\r\n\r\n");
+            writer.flush();
+
+            String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII)).readLine();
+            assertNotNull(statusLine);
+            assertTrue(statusLine.contains(" " + Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode() + " "),
+                    statusLine);
+        }
+    }
+
+    /**
+     * Logs the throughput of batch creation by JSON and by the binary encoding
+     */
+    @Test
+    public void testThroughput() {
+        List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Transaction(fromBankAccountId, toBankAccountId, TRANSACTION_AMOUNT, Currency.EUR));
+        }
+        WebTarget batchTarget = target.path(TransactionsController.BASE_URL).path(TransactionsController.BATCH_PATH);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            List<Transaction> transactions = batchTarget.request(MediaType.APPLICATION_JSON_TYPE)
+                    .post(Entity.entity(batch, MediaType.APPLICATION_JSON_TYPE),
+                            new GenericType<List<Transaction>>() {
+                            });
+            assertEquals(transactions.size(), BATCH_SIZE);
+        }
+        logThroughput("JSON", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            Response response = batchTarget.request(BINARY)
+                    .post(Entity.entity(TransactionBinaryCodec.encodeCreateRequests(batch), BINARY));
+            assertEquals(readStatuses(response).size(), BATCH_SIZE);
+        }
+        logThroughput("Binary", start);
+    }
+
+    private static Entity<byte[]> binaryEntity(Transaction transaction) {
+        return Entity.entity(TransactionBinaryCodec.encodeCreateRequests(Collections.singletonList(transaction)),
+                BINARY);
+    }
+
+    private static List<Transaction> readStatuses(Response response) {
+        return TransactionBinaryCodec.decodeStatuses(ByteBuffer.wrap(response.readEntity(byte[].class)));
+    }
+
+    private void logThroughput(String name, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("{}: {} batches of {} transactions in {} ms, {} transactions/s", name, REQUESTS_COUNT, BATCH_SIZE,
+                elapsedNanos / 1_000_000, REQUESTS_COUNT * BATCH_SIZE * 1_000_000_000L / Math.max(elapsedNanos, 1));
+    }
+
+    private Long createBankAccount(String ownerName) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, INITIAL_BALANCE, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
@@ -0,0 +1,139 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.ChangesController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Change;
+import com.revolut.money.transfer.model.ChangeType;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.ChangeService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test reads the change feed from its current end, makes a transfer and verifies that only changes of the
+ * transfer are returned in the order they have been committed.
+ */
+public class ChangeFeedTest {
+    private static final long FEED_TIMEOUT_SECONDS = 10;
+    private static final int PAGE_SIZE = 1000;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private ChangeService changeServiceImpl = ServiceFactory.createServices().getChangeService();
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that changes of the transfer are returned after the last seen sequence number
+     */
+    @Test
+    public void testTransferChanges() throws Exception {
+        long since = readToEnd();
+
+        Long fromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Feed From Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+        Long toBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Feed To Account", BigDecimal.ZERO, BigDecimal.ZERO, Currency.EUR)).getId();
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+        transactionsServiceImpl.executeTransactions();
+
+        List<Change> transactionChanges = new ArrayList<>();
+        List<Change> fromBankAccountChanges = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(FEED_TIMEOUT_SECONDS);
+        while (transactionChanges.size() < 2 || fromBankAccountChanges.size() < 3) {
+            assertTrue(System.nanoTime() < deadline, "Changes of the transfer have not been returned");
+
+            List<Change> changes = getChanges(since, 100);
+            for (Change change : changes) {
+                assertTrue(change.getSeq() > since);
+                since = change.getSeq();
+
+                if (change.getType() == ChangeType.TRANSACTION && change.getEntityId().equals(transaction.getId())) {
+                    transactionChanges.add(change);
+                }
+                if (change.getType() == ChangeType.BANK_ACCOUNT && change.getEntityId().equals(fromBankAccountId)) {
+                    fromBankAccountChanges.add(change);
+                }
+            }
+        }
+
+        assertEquals(transactionChanges.get(0).getStatus(), TransactionStatus.CREATED);
+        assertEquals(transactionChanges.get(1).getStatus(), TransactionStatus.SUCCEED);
+
+        //Created, the amount is blocked, the amount is withdrawn
+        assertThat(fromBankAccountChanges.get(0).getBalance(), Matchers.comparesEqualTo(BigDecimal.TEN));
+        assertThat(fromBankAccountChanges.get(1).getBlockedAmount(), Matchers.comparesEqualTo(BigDecimal.ONE));
+        assertThat(fromBankAccountChanges.get(2).getBalance(), Matchers.comparesEqualTo(BigDecimal.valueOf(9)));
+        assertThat(fromBankAccountChanges.get(2).getBlockedAmount(), Matchers.comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    /**
+     * Tests that the feed of not existing shard is not found
+     */
+    @Test
+    public void testNotExistingShard() {
+        Response response = target.path(ChangesController.BASE_URL)
+                .queryParam(ChangesController.SHARD_PARAM, Integer.MAX_VALUE).request().get();
+
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    private long readToEnd() throws Exception {
+        long since = 0;
+        List<Change> changes;
+        do {
+            changes = changeServiceImpl.getChanges(0, since, PAGE_SIZE);
+            if (!changes.isEmpty()) {
+                since = changes.get(changes.size() - 1).getSeq();
+            }
+        } while (changes.size() == PAGE_SIZE);
+
+        return since;
+    }
+
+    private static List<Change> getChanges(long since, int limit) {
+        Response response = target.path(ChangesController.BASE_URL)
+                .queryParam(ChangesController.SINCE_PARAM, since)
+                .queryParam(ChangesController.LIMIT_PARAM, limit)
+                .request().get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+
+        return response.readEntity(new GenericType<List<Change>>() {
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package com.revolut.money.transfer.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.HealthController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that single Bank Accounts and transactions are revalidated by their entity tags and large
+ * responses are gzipped for clients which accept it
+ */
+public class ConditionalGetTest {
+    private static final Logger log = LoggerFactory.getLogger(ConditionalGetTest.class);
+
+    private static final String GZIP = "gzip";
+    private static final long EXECUTION_TIMEOUT_MILLIS = 10_000;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+
+    @BeforeClass
+    public void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the Bank Account is not sent again until it is renamed or its balance is changed
+     */
+    @Test
+    public void testBankAccount() throws ObjectModificationException {
+        BankAccount bankAccount = createBankAccount("ETag Account");
+        Long toBankAccountId = createBankAccount("ETag Target Account").getId();
+        WebTarget bankAccountTarget = target.path(BankAccountsController.BASE_URL)
+                .path(bankAccount.getId().toString());
+
+        Response response = bankAccountTarget.request().get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        response.close();
+
+        assertNotModified(bankAccountTarget, tag);
+
+        bankAccount.setOwnerName("Renamed ETag Account");
+        response = target.path(BankAccountsController.BASE_URL).request()
+                .put(Entity.entity(bankAccount, MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        response.close();
+
+        EntityTag renamedTag = assertModified(bankAccountTarget, tag);
+        assertNotModified(bankAccountTarget, renamedTag);
+
+        transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(bankAccount.getId(), toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        assertModified(bankAccountTarget, renamedTag);
+    }
+
+    /**
+     * Tests that the transaction is not sent again until its status is changed
+     */
+    @Test
+    public void testTransaction() throws ObjectModificationException, InterruptedException {
+        Long fromBankAccountId = createBankAccount("ETag From Account").getId();
+        Long toBankAccountId = createBankAccount("ETag To Account").getId();
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+        WebTarget transactionTarget = target.path(TransactionsController.BASE_URL)
+                .path(transaction.getId().toString());
+
+        Response response = transactionTarget.request().get();
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        TransactionStatus status = response.readEntity(Transaction.class).getStatus();
+
+        assertNotModified(transactionTarget, tag);
+
+        //The transaction could be executed by the scheduler already
+        if (status == TransactionStatus.CREATED) {
+            transactionsServiceImpl.executeTransactions();
+            long deadline = System.currentTimeMillis() + EXECUTION_TIMEOUT_MILLIS;
+            while (transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus() == status &&
+                    System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertModified(transactionTarget, tag);
+        }
+    }
+
+    /**
+     * Tests that large JSON lists are gzipped only for clients which accept it and short responses are not
+     */
+    @Test
+    public void testCompression() throws IOException {
+        Response response = target.path(BankAccountsController.BASE_URL).request()
+                .header(HttpHeaders.ACCEPT_ENCODING, GZIP).get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(response.getHeaderString(HttpHeaders.CONTENT_ENCODING), GZIP);
+        byte[] compressed = readBytes(response.readEntity(InputStream.class));
+        byte[] json = readBytes(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+        BankAccount[] bankAccounts = new ObjectMapper().readValue(json, BankAccount[].class);
+        assertTrue(bankAccounts.length > 0);
+        log.info("The list of {} Bank Accounts is {} bytes gzipped instead of {} bytes", bankAccounts.length,
+                compressed.length, json.length);
+
+        response = target.path(BankAccountsController.BASE_URL).request().get();
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(response.readEntity(BankAccount[].class).length > 0);
+
+        response = target.path(HealthController.BASE_URL).path(HealthController.READY_PATH).request()
+                .header(HttpHeaders.ACCEPT_ENCODING, GZIP).get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        response.close();
+    }
+
+    private static void assertNotModified(WebTarget resourceTarget, EntityTag tag) {
+        Response response = resourceTarget.request().header(HttpHeaders.IF_NONE_MATCH, tag).get();
+
+        assertEquals(response.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(response.getEntityTag(), tag);
+        assertFalse(response.hasEntity());
+        response.close();
+    }
+
+    private static EntityTag assertModified(WebTarget resourceTarget, EntityTag tag) {
+        Response response = resourceTarget.request().header(HttpHeaders.IF_NONE_MATCH, tag).get();
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertNotEquals(response.getEntityTag(), tag);
+        assertTrue(response.hasEntity());
+        response.close();
+
+        return response.getEntityTag();
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    private BankAccount createBankAccount(String ownerName) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR));
+    }
+}
@@ -0,0 +1,124 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ApplicationException;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.BankAccountService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This Test sends the same number of rejected and successful requests to the server and logs the throughput of
+ * both. Rejected requests are the expected business errors which should cost not more than successful ones as
+ * they are neither unwound into stack traces nor logged.
+ */
+public class ErrorPathThroughputTest {
+    private static final Logger log = LoggerFactory.getLogger(ErrorPathThroughputTest.class);
+
+    private static final int REQUESTS_COUNT = 1000;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+
+    private Long fromBankAccountId;
+    private Long toBankAccountId;
+
+    @BeforeClass
+    public void beforeAll() throws ObjectModificationException {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+
+        fromBankAccountId = createBankAccount("Error Path From Account");
+        toBankAccountId = createBankAccount("Error Path To Account");
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that malformed transactions are rejected with the business error
+     */
+    @Test
+    public void testMalformedTransactions() {
+        Transaction transaction = new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE.negate(),
+                Currency.EUR);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            Response response = target.path(TransactionsController.BASE_URL).request()
+                    .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE));
+
+            assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            assertEquals(response.readEntity(ApplicationException.class).getType(),
+                    ExceptionType.OBJECT_IS_MALFORMED.name());
+        }
+        logThroughput("Malformed transactions", start);
+    }
+
+    /**
+     * Tests that not existing Bank Accounts are not found
+     */
+    @Test
+    public void testNotExistingBankAccounts() {
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            Response response = target.path(BankAccountsController.BASE_URL).path(String.valueOf(Long.MAX_VALUE))
+                    .request().get();
+
+            assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+            response.close();
+        }
+        logThroughput("Not existing bank accounts", start);
+    }
+
+    /**
+     * Reads the existing Bank Account to compare the throughput of rejected requests with successful ones
+     */
+    @Test
+    public void testExistingBankAccounts() {
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_COUNT; i++) {
+            Response response = target.path(BankAccountsController.BASE_URL).path(fromBankAccountId.toString())
+                    .request().get();
+
+            assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+            response.close();
+        }
+        logThroughput("Existing bank accounts", start);
+    }
+
+    private void logThroughput(String name, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("{}: {} requests in {} ms, {} requests/s", name, REQUESTS_COUNT, elapsedNanos / 1_000_000,
+                REQUESTS_COUNT * 1_000_000_000L / Math.max(elapsedNanos, 1));
+    }
+
+    private Long createBankAccount(String ownerName) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
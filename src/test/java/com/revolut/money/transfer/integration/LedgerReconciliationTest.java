@@ -0,0 +1,175 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.MetricsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.LedgerDiscrepancy;
+import com.revolut.money.transfer.model.LedgerDiscrepancyType;
+import com.revolut.money.transfer.model.LedgerReport;
+import com.revolut.money.transfer.model.LedgerTotals;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.LedgerService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.hamcrest.Matchers;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that the ledger reconciliation reports the Bank Account which blocked amount differs from its
+ * open holds, does not report the one which holds match and counts both into totals of their currencies. It also
+ * verifies that money changed by transfers is conserved and money changed bypassing them is reported
+ */
+public class LedgerReconciliationTest {
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private LedgerService ledgerServiceImpl = ServiceFactory.createServices().getLedgerService();
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testLedgerReconciliation() throws ObjectModificationException {
+        Long leakedBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Ledger Leaked Account", BigDecimal.TEN, BigDecimal.ONE, Currency.USD)).getId();
+        Long fromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Ledger From Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+        Long toBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Ledger To Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+
+        //Scheduled for later, so the hold stays open while the ledger is reconciled
+        Transaction transaction = new Transaction(fromBankAccountId, toBankAccountId, new BigDecimal("2"),
+                Currency.EUR);
+        transaction.setExecuteAt(new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10)));
+        assertEquals(transactionsServiceImpl.createTransaction(transaction).getStatus(), TransactionStatus.CREATED);
+
+        LedgerReport report = ledgerServiceImpl.reconcileLedger();
+
+        assertTrue(report.getBankAccounts() >= 3);
+        assertTrue(report.getHolds() >= 1);
+        LedgerDiscrepancy leakedDiscrepancy = null;
+        for (LedgerDiscrepancy discrepancy : report.getDiscrepancies()) {
+            assertTrue(!fromBankAccountId.equals(discrepancy.getBankAccountId()));
+            if (leakedBankAccountId.equals(discrepancy.getBankAccountId())) {
+                leakedDiscrepancy = discrepancy;
+            }
+        }
+        assertNotNull(leakedDiscrepancy);
+        assertEquals(leakedDiscrepancy.getType(), LedgerDiscrepancyType.BLOCKED_AMOUNT_MISMATCH);
+        assertEquals(leakedDiscrepancy.getCurrency(), Currency.USD);
+        assertThat(leakedDiscrepancy.getExpected(), Matchers.comparesEqualTo(BigDecimal.ZERO));
+        assertThat(leakedDiscrepancy.getActual(), Matchers.comparesEqualTo(BigDecimal.ONE));
+
+        LedgerTotals eurTotals = null;
+        for (LedgerTotals totals : report.getTotals()) {
+            if (totals.getCurrency() == Currency.EUR) {
+                eurTotals = totals;
+            }
+        }
+        assertNotNull(eurTotals);
+        assertTrue(eurTotals.getBankAccounts() >= 2);
+        assertTrue(eurTotals.getHeldAmount().compareTo(new BigDecimal("2")) >= 0);
+
+        Response response = target.path(MetricsController.BASE_URL).path(MetricsController.LEDGER_PATH)
+                .request().get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        LedgerReport lastReport = response.readEntity(LedgerReport.class);
+        assertEquals(lastReport.getDiscrepancyCount(), report.getDiscrepancyCount());
+        assertEquals(lastReport.getBankAccounts(), report.getBankAccounts());
+    }
+
+    @Test
+    public void testMoneyConservation() throws ObjectModificationException, SQLException, InterruptedException {
+        ledgerServiceImpl.reconcileLedger();
+
+        Long fromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Conservation From Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+        Long toBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Conservation To Account", BigDecimal.ZERO, BigDecimal.ZERO, Currency.USD)).getId();
+        assertEquals(transactionsServiceImpl.createAndExecuteTransaction(new Transaction(fromBankAccountId,
+                toBankAccountId, new BigDecimal("333.3333"), Currency.INR)).getStatus(), TransactionStatus.SUCCEED);
+
+        //Once the margin has passed, the opening balances and the transfer are settled before the cut date
+        Thread.sleep(LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS + 100);
+        LedgerReport report = ledgerServiceImpl.reconcileLedger();
+        assertTrue(conservationDiscrepancies(report).isEmpty());
+        assertNotNull(report.getCutDate());
+
+        //The balance changed bypassing transfers creates money
+        changeBalance(toBankAccountId, BigDecimal.ONE);
+        List<LedgerDiscrepancy> discrepancies = conservationDiscrepancies(ledgerServiceImpl.reconcileLedger());
+        assertEquals(discrepancies.size(), 1);
+        assertEquals(discrepancies.get(0).getType(), LedgerDiscrepancyType.BALANCE_NOT_CONSERVED);
+        assertEquals(discrepancies.get(0).getCurrency(), Currency.USD);
+        assertThat(discrepancies.get(0).getActual().subtract(discrepancies.get(0).getExpected()),
+                Matchers.comparesEqualTo(BigDecimal.ONE));
+
+        //The difference is reported once, the change back is reported as another one
+        changeBalance(toBankAccountId, BigDecimal.ONE.negate());
+        discrepancies = conservationDiscrepancies(ledgerServiceImpl.reconcileLedger());
+        assertEquals(discrepancies.size(), 1);
+        assertThat(discrepancies.get(0).getActual().subtract(discrepancies.get(0).getExpected()),
+                Matchers.comparesEqualTo(BigDecimal.ONE.negate()));
+
+        assertTrue(conservationDiscrepancies(ledgerServiceImpl.reconcileLedger()).isEmpty());
+    }
+
+    private static List<LedgerDiscrepancy> conservationDiscrepancies(LedgerReport report) {
+        List<LedgerDiscrepancy> discrepancies = new ArrayList<>();
+        for (LedgerDiscrepancy discrepancy : report.getDiscrepancies()) {
+            if (discrepancy.getBankAccountId() == null) {
+                discrepancies.add(discrepancy);
+            }
+        }
+        return discrepancies;
+    }
+
+    private static void changeBalance(Long bankAccountId, BigDecimal change) throws SQLException {
+        try (Connection con = DataSourceFactory.getH2DataSource(DataSourceFactory.getShard(bankAccountId),
+                ConnectionPool.WRITE).getConnection();
+             PreparedStatement statement = con.prepareStatement(
+                     "update bank_account set balance = balance + ? where id = ?")) {
+            statement.setBigDecimal(1, change);
+            statement.setLong(2, bankAccountId);
+            statement.executeUpdate();
+            con.commit();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.MultiGetResult;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This Test reads several Bank Accounts and Transactions by their ids at once and verifies that duplicate ids are
+ * collapsed and ids which do not exist are reported.
+ */
+public class MultiGetTest {
+    private static final Long NOT_EXISTING_ID = Long.MAX_VALUE;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testBankAccountsByIds() throws ObjectModificationException {
+        Long firstBankAccountId = createBankAccount("Multi Get First Account");
+        Long secondBankAccountId = createBankAccount("Multi Get Second Account");
+
+        MultiGetResult<BankAccount> result = target.path(BankAccountsController.BASE_URL)
+                .queryParam(BankAccountsController.IDS_PARAM,
+                        secondBankAccountId + "," + NOT_EXISTING_ID + "," + firstBankAccountId + "," +
+                                secondBankAccountId)
+                .request().get(new GenericType<MultiGetResult<BankAccount>>() {
+                });
+
+        assertEquals(result.getFound().size(), 2);
+        assertEquals(result.getFound().get(0).getId(), secondBankAccountId);
+        assertEquals(result.getFound().get(1).getId(), firstBankAccountId);
+        assertEquals(result.getFound().get(1).getOwnerName(), "Multi Get First Account");
+        assertEquals(result.getMissingIds(), Collections.singletonList(NOT_EXISTING_ID));
+    }
+
+    @Test
+    public void testTransactionsByIds() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Multi Get From Account");
+        Long toBankAccountId = createBankAccount("Multi Get To Account");
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        MultiGetResult<Transaction> result = target.path(TransactionsController.BASE_URL)
+                .queryParam(TransactionsController.IDS_PARAM, transaction.getId())
+                .queryParam(TransactionsController.IDS_PARAM, NOT_EXISTING_ID + "," + transaction.getId())
+                .request().get(new GenericType<MultiGetResult<Transaction>>() {
+                });
+
+        assertEquals(result.getFound().size(), 1);
+        assertEquals(result.getFound().get(0).getId(), transaction.getId());
+        assertEquals(result.getFound().get(0).getFromBankAccountId(), fromBankAccountId);
+        assertEquals(result.getMissingIds(), Collections.singletonList(NOT_EXISTING_ID));
+    }
+
+    @Test
+    public void testMalformedIds() {
+        Response response = target.path(BankAccountsController.BASE_URL)
+                .queryParam(BankAccountsController.IDS_PARAM, "1,abc").request().get();
+
+        assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+
+    private Long createBankAccount(String ownerName) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
@@ -0,0 +1,109 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.dao.ContentionMonitor;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that transfers between quiet Bank Accounts are committed without locking and that concurrent
+ * transfers from the same hot Bank Account neither lose nor create money whatever way they are executed.
+ */
+public class OptimisticLockingTest {
+    private static final Logger log = LoggerFactory.getLogger(OptimisticLockingTest.class);
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private ContentionMonitor contentionMonitor = ContentionMonitor.getInstance();
+
+    private static final int THREADS_COUNT = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+
+    @Test
+    public void testQuietAccountsAreNotLocked() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Quiet From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Quiet To Account", BigDecimal.ZERO);
+        long version = bankAccountServiceImpl.getBankAccountById(fromBankAccountId).getVersion();
+        long optimisticCommits = contentionMonitor.getOptimisticCommits();
+
+        for (int i = 0; i < 5; i++) {
+            transactionsServiceImpl.createAndExecuteTransaction(
+                    new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+        }
+
+        assertTrue(contentionMonitor.getOptimisticCommits() - optimisticCommits >= 5);
+        assertEquals(contentionMonitor.getConflictRate(fromBankAccountId), 0.0);
+        BankAccount fromBankAccount = bankAccountServiceImpl.getBankAccountById(fromBankAccountId);
+        assertEquals(fromBankAccount.getVersion().longValue(), version + 5);
+        assertThat(fromBankAccount.getBalance(), Matchers.comparesEqualTo(BigDecimal.valueOf(5)));
+        assertThat(bankAccountServiceImpl.getBankAccountById(toBankAccountId).getBalance(),
+                Matchers.comparesEqualTo(BigDecimal.valueOf(5)));
+    }
+
+    @Test
+    public void testHotAccountConcurrentTransfers() throws Exception {
+        int transfersCount = THREADS_COUNT * TRANSFERS_PER_THREAD;
+        Long hotBankAccountId = createBankAccount("Hot Account", BigDecimal.valueOf(transfersCount));
+        List<Long> toBankAccountIds = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            toBankAccountIds.add(createBankAccount("Hot Target Account " + i, BigDecimal.ZERO));
+        }
+        long conflicts = contentionMonitor.getConflicts();
+        long pessimisticCommits = contentionMonitor.getPessimisticCommits();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS_COUNT);
+        List<Future<List<Transaction>>> futures = new ArrayList<>();
+        for (Long toBankAccountId : toBankAccountIds) {
+            futures.add(executorService.submit(() -> {
+                List<Transaction> transactions = new ArrayList<>();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    transactions.add(transactionsServiceImpl.createAndExecuteTransaction(
+                            new Transaction(hotBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR)));
+                }
+                return transactions;
+            }));
+        }
+        for (Future<List<Transaction>> future : futures) {
+            for (Transaction transaction : future.get()) {
+                assertEquals(transaction.getStatus(), TransactionStatus.SUCCEED);
+            }
+        }
+        executorService.shutdown();
+
+        log.info("{} transfers from the hot account: {} conflicts, {} pessimistic commits", transfersCount,
+                contentionMonitor.getConflicts() - conflicts,
+                contentionMonitor.getPessimisticCommits() - pessimisticCommits);
+
+        assertThat(bankAccountServiceImpl.getBankAccountById(hotBankAccountId).getBalance(),
+                Matchers.comparesEqualTo(BigDecimal.ZERO));
+        for (Long toBankAccountId : toBankAccountIds) {
+            assertThat(bankAccountServiceImpl.getBankAccountById(toBankAccountId).getBalance(),
+                    Matchers.comparesEqualTo(BigDecimal.valueOf(TRANSFERS_PER_THREAD)));
+        }
+    }
+
+    private Long createBankAccount(String ownerName, BigDecimal balance) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, balance, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
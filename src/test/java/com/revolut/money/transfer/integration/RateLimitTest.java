@@ -0,0 +1,91 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.HealthController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.exceptions.ApplicationException;
+import com.revolut.money.transfer.exceptions.ExceptionType;
+import com.revolut.money.transfer.filter.ClientRateLimiter;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.utils.Constants;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test floods the server from one address and verifies that the client is stopped by
+ * <code>429 Too Many Requests</code> even if it sends the new key with every request. The server is started with the low
+ * burst, so it is spent fast.
+ */
+public class RateLimitTest {
+    private static final String API_KEY_HEADER = "X-API-Key";
+    private static final double PERMITS_PER_SECOND = 0.1;
+    private static final int BURST = 20;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer(
+                new ClientRateLimiter(PERMITS_PER_SECOND, BURST, Constants.RATE_LIMIT_MAX_CLIENTS));
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the flooding client is rejected once the burst of its address is spent, whatever keys it sends,
+     * and that readiness checks are still served
+     */
+    @Test
+    public void testFloodingClient() {
+        Transaction transaction = new Transaction(Constants.TATA_BANK_ACCOUNT_ID, Constants.SIEMENS_BANK_ACCOUNT_ID,
+                BigDecimal.ONE.negate(), Currency.EUR);
+
+        int rejected = 0;
+        for (int i = 0; i < BURST * 2; i++) {
+            Response response = request("flooding-" + i)
+                    .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE));
+
+            if (response.getStatus() == Response.Status.TOO_MANY_REQUESTS.getStatusCode()) {
+                rejected++;
+                assertTrue(Long.parseLong(response.getHeaderString(HttpHeaders.RETRY_AFTER)) >= 1);
+                assertEquals(response.readEntity(ApplicationException.class).getType(),
+                        ExceptionType.RATE_LIMIT_EXCEEDED.name());
+            } else {
+                response.close();
+            }
+        }
+        assertTrue(rejected >= BURST / 2, rejected + " requests have been rejected");
+
+        Response response = request("polite").get();
+        assertEquals(response.getStatus(), Response.Status.TOO_MANY_REQUESTS.getStatusCode());
+        response.close();
+
+        response = target.path(HealthController.BASE_URL).path(HealthController.READY_PATH).request().get();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        response.close();
+    }
+
+    private static Invocation.Builder request(String apiKey) {
+        return target.path(TransactionsController.BASE_URL).request().header(API_KEY_HEADER, apiKey);
+    }
+}
@@ -0,0 +1,77 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.db.ReplicaSynchronizer;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.hamcrest.Matchers;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static com.revolut.money.transfer.utils.Constants.BANK_ACCOUNT_TABLE_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that committed changes are copied into the read replica and a client always reads its own
+ * writes even if the replica has not been synchronized yet.
+ */
+public class ReadReplicaTest {
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private ReplicaSynchronizer replicaSynchronizer = ReplicaSynchronizer.getInstance();
+
+    @Test
+    public void testReadYourWrites() throws ObjectModificationException {
+        Long fromBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Replica From Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.EUR)).getId();
+        Long toBankAccountId = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Replica To Account", BigDecimal.ZERO, BigDecimal.ZERO, Currency.EUR)).getId();
+
+        transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        assertThat(bankAccountServiceImpl.getBankAccountById(fromBankAccountId).getBalance(),
+                Matchers.comparesEqualTo(BigDecimal.valueOf(9)));
+        assertThat(bankAccountServiceImpl.getBankAccountById(toBankAccountId).getBalance(),
+                Matchers.comparesEqualTo(BigDecimal.ONE));
+    }
+
+    @Test
+    public void testReplicaSynchronization() throws ObjectModificationException, SQLException {
+        BankAccount bankAccount = bankAccountServiceImpl.createBankAccount(
+                new BankAccount("Replica Account", BigDecimal.TEN, BigDecimal.ZERO, Currency.USD));
+
+        replicaSynchronizer.synchronize();
+
+        assertFalse(replicaSynchronizer.isRecentlyModified(BANK_ACCOUNT_TABLE_NAME, bankAccount.getId()));
+        assertTrue(replicaSynchronizer.isFresh());
+
+        BigDecimal replicaBalance = getReplicaBalance(bankAccount.getId());
+        assertNotNull(replicaBalance);
+        assertThat(replicaBalance, Matchers.comparesEqualTo(BigDecimal.TEN));
+    }
+
+    private static BigDecimal getReplicaBalance(Long bankAccountId) throws SQLException {
+        try (Connection con = DataSourceFactory.getH2DataSource(ConnectionPool.REPLICA).getConnection();
+             PreparedStatement getBalance = con.prepareStatement("select balance from bank_account where id = ?")) {
+            getBalance.setLong(1, bankAccountId);
+            try (ResultSet balanceRS = getBalance.executeQuery()) {
+                return balanceRS.next() ? balanceRS.getBigDecimal(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.RecurringPlansController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.RecurringPeriod;
+import com.revolut.money.transfer.model.RecurringPlan;
+import com.revolut.money.transfer.model.RecurringPlanStatus;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.TransactionsService;
+import com.revolut.money.transfer.utils.Constants;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that recurring plans are expanded into Transactions one instance ahead and stop being expanded
+ * once they are cancelled
+ */
+public class RecurringPlanTest {
+    private static final long DELAY_MILLIS = 3000;
+    private static final long EXPANSION_TIMEOUT_MILLIS = 10_000;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+
+    @BeforeClass
+    public void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the first instance of the weekly plan is created as the Transaction scheduled for the first
+     * execution time, the second one is not created a week ahead, and the cancelled plan is not expanded anymore
+     */
+    @Test
+    public void testPlanIsExpandedOneInstanceAhead() throws InterruptedException {
+        Date firstExecuteAt = new Date(System.currentTimeMillis() + DELAY_MILLIS);
+        RecurringPlan createdPlan = createPlan(firstExecuteAt);
+        assertEquals(createdPlan.getStatus(), RecurringPlanStatus.ACTIVE);
+        assertEquals(createdPlan.getExpandedCount(), Integer.valueOf(0));
+
+        long deadline = System.currentTimeMillis() + EXPANSION_TIMEOUT_MILLIS;
+        RecurringPlan expandedPlan = getPlan(createdPlan.getId());
+        while (expandedPlan.getExpandedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            expandedPlan = getPlan(createdPlan.getId());
+        }
+
+        assertEquals(expandedPlan.getExpandedCount(), Integer.valueOf(1));
+        assertNull(expandedPlan.getLastFailMessage());
+        assertNotNull(expandedPlan.getLastTransactionId());
+        assertEquals(expandedPlan.getExpandAt(), firstExecuteAt);
+
+        Transaction instance = transactionsServiceImpl.getTransactionById(expandedPlan.getLastTransactionId());
+        assertEquals(instance.getFromBankAccountId(), Constants.TATA_BANK_ACCOUNT_ID);
+        assertEquals(instance.getToBankAccountId(), Constants.SIEMENS_BANK_ACCOUNT_ID);
+        assertEquals(instance.getExecuteAt(), firstExecuteAt);
+        assertTrue(instance.getStatus() == TransactionStatus.CREATED ||
+                System.currentTimeMillis() >= firstExecuteAt.getTime());
+
+        Response response = target.path(RecurringPlansController.BASE_URL).path(createdPlan.getId().toString())
+                .request().delete();
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        RecurringPlan cancelledPlan = response.readEntity(RecurringPlan.class);
+        assertEquals(cancelledPlan.getStatus(), RecurringPlanStatus.CANCELLED);
+        assertNull(cancelledPlan.getExpandAt());
+        assertEquals(cancelledPlan.getExpandedCount(), Integer.valueOf(1));
+
+        response = target.path(RecurringPlansController.BASE_URL).path(createdPlan.getId().toString())
+                .request().delete();
+        assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        response.close();
+    }
+
+    /**
+     * Tests that the plan which starts in the past is not created and the plan which does not exist is not found
+     */
+    @Test
+    public void testInvalidPlan() {
+        Response response = target.path(RecurringPlansController.BASE_URL).request()
+                .post(Entity.entity(newPlan(new Date(System.currentTimeMillis() - DELAY_MILLIS)),
+                        MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        response.close();
+
+        response = target.path(RecurringPlansController.BASE_URL).path(String.valueOf(Long.MAX_VALUE))
+                .request().get();
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+        response.close();
+    }
+
+    private RecurringPlan createPlan(Date firstExecuteAt) {
+        Response response = target.path(RecurringPlansController.BASE_URL).request()
+                .post(Entity.entity(newPlan(firstExecuteAt), MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+
+        return response.readEntity(RecurringPlan.class);
+    }
+
+    private RecurringPlan getPlan(Long id) {
+        return target.path(RecurringPlansController.BASE_URL).path(id.toString()).request().get(RecurringPlan.class);
+    }
+
+    private static RecurringPlan newPlan(Date firstExecuteAt) {
+        RecurringPlan plan = new RecurringPlan();
+        plan.setFromBankAccountId(Constants.TATA_BANK_ACCOUNT_ID);
+        plan.setToBankAccountId(Constants.SIEMENS_BANK_ACCOUNT_ID);
+        plan.setAmount(new BigDecimal("0.01"));
+        plan.setCurrency(Currency.EUR);
+        plan.setPeriod(RecurringPeriod.WEEKLY);
+        plan.setFirstExecuteAt(firstExecuteAt);
+
+        return plan;
+    }
+}
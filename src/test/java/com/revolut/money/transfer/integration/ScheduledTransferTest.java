@@ -0,0 +1,132 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.dao.TransactionDao;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.TransactionsService;
+import com.revolut.money.transfer.utils.Constants;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that transactions scheduled for later are not executed before their execution time and are
+ * executed right after it without waiting for the transaction executor
+ */
+public class ScheduledTransferTest {
+    private static final long DELAY_MILLIS = 3000;
+    private static final long EXECUTION_TIMEOUT_MILLIS = 10_000;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private TransactionDao transactionDao = TransactionDao.getInstance(
+            ServiceFactory.createServices().getMoneyExchangeService());
+
+    @BeforeClass
+    public void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the scheduled transaction stays CREATED until its execution time and is executed once the time has
+     * come. The transaction executor is not run explicitly, as it would execute transactions of other tests
+     */
+    @Test
+    public void testScheduledTransaction() throws InterruptedException {
+        Transaction transaction = new Transaction(Constants.TATA_BANK_ACCOUNT_ID, Constants.SIEMENS_BANK_ACCOUNT_ID,
+                new BigDecimal("0.01"), Currency.EUR);
+        Date executeAt = new Date(System.currentTimeMillis() + DELAY_MILLIS);
+        transaction.setExecuteAt(executeAt);
+
+        Response response = target.path(TransactionsController.BASE_URL).request()
+                .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        Transaction createdTransaction = response.readEntity(Transaction.class);
+        assertEquals(createdTransaction.getStatus(), TransactionStatus.CREATED);
+        assertEquals(createdTransaction.getExecuteAt(), executeAt);
+
+        TransactionStatus status = transactionsServiceImpl.getTransactionById(createdTransaction.getId()).getStatus();
+        if (System.currentTimeMillis() < executeAt.getTime()) {
+            assertEquals(status, TransactionStatus.CREATED);
+        }
+
+        long deadline = executeAt.getTime() + EXECUTION_TIMEOUT_MILLIS;
+        Transaction executedTransaction = transactionsServiceImpl.getTransactionById(createdTransaction.getId());
+        while (executedTransaction.getStatus() == TransactionStatus.CREATED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            executedTransaction = transactionsServiceImpl.getTransactionById(createdTransaction.getId());
+        }
+
+        assertEquals(executedTransaction.getStatus(), TransactionStatus.SUCCEED);
+        assertTrue(!executedTransaction.getUpdateDate().before(executeAt));
+    }
+
+    /**
+     * Tests that the scheduled transaction could not be executed before its execution time and is found by the query
+     * which fills the scheduler on startup
+     */
+    @Test
+    public void testScheduledTransactionsQuery() throws ObjectModificationException {
+        Transaction transaction = new Transaction(Constants.TATA_BANK_ACCOUNT_ID, Constants.SIEMENS_BANK_ACCOUNT_ID,
+                new BigDecimal("0.01"), Currency.EUR);
+        transaction.setExecuteAt(new Date(System.currentTimeMillis() + EXECUTION_TIMEOUT_MILLIS * 6));
+        Transaction createdTransaction = transactionDao.createTransaction(transaction);
+
+        try {
+            transactionDao.executeTransaction(createdTransaction.getId());
+            throw new AssertionError("The transaction has been executed before its execution time");
+        } catch (ObjectModificationException e) {
+            assertEquals(transactionDao.getTransactionById(createdTransaction.getId()).getStatus(),
+                    TransactionStatus.CREATED);
+        }
+
+        List<Transaction> scheduledTransactions = new ArrayList<>();
+        transactionDao.forEachScheduledTransaction(new Date(), scheduledTransactions::add);
+        assertTrue(scheduledTransactions.contains(createdTransaction));
+        assertTrue(!transactionDao.getSourceBankAccountIdsByStatus(TransactionStatus.CREATED)
+                .containsKey(createdTransaction.getId()));
+    }
+
+    /**
+     * Tests that the transaction executed at once could not be scheduled
+     */
+    @Test
+    public void testSyncTransactionIsNotScheduled() {
+        Transaction transaction = new Transaction(Constants.TATA_BANK_ACCOUNT_ID, Constants.SIEMENS_BANK_ACCOUNT_ID,
+                new BigDecimal("0.01"), Currency.EUR);
+        transaction.setExecuteAt(new Date(System.currentTimeMillis() + EXECUTION_TIMEOUT_MILLIS));
+
+        Response response = target.path(TransactionsController.BASE_URL)
+                .queryParam(TransactionsController.SYNC_PARAM, true).request()
+                .post(Entity.entity(transaction, MediaType.APPLICATION_JSON_TYPE));
+        assertEquals(response.getStatus(), Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        response.close();
+    }
+}
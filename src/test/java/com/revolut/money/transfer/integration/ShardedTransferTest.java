@@ -0,0 +1,348 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.db.ConnectionPool;
+import com.revolut.money.transfer.db.DataSourceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.LedgerDiscrepancy;
+import com.revolut.money.transfer.model.LedgerReport;
+import com.revolut.money.transfer.model.LedgerTotals;
+import com.revolut.money.transfer.model.MultiGetResult;
+import com.revolut.money.transfer.model.StatementEntry;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.LedgerService;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.hamcrest.Matchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.revolut.money.transfer.utils.Constants.LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test runs with several shards (see the <code>sharded-tests</code> execution in pom.xml). It verifies that
+ * cross shard transfers neither create nor lose money even if the process stops between the debit and the credit,
+ * and compares the throughput of transfers within one shard with the throughput of transfers spread over all shards.
+ */
+public class ShardedTransferTest {
+    private static final Logger log = LoggerFactory.getLogger(ShardedTransferTest.class);
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private LedgerService ledgerServiceImpl = ServiceFactory.createServices().getLedgerService();
+
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(100000L);
+    private static final int PAIRS_PER_SHARD = 4;
+    private static final int THREADS_COUNT = 8;
+    private static final int TRANSFERS_COUNT = 2000;
+
+    private List<List<Long>> bankAccountIdsByShard = new ArrayList<>();
+
+    @BeforeClass
+    public void initData() throws ObjectModificationException {
+        assertTrue(DataSourceFactory.getShardCount() > 1, "The test should be run with several shards");
+
+        for (int shard = 0; shard < DataSourceFactory.getShardCount(); shard++) {
+            bankAccountIdsByShard.add(new ArrayList<>());
+        }
+
+        //Bank Accounts are created in shards by turns, so every shard receives the same amount of them
+        for (int i = 0; i < DataSourceFactory.getShardCount() * PAIRS_PER_SHARD * 2; i++) {
+            Long bankAccountId = createBankAccount("Sharded Account " + i, INITIAL_BALANCE);
+            bankAccountIdsByShard.get(DataSourceFactory.getShard(bankAccountId)).add(bankAccountId);
+        }
+    }
+
+    @Test
+    public void testCrossShardTransfer() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Cross Shard From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Cross Shard To Account", BigDecimal.ZERO);
+        assertNotEquals(DataSourceFactory.getShard(fromBankAccountId), DataSourceFactory.getShard(toBankAccountId));
+
+        Transaction transaction = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        assertEquals(transaction.getStatus(), TransactionStatus.SUCCEED);
+        assertEquals(DataSourceFactory.getShard(transaction.getId()), DataSourceFactory.getShard(fromBankAccountId));
+        assertEquals(transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus(),
+                TransactionStatus.SUCCEED);
+        assertBalance(fromBankAccountId, BigDecimal.valueOf(9));
+        assertBalance(toBankAccountId, BigDecimal.ONE);
+
+        //The incoming transfer is stored in the shard of its source but is still in the statement of the target
+        assertStatement(fromBankAccountId, transaction.getId(), BigDecimal.valueOf(9));
+        assertStatement(toBankAccountId, transaction.getId(), BigDecimal.ONE);
+    }
+
+    @Test
+    public void testCrossShardTransferExecution() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Cross Shard Source Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Cross Shard Target Account", BigDecimal.ZERO);
+
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+        transactionsServiceImpl.executeTransactions();
+
+        assertEquals(transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus(),
+                TransactionStatus.SUCCEED);
+        BankAccount fromBankAccount = bankAccountServiceImpl.getBankAccountById(fromBankAccountId);
+        assertThat(fromBankAccount.getBalance(), Matchers.comparesEqualTo(BigDecimal.valueOf(9)));
+        assertThat(fromBankAccount.getBlockedAmount(), Matchers.comparesEqualTo(BigDecimal.ZERO));
+        assertBalance(toBankAccountId, BigDecimal.ONE);
+        assertStatement(fromBankAccountId, transaction.getId(), BigDecimal.valueOf(9));
+        assertStatement(toBankAccountId, transaction.getId(), BigDecimal.ONE);
+    }
+
+    @Test
+    public void testCrossShardTransferToNotExistingAccount() throws ObjectModificationException {
+        Long fromBankAccountId = createBankAccount("Cross Shard Lonely Account", BigDecimal.TEN);
+        Long notExistingBankAccountId = fromBankAccountId + 1_000_001;
+        assertNotEquals(DataSourceFactory.getShard(fromBankAccountId),
+                DataSourceFactory.getShard(notExistingBankAccountId));
+
+        try {
+            transactionsServiceImpl.createAndExecuteTransaction(
+                    new Transaction(fromBankAccountId, notExistingBankAccountId, BigDecimal.ONE, Currency.EUR));
+        } catch (ObjectModificationException e) {
+            assertBalance(fromBankAccountId, BigDecimal.TEN);
+            return;
+        }
+
+        throw new AssertionError("The transfer to not existing Bank Account should be rejected");
+    }
+
+    /**
+     * Simulates the process stopped right after the source Bank Account has been debited and then right after the
+     * target Bank Account has been credited. The recovery should credit the target exactly once in both cases.
+     */
+    @Test
+    public void testCrossShardTransferRecovery() throws ObjectModificationException, SQLException {
+        Long fromBankAccountId = createBankAccount("Recovery From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Recovery To Account", BigDecimal.ZERO);
+
+        Transaction transaction = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        //Stopped before the credit: the credit is undone and the transaction is PROCESSING again
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "update bank_account set balance = balance - ? where id = ?", BigDecimal.ONE, toBankAccountId);
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "delete from cross_shard_credit where transaction_id = ?", transaction.getId());
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "delete from balance_checkpoint where transaction_id = ?", transaction.getId());
+        markProcessing(transaction.getId());
+
+        //Recovery of the scheduled executor never touches transactions updated recently
+        transactionsServiceImpl.recoverCrossShardTransfers(new Date(System.currentTimeMillis() + 60_000));
+
+        assertEquals(transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus(),
+                TransactionStatus.SUCCEED);
+        assertBalance(fromBankAccountId, BigDecimal.valueOf(9));
+        assertBalance(toBankAccountId, BigDecimal.ONE);
+
+        //Stopped after the credit but before the transaction has been completed
+        markProcessing(transaction.getId());
+
+        transactionsServiceImpl.recoverCrossShardTransfers(new Date(System.currentTimeMillis() + 60_000));
+
+        assertEquals(transactionsServiceImpl.getTransactionById(transaction.getId()).getStatus(),
+                TransactionStatus.SUCCEED);
+        assertBalance(fromBankAccountId, BigDecimal.valueOf(9));
+        assertBalance(toBankAccountId, BigDecimal.ONE);
+    }
+
+    /**
+     * The cross shard transfer which is debited but not credited is in flight: money is conserved while it is
+     * PROCESSING and once it is completed by the recovery
+     */
+    @Test
+    public void testLedgerConservation() throws ObjectModificationException, SQLException, InterruptedException {
+        ledgerServiceImpl.reconcileLedger();
+
+        Long fromBankAccountId = createBankAccount("Conservation From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Conservation To Account", BigDecimal.ZERO);
+        assertNotEquals(DataSourceFactory.getShard(fromBankAccountId), DataSourceFactory.getShard(toBankAccountId));
+
+        assertEquals(transactionsServiceImpl.createAndExecuteTransaction(new Transaction(fromBankAccountId,
+                toBankAccountId, new BigDecimal("1.2345"), Currency.USD)).getStatus(), TransactionStatus.SUCCEED);
+        Transaction transaction = transactionsServiceImpl.createAndExecuteTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        //Stopped before the credit: the transfer stays in flight
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "update bank_account set balance = balance - ? where id = ?", BigDecimal.ONE, toBankAccountId);
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "delete from cross_shard_credit where transaction_id = ?", transaction.getId());
+        execute(DataSourceFactory.getShard(toBankAccountId),
+                "delete from balance_checkpoint where transaction_id = ?", transaction.getId());
+        markProcessing(transaction.getId());
+
+        Thread.sleep(LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS + 100);
+        LedgerReport report = ledgerServiceImpl.reconcileLedger();
+        assertConserved(report);
+        assertThat(inFlightAmount(report, Currency.EUR), Matchers.comparesEqualTo(BigDecimal.ONE));
+
+        transactionsServiceImpl.recoverCrossShardTransfers(new Date(System.currentTimeMillis() + 60_000));
+
+        Thread.sleep(LEDGER_RECONCILIATION_SETTLE_MARGIN_MILLIS + 100);
+        report = ledgerServiceImpl.reconcileLedger();
+        assertConserved(report);
+        assertThat(inFlightAmount(report, Currency.EUR), Matchers.comparesEqualTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void testBankAccountsByIdsOfAllShards() throws ObjectModificationException {
+        List<Long> ids = new ArrayList<>();
+        for (List<Long> bankAccountIds : bankAccountIdsByShard) {
+            ids.add(bankAccountIds.get(0));
+        }
+
+        MultiGetResult<BankAccount> result = bankAccountServiceImpl.getBankAccountsByIds(ids);
+
+        assertEquals(result.getFound().size(), ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(result.getFound().get(i).getId(), ids.get(i));
+        }
+        assertTrue(result.getMissingIds().isEmpty());
+    }
+
+    @Test
+    public void testShardedThroughput() throws Exception {
+        List<Long[]> singleShardPairs = new ArrayList<>();
+        List<Long[]> allShardsPairs = new ArrayList<>();
+        for (int shard = 0; shard < bankAccountIdsByShard.size(); shard++) {
+            List<Long> bankAccountIds = bankAccountIdsByShard.get(shard);
+            for (int i = 0; i < PAIRS_PER_SHARD; i++) {
+                Long[] pair = {bankAccountIds.get(2 * i), bankAccountIds.get(2 * i + 1)};
+                if (shard == 0) {
+                    singleShardPairs.add(pair);
+                }
+                allShardsPairs.add(pair);
+            }
+        }
+
+        long singleShardTime = transfer(singleShardPairs);
+        long allShardsTime = transfer(allShardsPairs);
+
+        log.info("{} transfers within one shard in {} ms ({} per second), spread over {} shards in {} ms ({} per second)",
+                TRANSFERS_COUNT,
+                singleShardTime / 1_000_000, TRANSFERS_COUNT * 1_000_000_000L / Math.max(singleShardTime, 1),
+                DataSourceFactory.getShardCount(),
+                allShardsTime / 1_000_000, TRANSFERS_COUNT * 1_000_000_000L / Math.max(allShardsTime, 1));
+
+        //Every account sends and receives the same amount in turns, so the total of every shard is unchanged
+        BigDecimal expectedTotal = INITIAL_BALANCE.multiply(BigDecimal.valueOf(PAIRS_PER_SHARD * 2));
+        for (List<Long> bankAccountIds : bankAccountIdsByShard) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (Long bankAccountId : bankAccountIds) {
+                total = total.add(bankAccountServiceImpl.getBankAccountById(bankAccountId).getBalance());
+            }
+            assertThat(total, Matchers.comparesEqualTo(expectedTotal));
+        }
+    }
+
+    /**
+     * Executes transfers between Bank Accounts of the pairs by several threads
+     *
+     * @return the time spent in nanoseconds
+     */
+    private long transfer(List<Long[]> pairs) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS_COUNT);
+        AtomicInteger counter = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int thread = 0; thread < THREADS_COUNT; thread++) {
+            futures.add(executorService.submit(() -> {
+                int i;
+                while ((i = counter.getAndIncrement()) < TRANSFERS_COUNT) {
+                    Long[] pair = pairs.get(i % pairs.size());
+                    boolean forward = (i / pairs.size()) % 2 == 0;
+                    transactionsServiceImpl.createAndExecuteTransaction(new Transaction(
+                            forward ? pair[0] : pair[1], forward ? pair[1] : pair[0], BigDecimal.ONE, Currency.EUR));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long time = System.nanoTime() - start;
+
+        executorService.shutdown();
+        return time;
+    }
+
+    private Long createBankAccount(String ownerName, BigDecimal balance) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, balance, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+
+    private void assertBalance(Long bankAccountId, BigDecimal expectedBalance) {
+        assertThat(bankAccountServiceImpl.getBankAccountById(bankAccountId).getBalance(),
+                Matchers.comparesEqualTo(expectedBalance));
+    }
+
+    private static void assertConserved(LedgerReport report) {
+        for (LedgerDiscrepancy discrepancy : report.getDiscrepancies()) {
+            assertNotNull(discrepancy.getBankAccountId(), "Money is not conserved: " + discrepancy.getType() + " " +
+                    discrepancy.getCurrency() + " expected " + discrepancy.getExpected() + ", actual " +
+                    discrepancy.getActual());
+        }
+    }
+
+    private static BigDecimal inFlightAmount(LedgerReport report, Currency currency) {
+        for (LedgerTotals totals : report.getTotals()) {
+            if (totals.getCurrency() == currency) {
+                return totals.getInFlightAmount();
+            }
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private void assertStatement(Long bankAccountId, Long transactionId, BigDecimal expectedBalance)
+            throws ObjectModificationException {
+        List<StatementEntry> statement = transactionsServiceImpl.getBankAccountStatement(bankAccountId, null, null, 10);
+        assertEquals(statement.size(), 1);
+        assertEquals(statement.get(0).getTransaction().getId(), transactionId);
+        assertThat(statement.get(0).getBalance(), Matchers.comparesEqualTo(expectedBalance));
+    }
+
+    private static void markProcessing(Long transactionId) throws SQLException {
+        execute(DataSourceFactory.getShard(transactionId), "update transaction set status_id = ? where id = ?",
+                TransactionStatus.PROCESSING.getId(), transactionId);
+    }
+
+    private static void execute(int shard, String sql, Object... parameters) throws SQLException {
+        try (Connection con = DataSourceFactory.getH2DataSource(shard, ConnectionPool.WRITE).getConnection();
+             PreparedStatement statement = con.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            statement.executeUpdate();
+            con.commit();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.revolut.money.transfer.integration;
+
+import com.revolut.money.transfer.MoneyTransferApplication;
+import com.revolut.money.transfer.controller.BankAccountsController;
+import com.revolut.money.transfer.controller.TransactionsController;
+import com.revolut.money.transfer.core.ServiceFactory;
+import com.revolut.money.transfer.exceptions.ObjectModificationException;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionStatus;
+import com.revolut.money.transfer.service.BankAccountService;
+import com.revolut.money.transfer.service.TransactionEventBroadcaster;
+import com.revolut.money.transfer.service.TransactionsService;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.InboundSseEvent;
+import javax.ws.rs.sse.SseEventSource;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test subscribes to Server-Sent Events streams of a Transaction and of a Bank Account and verifies that
+ * committed status changes are pushed to them.
+ */
+public class TransactionEventsTest {
+    private static final long EVENT_TIMEOUT_SECONDS = 10;
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+    private TransactionsService transactionsServiceImpl = ServiceFactory.createServices().getTransactionsService();
+    private BankAccountService bankAccountServiceImpl = ServiceFactory.createServices().getAccountService();
+    private TransactionEventBroadcaster transactionEvents = TransactionEventBroadcaster.getInstance();
+
+    @BeforeClass
+    public static void beforeAll() {
+        server = MoneyTransferApplication.startServer();
+        target = ClientBuilder.newClient().target(MoneyTransferApplication.BASE_URI);
+    }
+
+    @AfterClass
+    public static void afterAll() {
+        server.shutdownNow();
+    }
+
+    /**
+     * Tests that the transaction stream starts with the current status and ends with the final one
+     */
+    @Test
+    public void testTransactionEvents() throws Exception {
+        Long fromBankAccountId = createBankAccount("Events From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Events To Account", BigDecimal.ZERO);
+        Transaction transaction = transactionsServiceImpl.createTransaction(
+                new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource eventSource = SseEventSource.target(target.path(TransactionsController.BASE_URL)
+                .path(transaction.getId().toString()).path(TransactionsController.EVENTS_PATH)).build()) {
+            eventSource.register(events::add);
+            eventSource.open();
+
+            assertEvent(events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS), transaction.getId(),
+                    TransactionStatus.CREATED);
+
+            transactionsServiceImpl.executeTransactions();
+
+            assertEvent(events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS), transaction.getId(),
+                    TransactionStatus.SUCCEED);
+        }
+    }
+
+    /**
+     * Tests that the event of the transaction scheduled for later carries its execution time
+     */
+    @Test
+    public void testScheduledTransactionEvents() throws Exception {
+        Long fromBankAccountId = createBankAccount("Scheduled Events From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Scheduled Events To Account", BigDecimal.ZERO);
+        Transaction scheduledTransaction = new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE,
+                Currency.EUR);
+        scheduledTransaction.setExecuteAt(new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10)));
+        Transaction transaction = transactionsServiceImpl.createTransaction(scheduledTransaction);
+
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource eventSource = SseEventSource.target(target.path(TransactionsController.BASE_URL)
+                .path(transaction.getId().toString()).path(TransactionsController.EVENTS_PATH)).build()) {
+            eventSource.register(events::add);
+            eventSource.open();
+
+            Transaction createdTransaction = assertEvent(events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                    transaction.getId(), TransactionStatus.CREATED);
+            assertEquals(createdTransaction.getExecuteAt(), transaction.getExecuteAt());
+        }
+    }
+
+    /**
+     * Tests that transactions of the Bank Account are pushed into the stream of the account
+     */
+    @Test
+    public void testBankAccountEvents() throws Exception {
+        Long fromBankAccountId = createBankAccount("Account Events From Account", BigDecimal.TEN);
+        Long toBankAccountId = createBankAccount("Account Events To Account", BigDecimal.ZERO);
+
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        int subscriberCount = transactionEvents.getSubscriberCount();
+        try (SseEventSource eventSource = SseEventSource.target(target.path(BankAccountsController.BASE_URL)
+                .path(toBankAccountId.toString()).path(BankAccountsController.EVENTS_PATH)).build()) {
+            eventSource.register(events::add);
+            eventSource.open();
+            waitForSubscriber(subscriberCount);
+
+            Transaction transaction = transactionsServiceImpl.createAndExecuteTransaction(
+                    new Transaction(fromBankAccountId, toBankAccountId, BigDecimal.ONE, Currency.EUR));
+
+            assertEvent(events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS), transaction.getId(),
+                    TransactionStatus.SUCCEED);
+        }
+    }
+
+    /**
+     * Tests that streams of subscribers are closed once the server stops and the server started again serves new
+     * subscribers
+     */
+    @Test
+    public void testSubscriptionsAreClosedOnShutdown() throws Exception {
+        Long bankAccountId = createBankAccount("Shutdown Events Account", BigDecimal.ZERO);
+
+        int subscriberCount = transactionEvents.getSubscriberCount();
+        try (SseEventSource eventSource = SseEventSource.target(target.path(BankAccountsController.BASE_URL)
+                .path(bankAccountId.toString()).path(BankAccountsController.EVENTS_PATH)).build()) {
+            eventSource.open();
+            waitForSubscriber(subscriberCount);
+
+            server.shutdownNow();
+            assertEquals(transactionEvents.getSubscriberCount(), 0);
+        } finally {
+            server = MoneyTransferApplication.startServer();
+        }
+
+        try (SseEventSource eventSource = SseEventSource.target(target.path(BankAccountsController.BASE_URL)
+                .path(bankAccountId.toString()).path(BankAccountsController.EVENTS_PATH)).build()) {
+            eventSource.open();
+            waitForSubscriber(0);
+        }
+    }
+
+    /**
+     * Tests that the stream of not existing transaction is not opened
+     */
+    @Test
+    public void testNotExistingTransactionEvents() {
+        Response response = target.path(TransactionsController.BASE_URL).path(String.valueOf(Long.MAX_VALUE))
+                .path(TransactionsController.EVENTS_PATH).request(MediaType.SERVER_SENT_EVENTS).get();
+
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    private void waitForSubscriber(int subscriberCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT_SECONDS);
+        while (transactionEvents.getSubscriberCount() <= subscriberCount) {
+            assertTrue(System.nanoTime() < deadline, "The stream has not been subscribed");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Transaction assertEvent(InboundSseEvent event, Long transactionId, TransactionStatus status) {
+        assertNotNull(event, "The event has not been received");
+        assertEquals(event.getName(), status.name());
+
+        Transaction transaction = event.readData(Transaction.class, MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(transaction.getId(), transactionId);
+        assertEquals(transaction.getStatus(), status);
+
+        return transaction;
+    }
+
+    private Long createBankAccount(String ownerName, BigDecimal balance) throws ObjectModificationException {
+        return bankAccountServiceImpl.createBankAccount(
+                new BankAccount(ownerName, balance, BigDecimal.ZERO, Currency.EUR)).getId();
+    }
+}
@@ -0,0 +1,167 @@
+package com.revolut.money.transfer.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revolut.money.transfer.model.BankAccount;
+import com.revolut.money.transfer.model.Currency;
+import com.revolut.money.transfer.model.Transaction;
+import com.revolut.money.transfer.model.TransactionFailCode;
+import com.revolut.money.transfer.model.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that hand-written JSON writers produce the same JSON as Jackson does and logs the throughput of
+ * both on the list of transactions
+ */
+public class ModelJsonWriterTest {
+    private static final Logger log = LoggerFactory.getLogger(ModelJsonWriterTest.class);
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    private static final Type TRANSACTIONS_TYPE = new GenericType<List<Transaction>>() {
+    }.getType();
+    private static final int TRANSACTIONS_COUNT = 10_000;
+    private static final int ROUNDS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransactionJsonWriter transactionJsonWriter = new TransactionJsonWriter();
+    private final BankAccountJsonWriter bankAccountJsonWriter = new BankAccountJsonWriter();
+
+    /**
+     * Tests that the transaction is written as by Jackson including null fields and escaped strings
+     */
+    @Test
+    public void testTransaction() throws IOException {
+        Transaction transaction = new Transaction(1L, -2L, new BigDecimal("10.5000"), Currency.EUR);
+        transaction.setId(Long.MAX_VALUE);
+        transaction.setStatus(TransactionStatus.FAILED);
+        transaction.setFailCode(TransactionFailCode.DATABASE_ERROR);
+        transaction.setFailMessage("Quote \" backslash \\ tab \t control \u0001 euro € emoji 💸");
+
+        assertEquals(write(transactionJsonWriter, transaction, Transaction.class),
+                objectMapper.writeValueAsString(transaction));
+
+        Transaction empty = new Transaction();
+        empty.setCreationDate(null);
+        empty.setFailMessage(null);
+        empty.setStatus(null);
+        assertEquals(write(transactionJsonWriter, empty, Transaction.class), objectMapper.writeValueAsString(empty));
+    }
+
+    /**
+     * Tests that the Bank Account is written as by Jackson
+     */
+    @Test
+    public void testBankAccount() throws IOException {
+        BankAccount bankAccount = new BankAccount(Long.MIN_VALUE, "Owner Ünïcode",
+                new BigDecimal("1E+3"), BigDecimal.ZERO, Currency.INR);
+        bankAccount.setVersion(0L);
+
+        assertEquals(write(bankAccountJsonWriter, bankAccount, BankAccount.class),
+                objectMapper.writeValueAsString(bankAccount));
+        assertEquals(write(bankAccountJsonWriter, new BankAccount(), BankAccount.class),
+                objectMapper.writeValueAsString(new BankAccount()));
+    }
+
+    /**
+     * Tests that the list longer than the buffer is written as by Jackson
+     */
+    @Test
+    public void testTransactions() throws IOException {
+        List<Transaction> transactions = createTransactions(1000);
+        transactions.add(null);
+
+        assertEquals(write(transactionJsonWriter, transactions, TRANSACTIONS_TYPE),
+                objectMapper.writeValueAsString(transactions));
+    }
+
+    /**
+     * Tests that only model objects and collections of them with the known element type are written
+     */
+    @Test
+    public void testIsWriteable() {
+        assertTrue(transactionJsonWriter.isWriteable(Transaction.class, Transaction.class, NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(transactionJsonWriter.isWriteable(ArrayList.class, TRANSACTIONS_TYPE, NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(transactionJsonWriter.isWriteable(ArrayList.class, ArrayList.class, NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(transactionJsonWriter.isWriteable(Transaction.class, Transaction.class, NO_ANNOTATIONS,
+                MediaType.APPLICATION_XML_TYPE));
+        assertFalse(bankAccountJsonWriter.isWriteable(ArrayList.class, TRANSACTIONS_TYPE, NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    /**
+     * Logs the throughput of writing the list of transactions by Jackson and by the hand-written writer
+     */
+    @Test
+    public void testThroughput() throws IOException {
+        List<Transaction> transactions = createTransactions(TRANSACTIONS_COUNT);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(TRANSACTIONS_COUNT * 256);
+
+        for (int warmUp = 0; warmUp < 2; warmUp++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                out.reset();
+                objectMapper.writeValue(out, transactions);
+            }
+            logThroughput("Jackson", start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                out.reset();
+                transactionJsonWriter.writeTo(transactions, ArrayList.class, TRANSACTIONS_TYPE, NO_ANNOTATIONS,
+                        MediaType.APPLICATION_JSON_TYPE, null, out);
+            }
+            logThroughput("Hand-written writer", start);
+        }
+    }
+
+    private static List<Transaction> createTransactions(int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction((long) i, (long) i + 1,
+                    BigDecimal.valueOf(i, 4), Arrays.asList(Currency.values()).get(i % Currency.values().length));
+            transaction.setId((long) i);
+            transaction.setCreationDate(new Date(now - i));
+            transaction.setUpdateDate(new Date(now));
+            transactions.add(transaction);
+        }
+
+        return transactions;
+    }
+
+    private static String write(ModelJsonWriter<?> writer, Object object, Type genericType) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Class<?> type = object instanceof Collection ? ArrayList.class : object.getClass();
+        writer.writeTo(object, type, genericType, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, out);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void logThroughput(String name, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("{}: {} transactions in {} ms, {} transactions/s", name, TRANSACTIONS_COUNT * ROUNDS,
+                elapsedNanos / 1_000_000, TRANSACTIONS_COUNT * ROUNDS * 1_000_000_000L / Math.max(elapsedNanos, 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.revolut.money.transfer.service;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class AccountMailboxesTest {
+    private static final Long FIRST_ACCOUNT_ID = 1L;
+    private static final Long SECOND_ACCOUNT_ID = 2L;
+
+    /**
+     * Tests that tasks of the same account are never executed at the same time and keep the order of submission
+     */
+    @Test
+    public void testTasksOfAccountAreExecutedSerially() {
+        AccountMailboxes accountMailboxes = new AccountMailboxes(4, 60_000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> executionOrder = Collections.synchronizedList(new ArrayList<>());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int taskNumber = i;
+            futures.add(accountMailboxes.submit(FIRST_ACCOUNT_ID, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                executionOrder.add(taskNumber);
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(maxRunning.get(), 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(executionOrder.get(i).intValue(), i);
+        }
+    }
+
+    /**
+     * Tests that the busy account does not hold tasks of other accounts
+     */
+    @Test(timeOut = 10_000)
+    public void testTasksOfDifferentAccountsAreExecutedInParallel() throws Exception {
+        AccountMailboxes accountMailboxes = new AccountMailboxes(2, 60_000);
+        CountDownLatch secondAccountDone = new CountDownLatch(1);
+
+        CompletableFuture<Void> firstAccountTask = accountMailboxes.submit(FIRST_ACCOUNT_ID, () -> {
+            try {
+                secondAccountDone.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        accountMailboxes.submit(SECOND_ACCOUNT_ID, secondAccountDone::countDown).get();
+        firstAccountTask.get();
+    }
+
+    /**
+     * Tests that the failure of a task is returned by its future and does not stop the mailbox
+     */
+    @Test
+    public void testFailedTaskDoesNotStopMailbox() throws Exception {
+        AccountMailboxes accountMailboxes = new AccountMailboxes(1, 60_000);
+
+        CompletableFuture<Void> failedTask = accountMailboxes.submit(FIRST_ACCOUNT_ID, () -> {
+            throw new IllegalStateException("Task failure");
+        });
+        CompletableFuture<Void> nextTask = accountMailboxes.submit(FIRST_ACCOUNT_ID, () -> { });
+
+        nextTask.get();
+        try {
+            failedTask.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            return;
+        }
+        throw new AssertionError("The failure has not been returned");
+    }
+
+    /**
+     * Tests that only mailboxes idle longer than the idle time are evicted
+     */
+    @Test
+    public void testIdleMailboxesAreEvicted() throws Exception {
+        AccountMailboxes accountMailboxes = new AccountMailboxes(1, TimeUnit.HOURS.toMillis(1));
+
+        accountMailboxes.submit(FIRST_ACCOUNT_ID, () -> { }).get();
+        accountMailboxes.evictIdleMailboxes();
+        assertEquals(accountMailboxes.getMailboxCount(), 1);
+
+        AccountMailboxes shortLivedMailboxes = new AccountMailboxes(1, 1);
+        shortLivedMailboxes.submit(FIRST_ACCOUNT_ID, () -> { }).get();
+        Thread.sleep(10);
+        shortLivedMailboxes.evictIdleMailboxes();
+        assertEquals(shortLivedMailboxes.getMailboxCount(), 0);
+
+        shortLivedMailboxes.submit(FIRST_ACCOUNT_ID, () -> { }).get();
+        assertTrue(shortLivedMailboxes.getMailboxCount() <= 1);
+    }
+}
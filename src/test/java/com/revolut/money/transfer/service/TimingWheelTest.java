@@ -0,0 +1,120 @@
+package com.revolut.money.transfer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This Test verifies that the timing wheel releases values at their deadlines by the time passed explicitly
+ */
+public class TimingWheelTest {
+    private static final Logger log = LoggerFactory.getLogger(TimingWheelTest.class);
+
+    private static final long TICK_MILLIS = 10;
+    private static final long START_MILLIS = 1_000_000;
+
+    /**
+     * Tests that values spread over several levels of the small wheel are released at the first tick after their
+     * deadlines and never before
+     */
+    @Test
+    public void testReleasedAtDeadline() {
+        TimingWheel<Long> timingWheel = new TimingWheel<>(TICK_MILLIS, 4, START_MILLIS, deadline -> deadline);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(timingWheel.add(START_MILLIS + 1 + random.nextInt(100_000)));
+        }
+        assertEquals(timingWheel.size(), 10_000);
+
+        List<Long> released = new ArrayList<>();
+        long previousNow = START_MILLIS;
+        while (timingWheel.size() > 0) {
+            long now = previousNow + random.nextInt(50);
+            released.clear();
+            timingWheel.advance(now, released::add);
+
+            for (Long deadline : released) {
+                long releaseMillis = (deadline + TICK_MILLIS - 1) / TICK_MILLIS * TICK_MILLIS;
+                assertTrue(releaseMillis <= now, deadline + " is released too early at " + now);
+                assertTrue(releaseMillis > previousNow, deadline + " is released too late at " + now);
+            }
+            previousNow = now;
+        }
+    }
+
+    /**
+     * Tests that values which deadlines have been reached are not added
+     */
+    @Test
+    public void testDueValueIsNotAdded() {
+        TimingWheel<Long> timingWheel = new TimingWheel<>(TICK_MILLIS, 4, START_MILLIS, deadline -> deadline);
+
+        assertFalse(timingWheel.add(START_MILLIS - 1));
+        assertFalse(timingWheel.add(START_MILLIS));
+        assertTrue(timingWheel.add(START_MILLIS + 1));
+
+        List<Long> released = new ArrayList<>();
+        timingWheel.advance(START_MILLIS + TICK_MILLIS - 1, released::add);
+        assertTrue(released.isEmpty());
+        timingWheel.advance(START_MILLIS + TICK_MILLIS, released::add);
+        assertEquals(released.size(), 1);
+    }
+
+    /**
+     * Tests that the empty wheel moves to the time at once and values added later are counted from that time
+     */
+    @Test
+    public void testEmptyWheelJumps() {
+        TimingWheel<Long> timingWheel = new TimingWheel<>(TICK_MILLIS, 4, START_MILLIS, deadline -> deadline);
+        long later = START_MILLIS + TimeUnit.DAYS.toMillis(365);
+
+        timingWheel.advance(later, deadline -> {
+        });
+        assertFalse(timingWheel.add(later));
+        assertTrue(timingWheel.add(later + 1000));
+
+        List<Long> released = new ArrayList<>();
+        timingWheel.advance(later + 990, released::add);
+        assertTrue(released.isEmpty());
+        timingWheel.advance(later + 1000, released::add);
+        assertEquals(released.size(), 1);
+    }
+
+    /**
+     * Logs the throughput of holding a million values over one hour of ticks
+     */
+    @Test
+    public void testMillionValues() {
+        TimingWheel<Long> timingWheel = new TimingWheel<>(TICK_MILLIS, 512, START_MILLIS, deadline -> deadline);
+        long hour = TimeUnit.HOURS.toMillis(1);
+        Random random = new Random(42);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000_000; i++) {
+            timingWheel.add(START_MILLIS + 1 + (long) (random.nextDouble() * hour));
+        }
+        long added = System.nanoTime();
+
+        long[] released = new long[1];
+        for (long now = START_MILLIS; now <= START_MILLIS + hour; now += TICK_MILLIS) {
+            timingWheel.advance(now, deadline -> released[0]++);
+        }
+        long finished = System.nanoTime();
+
+        assertEquals(released[0], 1_000_000);
+        assertEquals(timingWheel.size(), 0);
+        log.info("1000000 values are added in {} ms and released by {} ticks in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(added - start), hour / TICK_MILLIS,
+                TimeUnit.NANOSECONDS.toMillis(finished - added));
+    }
+}
@@ -129,8 +129,8 @@ public class TransactionsServiceImplTest {
 
         when(transactionDao.createTransaction(any())).thenReturn(transaction);
 
-        when(transactionDao.getAllTransactionIdsByStatus(any())).thenReturn(
-                Collections.singletonList(transaction.getId())
+        when(transactionDao.getSourceBankAccountIdsByStatus(any())).thenReturn(
+                Collections.singletonMap(transaction.getId(), transaction.getFromBankAccountId())
         );
 
         doAnswer(invocation -> {
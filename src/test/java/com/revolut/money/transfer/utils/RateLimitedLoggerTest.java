@@ -0,0 +1,50 @@
+package com.revolut.money.transfer.utils;
+
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RateLimitedLoggerTest {
+
+    /**
+     * Tests that only allowed number of messages will be written during the interval
+     */
+    @Test
+    public void testMessagesAreLimited() {
+        Logger log = mock(Logger.class);
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(log, 3, 60_000);
+        RuntimeException exception = new RuntimeException();
+
+        for (int i = 0; i < 100; i++) {
+            rateLimitedLogger.error("Failure", exception);
+        }
+
+        verify(log, times(3)).error(anyString(), any(Throwable.class));
+    }
+
+    /**
+     * Tests that the number of suppressed messages will be reported once the next interval is started
+     */
+    @Test
+    public void testSuppressedMessagesAreReported() throws InterruptedException {
+        Logger log = mock(Logger.class);
+        RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(log, 1, 50);
+        RuntimeException exception = new RuntimeException();
+
+        rateLimitedLogger.error("Failure", exception);
+        rateLimitedLogger.error("Failure", exception);
+        rateLimitedLogger.error("Failure", exception);
+        Thread.sleep(100);
+        rateLimitedLogger.error("Failure", exception);
+
+        verify(log, times(1)).error(eq("Failure"), any(Throwable.class));
+        verify(log, times(1)).error(contains("2 similar messages have been suppressed"), any(Throwable.class));
+    }
+}